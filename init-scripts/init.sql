@@ -57,6 +57,10 @@ CREATE INDEX idx_transactions_merchant_id ON transactions (merchant_id);
 CREATE INDEX idx_transactions_date ON transactions (transaction_date);
 CREATE INDEX idx_transactions_customer_date ON transactions (customer_id, transaction_date);
 
+-- Schema changes since the tables above, each also runnable on its own against an existing database
+\ir migrations/001_merchants_updated_at.sql
+\ir migrations/002_customer_daily_aggregates.sql
+
 -- Sample data for testing
 
 -- Insert sample customers
@@ -95,4 +99,4 @@ VALUES
 
 -- Create user with proper permissions if needed
 -- CREATE USER transaction_service WITH PASSWORD 'your-password';
--- GRANT SELECT, INSERT, UPDATE ON customers, merchants, transactions TO transaction_service;
\ No newline at end of file
+-- GRANT SELECT, INSERT, UPDATE ON customers, merchants, transactions, customer_daily_aggregates TO transaction_service;
\ No newline at end of file
@@ -0,0 +1,24 @@
+-- merchants.updated_at, kept current by a trigger, so the service can refresh its in-memory copy
+-- of the merchants incrementally. Included by init.sql on a fresh volume; an existing database
+-- needs it applied before a service version that maps the column starts (ddl-auto=validate):
+--   psql -v ON_ERROR_STOP=1 -d customer_data -f init-scripts/migrations/001_merchants_updated_at.sql
+-- Every statement is safe to re-run.
+BEGIN;
+
+ALTER TABLE merchants ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_merchants_updated_at ON merchants (updated_at);
+
+CREATE OR REPLACE FUNCTION touch_updated_at() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_at = CURRENT_TIMESTAMP;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS merchants_touch_updated_at ON merchants;
+CREATE TRIGGER merchants_touch_updated_at
+    BEFORE UPDATE ON merchants
+    FOR EACH ROW EXECUTE FUNCTION touch_updated_at();
+
+COMMIT;
@@ -0,0 +1,200 @@
+-- customer_daily_aggregates, a per-customer daily rollup of transactions kept current by triggers on
+-- transactions, so long-window features read one row per closed day instead of every transaction.
+-- Included by init.sql on a fresh volume; an existing database needs it applied before a service
+-- version that reads the rollup starts:
+--   psql -v ON_ERROR_STOP=1 -d customer_data -f init-scripts/migrations/002_customer_daily_aggregates.sql
+-- Every statement is safe to re-run, and the backfill at the end rebuilds the rollup from the
+-- transactions already stored. Writes to transactions wait while it runs.
+--
+-- The triggers cost every write to transactions, but the rollup is only read by history snapshots,
+-- which are loaded only while history.rollup.enabled is on and one of the in-memory stores
+-- (velocity.store, device.registry, customer.profile) is off. A deployment running with all three
+-- stores, the default, can switch the triggers off:
+--   ALTER TABLE transactions DISABLE TRIGGER transactions_roll_up;
+--   ALTER TABLE transactions DISABLE TRIGGER transactions_roll_up_update;
+--   ALTER TABLE transactions DISABLE TRIGGER transactions_roll_up_delete;
+--   ALTER TABLE transactions DISABLE TRIGGER transactions_roll_up_truncate;
+-- The rollup then goes stale. Re-run this script before turning a store off again: it re-creates the
+-- triggers enabled and rebuilds the rollup.
+BEGIN;
+
+-- Holds off writers, so no transaction lands between installing the triggers and the backfill
+LOCK TABLE transactions IN SHARE ROW EXCLUSIVE MODE;
+
+-- Days are dates of transaction_date as stored (service-local time)
+CREATE TABLE IF NOT EXISTS customer_daily_aggregates (
+    customer_id VARCHAR(50) NOT NULL,
+    day DATE NOT NULL,
+    transaction_count BIGINT NOT NULL,
+    amount_sum DECIMAL(19, 4) NOT NULL,
+    amount_min DECIMAL(19, 4) NOT NULL,
+    amount_max DECIMAL(19, 4) NOT NULL,
+    merchant_counts JSONB NOT NULL DEFAULT '{}',
+    category_counts JSONB NOT NULL DEFAULT '{}',
+    device_counts JSONB NOT NULL DEFAULT '{}',
+    PRIMARY KEY (customer_id, day)
+    );
+
+-- Adds two {"key": count} objects key by key
+CREATE OR REPLACE FUNCTION jsonb_sum_counts(a JSONB, b JSONB) RETURNS JSONB AS $$
+    SELECT COALESCE(jsonb_object_agg(key, total), '{}'::jsonb)
+    FROM (
+        SELECT key, SUM(value::bigint) AS total
+        FROM (SELECT * FROM jsonb_each_text(a) UNION ALL SELECT * FROM jsonb_each_text(b)) counts
+        GROUP BY key
+    ) totals;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Folds each INSERT statement's new rows into the rollup. Rows skipped by ON CONFLICT DO NOTHING are
+-- not in the transition table, so redelivered transactions are never counted twice. Groups are
+-- upserted in key order so concurrent writers lock rollup rows in the same order.
+CREATE OR REPLACE FUNCTION roll_up_transactions() RETURNS TRIGGER AS $$
+BEGIN
+    WITH inserted AS (
+        SELECT customer_id, transaction_date::date AS day, amount, merchant_id, merchant_category, device_id
+        FROM new_transactions
+    ), totals AS (
+        SELECT customer_id, day, COUNT(*) AS transaction_count,
+               SUM(amount) AS amount_sum, MIN(amount) AS amount_min, MAX(amount) AS amount_max
+        FROM inserted GROUP BY customer_id, day
+    ), merchants AS (
+        SELECT customer_id, day, jsonb_object_agg(merchant_id, n) AS counts
+        FROM (SELECT customer_id, day, merchant_id, COUNT(*) AS n FROM inserted
+              WHERE merchant_id IS NOT NULL GROUP BY customer_id, day, merchant_id) m
+        GROUP BY customer_id, day
+    ), categories AS (
+        SELECT customer_id, day, jsonb_object_agg(merchant_category, n) AS counts
+        FROM (SELECT customer_id, day, merchant_category, COUNT(*) AS n FROM inserted
+              WHERE merchant_category IS NOT NULL GROUP BY customer_id, day, merchant_category) c
+        GROUP BY customer_id, day
+    ), devices AS (
+        SELECT customer_id, day, jsonb_object_agg(device_id, n) AS counts
+        FROM (SELECT customer_id, day, device_id, COUNT(*) AS n FROM inserted
+              WHERE device_id IS NOT NULL GROUP BY customer_id, day, device_id) d
+        GROUP BY customer_id, day
+    )
+    INSERT INTO customer_daily_aggregates AS a (customer_id, day, transaction_count, amount_sum,
+                                                amount_min, amount_max, merchant_counts, category_counts, device_counts)
+    SELECT t.customer_id, t.day, t.transaction_count, t.amount_sum, t.amount_min, t.amount_max,
+           COALESCE(m.counts, '{}'), COALESCE(c.counts, '{}'), COALESCE(d.counts, '{}')
+    FROM totals t
+    LEFT JOIN merchants m USING (customer_id, day)
+    LEFT JOIN categories c USING (customer_id, day)
+    LEFT JOIN devices d USING (customer_id, day)
+    ORDER BY t.customer_id, t.day
+    ON CONFLICT (customer_id, day) DO UPDATE SET
+        transaction_count = a.transaction_count + EXCLUDED.transaction_count,
+        amount_sum = a.amount_sum + EXCLUDED.amount_sum,
+        amount_min = LEAST(a.amount_min, EXCLUDED.amount_min),
+        amount_max = GREATEST(a.amount_max, EXCLUDED.amount_max),
+        merchant_counts = jsonb_sum_counts(a.merchant_counts, EXCLUDED.merchant_counts),
+        category_counts = jsonb_sum_counts(a.category_counts, EXCLUDED.category_counts),
+        device_counts = jsonb_sum_counts(a.device_counts, EXCLUDED.device_counts);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Rebuilds the rollup rows of the given (customer, day) groups from transactions. Min and max can't
+-- be taken back out of a row, so changed and deleted transactions are handled by recomputing their
+-- groups rather than by subtracting them; groups left without transactions are removed.
+CREATE OR REPLACE FUNCTION recompute_customer_days(customer_ids VARCHAR[], days DATE[]) RETURNS VOID AS $$
+BEGIN
+    DELETE FROM customer_daily_aggregates a
+    USING unnest(customer_ids, days) AS k(customer_id, day)
+    WHERE a.customer_id = k.customer_id AND a.day = k.day;
+
+    WITH affected AS (
+        SELECT x.customer_id, k.day, x.amount, x.merchant_id, x.merchant_category, x.device_id
+        FROM (SELECT DISTINCT customer_id, day FROM unnest(customer_ids, days) AS u(customer_id, day)) k
+        JOIN transactions x ON x.customer_id = k.customer_id
+            AND x.transaction_date >= k.day AND x.transaction_date < k.day + 1
+    ), totals AS (
+        SELECT customer_id, day, COUNT(*) AS transaction_count,
+               SUM(amount) AS amount_sum, MIN(amount) AS amount_min, MAX(amount) AS amount_max
+        FROM affected GROUP BY customer_id, day
+    ), merchants AS (
+        SELECT customer_id, day, jsonb_object_agg(merchant_id, n) AS counts
+        FROM (SELECT customer_id, day, merchant_id, COUNT(*) AS n FROM affected
+              WHERE merchant_id IS NOT NULL GROUP BY customer_id, day, merchant_id) m
+        GROUP BY customer_id, day
+    ), categories AS (
+        SELECT customer_id, day, jsonb_object_agg(merchant_category, n) AS counts
+        FROM (SELECT customer_id, day, merchant_category, COUNT(*) AS n FROM affected
+              WHERE merchant_category IS NOT NULL GROUP BY customer_id, day, merchant_category) c
+        GROUP BY customer_id, day
+    ), devices AS (
+        SELECT customer_id, day, jsonb_object_agg(device_id, n) AS counts
+        FROM (SELECT customer_id, day, device_id, COUNT(*) AS n FROM affected
+              WHERE device_id IS NOT NULL GROUP BY customer_id, day, device_id) d
+        GROUP BY customer_id, day
+    )
+    INSERT INTO customer_daily_aggregates (customer_id, day, transaction_count, amount_sum,
+                                           amount_min, amount_max, merchant_counts, category_counts, device_counts)
+    SELECT t.customer_id, t.day, t.transaction_count, t.amount_sum, t.amount_min, t.amount_max,
+           COALESCE(m.counts, '{}'), COALESCE(c.counts, '{}'), COALESCE(d.counts, '{}')
+    FROM totals t
+    LEFT JOIN merchants m USING (customer_id, day)
+    LEFT JOIN categories c USING (customer_id, day)
+    LEFT JOIN devices d USING (customer_id, day)
+    ORDER BY t.customer_id, t.day;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes the groups an UPDATE or DELETE statement touched; an update that moves a transaction to
+-- another customer or day changes both its old and its new group
+CREATE OR REPLACE FUNCTION recompute_changed_transactions() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' THEN
+        PERFORM recompute_customer_days(array_agg(customer_id), array_agg(day))
+        FROM (SELECT customer_id, transaction_date::date AS day FROM old_transactions
+              UNION
+              SELECT customer_id, transaction_date::date FROM new_transactions) k;
+    ELSE
+        PERFORM recompute_customer_days(array_agg(customer_id), array_agg(day))
+        FROM (SELECT DISTINCT customer_id, transaction_date::date AS day FROM old_transactions) k;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- TRUNCATE fires no row or statement DELETE triggers
+CREATE OR REPLACE FUNCTION clear_customer_daily_aggregates() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM customer_daily_aggregates;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS transactions_roll_up ON transactions;
+CREATE TRIGGER transactions_roll_up
+    AFTER INSERT ON transactions
+    REFERENCING NEW TABLE AS new_transactions
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_transactions();
+
+DROP TRIGGER IF EXISTS transactions_roll_up_update ON transactions;
+CREATE TRIGGER transactions_roll_up_update
+    AFTER UPDATE ON transactions
+    REFERENCING OLD TABLE AS old_transactions NEW TABLE AS new_transactions
+    FOR EACH STATEMENT EXECUTE FUNCTION recompute_changed_transactions();
+
+DROP TRIGGER IF EXISTS transactions_roll_up_delete ON transactions;
+CREATE TRIGGER transactions_roll_up_delete
+    AFTER DELETE ON transactions
+    REFERENCING OLD TABLE AS old_transactions
+    FOR EACH STATEMENT EXECUTE FUNCTION recompute_changed_transactions();
+
+DROP TRIGGER IF EXISTS transactions_roll_up_truncate ON transactions;
+CREATE TRIGGER transactions_roll_up_truncate
+    AFTER TRUNCATE ON transactions
+    FOR EACH STATEMENT EXECUTE FUNCTION clear_customer_daily_aggregates();
+
+-- Backfill: rebuild every group that has transactions and drop rollup rows that have none, so a
+-- rollup left incomplete or stale by an earlier schema ends up matching transactions exactly
+-- (a no-op on a fresh volume, where the sample transactions are inserted after this script)
+DELETE FROM customer_daily_aggregates a
+WHERE NOT EXISTS (SELECT 1 FROM transactions x WHERE x.customer_id = a.customer_id
+                  AND x.transaction_date >= a.day AND x.transaction_date < a.day + 1);
+SELECT recompute_customer_days(array_agg(customer_id), array_agg(day))
+FROM (SELECT DISTINCT customer_id, transaction_date::date AS day FROM transactions) k;
+
+COMMIT;
@@ -1,10 +1,8 @@
 from flask import Flask, request, jsonify
 app = Flask(__name__)
 
-@app.route("/api/risk", methods=["POST"])
-def score_risk():
-    data = request.json
-    return jsonify({
+def build_score(data):
+    return {
         "overallScore": 0.3,
         "identityRiskScore": 0.2,
         "behavioralRiskScore": 0.3,
@@ -14,7 +12,18 @@ def score_risk():
         "componentScores": {"device": 0.3, "geo": 0.4, "behavior": 0.3},
         "riskLevel": "LOW",
         "riskReason": "No suspicious patterns detected"
-    })
+    }
+
+@app.route("/api/risk", methods=["POST"])
+def score_risk():
+    data = request.json
+    return jsonify(build_score(data))
+
+# Scores a JSON array of requests; the response array is in request order
+@app.route("/api/risk/batch", methods=["POST"])
+def score_risk_batch():
+    requests = request.json or []
+    return jsonify([build_score(data) for data in requests])
 
 if __name__ == "__main__":
-    app.run(host="0.0.0.0", port=8085)
\ No newline at end of file
+    app.run(host="0.0.0.0", port=8085)
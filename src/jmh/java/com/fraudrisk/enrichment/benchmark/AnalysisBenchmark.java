@@ -0,0 +1,168 @@
+package com.fraudrisk.enrichment.benchmark;
+
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.service.BehavioralAnalysisService;
+import com.fraudrisk.enrichment.service.DeviceAnalysisService;
+import com.fraudrisk.enrichment.service.GeoAnalysisService;
+import com.fraudrisk.enrichment.service.HistoricalPatternService;
+import com.fraudrisk.enrichment.store.CustomerProfile;
+import com.fraudrisk.enrichment.store.DeviceRegistryStore;
+import com.fraudrisk.enrichment.store.GeoZoneIndex;
+import com.fraudrisk.enrichment.store.IpReputationStore;
+import com.fraudrisk.enrichment.store.LastLocationStore;
+import com.fraudrisk.enrichment.store.VelocityAggregateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Per-transaction cost of each analysis service. The store-backed variants are the production path,
+// with every customer already seeded; the snapshot variants are the path taken when a store is
+// disabled. Each invocation analyzes the next of a fixed set of transactions across many customers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    private static final int CUSTOMERS = 1024;
+    private static final int TRANSACTIONS = 4096;
+
+    // Transactions per customer over the six months of history
+    @Param({"50", "500"})
+    public int historySize;
+
+    private Path ipReputationDirectory;
+    private BehavioralAnalysisService behavioralAnalysisService;
+    private DeviceAnalysisService deviceAnalysisService;
+    private HistoricalPatternService historicalPatternService;
+    private GeoAnalysisService geoAnalysisService;
+
+    private Transaction[] transactions;
+    private CustomerHistorySnapshot[] snapshots;
+    private CustomerProfile[] profiles;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransactionRepository transactionRepository = BenchmarkFixtures.historyRepository(historySize);
+
+        VelocityAggregateStore velocityAggregateStore =
+                new VelocityAggregateStore(transactionRepository, meterRegistry, true, CUSTOMERS * 2);
+        DeviceRegistryStore deviceRegistryStore =
+                new DeviceRegistryStore(transactionRepository, meterRegistry, true, CUSTOMERS * 2, 16);
+        LastLocationStore lastLocationStore =
+                new LastLocationStore(transactionRepository, meterRegistry, true, CUSTOMERS * 2);
+
+        GeoZoneIndex geoZoneIndex = new GeoZoneIndex(new DefaultResourceLoader(), meterRegistry,
+                true, "classpath:geo/regions.txt", 0.25);
+        geoZoneIndex.initialize();
+
+        ipReputationDirectory = Files.createTempDirectory("ip-reputation-benchmark");
+        BenchmarkFixtures.writeIpReputationFiles(ipReputationDirectory);
+        IpReputationStore ipReputationStore = new IpReputationStore(meterRegistry, true,
+                ipReputationDirectory.toString(), ipReputationDirectory.toString());
+        ipReputationStore.initialize();
+
+        behavioralAnalysisService = new BehavioralAnalysisService(velocityAggregateStore);
+        deviceAnalysisService = new DeviceAnalysisService(deviceRegistryStore);
+        historicalPatternService = new HistoricalPatternService(geoZoneIndex);
+        geoAnalysisService = new GeoAnalysisService(ipReputationStore, geoZoneIndex, lastLocationStore);
+        ReflectionTestUtils.setField(geoAnalysisService, "maxTravelSpeedKmh", 900.0);
+        ReflectionTestUtils.setField(geoAnalysisService, "minImpossibleTravelDistanceKm", 100.0);
+
+        transactions = new Transaction[TRANSACTIONS];
+        snapshots = new CustomerHistorySnapshot[CUSTOMERS];
+        profiles = new CustomerProfile[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String customerId = BenchmarkFixtures.customerId(i);
+            snapshots[i] = BenchmarkFixtures.snapshot(customerId, historySize);
+            profiles[i] = BenchmarkFixtures.profile(customerId, historySize);
+        }
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactions[i] = BenchmarkFixtures.nextTransaction(BenchmarkFixtures.customerId(i % CUSTOMERS), i);
+
+            // Seed every store now, so measurements never include a seeding query
+            behavioralAnalysisService.analyzeTransaction(transactions[i]);
+            deviceAnalysisService.analyzeDevice(transactions[i]);
+            geoAnalysisService.analyzeLocation(transactions[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(ipReputationDirectory);
+    }
+
+    @Benchmark
+    public FeatureVector behavioralFromStore() {
+        return behavioralAnalysisService.analyzeTransaction(nextTransaction());
+    }
+
+    @Benchmark
+    public FeatureVector behavioralFromSnapshot() {
+        int index = nextIndex();
+        return behavioralAnalysisService.analyzeTransaction(transactions[index], snapshots[index % CUSTOMERS]);
+    }
+
+    @Benchmark
+    public FeatureVector deviceFromRegistry() {
+        return deviceAnalysisService.analyzeDevice(nextTransaction());
+    }
+
+    @Benchmark
+    public FeatureVector deviceFromSnapshot() {
+        int index = nextIndex();
+        return deviceAnalysisService.analyzeDevice(transactions[index], snapshots[index % CUSTOMERS]);
+    }
+
+    @Benchmark
+    public FeatureVector historicalFromProfile() {
+        int index = nextIndex();
+        return historicalPatternService.getHistoricalPatterns(transactions[index], profiles[index % CUSTOMERS]);
+    }
+
+    @Benchmark
+    public FeatureVector historicalFromSnapshot() {
+        int index = nextIndex();
+        return historicalPatternService.getHistoricalPatterns(transactions[index], snapshots[index % CUSTOMERS]);
+    }
+
+    @Benchmark
+    public FeatureVector geo() {
+        return geoAnalysisService.analyzeLocation(nextTransaction());
+    }
+
+    private Transaction nextTransaction() {
+        return transactions[nextIndex()];
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) & (TRANSACTIONS - 1);
+        return index;
+    }
+}
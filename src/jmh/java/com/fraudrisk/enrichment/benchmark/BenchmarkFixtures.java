@@ -0,0 +1,339 @@
+package com.fraudrisk.enrichment.benchmark;
+
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.store.CustomerProfile;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic synthetic inputs shared by the benchmarks: customers with six months of history over
+// a handful of merchants, devices and cities, and the transactions that arrive next. Times are
+// relative to the wall clock, as the in-memory stores read it directly.
+final class BenchmarkFixtures {
+
+    static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+    static final int HISTORY_DAYS = 180;
+
+    private static final String[] CATEGORIES = {
+            "GROCERY", "RESTAURANT", "FUEL", "ELECTRONICS", "TRAVEL", "ONLINE_RETAIL", "ENTERTAINMENT", "PHARMACY"
+    };
+    private static final String[] LOCATIONS = {
+            "US:New York:40.7128:-74.0060", "US:Chicago:41.8781:-87.6298", "US:Los Angeles:34.0522:-118.2437",
+            "CA:Toronto:43.6532:-79.3832", "GB:London:51.5074:-0.1278", "DE:Berlin:52.5200:13.4050",
+            "SG:Singapore:1.3521:103.8198", "BR:Sao Paulo:-23.5505:-46.6333"
+    };
+    private static final int MERCHANTS = 2000;
+    private static final int MERCHANTS_PER_CUSTOMER = 12;
+    private static final int DEVICES_PER_CUSTOMER = 3;
+
+    private BenchmarkFixtures() {
+    }
+
+    static String customerId(int index) {
+        return "CUST-" + (100000 + index);
+    }
+
+    // The next transaction of the customer: mostly a familiar merchant, device and city, sometimes not
+    static Transaction nextTransaction(String customerId, int sequence) {
+        Random random = new Random(customerId.hashCode() * 31L + sequence);
+        boolean familiar = random.nextInt(10) < 8;
+
+        int merchant = familiar ? familiarMerchant(customerId, random) : random.nextInt(MERCHANTS);
+        return Transaction.builder()
+                .transactionId("TX-" + customerId + "-" + sequence)
+                .accountId("ACC-" + customerId.substring(5))
+                .customerId(customerId)
+                .merchantId(merchantId(merchant))
+                .merchantName("Merchant " + merchant)
+                .merchantCategory(CATEGORIES[merchant % CATEGORIES.length])
+                .amount(amount(random))
+                .currency("USD")
+                .cardType(random.nextBoolean() ? "VISA" : "MASTERCARD")
+                .paymentMethod("CARD")
+                .transactionType("PURCHASE")
+                .transactionStatus("PENDING")
+                .transactionDate(NOW.minusSeconds(random.nextInt(600)))
+                .deviceId(familiar ? deviceId(customerId, random.nextInt(DEVICES_PER_CUSTOMER)) : "DEV-" + random.nextInt(1 << 20))
+                .ipAddress(ipAddress(random))
+                .location(LOCATIONS[familiar ? homeLocation(customerId) : random.nextInt(LOCATIONS.length)])
+                .build();
+    }
+
+    // Rows shaped like TransactionRepository.findCustomerHistoryRows, oldest first
+    static List<Object[]> historyRows(String customerId, int count) {
+        Random random = new Random(customerId.hashCode());
+        long spanMillis = HISTORY_DAYS * 86_400_000L;
+
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int merchant = familiarMerchant(customerId, random);
+            rows.add(new Object[] {
+                    NOW.minusMillis(1 + (long) (random.nextDouble() * spanMillis)),
+                    amount(random),
+                    merchantId(merchant),
+                    CATEGORIES[merchant % CATEGORIES.length],
+                    deviceId(customerId, random.nextInt(DEVICES_PER_CUSTOMER)),
+                    customerId + "-H" + i,
+                    LOCATIONS[homeLocation(customerId)]
+            });
+        }
+        rows.sort(Comparator.comparing(row -> (Instant) row[0]));
+        return rows;
+    }
+
+    static CustomerHistorySnapshot snapshot(String customerId, int historySize) {
+        return CustomerHistorySnapshot.fromRows(customerId, NOW, historyRows(customerId, historySize));
+    }
+
+    static CustomerProfile profile(String customerId, int historySize) {
+        CustomerProfile profile = new CustomerProfile();
+        for (Object[] row : historyRows(customerId, historySize)) {
+            profile.add((String) row[5], (Instant) row[0], ((BigDecimal) row[1]).doubleValue(), (String) row[2],
+                    (String) row[3], ZoneId.systemDefault());
+        }
+        return profile;
+    }
+
+    // Answers the store seeding queries from the synthetic history instead of Postgres
+    static TransactionRepository historyRepository(int historySize) {
+        return (TransactionRepository) Proxy.newProxyInstance(
+                TransactionRepository.class.getClassLoader(),
+                new Class<?>[] {TransactionRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findCustomerHistoryRows" -> rowsSince(historyRows((String) args[0], historySize), (Instant) args[1]);
+                    case "findCustomerDeviceUsage" -> deviceUsage(rowsSince(historyRows((String) args[0], historySize), (Instant) args[1]));
+                    case "findCustomerLocationsBefore" -> List.<Object[]>of(new Object[] {
+                            LOCATIONS[homeLocation((String) args[0])], NOW.minus(3, ChronoUnit.HOURS), args[0] + "-L"});
+                    case "toString" -> "historyRepository(" + historySize + ")";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> emptyResult(method);
+                });
+    }
+
+    // Tor exits, proxies and hosting prefixes in the reputation store's file layout
+    static void writeIpReputationFiles(Path directory) throws IOException {
+        Random random = new Random(7);
+        StringBuilder torExits = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            torExits.append(ipAddress(random)).append('\n');
+        }
+        StringBuilder proxies = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            proxies.append(ipAddress(random)).append("/28\n");
+        }
+        StringBuilder hosting = new StringBuilder();
+        StringBuilder riskScores = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            hosting.append(ipAddress(random)).append("/24\n");
+            riskScores.append(ipAddress(random)).append("/26,").append(random.nextInt(100) / 100.0).append('\n');
+        }
+        Files.writeString(directory.resolve("tor-exits.txt"), torExits, StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("proxies.txt"), proxies, StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("hosting.txt"), hosting, StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("risk-scores.csv"), riskScores, StandardCharsets.UTF_8);
+    }
+
+    static CustomerData customerData(String customerId) {
+        Random random = new Random(~customerId.hashCode());
+        return CustomerData.builder()
+                .customerId(customerId)
+                .customerType(random.nextInt(10) == 0 ? "BUSINESS" : "INDIVIDUAL")
+                .customerTenureMonths(1 + random.nextInt(120))
+                .customerRiskCategory(random.nextInt(20) == 0 ? "HIGH" : "LOW")
+                .kycStatus(random.nextInt(50) == 0 ? "PENDING" : "VERIFIED")
+                .countryOfResidence(LOCATIONS[homeLocation(customerId)].substring(0, 2))
+                .lastLoginTime(NOW.minus(random.nextInt(72), ChronoUnit.HOURS))
+                .accountCreationDate(NOW.minus(30 + random.nextInt(3000), ChronoUnit.DAYS))
+                .hasPreviousFraud(random.nextInt(100) == 0)
+                .accountActivityLevel(random.nextInt(5))
+                .build();
+    }
+
+    static MerchantData merchantData(String merchantId, String merchantCategory) {
+        Random random = new Random(merchantId.hashCode());
+        return MerchantData.builder()
+                .merchantId(merchantId)
+                .merchantName("Merchant " + merchantId.substring(4))
+                .merchantCategory(merchantCategory)
+                .merchantCountry(random.nextInt(10) == 0 ? "GB" : "US")
+                .merchantRiskLevel(random.nextInt(20) == 0 ? "HIGH" : "LOW")
+                .isHighRiskMerchant(random.nextInt(20) == 0)
+                .isNewMerchant(random.nextInt(10) == 0)
+                .merchantTenureDays(random.nextInt(4000))
+                .fraudRatePercentage(random.nextFloat())
+                .build();
+    }
+
+    static RiskScore riskScore() {
+        return RiskScore.builder()
+                .overallScore(0.31)
+                .identityRiskScore(0.12)
+                .behavioralRiskScore(0.44)
+                .transactionRiskScore(0.27)
+                .deviceRiskScore(0.2)
+                .geoLocationRiskScore(0.35)
+                .componentScores(Map.of("model", 0.31))
+                .riskLevel("LOW")
+                .riskReason("Top factor: behavioral.amountDeviation")
+                .build();
+    }
+
+    static EnrichedTransaction enrichedTransaction(Transaction transaction, FeatureVector behavioralFeatures,
+                                                   FeatureVector geoFeatures, FeatureVector deviceFeatures,
+                                                   FeatureVector historicalPatterns) {
+        return EnrichedTransaction.builder()
+                .transaction(transaction)
+                .customerData(customerData(transaction.getCustomerId()))
+                .merchantData(merchantData(transaction.getMerchantId(), transaction.getMerchantCategory()))
+                .riskScore(riskScore())
+                .behavioralFeatures(behavioralFeatures)
+                .geoFeatures(geoFeatures)
+                .deviceFeatures(deviceFeatures)
+                .historicalPatterns(historicalPatterns)
+                .additionalFeatures(Map.of())
+                .build();
+    }
+
+    // Every feature of each group set, with values typical of a familiar purchase
+    static FeatureVector behavioralFeatures(Transaction transaction) {
+        double amount = transaction.getAmount().doubleValue();
+        return new FeatureVector(FeatureGroup.BEHAVIORAL)
+                .set(Feature.TRANSACTION_COUNT_24H, 3L)
+                .set(Feature.TRANSACTION_COUNT_7D, 14L)
+                .set(Feature.TRANSACTION_COUNT_30D, 52L)
+                .set(Feature.AVG_AMOUNT_24H, amount * 0.9)
+                .set(Feature.AVG_AMOUNT_7D, amount * 1.1)
+                .set(Feature.AVG_AMOUNT_30D, amount * 1.2)
+                .set(Feature.VELOCITY_24H, 3 / 24.0)
+                .set(Feature.VELOCITY_7D, 14 / 168.0)
+                .set(Feature.AMOUNT_DEVIATION, -0.17);
+    }
+
+    static FeatureVector geoFeatures(Transaction transaction) {
+        return new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.COUNTRY, "US")
+                .set(Feature.CITY, "New York")
+                .set(Feature.LATITUDE, 40.7128)
+                .set(Feature.LONGITUDE, -74.0060)
+                .set(Feature.IS_HIGH_RISK_COUNTRY, false)
+                .set(Feature.RESOLVED_COUNTRY, "US")
+                .set(Feature.TIMEZONE, "America/New_York")
+                .set(Feature.DISTANCE_FROM_LAST_KM, 1145.2)
+                .set(Feature.SECONDS_SINCE_LAST_LOCATION, 10800L)
+                .set(Feature.IMPLIED_SPEED_KMH, 381.7)
+                .set(Feature.COUNTRY_CHANGED, false)
+                .set(Feature.IMPOSSIBLE_TRAVEL, false)
+                .set(Feature.IP_TYPE, "PUBLIC")
+                .set(Feature.IS_TOR_EXIT, false)
+                .set(Feature.IS_PROXY, false)
+                .set(Feature.IS_HOSTING, true)
+                .set(Feature.IP_RISK_SCORE, 0.5);
+    }
+
+    static FeatureVector deviceFeatures(Transaction transaction) {
+        return new FeatureVector(FeatureGroup.DEVICE)
+                .set(Feature.DEVICE_COUNT_90D, 3L)
+                .set(Feature.IS_KNOWN_DEVICE, transaction.getDeviceId() != null)
+                .set(Feature.DEVICE_AGE_IN_DAYS, 64L)
+                .set(Feature.DEVICE_RISK_SCORE, 0.2)
+                .set(Feature.DEVICE_CONSISTENCY, 0.41);
+    }
+
+    static FeatureVector historicalPatterns(Transaction transaction) {
+        double amount = transaction.getAmount().doubleValue();
+        return new FeatureVector(FeatureGroup.HISTORICAL)
+                .set(Feature.HAS_TRANSACTED_WITH_MERCHANT, true)
+                .set(Feature.HAS_TRANSACTED_IN_CATEGORY, true)
+                .set(Feature.AVERAGE_AMOUNT, amount * 1.2)
+                .set(Feature.HISTORICAL_AMOUNT_DEVIATION, -0.17)
+                .set(Feature.MOST_COMMON_DAY, "SATURDAY")
+                .set(Feature.IS_TYPICAL_DAY, false)
+                .set(Feature.IS_NIGHT_TIME, false)
+                .set(Feature.PATTERN_RISK_SCORE, 0.1)
+                .set(Feature.HISTORY_RISK_SCORE, 0.1);
+    }
+
+    private static List<Object[]> rowsSince(List<Object[]> rows, Instant since) {
+        return rows.stream().filter(row -> !((Instant) row[0]).isBefore(since)).toList();
+    }
+
+    // Grouped like TransactionRepository.findCustomerDeviceUsage: (deviceId, firstSeen, lastSeen, count)
+    private static List<Object[]> deviceUsage(List<Object[]> rows) {
+        Map<String, Object[]> devices = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            Object[] usage = devices.computeIfAbsent((String) row[4], deviceId -> new Object[] {deviceId, row[0], row[0], 0L});
+            usage[2] = row[0];
+            usage[3] = (Long) usage[3] + 1;
+        }
+        List<Object[]> usages = new ArrayList<>(devices.values());
+        usages.sort(Comparator.comparing(usage -> (Instant) usage[2]));
+        return usages;
+    }
+
+    private static Object emptyResult(Method method) {
+        Class<?> type = method.getReturnType();
+        if (List.class.isAssignableFrom(type)) {
+            return List.of();
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        return null;
+    }
+
+    // Each customer favours a fixed set of merchants and one home city, both derived from the id
+    private static int familiarMerchant(String customerId, Random random) {
+        int base = Math.floorMod(customerId.hashCode() * 0x9E3779B9, MERCHANTS);
+        return (base + random.nextInt(MERCHANTS_PER_CUSTOMER) * 97) % MERCHANTS;
+    }
+
+    private static int homeLocation(String customerId) {
+        return Math.floorMod(customerId.hashCode() >>> 3, LOCATIONS.length);
+    }
+
+    private static String merchantId(int merchant) {
+        return "MER-" + (10000 + merchant);
+    }
+
+    private static String deviceId(String customerId, int device) {
+        return "DEV-" + customerId.substring(5) + "-" + device;
+    }
+
+    private static BigDecimal amount(Random random) {
+        // Log-normal around 30 with a long tail, in cents
+        return BigDecimal.valueOf(Math.max(1L, Math.round(Math.exp(3.4 + random.nextGaussian()) * 100)), 2);
+    }
+
+    // Public addresses across a few /8 blocks, so the reputation lists and lookups overlap
+    private static String ipAddress(Random random) {
+        int[] blocks = {23, 45, 52, 81, 104, 185, 203};
+        return blocks[random.nextInt(blocks.length)] + "." + random.nextInt(256) + "." + random.nextInt(256)
+                + "." + (1 + random.nextInt(254));
+    }
+}
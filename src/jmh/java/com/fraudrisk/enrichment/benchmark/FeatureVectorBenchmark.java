@@ -0,0 +1,69 @@
+package com.fraudrisk.enrichment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Building the four feature vectors of one transaction with every feature set, and the two ways
+// they are read back out: the boxed map view and JSON, as in the risk service request.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureVectorBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Transaction transaction;
+    private FeatureVector[] vectors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transaction = BenchmarkFixtures.nextTransaction(BenchmarkFixtures.customerId(0), 0);
+        vectors = new FeatureVector[] {
+                BenchmarkFixtures.behavioralFeatures(transaction), BenchmarkFixtures.geoFeatures(transaction),
+                BenchmarkFixtures.deviceFeatures(transaction), BenchmarkFixtures.historicalPatterns(transaction)
+        };
+    }
+
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        blackhole.consume(BenchmarkFixtures.behavioralFeatures(transaction));
+        blackhole.consume(BenchmarkFixtures.geoFeatures(transaction));
+        blackhole.consume(BenchmarkFixtures.deviceFeatures(transaction));
+        blackhole.consume(BenchmarkFixtures.historicalPatterns(transaction));
+    }
+
+    @Benchmark
+    public void readMapView(Blackhole blackhole) {
+        for (FeatureVector vector : vectors) {
+            for (Map.Entry<String, Object> entry : vector.asMap().entrySet()) {
+                blackhole.consume(entry.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeJson(Blackhole blackhole) throws Exception {
+        for (FeatureVector vector : vectors) {
+            blackhole.consume(objectMapper.writeValueAsBytes(vector));
+        }
+    }
+}
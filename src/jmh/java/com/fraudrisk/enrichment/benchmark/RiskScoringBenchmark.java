@@ -0,0 +1,132 @@
+package com.fraudrisk.enrichment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.scoring.LocalRiskModel;
+import com.fraudrisk.enrichment.scoring.RiskScoreCache;
+import com.fraudrisk.enrichment.service.RiskScoringService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Scoring work done in-process for every transaction: building the risk service request, encoding
+// it as the client does, deriving the score cache key from the transaction, and the two fallback
+// scorers used when the risk service is unavailable (the local model, and the rules when no model
+// is loaded).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RiskScoringBenchmark {
+
+    private static final int TRANSACTIONS = 1024;
+    private static final Exception UNAVAILABLE = new IllegalStateException("Risk service unavailable");
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private RiskScoringService modelFallbackService;
+    private RiskScoringService rulesFallbackService;
+    private RiskScoreCache riskScoreCache;
+    private EnrichedTransaction[] inputs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        LocalRiskModel localRiskModel = new LocalRiskModel(new DefaultResourceLoader(), objectMapper, meterRegistry,
+                "classpath:risk-model/logistic-regression.json", true);
+        localRiskModel.initialize();
+        if (!localRiskModel.isAvailable()) {
+            throw new IllegalStateException("Local risk model failed to load");
+        }
+
+        // Only key derivation is measured, which never touches the cache manager
+        riskScoreCache = new RiskScoreCache(null, objectMapper, meterRegistry);
+
+        modelFallbackService = riskScoringService(localRiskModel, meterRegistry, "fallback");
+        rulesFallbackService = riskScoringService(localRiskModel, meterRegistry, "disabled");
+
+        inputs = new EnrichedTransaction[TRANSACTIONS];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = BenchmarkFixtures.nextTransaction(BenchmarkFixtures.customerId(i), i);
+            inputs[i] = BenchmarkFixtures.enrichedTransaction(transaction,
+                    BenchmarkFixtures.behavioralFeatures(transaction), BenchmarkFixtures.geoFeatures(transaction),
+                    BenchmarkFixtures.deviceFeatures(transaction), BenchmarkFixtures.historicalPatterns(transaction));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> buildRequest() {
+        return request(nextInput());
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() throws Exception {
+        return objectMapper.writeValueAsBytes(request(nextInput()));
+    }
+
+    @Benchmark
+    public String cacheKey() {
+        return riskScoreCache.keyFor(nextInput().getTransaction());
+    }
+
+    @Benchmark
+    public RiskScore fallbackLocalModel() {
+        return fallback(modelFallbackService, nextInput());
+    }
+
+    @Benchmark
+    public RiskScore fallbackRules() {
+        return fallback(rulesFallbackService, nextInput());
+    }
+
+    private Map<String, Object> request(EnrichedTransaction input) {
+        return modelFallbackService.createRiskRequest(
+                input.getTransaction(), input.getCustomerData(), input.getMerchantData(),
+                input.getBehavioralFeatures(), input.getGeoFeatures(), input.getDeviceFeatures(),
+                input.getHistoricalPatterns());
+    }
+
+    private static RiskScore fallback(RiskScoringService riskScoringService, EnrichedTransaction input) {
+        return riskScoringService.calculateFallbackRiskScore(
+                input.getTransaction(), input.getCustomerData(), input.getMerchantData(),
+                input.getBehavioralFeatures(), input.getGeoFeatures(), input.getDeviceFeatures(),
+                input.getHistoricalPatterns(), UNAVAILABLE);
+    }
+
+    private static RiskScoringService riskScoringService(LocalRiskModel localRiskModel, MeterRegistry meterRegistry,
+                                                         String modelMode) {
+        RiskScoringService riskScoringService =
+                new RiskScoringService(null, null, localRiskModel, null, meterRegistry);
+        ReflectionTestUtils.setField(riskScoringService, "riskServiceUrl", "http://localhost:8090/api/risk/score");
+        ReflectionTestUtils.setField(riskScoringService, "clientMode", "async");
+        ReflectionTestUtils.setField(riskScoringService, "modelMode", modelMode);
+        return riskScoringService;
+    }
+
+    private EnrichedTransaction nextInput() {
+        EnrichedTransaction input = inputs[next];
+        next = (next + 1) & (TRANSACTIONS - 1);
+        return input;
+    }
+}
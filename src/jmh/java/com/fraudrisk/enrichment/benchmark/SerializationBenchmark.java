@@ -0,0 +1,119 @@
+package com.fraudrisk.enrichment.benchmark;
+
+import com.fraudrisk.enrichment.avro.EnrichedTransactionAvro;
+import com.fraudrisk.enrichment.config.RedisCacheConfig;
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.serialization.EnrichedTransactionAvroMapper;
+import com.fraudrisk.enrichment.serialization.EnrichedTransactionSerializer;
+import com.fraudrisk.enrichment.store.CustomerProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Encoding costs paid per transaction: Redis cache values in both directions, the binary customer
+// profile in both directions, and the enriched output, split into the Avro mapping and the full
+// producer serializer. The serializer registers its schema with an in-memory mock registry once,
+// in setup, so measurements cover the steady-state path.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String TOPIC = "enriched-transactions";
+
+    private final GenericJackson2JsonRedisSerializer cacheValueSerializer = RedisCacheConfig.createCacheValueSerializer();
+    private final EnrichedTransactionAvroMapper avroMapper = new EnrichedTransactionAvroMapper();
+    private final EnrichedTransactionSerializer enrichedTransactionSerializer = new EnrichedTransactionSerializer();
+
+    private CustomerData customerData;
+    private MerchantData merchantData;
+    private byte[] encodedCustomerData;
+    private byte[] encodedMerchantData;
+    private CustomerProfile customerProfile;
+    private byte[] encodedCustomerProfile;
+    private EnrichedTransaction enrichedTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String customerId = BenchmarkFixtures.customerId(0);
+        Transaction transaction = BenchmarkFixtures.nextTransaction(customerId, 0);
+
+        customerData = BenchmarkFixtures.customerData(customerId);
+        merchantData = BenchmarkFixtures.merchantData(transaction.getMerchantId(), transaction.getMerchantCategory());
+        encodedCustomerData = cacheValueSerializer.serialize(customerData);
+        encodedMerchantData = cacheValueSerializer.serialize(merchantData);
+
+        customerProfile = BenchmarkFixtures.profile(customerId, 500);
+        encodedCustomerProfile = customerProfile.encode();
+
+        enrichedTransaction = BenchmarkFixtures.enrichedTransaction(transaction,
+                BenchmarkFixtures.behavioralFeatures(transaction), BenchmarkFixtures.geoFeatures(transaction),
+                BenchmarkFixtures.deviceFeatures(transaction), BenchmarkFixtures.historicalPatterns(transaction));
+
+        enrichedTransactionSerializer.configure(Map.of("schema.registry.url", "mock://benchmark"), false);
+        enrichedTransactionSerializer.serialize(TOPIC, enrichedTransaction);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        enrichedTransactionSerializer.close();
+    }
+
+    @Benchmark
+    public byte[] writeCustomerDataCacheValue() {
+        return cacheValueSerializer.serialize(customerData);
+    }
+
+    @Benchmark
+    public Object readCustomerDataCacheValue() {
+        return cacheValueSerializer.deserialize(encodedCustomerData);
+    }
+
+    @Benchmark
+    public byte[] writeMerchantDataCacheValue() {
+        return cacheValueSerializer.serialize(merchantData);
+    }
+
+    @Benchmark
+    public Object readMerchantDataCacheValue() {
+        return cacheValueSerializer.deserialize(encodedMerchantData);
+    }
+
+    @Benchmark
+    public byte[] encodeCustomerProfile() {
+        return customerProfile.encode();
+    }
+
+    @Benchmark
+    public CustomerProfile decodeCustomerProfile() {
+        return CustomerProfile.decode(encodedCustomerProfile);
+    }
+
+    @Benchmark
+    public EnrichedTransactionAvro mapEnrichedTransaction() {
+        return avroMapper.toAvro(enrichedTransaction);
+    }
+
+    @Benchmark
+    public byte[] serializeEnrichedTransaction() {
+        return enrichedTransactionSerializer.serialize(TOPIC, enrichedTransaction);
+    }
+}
@@ -0,0 +1,53 @@
+package com.fraudrisk.enrichment.load;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Lag of the service's consumer group on the input topic: log end offsets minus committed offsets,
+// summed over partitions. Partitions the group has not committed yet count from offset zero.
+final class ConsumerLagProbe implements AutoCloseable {
+
+    private final Admin admin;
+    private final String groupId;
+    private final Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+    private long maxLag;
+
+    ConsumerLagProbe(String bootstrapServers, String topic, int partitions, String groupId) {
+        this.admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+        this.groupId = groupId;
+        for (int partition = 0; partition < partitions; partition++) {
+            latest.put(new TopicPartition(topic, partition), OffsetSpec.latest());
+        }
+    }
+
+    long sample() throws Exception {
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets =
+                admin.listOffsets(latest).all().get(10, TimeUnit.SECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed =
+                admin.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata().get(10, TimeUnit.SECONDS);
+
+        long lag = 0;
+        for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> entry : endOffsets.entrySet()) {
+            OffsetAndMetadata offset = committed.get(entry.getKey());
+            lag += Math.max(0, entry.getValue().offset() - (offset != null ? offset.offset() : 0));
+        }
+        maxLag = Math.max(maxLag, lag);
+        return lag;
+    }
+
+    long maxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public void close() {
+        admin.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.fraudrisk.enrichment.load;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+// Loads the population into a database created by init-scripts/init.sql: customers, merchants and
+// months of transactions. Transactions go through the same insert trigger as the service's own
+// writes, so the daily rollups the service seeds from are built exactly as in production.
+@Slf4j
+final class HistorySeeder {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_CUSTOMER = """
+            INSERT INTO customers (customer_id, customer_type, first_name, last_name, email, phone_number,
+                                   tenure_months, risk_category, kyc_status, country_of_residence, last_login_time,
+                                   account_creation_date, has_previous_fraud, activity_level)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private static final String INSERT_MERCHANT = """
+            INSERT INTO merchants (merchant_id, merchant_name, merchant_category, merchant_country, risk_level,
+                                   is_high_risk, tenure_days, fraud_rate_percentage)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (transaction_id, account_id, customer_id, merchant_id, merchant_name,
+                                      merchant_category, amount, currency, card_type, payment_method,
+                                      transaction_type, transaction_status, transaction_date, device_id,
+                                      ip_address, location)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private HistorySeeder() {
+    }
+
+    static void seed(String jdbcUrl, String username, String password, SyntheticPopulation population,
+                     int historyPerCustomer) throws SQLException {
+        long started = System.nanoTime();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        // Multi-row inserts instead of one round trip per row
+        String url = jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true";
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            connection.setAutoCommit(false);
+            insertCustomers(connection, population, now);
+            insertMerchants(connection, population);
+            insertTransactions(connection, population, historyPerCustomer, now);
+        }
+
+        log.info("Seeded {} customers, {} merchants and {} historical transactions in {} s",
+                population.customers(), population.merchants(),
+                (long) population.customers() * historyPerCustomer,
+                (System.nanoTime() - started) / 1_000_000_000);
+    }
+
+    private static void insertCustomers(Connection connection, SyntheticPopulation population, Instant now)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_CUSTOMER)) {
+            for (int customer = 0; customer < population.customers(); customer++) {
+                String customerId = population.customerId(customer);
+                int tenureMonths = 1 + customer % 120;
+                statement.setString(1, customerId);
+                statement.setString(2, customer % 20 == 0 ? "BUSINESS" : "INDIVIDUAL");
+                statement.setString(3, "First" + customer);
+                statement.setString(4, "Last" + customer);
+                statement.setString(5, customerId.toLowerCase() + "@example.com");
+                statement.setString(6, "+1" + (5550000000L + customer));
+                statement.setInt(7, tenureMonths);
+                statement.setString(8, customer % 10 == 0 ? "HIGH" : customer % 3 == 0 ? "MEDIUM" : "LOW");
+                statement.setString(9, customer % 25 == 0 ? "PENDING" : "VERIFIED");
+                statement.setString(10, population.homeCountry(customer));
+                statement.setTimestamp(11, Timestamp.from(now.minus(customer % 72, ChronoUnit.HOURS)));
+                statement.setTimestamp(12, Timestamp.from(now.minus(tenureMonths * 30L, ChronoUnit.DAYS)));
+                statement.setBoolean(13, customer % 50 == 0);
+                statement.setInt(14, 1 + customer % 10);
+                addToBatch(connection, statement, customer + 1);
+            }
+            flush(connection, statement);
+        }
+    }
+
+    private static void insertMerchants(Connection connection, SyntheticPopulation population) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_MERCHANT)) {
+            for (int merchant = 0; merchant < population.merchants(); merchant++) {
+                boolean highRisk = merchant % 40 == 0;
+                statement.setString(1, population.merchantId(merchant));
+                statement.setString(2, "Merchant " + merchant);
+                statement.setString(3, population.merchantCategory(merchant));
+                statement.setString(4, merchant % 5 == 0 ? "GB" : "US");
+                statement.setString(5, highRisk ? "HIGH" : merchant % 7 == 0 ? "MEDIUM" : "LOW");
+                statement.setBoolean(6, highRisk);
+                statement.setInt(7, 30 + merchant % 3000);
+                statement.setFloat(8, highRisk ? 1.5f : 0.05f);
+                addToBatch(connection, statement, merchant + 1);
+            }
+            flush(connection, statement);
+        }
+    }
+
+    private static void insertTransactions(Connection connection, SyntheticPopulation population,
+                                           int historyPerCustomer, Instant now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION)) {
+            long rows = 0;
+            for (int customer = 0; customer < population.customers(); customer++) {
+                for (int index = 0; index < historyPerCustomer; index++) {
+                    Transaction transaction = population.historicalTransaction(customer, index, now);
+                    statement.setString(1, transaction.getTransactionId());
+                    statement.setString(2, transaction.getAccountId());
+                    statement.setString(3, transaction.getCustomerId());
+                    statement.setString(4, transaction.getMerchantId());
+                    statement.setString(5, transaction.getMerchantName());
+                    statement.setString(6, transaction.getMerchantCategory());
+                    statement.setBigDecimal(7, transaction.getAmount());
+                    statement.setString(8, transaction.getCurrency());
+                    statement.setString(9, transaction.getCardType());
+                    statement.setString(10, transaction.getPaymentMethod());
+                    statement.setString(11, transaction.getTransactionType());
+                    statement.setString(12, transaction.getTransactionStatus());
+                    statement.setTimestamp(13, Timestamp.from(transaction.getTransactionDate()));
+                    statement.setString(14, transaction.getDeviceId());
+                    statement.setString(15, transaction.getIpAddress());
+                    statement.setString(16, transaction.getLocation());
+                    addToBatch(connection, statement, ++rows);
+                }
+            }
+            flush(connection, statement);
+        }
+    }
+
+    private static void addToBatch(Connection connection, PreparedStatement statement, long rows)
+            throws SQLException {
+        statement.addBatch();
+        if (rows % BATCH_SIZE == 0) {
+            flush(connection, statement);
+        }
+    }
+
+    private static void flush(Connection connection, PreparedStatement statement) throws SQLException {
+        statement.executeBatch();
+        connection.commit();
+    }
+}
@@ -0,0 +1,146 @@
+package com.fraudrisk.enrichment.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Reads the service's output and records, for each enriched transaction, the time from when it was
+// scheduled to be sent to when it came out. Measuring from the scheduled send time rather than the
+// actual one keeps a stalled sender from hiding queueing delay (coordinated omission). Transactions
+// sent during warmup are counted but not recorded.
+final class LatencyCollector implements Runnable, AutoCloseable {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final KafkaConsumer<String, byte[]> consumer;
+    private final String enrichedTopic;
+    private final AtomicLongArray scheduledNanos;
+    private final long warmupTransactions;
+    private final boolean[] seen;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final AtomicLong enriched = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Thread thread;
+    private volatile long lastMeasuredNanos;
+
+    LatencyCollector(String bootstrapServers, String enrichedTopic, String errorsTopic,
+                     AtomicLongArray scheduledNanos, long warmupTransactions) {
+        this.enrichedTopic = enrichedTopic;
+        this.scheduledNanos = scheduledNanos;
+        this.warmupTransactions = warmupTransactions;
+        this.seen = new boolean[scheduledNanos.length()];
+        this.consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false,
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 2000),
+                new StringDeserializer(), new ByteArrayDeserializer());
+
+        // Output produced before the run (there should be none) is skipped, not measured
+        List<TopicPartition> partitions = new ArrayList<>();
+        partitions.addAll(partitionsOf(enrichedTopic));
+        partitions.addAll(partitionsOf(errorsTopic));
+        consumer.assign(partitions);
+        consumer.seekToEnd(partitions);
+        partitions.forEach(consumer::position);
+
+        this.thread = new Thread(this, "load-latency-collector");
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    long receivedNanos = System.nanoTime();
+                    if (!enrichedTopic.equals(record.topic())) {
+                        errors.incrementAndGet();
+                    } else {
+                        record(SyntheticPopulation.sequenceOf(record.key()), receivedNanos);
+                    }
+                }
+            }
+        } catch (WakeupException e) {
+            // closing
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private void record(long sequence, long receivedNanos) {
+        if (sequence < 0 || sequence >= seen.length) {
+            return;
+        }
+        // Redelivery after a rebalance publishes the same transaction twice; only the first counts
+        if (seen[(int) sequence]) {
+            duplicates.incrementAndGet();
+            return;
+        }
+        seen[(int) sequence] = true;
+        enriched.incrementAndGet();
+
+        if (sequence >= warmupTransactions) {
+            long latencyMicros = (receivedNanos - scheduledNanos.get((int) sequence)) / 1000;
+            recorder.recordValue(Math.min(Math.max(latencyMicros, 0), MAX_LATENCY_MICROS));
+            lastMeasuredNanos = receivedNanos;
+        }
+    }
+
+    // Latencies recorded since the previous call, in microseconds
+    Histogram intervalHistogram(Histogram recycle) {
+        return recorder.getIntervalHistogram(recycle);
+    }
+
+    // When the latest transaction sent after warmup came out, or 0 before the first one has
+    long lastMeasuredNanos() {
+        return lastMeasuredNanos;
+    }
+
+    long enriched() {
+        return enriched.get();
+    }
+
+    long duplicates() {
+        return duplicates.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    private List<TopicPartition> partitionsOf(String topic) {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (PartitionInfo partition : consumer.partitionsFor(topic, Duration.ofSeconds(30))) {
+            partitions.add(new TopicPartition(topic, partition.partition()));
+        }
+        return partitions;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (thread.getState() == Thread.State.NEW) {
+            consumer.close();
+            return;
+        }
+        consumer.wakeup();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,228 @@
+package com.fraudrisk.enrichment.load;
+
+import com.fraudrisk.enrichment.TransactionEnrichmentServiceApplication;
+import com.fraudrisk.enrichment.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.lifecycle.Startables;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// End-to-end throughput and latency of the whole service, on one machine: an embedded Kafka broker,
+// Postgres and Redis in containers (the schema needs Postgres, the caches need Redis), the risk
+// service replaced by an in-process stub with configurable latency, and the service itself started
+// in this JVM. Transactions are sent at a fixed rate, keyed by customer like the real feed, and each
+// is timed from its scheduled send to its arrival on the enriched topic. See the load-test profile
+// in pom.xml for how to run it, and LoadSettings for the knobs.
+@Slf4j
+public final class LoadHarness {
+
+    private static final DockerImageName POSTGRES_IMAGE = DockerImageName.parse("postgres:15-alpine");
+    private static final DockerImageName REDIS_IMAGE = DockerImageName.parse("redis:7-alpine");
+    private static final String INPUT_TOPIC = "banking-transactions";
+    private static final String SERVICE_LOGGING = "--logging.level.com.fraudrisk.enrichment=";
+
+    private final LoadSettings settings;
+    private final SyntheticPopulation population;
+
+    private LoadHarness(LoadSettings settings) {
+        this.settings = settings;
+        this.population = new SyntheticPopulation(settings.customers(), settings.merchants());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int status = 1;
+        try {
+            status = new LoadHarness(LoadSettings.parse(args)).run();
+        } catch (Exception e) {
+            log.error("Load test failed", e);
+        }
+        // Client and container threads left behind by shutdown must not keep the JVM alive
+        System.exit(status);
+    }
+
+    private int run() throws Exception {
+        EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, settings.partitions(), INPUT_TOPIC);
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(POSTGRES_IMAGE)
+                     .withDatabaseName("customer_data")
+                     .withCopyFileToContainer(MountableFile.forHostPath("init-scripts"),
+                             "/docker-entrypoint-initdb.d");
+             GenericContainer<?> redis = new GenericContainer<>(REDIS_IMAGE).withExposedPorts(6379)) {
+
+            log.info("Starting Kafka, Postgres and Redis");
+            kafka.afterPropertiesSet();
+            Startables.deepStart(postgres, redis).join();
+            HistorySeeder.seed(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword(),
+                    population, settings.historyPerCustomer());
+
+            try (RiskServiceStub riskService = new RiskServiceStub(settings.riskLatency(), settings.riskLatencyJitter());
+                 ConfigurableApplicationContext service = new SpringApplicationBuilder(
+                         TransactionEnrichmentServiceApplication.class)
+                         .run(serviceArguments(kafka.getBrokersAsString(), postgres, redis, riskService))) {
+                return drive(kafka.getBrokersAsString(), service.getEnvironment(), riskService);
+            }
+        } finally {
+            kafka.destroy();
+        }
+    }
+
+    // The service runs with its own application.properties, pointed at the harness infrastructure.
+    // It reads JSON: the Avro input path expects a different record than the Transaction the
+    // listeners take, so the harness feeds the listeners' type directly. The schema registry is
+    // replaced by the serializer's in-memory mock.
+    private String[] serviceArguments(String bootstrapServers, PostgreSQLContainer<?> postgres,
+                                      GenericContainer<?> redis, RiskServiceStub riskService) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                "--spring.kafka.consumer.value-deserializer=" + JsonDeserializer.class.getName(),
+                "--spring.kafka.consumer.properties." + JsonDeserializer.VALUE_DEFAULT_TYPE + "=" + Transaction.class.getName(),
+                "--spring.kafka.consumer.properties." + JsonDeserializer.USE_TYPE_INFO_HEADERS + "=false",
+                "--spring.kafka.consumer.properties." + JsonDeserializer.TRUSTED_PACKAGES + "=" + Transaction.class.getPackageName(),
+                "--spring.kafka.consumer.properties.schema.registry.url=mock://load-harness",
+                "--spring.kafka.producer.properties.schema.registry.url=mock://load-harness",
+                "--kafka.topics.input=" + INPUT_TOPIC,
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.data.redis.host=" + redis.getHost(),
+                "--spring.data.redis.port=" + redis.getMappedPort(6379),
+                "--risk-service.url=" + riskService.baseUrl() + "/api/risk",
+                "--risk-service.batch-url=" + riskService.baseUrl() + "/api/risk/batch",
+                "--server.port=0",
+                "--logging.level.com.fraudrisk.enrichment.load=INFO"));
+
+        // Per-transaction debug logging would dominate the measurement, unless asked for
+        if (settings.serviceArguments().stream().noneMatch(argument -> argument.startsWith(SERVICE_LOGGING))) {
+            arguments.add(SERVICE_LOGGING + "WARN");
+        }
+        arguments.addAll(settings.serviceArguments());
+        return arguments.toArray(new String[0]);
+    }
+
+    private int drive(String bootstrapServers, Environment environment, RiskServiceStub riskService)
+            throws Exception {
+        long total = settings.totalTransactions();
+        AtomicLongArray scheduledNanos = new AtomicLongArray(Math.toIntExact(total));
+        AtomicLong sendFailures = new AtomicLong();
+        Histogram latency = new Histogram(TimeUnit.MINUTES.toMicros(10), 3);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+
+        try (LatencyCollector collector = new LatencyCollector(bootstrapServers,
+                     environment.getRequiredProperty("kafka.topics.enriched"),
+                     environment.getRequiredProperty("kafka.topics.errors"),
+                     scheduledNanos, settings.warmupTransactions());
+             ConsumerLagProbe lagProbe = new ConsumerLagProbe(bootstrapServers, INPUT_TOPIC, settings.partitions(),
+                     environment.getRequiredProperty("spring.kafka.consumer.group-id"));
+             KafkaProducer<String, Transaction> producer = producer(bootstrapServers)) {
+
+            collector.start();
+            long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            reporter.scheduleAtFixedRate(new Runnable() {
+                private Histogram interval;
+
+                @Override
+                public void run() {
+                    interval = collector.intervalHistogram(interval);
+                    latency.add(interval);
+                    try {
+                        log.info("{}s enriched={} errors={} lag={} p50={}ms p99={}ms max={}ms",
+                                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos),
+                                collector.enriched(), collector.errors(), lagProbe.sample(),
+                                interval.getValueAtPercentile(50) / 1000.0,
+                                interval.getValueAtPercentile(99) / 1000.0,
+                                interval.getMaxValue() / 1000.0);
+                    } catch (Exception e) {
+                        log.warn("Could not sample consumer lag: {}", e.getMessage());
+                    }
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+
+            log.info("Sending {} transactions at {} per second ({} s warmup, {} s measured)", total,
+                    settings.targetTps(), settings.warmup().toSeconds(), settings.duration().toSeconds());
+            send(producer, total, startNanos, scheduledNanos, sendFailures);
+            long sendEndNanos = System.nanoTime();
+
+            // Let the service finish what it has, or give up once it stops making progress
+            long lastProgressNanos = sendEndNanos;
+            long lastEnriched = -1;
+            while (collector.enriched() < total - sendFailures.get()
+                    && System.nanoTime() - lastProgressNanos < settings.drainTimeout().toNanos()) {
+                if (collector.enriched() != lastEnriched) {
+                    lastEnriched = collector.enriched();
+                    lastProgressNanos = System.nanoTime();
+                }
+                Thread.sleep(100);
+            }
+
+            reporter.shutdown();
+            reporter.awaitTermination(10, TimeUnit.SECONDS);
+            latency.add(collector.intervalHistogram(null));
+
+            long measuredStartNanos = startNanos + settings.warmupTransactions() * 1_000_000_000L / settings.targetTps();
+            double measuredSeconds = (collector.lastMeasuredNanos() - measuredStartNanos) / 1e9;
+            double achievedTps = measuredSeconds > 0 ? latency.getTotalCount() / measuredSeconds : 0;
+
+            new LoadReport(settings, latency, achievedTps, total, sendFailures.get(), collector, lagProbe,
+                    lagProbe.sample(), riskService).write(settings.reportDirectory(), settings.baseline());
+            return collector.enriched() + sendFailures.get() >= total ? 0 : 1;
+        } finally {
+            reporter.shutdownNow();
+        }
+    }
+
+    // Open-loop sender: transaction n is due at start + n / tps whatever happened to earlier ones.
+    // A sender that falls behind catches up in a burst, and the delay still counts in the latency.
+    private void send(KafkaProducer<String, Transaction> producer, long total, long startNanos,
+                      AtomicLongArray scheduledNanos, AtomicLong sendFailures) {
+        for (long sequence = 0; sequence < total; sequence++) {
+            long dueNanos = startNanos + sequence * 1_000_000_000L / settings.targetTps();
+            scheduledNanos.set((int) sequence, dueNanos);
+
+            long waitNanos;
+            while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+
+            Transaction transaction = population.liveTransaction(sequence, Instant.now());
+            producer.send(new ProducerRecord<>(INPUT_TOPIC, transaction.getCustomerId(), transaction),
+                    (metadata, exception) -> {
+                        if (exception != null) {
+                            sendFailures.incrementAndGet();
+                        }
+                    });
+        }
+        producer.flush();
+    }
+
+    private static KafkaProducer<String, Transaction> producer(String bootstrapServers) {
+        JsonSerializer<Transaction> valueSerializer = new JsonSerializer<>();
+        valueSerializer.setAddTypeInfo(false);
+        return new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.ACKS_CONFIG, "1",
+                ProducerConfig.LINGER_MS_CONFIG, 1),
+                new StringSerializer(), valueSerializer);
+    }
+}
@@ -0,0 +1,99 @@
+package com.fraudrisk.enrichment.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+// Results of one run: summary.properties (the figures below) and latency.hgrm (the full percentile
+// distribution, in milliseconds) in the report directory. Given a baseline summary from an earlier
+// run, each figure is also logged next to its baseline value.
+@Slf4j
+final class LoadReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final Set<String> HIGHER_IS_BETTER = Set.of("achieved_tps", "enriched", "measured");
+    private static final Set<String> LOWER_IS_BETTER = Set.of("send_failures", "lost", "duplicates", "errors",
+            "latency_p50_ms", "latency_p90_ms", "latency_p99_ms", "latency_p999_ms", "latency_max_ms",
+            "max_consumer_lag", "final_consumer_lag");
+
+    private final Map<String, Object> figures = new LinkedHashMap<>();
+    private final Histogram latency;
+
+    LoadReport(LoadSettings settings, Histogram latency, double achievedTps, long sent, long sendFailures,
+               LatencyCollector collector, ConsumerLagProbe lagProbe, long finalLag, RiskServiceStub riskService) {
+        this.latency = latency;
+        figures.put("target_tps", settings.targetTps());
+        figures.put("achieved_tps", Math.round(achievedTps));
+        figures.put("sent", sent);
+        figures.put("send_failures", sendFailures);
+        figures.put("enriched", collector.enriched());
+        figures.put("lost", sent - sendFailures - collector.enriched());
+        figures.put("duplicates", collector.duplicates());
+        figures.put("errors", collector.errors());
+        figures.put("measured", latency.getTotalCount());
+        figures.put("latency_p50_ms", millis(latency.getValueAtPercentile(50)));
+        figures.put("latency_p90_ms", millis(latency.getValueAtPercentile(90)));
+        figures.put("latency_p99_ms", millis(latency.getValueAtPercentile(99)));
+        figures.put("latency_p999_ms", millis(latency.getValueAtPercentile(99.9)));
+        figures.put("latency_max_ms", millis(latency.getMaxValue()));
+        figures.put("max_consumer_lag", lagProbe.maxLag());
+        figures.put("final_consumer_lag", finalLag);
+        figures.put("risk_requests", riskService.requests());
+        figures.put("risk_scored_transactions", riskService.scoredTransactions());
+    }
+
+    void write(Path directory, Path baseline) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("latency.hgrm")))) {
+            latency.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+        StringBuilder summary = new StringBuilder();
+        figures.forEach((name, value) -> summary.append(name).append('=').append(value).append('\n'));
+        Files.writeString(directory.resolve("summary.properties"), summary);
+
+        log.info("Load test results (written to {}):", directory.toAbsolutePath());
+        Properties baselineFigures = baseline != null ? load(baseline) : null;
+        figures.forEach((name, value) -> {
+            String baselineValue = baselineFigures != null ? baselineFigures.getProperty(name) : null;
+            if (baselineValue == null) {
+                log.info("  {} = {}", name, value);
+            } else {
+                log.info("  {} = {} (baseline {}{})", name, value, baselineValue, change(name, value, baselineValue));
+            }
+        });
+    }
+
+    private static String change(String name, Object value, String baselineValue) {
+        double before = Double.parseDouble(baselineValue);
+        double after = ((Number) value).doubleValue();
+        if (before == 0) {
+            return "";
+        }
+        double percent = (after - before) * 100 / before;
+        String verdict = "";
+        if (Math.abs(percent) >= 1 && (HIGHER_IS_BETTER.contains(name) || LOWER_IS_BETTER.contains(name))) {
+            verdict = HIGHER_IS_BETTER.contains(name) == percent > 0 ? " better" : " worse";
+        }
+        return String.format(", %+.1f%%%s", percent, verdict);
+    }
+
+    private static Properties load(Path baseline) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseline)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / MICROS_PER_MILLI * 100) / 100.0;
+    }
+}
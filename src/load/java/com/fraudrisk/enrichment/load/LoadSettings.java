@@ -0,0 +1,82 @@
+package com.fraudrisk.enrichment.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Knobs of one harness run, given as key=value arguments (e.g. tps=2000 duration-seconds=120).
+// Arguments starting with "--" are not ours: they are passed on to the service under test.
+record LoadSettings(
+        int targetTps,
+        Duration warmup,
+        Duration duration,
+        Duration drainTimeout,
+        int customers,
+        int merchants,
+        int historyPerCustomer,
+        int partitions,
+        Duration riskLatency,
+        Duration riskLatencyJitter,
+        Path reportDirectory,
+        Path baseline,
+        List<String> serviceArguments) {
+
+    static LoadSettings parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> serviceArguments = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                serviceArguments.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        LoadSettings settings = new LoadSettings(
+                intValue(values, "tps", 1000),
+                Duration.ofSeconds(intValue(values, "warmup-seconds", 30)),
+                Duration.ofSeconds(intValue(values, "duration-seconds", 60)),
+                Duration.ofSeconds(intValue(values, "drain-timeout-seconds", 60)),
+                intValue(values, "customers", 10000),
+                intValue(values, "merchants", 2000),
+                intValue(values, "history-per-customer", 60),
+                intValue(values, "partitions", 6),
+                Duration.ofMillis(intValue(values, "risk-latency-ms", 20)),
+                Duration.ofMillis(intValue(values, "risk-jitter-ms", 10)),
+                Paths.get(stringValue(values, "report-directory", "target/load")),
+                values.containsKey("baseline") ? Paths.get(stringValue(values, "baseline", null)) : null,
+                List.copyOf(serviceArguments));
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown load settings: " + values.keySet());
+        }
+        return settings;
+    }
+
+    long totalTransactions() {
+        return targetTps * (warmup.toSeconds() + duration.toSeconds());
+    }
+
+    long warmupTransactions() {
+        return targetTps * warmup.toSeconds();
+    }
+
+    // Values are removed as they are read, so anything left over is a typo
+    private static int intValue(Map<String, String> values, String key, int defaultValue) {
+        String value = values.remove(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static String stringValue(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value != null ? value : defaultValue;
+    }
+}
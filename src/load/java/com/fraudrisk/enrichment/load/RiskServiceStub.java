@@ -0,0 +1,130 @@
+package com.fraudrisk.enrichment.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process stand-in for risk-service/risk_service.py: the same two endpoints and response shape,
+// answered after a configurable latency (plus uniform jitter). Responses are completed from a timer
+// rather than by sleeping, so slow scoring never runs the stub out of threads.
+@Slf4j
+final class RiskServiceStub implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong scoredTransactions = new AtomicLong();
+    private final long latencyMicros;
+    private final long jitterMicros;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService responder;
+    private final HttpServer server;
+
+    RiskServiceStub(Duration latency, Duration jitter) throws IOException {
+        this.latencyMicros = latency.toNanos() / 1000;
+        this.jitterMicros = jitter.toNanos() / 1000;
+        this.handlers = Executors.newFixedThreadPool(8);
+        this.responder = Executors.newScheduledThreadPool(2);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/api/risk", this::score);
+        server.createContext("/api/risk/batch", this::scoreBatch);
+        server.setExecutor(handlers);
+        server.start();
+        log.info("Risk service stub listening on {} with {} ms latency (+/- {} ms)",
+                baseUrl(), latency.toMillis(), jitter.toMillis());
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long scoredTransactions() {
+        return scoredTransactions.get();
+    }
+
+    private void score(HttpExchange exchange) throws IOException {
+        readBody(exchange);
+        scoredTransactions.incrementAndGet();
+        respondLater(exchange, objectMapper.writeValueAsBytes(score()));
+    }
+
+    private void scoreBatch(HttpExchange exchange) throws IOException {
+        JsonNode batch = readBody(exchange);
+        int size = batch != null && batch.isArray() ? batch.size() : 0;
+        List<Map<String, Object>> scores = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scores.add(score());
+        }
+        scoredTransactions.addAndGet(size);
+        respondLater(exchange, objectMapper.writeValueAsBytes(scores));
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (InputStream body = exchange.getRequestBody()) {
+            return objectMapper.readTree(body);
+        }
+    }
+
+    private void respondLater(HttpExchange exchange, byte[] response) {
+        long delayMicros = latencyMicros
+                + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(-jitterMicros, jitterMicros + 1) : 0);
+        responder.schedule(() -> respond(exchange, response), Math.max(0, delayMicros), TimeUnit.MICROSECONDS);
+    }
+
+    private void respond(HttpExchange exchange, byte[] response) {
+        try (OutputStream body = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            body.write(response);
+        } catch (IOException e) {
+            log.debug("Risk service stub could not respond: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Same values as build_score in risk_service.py
+    private static Map<String, Object> score() {
+        Map<String, Object> score = new LinkedHashMap<>();
+        score.put("overallScore", 0.3);
+        score.put("identityRiskScore", 0.2);
+        score.put("behavioralRiskScore", 0.3);
+        score.put("transactionRiskScore", 0.4);
+        score.put("deviceRiskScore", 0.3);
+        score.put("geoLocationRiskScore", 0.4);
+        score.put("componentScores", Map.of("device", 0.3, "geo", 0.4, "behavior", 0.3));
+        score.put("riskLevel", "LOW");
+        score.put("riskReason", "No suspicious patterns detected");
+        return score;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        responder.shutdownNow();
+        handlers.shutdownNow();
+    }
+}
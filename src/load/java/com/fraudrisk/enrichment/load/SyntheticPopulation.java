@@ -0,0 +1,140 @@
+package com.fraudrisk.enrichment.load;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Random;
+
+// Deterministic customers and merchants, the history each customer already has, and the live
+// transactions the harness sends. Customers mostly stay with a dozen familiar merchants, three
+// devices and one home city, so the stores and profiles see the same repetition production does.
+final class SyntheticPopulation {
+
+    static final int HISTORY_DAYS = 180;
+    static final String LIVE_PREFIX = "LOAD-";
+
+    private static final String[] CATEGORIES = {
+            "GROCERY", "RESTAURANT", "FUEL", "ELECTRONICS", "TRAVEL", "ONLINE_RETAIL", "ENTERTAINMENT", "PHARMACY"
+    };
+    private static final String[] LOCATIONS = {
+            "US:New York:40.7128:-74.0060", "US:Chicago:41.8781:-87.6298", "US:Los Angeles:34.0522:-118.2437",
+            "CA:Toronto:43.6532:-79.3832", "GB:London:51.5074:-0.1278", "DE:Berlin:52.5200:13.4050",
+            "SG:Singapore:1.3521:103.8198", "BR:Sao Paulo:-23.5505:-46.6333"
+    };
+    private static final int MERCHANTS_PER_CUSTOMER = 12;
+    private static final int DEVICES_PER_CUSTOMER = 3;
+    private static final int[] IP_BLOCKS = {23, 45, 52, 81, 104, 185, 203};
+
+    private final int customers;
+    private final int merchants;
+
+    SyntheticPopulation(int customers, int merchants) {
+        this.customers = customers;
+        this.merchants = merchants;
+    }
+
+    int customers() {
+        return customers;
+    }
+
+    int merchants() {
+        return merchants;
+    }
+
+    String customerId(int customer) {
+        return "CUST-" + (100000 + customer);
+    }
+
+    String merchantId(int merchant) {
+        return "MER-" + (10000 + merchant);
+    }
+
+    String merchantCategory(int merchant) {
+        return CATEGORIES[merchant % CATEGORIES.length];
+    }
+
+    String homeCountry(int customer) {
+        return LOCATIONS[homeLocation(customer)].substring(0, 2);
+    }
+
+    // One row of a customer's history, at a random time within the last HISTORY_DAYS
+    Transaction historicalTransaction(int customer, int index, Instant now) {
+        Random random = new Random(customer * 1_000_003L + index);
+        int merchant = familiarMerchant(customer, random);
+        long spanMillis = HISTORY_DAYS * 86_400_000L;
+        return transaction("HIST-" + customer + "-" + index, customer, merchant, random)
+                .transactionStatus("COMPLETED")
+                .transactionDate(now.minusMillis(60_000 + (long) (random.nextDouble() * spanMillis)))
+                .deviceId(deviceId(customer, random.nextInt(DEVICES_PER_CUSTOMER)))
+                .location(LOCATIONS[homeLocation(customer)])
+                .build();
+    }
+
+    // The live transaction with the given sequence number: usually familiar, sometimes a new
+    // merchant, device or city. The sequence is carried in the id so latency can be matched up.
+    Transaction liveTransaction(long sequence, Instant now) {
+        Random random = new Random(sequence * 0x9E3779B97F4A7C15L);
+        int customer = random.nextInt(customers);
+        boolean familiar = random.nextInt(10) < 8;
+        int merchant = familiar ? familiarMerchant(customer, random) : random.nextInt(merchants);
+        return transaction(LIVE_PREFIX + sequence, customer, merchant, random)
+                .transactionStatus("PENDING")
+                .transactionDate(now)
+                .deviceId(familiar ? deviceId(customer, random.nextInt(DEVICES_PER_CUSTOMER)) : "DEV-NEW-" + sequence)
+                .location(LOCATIONS[familiar ? homeLocation(customer) : random.nextInt(LOCATIONS.length)])
+                .build();
+    }
+
+    // Sequence number of a live transaction id, or -1 for any other id
+    static long sequenceOf(String transactionId) {
+        if (transactionId == null || !transactionId.startsWith(LIVE_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(transactionId, LIVE_PREFIX.length(), transactionId.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Transaction.TransactionBuilder transaction(String transactionId, int customer, int merchant,
+                                                       Random random) {
+        String customerId = customerId(customer);
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .accountId("ACC-" + customerId.substring(5))
+                .customerId(customerId)
+                .merchantId(merchantId(merchant))
+                .merchantName("Merchant " + merchant)
+                .merchantCategory(merchantCategory(merchant))
+                .amount(amount(random))
+                .currency("USD")
+                .cardType(random.nextBoolean() ? "VISA" : "MASTERCARD")
+                .paymentMethod("CARD")
+                .transactionType("PURCHASE")
+                .ipAddress(ipAddress(random));
+    }
+
+    private int familiarMerchant(int customer, Random random) {
+        int base = Math.floorMod(customer * 0x9E3779B9, merchants);
+        return (base + random.nextInt(MERCHANTS_PER_CUSTOMER) * 97) % merchants;
+    }
+
+    private int homeLocation(int customer) {
+        return Math.floorMod(customer * 0x85EBCA6B >>> 7, LOCATIONS.length);
+    }
+
+    private static String deviceId(int customer, int device) {
+        return "DEV-" + customer + "-" + device;
+    }
+
+    private static BigDecimal amount(Random random) {
+        // Log-normal around 30 with a long tail, in cents
+        return BigDecimal.valueOf(Math.max(1L, Math.round(Math.exp(3.4 + random.nextGaussian()) * 100)), 2);
+    }
+
+    private static String ipAddress(Random random) {
+        return IP_BLOCKS[random.nextInt(IP_BLOCKS.length)] + "." + random.nextInt(256) + "." + random.nextInt(256)
+                + "." + (1 + random.nextInt(254));
+    }
+}
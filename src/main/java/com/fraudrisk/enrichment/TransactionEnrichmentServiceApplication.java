@@ -4,24 +4,20 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import java.time.Duration;
 
 @SpringBootApplication
 @EnableCaching
+@EnableScheduling
 public class TransactionEnrichmentServiceApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(TransactionEnrichmentServiceApplication.class, args);
 	}
 
-	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
-	}
-
 	@Bean
 	public CircuitBreakerRegistry circuitBreakerRegistry() {
 		CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
@@ -0,0 +1,255 @@
+package com.fraudrisk.enrichment.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Spring Cache with an on-heap Caffeine L1 in front of a shared Redis L2. Fills go to both tiers
+// without telling anyone: the value is what the source of truth holds, which a peer would load
+// too. Evictions and clears mean the value changed, so they are broadcast and other pods drop
+// their now-stale L1 copies.
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache;
+    private final Cache remoteCache;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final CacheInvalidationPublisher invalidationPublisher;
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public TwoTierCache(String name,
+                        com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache,
+                        Cache remoteCache,
+                        RedisTemplate<String, Object> redisTemplate,
+                        CacheInvalidationPublisher invalidationPublisher,
+                        MeterRegistry meterRegistry) {
+        this.name = name;
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.redisTemplate = redisTemplate;
+        this.invalidationPublisher = invalidationPublisher;
+
+        this.localHits = tierCounter(meterRegistry, "local", "hit");
+        this.localMisses = tierCounter(meterRegistry, "local", "miss");
+        this.remoteHits = tierCounter(meterRegistry, "redis", "hit");
+        this.remoteMisses = tierCounter(meterRegistry, "redis", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object localValue = localCache.getIfPresent(key);
+        if (localValue != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(localValue);
+        }
+        localMisses.increment();
+
+        ValueWrapper remoteValue = remoteCache.get(key);
+        if (remoteValue != null && remoteValue.get() != null) {
+            remoteHits.increment();
+            localCache.put(key, remoteValue.get());
+            return remoteValue;
+        }
+        remoteMisses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object cached = value.get();
+        if (type != null && !type.isInstance(cached)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + cached);
+        }
+        return (T) cached;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    // Spring only puts to fill a @Cacheable miss; a writer that changes a value evicts it instead
+    @Override
+    public void put(Object key, Object value) {
+        remoteCache.put(key, value);
+        if (value != null) {
+            localCache.put(key, value);
+        }
+    }
+
+    // Resolves many keys at once: local tier first, then a single MGET against Redis for the rest.
+    // Keys that are in neither tier are absent from the result.
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        List<Object> remoteKeys = new ArrayList<>();
+
+        for (Object key : keys) {
+            Object localValue = localCache.getIfPresent(key);
+            if (localValue != null) {
+                localHits.increment();
+                found.put(key, localValue);
+            } else {
+                localMisses.increment();
+                remoteKeys.add(key);
+            }
+        }
+
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
+        if (!(remoteCache instanceof RedisCache redisCache)) {
+            // No multi-get available, resolve one by one
+            for (Object key : remoteKeys) {
+                ValueWrapper value = get(key);
+                if (value != null) {
+                    found.put(key, value.get());
+                }
+            }
+            return found;
+        }
+
+        List<String> redisKeys = new ArrayList<>(remoteKeys.size());
+        for (Object key : remoteKeys) {
+            redisKeys.add(redisKey(redisCache, key));
+        }
+
+        List<Object> remoteValues = redisTemplate.opsForValue().multiGet(redisKeys);
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            Object value = remoteValues != null ? remoteValues.get(i) : null;
+            if (value != null) {
+                remoteHits.increment();
+                localCache.put(remoteKeys.get(i), value);
+                found.put(remoteKeys.get(i), value);
+            } else {
+                remoteMisses.increment();
+            }
+        }
+        return found;
+    }
+
+    // Fills many entries into both tiers, with the Redis writes sent in one pipeline; like put, nothing
+    // is broadcast
+    @SuppressWarnings("unchecked")
+    public void putAll(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (!(remoteCache instanceof RedisCache redisCache)) {
+            entries.forEach(this::put);
+            return;
+        }
+
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                Duration ttl = redisCache.getCacheConfiguration().getTtlFunction()
+                        .getTimeToLive(entry.getKey(), entry.getValue());
+                Expiration expiration = ttl != null && !ttl.isZero() && !ttl.isNegative()
+                        ? Expiration.from(ttl)
+                        : Expiration.persistent();
+
+                connection.stringCommands().set(
+                        stringSerializer.serialize(redisKey(redisCache, entry.getKey())),
+                        valueSerializer.serialize(entry.getValue()),
+                        expiration,
+                        RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                localCache.put(key, value);
+            }
+        });
+    }
+
+    @Override
+    public void evict(Object key) {
+        remoteCache.evict(key);
+        localCache.invalidate(key);
+        invalidationPublisher.publishEviction(name, key);
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.invalidateAll();
+        invalidationPublisher.publishClear(name);
+    }
+
+    // Applies an invalidation received from another pod; Redis already holds the new state
+    public void evictLocal(Object key) {
+        localCache.invalidate(key);
+    }
+
+    public void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private String redisKey(RedisCache redisCache, Object key) {
+        return redisCache.getCacheConfiguration().getKeyPrefixFor(name) + key;
+    }
+
+    private Counter tierCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("cache.tier.gets")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,196 @@
+package com.fraudrisk.enrichment.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.RiskScore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Non-blocking client for the risk scoring service. Single requests go straight out over the shared
+// pooled HttpClient; batched requests are collected and sent to the batch endpoint as one call once
+// the batch is full or the oldest request has waited for the linger time.
+@Component
+@Slf4j
+public class RiskScoringClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI scoreUri;
+    private final URI batchUri;
+    private final Duration requestTimeout;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final DistributionSummary batchSizes;
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "risk-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private List<PendingRequest> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public RiskScoringClient(
+            HttpClient riskServiceHttpClient,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${risk-service.url}") String riskServiceUrl,
+            @Value("${risk-service.batch-url:${risk-service.url}/batch}") String riskServiceBatchUrl,
+            @Value("${risk-service.timeout:2000}") long timeoutMs,
+            @Value("${risk-service.batch.max-size:32}") int maxBatchSize,
+            @Value("${risk-service.batch.linger-ms:5}") long lingerMs) {
+        this.httpClient = riskServiceHttpClient;
+        this.objectMapper = objectMapper;
+        this.scoreUri = URI.create(riskServiceUrl);
+        this.batchUri = URI.create(riskServiceBatchUrl);
+        this.requestTimeout = Duration.ofMillis(timeoutMs);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+
+        this.batchSizes = DistributionSummary.builder("risk.client.batch.size")
+                .description("Scoring requests sent per batch call")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<RiskScore> score(Map<String, Object> riskRequest) {
+        return post(scoreUri, riskRequest)
+                .thenApply(body -> readValue(body, RiskScore.class));
+    }
+
+    public CompletableFuture<RiskScore> scoreBatched(Map<String, Object> riskRequest) {
+        CompletableFuture<RiskScore> future = new CompletableFuture<>();
+
+        List<PendingRequest> fullBatch = null;
+        synchronized (lock) {
+            pending.add(new PendingRequest(riskRequest, future));
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = drainPending();
+            } else if (pending.size() == 1) {
+                // First request of a new batch starts the linger clock
+                scheduledFlush = flushScheduler.schedule(this::flushPending, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushPending();
+        flushScheduler.shutdown();
+    }
+
+    private void flushPending() {
+        List<PendingRequest> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = drainPending();
+        }
+        sendBatch(batch);
+    }
+
+    // Caller must hold the lock
+    private List<PendingRequest> drainPending() {
+        List<PendingRequest> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void sendBatch(List<PendingRequest> batch) {
+        batchSizes.record(batch.size());
+
+        List<Map<String, Object>> payload = new ArrayList<>(batch.size());
+        for (PendingRequest pendingRequest : batch) {
+            payload.add(pendingRequest.request());
+        }
+
+        post(batchUri, payload)
+                .thenApply(body -> readValue(body, RiskScore[].class))
+                .whenComplete((riskScores, throwable) -> {
+                    if (throwable == null && (riskScores == null || riskScores.length != batch.size())) {
+                        throwable = new RestClientException("Risk service returned "
+                                + (riskScores == null ? 0 : riskScores.length)
+                                + " scores for a batch of " + batch.size());
+                    }
+                    if (throwable != null) {
+                        log.error("Batch risk scoring call for {} transactions failed: {}",
+                                batch.size(), throwable.getMessage());
+                        for (PendingRequest pendingRequest : batch) {
+                            pendingRequest.future().completeExceptionally(throwable);
+                        }
+                        return;
+                    }
+                    // Scores come back in request order
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).future().complete(riskScores[i]);
+                    }
+                });
+    }
+
+    private CompletableFuture<byte[]> post(URI uri, Object payload) {
+        byte[] requestBody;
+        try {
+            requestBody = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                        throw new RestClientException("Risk service returned HTTP " + response.statusCode()
+                                + " for " + uri);
+                    }
+                    return response.body();
+                });
+    }
+
+    private <T> T readValue(byte[] body, Class<T> type) {
+        try {
+            return body.length > 0 ? objectMapper.readValue(body, type) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record PendingRequest(Map<String, Object> request, CompletableFuture<RiskScore> future) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.fraudrisk.enrichment.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@Slf4j
+public class EnrichmentExecutorConfig {
+
+    // "virtual" needs the service to run on Java 21 or later; on older runtimes it falls back to "platform"
+    @Value("${enrichment.executor.type:platform}")
+    private String executorType;
+
+    @Value("${enrichment.executor.pool-size:64}")
+    private int poolSize;
+
+    @Value("${enrichment.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${enrichment.executor.handoff-pool-size:8}")
+    private int handoffPoolSize;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService enrichmentExecutor() {
+        if ("virtual".equalsIgnoreCase(executorType)) {
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                log.info("Using virtual-thread-per-task enrichment executor");
+                return virtualThreadExecutor;
+            }
+            log.warn("Virtual threads need Java 21 or later, running on Java {}; falling back to a platform thread pool",
+                    Runtime.version().feature());
+        }
+
+        log.info("Using platform enrichment executor with {} threads and queue capacity {}",
+                poolSize, queueCapacity);
+
+        // Bounded pool; when the queue is full the submitting thread runs the stage itself,
+        // which slows the Kafka listener down instead of dropping work
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new EnrichmentThreadFactory("enrichment-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Continuations hopped off another component's callback thread, mostly the Kafka producer's I/O
+    // thread: observer updates, offset completion and error routing, which can read Redis or block on a
+    // send. The enrichment pool would run them on that thread once its queue is full, so they get their
+    // own executor that never runs a task on the caller. Its queue is unbounded; the per-partition
+    // in-flight window bounds how many records can have a continuation waiting.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService handoffExecutor() {
+        if ("virtual".equalsIgnoreCase(executorType)) {
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return virtualThreadExecutor;
+            }
+        }
+
+        return new ThreadPoolExecutor(
+                handoffPoolSize,
+                handoffPoolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new EnrichmentThreadFactory("enrichment-handoff-"));
+    }
+
+    private ExecutorService createVirtualThreadExecutor() {
+        // Looked up reflectively so the service still builds and runs on Java 17
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class EnrichmentThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private EnrichmentThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
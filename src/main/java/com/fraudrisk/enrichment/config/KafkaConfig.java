@@ -1,17 +1,24 @@
 package com.fraudrisk.enrichment.config;
 
+import com.fraudrisk.enrichment.kafka.PartitionOffsetTracker;
+import com.fraudrisk.enrichment.kafka.RetryTopics;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -26,6 +33,12 @@ public class KafkaConfig {
     @Value("${kafka.topics.errors}")
     private String errorsTopic;
 
+    @Value("${kafka.consumer.concurrency:3}")
+    private int concurrency;
+
+    @Value("${kafka.retry.partitions:3}")
+    private int retryPartitions;
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
@@ -40,30 +53,82 @@ public class KafkaConfig {
 
     @Bean
     public NewTopic errorsTopic() {
-        return new NewTopic(errorsTopic, 1, (short) 1);
+        return new NewTopic(errorsTopic, 3, (short) 1);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics retryAndDeadLetterTopics(RetryTopics retryTopics) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (RetryTopics.Tier tier : retryTopics.getTiers()) {
+            topics.add(new NewTopic(tier.topic(), retryPartitions, (short) 1));
+        }
+        topics.add(new NewTopic(retryTopics.getDeadLetterTopic(), retryPartitions, (short) 1));
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<?, ?> kafkaListenerContainerFactory(
-            ConsumerFactory<Object, Object> consumerFactory) {
+            ConsumerFactory<Object, Object> consumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            RetryTopics retryTopics,
+            PartitionOffsetTracker partitionOffsetTracker) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                createListenerContainerFactory(consumerFactory, kafkaTemplate, retryTopics, false);
+
+        // Record and key-ordered modes process records asynchronously; drop their offset tracking when partitions move
+        factory.getContainerProperties().setConsumerRebalanceListener(partitionOffsetTracker);
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<?, ?> batchKafkaListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            RetryTopics retryTopics) {
+        return createListenerContainerFactory(consumerFactory, kafkaTemplate, retryTopics, true);
+    }
+
+    // Used by TransactionRetryConsumerService to build one container per retry tier
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<?, ?> retryKafkaListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            RetryTopics retryTopics) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                createListenerContainerFactory(consumerFactory, kafkaTemplate, retryTopics, false);
+
+        // Retry traffic is light; one consumer per tier keeps the paused-until-due handling simple
+        factory.setConcurrency(1);
+        factory.setAutoStartup(false);
+        return factory;
+    }
+
+    private ConcurrentKafkaListenerContainerFactory<Object, Object> createListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            RetryTopics retryTopics,
+            boolean batchListener) {
 
         ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
 
         factory.setConsumerFactory(consumerFactory);
 
-        // Configure concurrent consumers
-        factory.setConcurrency(3);
+        // Deliver the whole poll to the listener as a list when running in batch mode
+        factory.setBatchListener(batchListener);
+
+        // Configure concurrent consumers; at most one per partition does any work
+        factory.setConcurrency(concurrency);
 
         // Configure manual acknowledgment
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
 
-        // Configure error handling with exponential backoff
-        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
-        backOff.setMaxInterval(10000L); // 10 seconds max
-        backOff.setMaxElapsedTime(300000L); // 5 minutes total
-
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(backOff);
+        // Listeners route processing failures to the retry tiers themselves; anything that still escapes
+        // (e.g. a record that cannot be deserialized) goes straight to the dead-letter topic instead of
+        // being retried in place, which would hold up the whole partition
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, exception) -> new TopicPartition(retryTopics.getDeadLetterTopic(), -1));
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
         errorHandler.setCommitRecovered(true);
 
         factory.setCommonErrorHandler(errorHandler);
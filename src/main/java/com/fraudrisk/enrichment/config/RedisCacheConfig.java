@@ -1,17 +1,26 @@
 package com.fraudrisk.enrichment.config;
 
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fraudrisk.enrichment.cache.CacheInvalidationPublisher;
+import com.fraudrisk.enrichment.cache.TwoTierCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Configuration
 public class RedisCacheConfig {
@@ -22,14 +31,70 @@ public class RedisCacheConfig {
     @Value("${cache.risk-profile-ttl:300}")
     private long riskProfileTtl;
 
+    @Value("${cache.local.max-size:10000}")
+    private long localCacheMaxSize;
+
+    @Value("${cache.local.ttl:30}")
+    private long localCacheTtl;
+
+    @Value("${cache.invalidation-channel:cache-invalidation}")
+    private String invalidationChannel;
+
+    private final GenericJackson2JsonRedisSerializer cacheValueSerializer = createCacheValueSerializer();
+
+    // Value encoding of every Redis cache; cached customer data carries java.time fields, which the
+    // serializer's own ObjectMapper can't write without the JSR-310 module
+    public static GenericJackson2JsonRedisSerializer createCacheValueSerializer() {
+        return new GenericJackson2JsonRedisSerializer()
+                .configure(objectMapper -> objectMapper.registerModule(new JavaTimeModule()));
+    }
+
+    // Same key and value encoding as the Redis caches, for bulk reads and writes that bypass them
+    @Bean
+    public RedisTemplate<String, Object> cacheRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(StringRedisSerializer.UTF_8);
+        redisTemplate.setValueSerializer(cacheValueSerializer);
+        return redisTemplate;
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public CacheInvalidationPublisher cacheInvalidationPublisher(StringRedisTemplate stringRedisTemplate) {
+        return new CacheInvalidationPublisher(stringRedisTemplate, invalidationChannel, UUID.randomUUID().toString());
+    }
+
+    // Local Caffeine tier in front of Redis; the local TTL bounds staleness if an invalidation is missed
+    @Bean
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                            RedisTemplate<String, Object> cacheRedisTemplate,
+                                            CacheInvalidationPublisher cacheInvalidationPublisher,
+                                            MeterRegistry meterRegistry) {
+        return new TwoTierCacheManager(
+                createRedisCacheManager(redisConnectionFactory),
+                cacheRedisTemplate,
+                cacheInvalidationPublisher,
+                meterRegistry,
+                localCacheMaxSize,
+                Duration.ofSeconds(localCacheTtl));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory redisConnectionFactory,
+            TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(invalidationChannel));
+        return container;
+    }
+
+    private RedisCacheManager createRedisCacheManager(RedisConnectionFactory redisConnectionFactory) {
         // Default cache configuration
         RedisCacheConfiguration defaultCacheConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofSeconds(300))
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(
-                                new GenericJackson2JsonRedisSerializer()));
+                        RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer));
 
         // Configure specific cache TTLs
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
@@ -43,9 +108,13 @@ public class RedisCacheConfig {
         cacheConfigurations.put("riskProfiles", defaultCacheConfig
                 .entryTtl(Duration.ofSeconds(riskProfileTtl)));
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(defaultCacheConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+
+        // Not a bean of its own, so initialize the configured caches here
+        redisCacheManager.afterPropertiesSet();
+        return redisCacheManager;
     }
-}
\ No newline at end of file
+}
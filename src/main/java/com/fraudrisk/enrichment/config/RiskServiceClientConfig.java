@@ -0,0 +1,36 @@
+package com.fraudrisk.enrichment.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class RiskServiceClientConfig {
+
+    @Value("${risk-service.timeout:2000}")
+    private long readTimeoutMs;
+
+    @Value("${risk-service.connect-timeout:1000}")
+    private long connectTimeoutMs;
+
+    // One shared client, so connections to the risk service are pooled and kept alive between calls.
+    // HTTP/1.1 because the risk service does not speak h2c and every call would pay for the upgrade attempt.
+    @Bean
+    public HttpClient riskServiceHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(HttpClient riskServiceHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(riskServiceHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(requestFactory);
+    }
+}
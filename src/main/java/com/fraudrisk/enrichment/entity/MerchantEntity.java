@@ -8,6 +8,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.time.Instant;
 
 @Entity
 @Table(name = "merchants")
@@ -41,4 +42,7 @@ public class MerchantEntity {
 
     @Column(name = "fraud_rate_percentage")
     private Float fraudRatePercentage;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
 }
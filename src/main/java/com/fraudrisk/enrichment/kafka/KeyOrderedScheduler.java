@@ -0,0 +1,62 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+// Runs asynchronous tasks so that tasks with the same key start one after another, in submission
+// order, while tasks with different keys run concurrently. Only the tail of each key's chain is
+// kept, and it is removed once it finishes with nothing queued behind it.
+@Component
+public class KeyOrderedScheduler {
+
+    private final ExecutorService handoffExecutor;
+    private final ConcurrentMap<String, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    public KeyOrderedScheduler(ExecutorService handoffExecutor, MeterRegistry meterRegistry) {
+        this.handoffExecutor = handoffExecutor;
+        meterRegistry.gauge("kafka.consumer.ordering.keys", tails, Map::size);
+    }
+
+    public <T> CompletableFuture<T> submit(String key, Supplier<CompletableFuture<T>> task) {
+        if (key == null) {
+            // Nothing to order against
+            return start(task);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(key, result);
+        if (previous == null) {
+            relay(start(task), result);
+        } else {
+            // Starts after the previous task of the key, whatever its outcome; hopping to the hand-off
+            // executor keeps the start off whichever thread completed it (e.g. the producer's I/O thread)
+            previous.whenCompleteAsync((ignored, throwable) -> relay(start(task), result), handoffExecutor);
+        }
+        result.whenComplete((ignored, throwable) -> tails.remove(key, result));
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> task) {
+        try {
+            return task.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> void relay(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                target.completeExceptionally(throwable);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+// Lets records of a partition be processed concurrently while offsets are still committed in order.
+// Each partition admits a bounded number of unfinished records; when a record finishes, the
+// acknowledgment of the last record in the contiguous finished prefix is sent, so a commit never
+// moves past a record that is still in flight. Partition state is dropped on rebalance, and records
+// that were in flight then are redelivered to the new owner. A completion only counts for the
+// delivery that began it, so a record finishing after its partition was revoked, or after the
+// same offset was delivered again, never commits on behalf of the newer delivery. A record that
+// could be neither published nor parked is never completed: its partition is rewound to it and the
+// records after it are skipped until it is delivered again.
+@Component
+@Slf4j
+public class PartitionOffsetTracker implements ConsumerAwareRebalanceListener {
+
+    private static final long NO_REWIND = -1;
+
+    private final int maxInFlightPerPartition;
+    private final ConcurrentMap<TopicPartition, PartitionWindow> windows = new ConcurrentHashMap<>();
+
+    public PartitionOffsetTracker(
+            MeterRegistry meterRegistry,
+            @Value("${kafka.consumer.max-in-flight-per-partition:100}") int maxInFlightPerPartition) {
+        this.maxInFlightPerPartition = maxInFlightPerPartition;
+        meterRegistry.gauge("kafka.consumer.in.flight", windows, PartitionOffsetTracker::countInFlight);
+    }
+
+    // Registers a record before it is processed; blocks the listener while the partition's window is full.
+    // Returns false for a record behind a rewind, which is redelivered once the seek takes effect.
+    public boolean begin(ConsumerRecord<?, ?> record, Acknowledgment acknowledgment) throws InterruptedException {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        PartitionWindow window = windows.computeIfAbsent(partition, ignored -> new PartitionWindow(maxInFlightPerPartition));
+
+        synchronized (window) {
+            if (window.isBehindRewind(record.offset())) {
+                return false;
+            }
+            if (record.offset() == window.rewindTo) {
+                window.rewindTo = NO_REWIND;
+            }
+            PendingOffset redelivered = window.inFlight.get(record.offset());
+            if (redelivered != null) {
+                // Same offset seen again after a seek; it keeps its slot and now belongs to this delivery
+                window.inFlight.put(record.offset(), new PendingOffset(record, acknowledgment));
+                return true;
+            }
+        }
+
+        // Only the consumer thread begins records, so the offset can't have been added in between
+        window.permits.acquire();
+        synchronized (window) {
+            if (window.isBehindRewind(record.offset())) {
+                // The partition was rewound while this record waited for a slot
+                window.permits.release();
+                return false;
+            }
+            window.inFlight.put(record.offset(), new PendingOffset(record, acknowledgment));
+        }
+        return true;
+    }
+
+    // Marks a record finished, successfully or after routing it to the error path
+    public void complete(ConsumerRecord<?, ?> record) {
+        PartitionWindow window = windows.get(new TopicPartition(record.topic(), record.partition()));
+        if (window == null) {
+            // Partition was revoked while the record was in flight
+            return;
+        }
+
+        Acknowledgment commitUpTo = null;
+        int released = 0;
+        synchronized (window) {
+            PendingOffset pending = window.inFlight.get(record.offset());
+            if (pending == null || pending.record != record) {
+                // Not, or no longer, the delivery being tracked for this offset
+                return;
+            }
+            pending.done = true;
+
+            while (!window.inFlight.isEmpty() && window.inFlight.firstEntry().getValue().done) {
+                commitUpTo = window.inFlight.pollFirstEntry().getValue().acknowledgment;
+                released++;
+            }
+        }
+
+        window.permits.release(released);
+        if (commitUpTo != null) {
+            // Acknowledgments from other threads are queued and committed on the consumer thread
+            commitUpTo.acknowledge();
+        }
+    }
+
+    // Rewinds the partition to a record that could not be finished, so it is delivered and processed again.
+    // The record keeps its slot and holds back the commit; records after it are dropped and their slots
+    // freed, so a listener waiting on a full window gets to skip them. The seek is requested under the
+    // partition's lock, so when several records fail the consumer ends up at the earliest of them.
+    public void fail(ConsumerRecord<?, ?> record, ConsumerSeekAware.ConsumerSeekCallback seekCallback) {
+        PartitionWindow window = windows.get(new TopicPartition(record.topic(), record.partition()));
+        if (window == null) {
+            return;
+        }
+
+        int released = 0;
+        synchronized (window) {
+            PendingOffset pending = window.inFlight.get(record.offset());
+            if (pending == null || pending.record != record) {
+                // Dropped by an earlier rewind or a revoke; whatever replaced it delivers the record again
+                return;
+            }
+            Map<Long, PendingOffset> later = window.inFlight.tailMap(record.offset(), false);
+            released = later.size();
+            later.clear();
+            window.rewindTo = record.offset();
+            seekCallback.seek(record.topic(), record.partition(), record.offset());
+        }
+
+        window.permits.release(released);
+        log.warn("Rewound partition {}-{} to offset {}, dropping {} later in-flight offsets",
+                record.topic(), record.partition(), record.offset(), released);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        clear(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        clear(partitions);
+    }
+
+    private void clear(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionWindow window = windows.remove(partition);
+            if (window != null) {
+                int inFlight;
+                synchronized (window) {
+                    inFlight = window.inFlight.size();
+                    window.inFlight.clear();
+                }
+                if (inFlight > 0) {
+                    log.info("Dropped {} in-flight offsets of revoked partition {}", inFlight, partition);
+                }
+            }
+        }
+    }
+
+    private static double countInFlight(Map<TopicPartition, PartitionWindow> windows) {
+        int total = 0;
+        for (PartitionWindow window : windows.values()) {
+            synchronized (window) {
+                total += window.inFlight.size();
+            }
+        }
+        return total;
+    }
+
+    private static final class PartitionWindow {
+
+        private final Semaphore permits;
+        private final TreeMap<Long, PendingOffset> inFlight = new TreeMap<>();
+        private long rewindTo = NO_REWIND;
+
+        PartitionWindow(int maxInFlight) {
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        boolean isBehindRewind(long offset) {
+            return rewindTo != NO_REWIND && offset > rewindTo;
+        }
+    }
+
+    private static final class PendingOffset {
+
+        private final ConsumerRecord<?, ?> record;
+        private final Acknowledgment acknowledgment;
+        private boolean done;
+
+        PendingOffset(ConsumerRecord<?, ?> record, Acknowledgment acknowledgment) {
+            this.record = record;
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
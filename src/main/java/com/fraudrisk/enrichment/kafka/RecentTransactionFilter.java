@@ -0,0 +1,193 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Remembers transaction ids that were enriched and published within the last window, so a
+// redelivered or duplicated record can skip enrichment. Two Bloom filters covering consecutive
+// half-windows answer "definitely not seen" for almost every new id without taking a lock; ids the
+// filters may have seen are confirmed against a bounded LRU of exact ids and publish times, so a
+// false positive never drops a transaction. Ids evicted from the LRU are simply enriched again.
+@Component
+public class RecentTransactionFilter {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int bitCount;
+    private final int hashCount;
+    private final Segment[] segments;
+    private final Counter duplicates;
+    private final Counter uniques;
+
+    // Ids seen in the current and the previous half-window; rotated in place of clearing
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    public RecentTransactionFilter(
+            MeterRegistry meterRegistry,
+            @Value("${enrichment.dedup.enabled:true}") boolean enabled,
+            @Value("${enrichment.dedup.window-ms:600000}") long windowMillis,
+            @Value("${enrichment.dedup.expected-per-window:1000000}") long expectedPerWindow,
+            @Value("${enrichment.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${enrichment.dedup.max-exact-entries:200000}") int maxExactEntries) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+
+        // Standard Bloom sizing for one half-window's worth of ids
+        long expected = Math.max(1, expectedPerWindow / 2);
+        long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+
+        long now = System.currentTimeMillis();
+        this.current = new BloomFilter(bitCount, now);
+        this.previous = new BloomFilter(bitCount, now);
+
+        int entriesPerSegment = Math.max(1, maxExactEntries / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(entriesPerSegment);
+        }
+
+        this.duplicates = meterRegistry.counter("enrichment.dedup", "result", "duplicate");
+        this.uniques = meterRegistry.counter("enrichment.dedup", "result", "unique");
+        meterRegistry.gauge("enrichment.dedup.duplicate.ratio", this, RecentTransactionFilter::duplicateRatio);
+    }
+
+    // True when the transaction was already published within the window
+    public boolean isDuplicate(String transactionId) {
+        if (!enabled || transactionId == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        rotateIfDue(now);
+
+        long hash = hash(transactionId);
+        boolean duplicate = (current.mightContain(hash, hashCount) || previous.mightContain(hash, hashCount))
+                && confirm(transactionId, now);
+        (duplicate ? duplicates : uniques).increment();
+        return duplicate;
+    }
+
+    // Called once the enriched transaction is published; failed records are left out so they are retried
+    public void markPublished(String transactionId) {
+        if (!enabled || transactionId == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        rotateIfDue(now);
+
+        current.put(hash(transactionId), hashCount);
+        Segment segment = segmentFor(transactionId);
+        synchronized (segment) {
+            segment.publishedAt.put(transactionId, now);
+        }
+    }
+
+    private boolean confirm(String transactionId, long now) {
+        Segment segment = segmentFor(transactionId);
+        synchronized (segment) {
+            Long publishedAt = segment.publishedAt.get(transactionId);
+            return publishedAt != null && now - publishedAt < windowMillis;
+        }
+    }
+
+    private void rotateIfDue(long now) {
+        if (now - current.startedAt < windowMillis / 2) {
+            return;
+        }
+        synchronized (this) {
+            if (now - current.startedAt >= windowMillis / 2) {
+                // Readers may briefly see the old pair; at worst a duplicate is enriched again
+                previous = current;
+                current = new BloomFilter(bitCount, now);
+            }
+        }
+    }
+
+    private Segment segmentFor(String transactionId) {
+        return segments[Math.floorMod(transactionId.hashCode(), SEGMENT_COUNT)];
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with a murmur3 mix
+    private static long hash(String transactionId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : transactionId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private double duplicateRatio() {
+        double checks = duplicates.count() + uniques.count();
+        return checks > 0 ? duplicates.count() / checks : 0.0;
+    }
+
+    private static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final int bitCount;
+        private final long startedAt;
+
+        BloomFilter(int bitCount, long startedAt) {
+            this.words = new AtomicLongArray((bitCount + 63) >>> 6);
+            this.bitCount = bitCount;
+            this.startedAt = startedAt;
+        }
+
+        // Bit indexes come from two halves of one hash (Kirsch-Mitzenmacher double hashing)
+        void put(long hash, int hashCount) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(long hash, int hashCount) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Map<String, Long> publishedAt;
+
+        Segment(int maxEntries) {
+            this.publishedAt = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.fraudrisk.enrichment.kafka;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Delay tiers for transactions that failed enrichment. A failed record moves to the next tier's
+// topic with a not-before time in its headers, and after the last tier to the dead-letter topic.
+// Topic names are derived from the input topic and the tier delay, e.g. banking-transactions-retry-1m.
+@Component
+public class RetryTopics {
+
+    public static final String ATTEMPT_HEADER = "retry-attempt";
+    public static final String NOT_BEFORE_HEADER = "retry-not-before";
+    public static final String ERROR_TYPE_HEADER = "retry-error-type";
+    public static final String ERROR_MESSAGE_HEADER = "retry-error-message";
+
+    private final List<Tier> tiers;
+    private final String deadLetterTopic;
+
+    public RetryTopics(
+            @Value("${kafka.topics.input}") String inputTopic,
+            @Value("${kafka.topics.dead-letter}") String deadLetterTopic,
+            @Value("${kafka.retry.delays-ms:5000,60000,600000}") long[] delaysMillis) {
+        List<Tier> configuredTiers = new ArrayList<>(delaysMillis.length);
+        for (int i = 0; i < delaysMillis.length; i++) {
+            configuredTiers.add(new Tier(i, inputTopic + "-retry-" + label(delaysMillis[i]), delaysMillis[i]));
+        }
+        this.tiers = Collections.unmodifiableList(configuredTiers);
+        this.deadLetterTopic = deadLetterTopic;
+    }
+
+    public List<Tier> getTiers() {
+        return tiers;
+    }
+
+    public String getDeadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    // Tier for a record that has failed the given number of times, or null once the tiers are used up
+    public Tier tierAfter(int failedAttempts) {
+        int index = failedAttempts - 1;
+        return index >= 0 && index < tiers.size() ? tiers.get(index) : null;
+    }
+
+    // Number of failed attempts carried by a retry record; 0 for records from the input topic
+    public static int attempts(Headers headers) {
+        String value = headerValue(headers, ATTEMPT_HEADER);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    public static long notBefore(Headers headers) {
+        String value = headerValue(headers, NOT_BEFORE_HEADER);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    public static void putHeader(Headers headers, String name, Object value) {
+        headers.remove(name);
+        if (value != null) {
+            headers.add(name, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String headerValue(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header != null && header.value() != null
+                ? new String(header.value(), StandardCharsets.UTF_8)
+                : null;
+    }
+
+    private static String label(long delayMillis) {
+        if (delayMillis >= 60_000 && delayMillis % 60_000 == 0) {
+            return delayMillis / 60_000 + "m";
+        }
+        if (delayMillis >= 1_000 && delayMillis % 1_000 == 0) {
+            return delayMillis / 1_000 + "s";
+        }
+        return delayMillis + "ms";
+    }
+
+    public record Tier(int index, String topic, long delayMillis) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.fraudrisk.enrichment.model;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable view of a customer's recent history, loaded once per transaction (or once per customer
+// per batch) and shared by all history-based analysis services. The most recent transactions are
+// held row by row in columns; older days come from the daily rollup as one entry per day, so the
+// snapshot grows with the number of days covered rather than the number of transactions. Windows
+// reaching into the rolled-up days count a day as soon as any part of it falls inside the window.
+public final class CustomerHistorySnapshot {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final String customerId;
+    private final Instant asOf;
+    private final List<DailyAggregate> days;
+    private final long[] transactionTimes;
+    private final double[] amounts;
+    private final String[] merchantIds;
+    private final String[] merchantCategories;
+    private final String[] deviceIds;
+    private final long transactionCount;
+
+    private CustomerHistorySnapshot(String customerId, Instant asOf, List<DailyAggregate> days,
+                                    long[] transactionTimes, double[] amounts, String[] merchantIds,
+                                    String[] merchantCategories, String[] deviceIds) {
+        this.customerId = customerId;
+        this.asOf = asOf;
+        this.days = days;
+        this.transactionTimes = transactionTimes;
+        this.amounts = amounts;
+        this.merchantIds = merchantIds;
+        this.merchantCategories = merchantCategories;
+        this.deviceIds = deviceIds;
+
+        long count = transactionTimes.length;
+        for (DailyAggregate day : days) {
+            count += day.transactionCount();
+        }
+        this.transactionCount = count;
+    }
+
+    public static CustomerHistorySnapshot empty(String customerId, Instant asOf) {
+        return new CustomerHistorySnapshot(customerId, asOf, List.of(), new long[0], new double[0],
+                new String[0], new String[0], new String[0]);
+    }
+
+    public static CustomerHistorySnapshot fromRows(String customerId, Instant asOf, List<Object[]> rows) {
+        return fromRows(customerId, asOf, List.of(), rows);
+    }
+
+    // Days are rolled-up days ordered by day, all before the first row's day; rows are
+    // (transactionDate, amount, merchantId, merchantCategory, deviceId) ordered by transactionDate
+    public static CustomerHistorySnapshot fromRows(String customerId, Instant asOf,
+                                                   List<DailyAggregate> days, List<Object[]> rows) {
+        int size = rows.size();
+        long[] transactionTimes = new long[size];
+        double[] amounts = new double[size];
+        String[] merchantIds = new String[size];
+        String[] merchantCategories = new String[size];
+        String[] deviceIds = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            Object[] row = rows.get(i);
+            transactionTimes[i] = ((Instant) row[0]).toEpochMilli();
+            amounts[i] = row[1] != null ? ((BigDecimal) row[1]).doubleValue() : 0.0;
+            merchantIds[i] = (String) row[2];
+            merchantCategories[i] = (String) row[3];
+            deviceIds[i] = (String) row[4];
+        }
+
+        return new CustomerHistorySnapshot(customerId, asOf, List.copyOf(days), transactionTimes, amounts,
+                merchantIds, merchantCategories, deviceIds);
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public Instant getAsOf() {
+        return asOf;
+    }
+
+    // Number of transactions covered, rolled-up days included
+    public long size() {
+        return transactionCount;
+    }
+
+    public boolean isEmpty() {
+        return transactionCount == 0;
+    }
+
+    public long countSince(Instant since) {
+        long sinceMillis = since.toEpochMilli();
+        long count = transactionTimes.length - firstIndexSince(sinceMillis);
+        for (DailyAggregate day : days) {
+            if (day.overlapsSince(sinceMillis)) {
+                count += day.transactionCount();
+            }
+        }
+        return count;
+    }
+
+    public double amountSumSince(Instant since) {
+        long sinceMillis = since.toEpochMilli();
+        double sum = 0.0;
+        for (int i = firstIndexSince(sinceMillis); i < amounts.length; i++) {
+            sum += amounts[i];
+        }
+        for (DailyAggregate day : days) {
+            if (day.overlapsSince(sinceMillis)) {
+                sum += day.amountSum();
+            }
+        }
+        return sum;
+    }
+
+    public double amountSum() {
+        double sum = 0.0;
+        for (double amount : amounts) {
+            sum += amount;
+        }
+        for (DailyAggregate day : days) {
+            sum += day.amountSum();
+        }
+        return sum;
+    }
+
+    public boolean hasMerchant(String merchantId) {
+        if (merchantId == null) {
+            return false;
+        }
+        for (String historicalMerchantId : merchantIds) {
+            if (merchantId.equals(historicalMerchantId)) {
+                return true;
+            }
+        }
+        for (DailyAggregate day : days) {
+            if (day.merchantCounts().containsKey(merchantId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasMerchantCategory(String merchantCategory) {
+        if (merchantCategory == null) {
+            return false;
+        }
+        for (String historicalCategory : merchantCategories) {
+            if (merchantCategory.equals(historicalCategory)) {
+                return true;
+            }
+        }
+        for (DailyAggregate day : days) {
+            if (day.categoryCounts().containsKey(merchantCategory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // How the customer used their devices since the given instant, in one pass over rows and days
+    public DeviceUsage deviceUsageSince(Instant since, String deviceId) {
+        long sinceMillis = since.toEpochMilli();
+        Set<String> devices = new HashSet<>();
+        long transactions = 0;
+        long transactionsWithDevice = 0;
+        long firstSeenMillis = Long.MAX_VALUE;
+
+        // Days precede the rows, so the first sighting found is the earliest
+        for (DailyAggregate day : days) {
+            if (!day.overlapsSince(sinceMillis)) {
+                continue;
+            }
+            transactions += day.transactionCount();
+            devices.addAll(day.deviceCounts().keySet());
+            Long withDevice = deviceId != null ? day.deviceCounts().get(deviceId) : null;
+            if (withDevice != null && withDevice > 0) {
+                transactionsWithDevice += withDevice;
+                firstSeenMillis = Math.min(firstSeenMillis, day.startMillis());
+            }
+        }
+        for (int i = firstIndexSince(sinceMillis); i < transactionTimes.length; i++) {
+            transactions++;
+            devices.add(deviceIds[i]);
+            if (deviceId != null && deviceId.equals(deviceIds[i])) {
+                transactionsWithDevice++;
+                firstSeenMillis = Math.min(firstSeenMillis, transactionTimes[i]);
+            }
+        }
+        return new DeviceUsage(devices.size(), transactions, transactionsWithDevice, firstSeenMillis);
+    }
+
+    // Number of transactions per day of week (indexed by DayOfWeek.ordinal()); rows are counted in the
+    // given zone, rolled-up days as the dates they were rolled up under, in the service's zone
+    public long[] dayOfWeekCounts(ZoneId zone) {
+        long[] counts = new long[DayOfWeek.values().length];
+        for (DailyAggregate day : days) {
+            counts[day.day().getDayOfWeek().ordinal()] += day.transactionCount();
+        }
+
+        ZoneRules rules = zone.getRules();
+        long fixedOffsetMillis = rules.isFixedOffset()
+                ? rules.getOffset(asOf).getTotalSeconds() * 1000L
+                : 0L;
+
+        for (long transactionTime : transactionTimes) {
+            long offsetMillis = rules.isFixedOffset()
+                    ? fixedOffsetMillis
+                    : rules.getOffset(Instant.ofEpochMilli(transactionTime)).getTotalSeconds() * 1000L;
+            long epochDay = Math.floorDiv(transactionTime + offsetMillis, MILLIS_PER_DAY);
+            // 1970-01-01 was a Thursday
+            counts[(int) Math.floorMod(epochDay + DayOfWeek.THURSDAY.ordinal(), 7L)]++;
+        }
+        return counts;
+    }
+
+    // Index of the first row at or after the given time, or the row count if there is none
+    private int firstIndexSince(long sinceMillis) {
+        int low = 0;
+        int high = transactionTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (transactionTimes[mid] < sinceMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // One closed day of the customer_daily_aggregates rollup; startMillis is the day's local midnight
+    public record DailyAggregate(LocalDate day, long startMillis, long transactionCount, double amountSum,
+                                 Map<String, Long> merchantCounts, Map<String, Long> categoryCounts,
+                                 Map<String, Long> deviceCounts) {
+
+        private boolean overlapsSince(long sinceMillis) {
+            return startMillis + MILLIS_PER_DAY > sinceMillis;
+        }
+    }
+
+    // firstSeenMillis is Long.MAX_VALUE when the device was not used in the window
+    public record DeviceUsage(int deviceCount, long transactionCount, long transactionsWithDevice,
+                              long firstSeenMillis) {
+    }
+}
@@ -20,9 +20,9 @@ public class EnrichedTransaction {
     private CustomerData customerData;
     private MerchantData merchantData;
     private RiskScore riskScore;
-    private Map<String, Object> behavioralFeatures;
-    private Map<String, Object> geoFeatures;
-    private Map<String, Object> deviceFeatures;
-    private Map<String, Object> historicalPatterns;
+    private FeatureVector behavioralFeatures;
+    private FeatureVector geoFeatures;
+    private FeatureVector deviceFeatures;
+    private FeatureVector historicalPatterns;
     private Map<String, Object> additionalFeatures;
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.fraudrisk.enrichment.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fixed feature schema. Each feature belongs to one group, keeps the key name it has always been
+// published under, and gets a slot in its group's array for its type once, when the class loads.
+public enum Feature {
+
+    // Behavioral features
+    TRANSACTION_COUNT_24H(FeatureGroup.BEHAVIORAL, "transactionCount24h", Type.LONG),
+    TRANSACTION_COUNT_7D(FeatureGroup.BEHAVIORAL, "transactionCount7d", Type.LONG),
+    TRANSACTION_COUNT_30D(FeatureGroup.BEHAVIORAL, "transactionCount30d", Type.LONG),
+    AVG_AMOUNT_24H(FeatureGroup.BEHAVIORAL, "avgAmount24h", Type.DOUBLE),
+    AVG_AMOUNT_7D(FeatureGroup.BEHAVIORAL, "avgAmount7d", Type.DOUBLE),
+    AVG_AMOUNT_30D(FeatureGroup.BEHAVIORAL, "avgAmount30d", Type.DOUBLE),
+    VELOCITY_24H(FeatureGroup.BEHAVIORAL, "velocity24h", Type.DOUBLE),
+    VELOCITY_7D(FeatureGroup.BEHAVIORAL, "velocity7d", Type.DOUBLE),
+    AMOUNT_DEVIATION(FeatureGroup.BEHAVIORAL, "amountDeviation", Type.DOUBLE),
+    BEHAVIORAL_ERROR(FeatureGroup.BEHAVIORAL, "error", Type.STRING),
+
+    // Geo features
+    COUNTRY(FeatureGroup.GEO, "country", Type.STRING),
+    CITY(FeatureGroup.GEO, "city", Type.STRING),
+    LATITUDE(FeatureGroup.GEO, "latitude", Type.DOUBLE),
+    LONGITUDE(FeatureGroup.GEO, "longitude", Type.DOUBLE),
+    IS_HIGH_RISK_COUNTRY(FeatureGroup.GEO, "isHighRiskCountry", Type.BOOLEAN),
+    TIMEZONE(FeatureGroup.GEO, "timezone", Type.STRING),
+    RESOLVED_COUNTRY(FeatureGroup.GEO, "resolvedCountry", Type.STRING),
+    LOCATION_MISSING(FeatureGroup.GEO, "locationMissing", Type.BOOLEAN),
+    IP_TYPE(FeatureGroup.GEO, "ipType", Type.STRING),
+    IS_TOR_EXIT(FeatureGroup.GEO, "isTorExit", Type.BOOLEAN),
+    IS_PROXY(FeatureGroup.GEO, "isProxy", Type.BOOLEAN),
+    IS_HOSTING(FeatureGroup.GEO, "isHosting", Type.BOOLEAN),
+    IP_RISK_SCORE(FeatureGroup.GEO, "ipRiskScore", Type.DOUBLE),
+    IP_MISSING(FeatureGroup.GEO, "ipMissing", Type.BOOLEAN),
+    DISTANCE_FROM_LAST_KM(FeatureGroup.GEO, "distanceFromLastKm", Type.DOUBLE),
+    SECONDS_SINCE_LAST_LOCATION(FeatureGroup.GEO, "secondsSinceLastLocation", Type.LONG),
+    IMPLIED_SPEED_KMH(FeatureGroup.GEO, "impliedSpeedKmh", Type.DOUBLE),
+    COUNTRY_CHANGED(FeatureGroup.GEO, "countryChanged", Type.BOOLEAN),
+    IMPOSSIBLE_TRAVEL(FeatureGroup.GEO, "impossibleTravel", Type.BOOLEAN),
+    GEO_ERROR(FeatureGroup.GEO, "error", Type.STRING),
+
+    // Device features
+    DEVICE_MISSING(FeatureGroup.DEVICE, "deviceMissing", Type.BOOLEAN),
+    DEVICE_RISK_SCORE(FeatureGroup.DEVICE, "deviceRiskScore", Type.DOUBLE),
+    DEVICE_COUNT_90D(FeatureGroup.DEVICE, "deviceCount90d", Type.LONG),
+    IS_KNOWN_DEVICE(FeatureGroup.DEVICE, "isKnownDevice", Type.BOOLEAN),
+    DEVICE_AGE_IN_DAYS(FeatureGroup.DEVICE, "deviceAgeInDays", Type.LONG),
+    DEVICE_CONSISTENCY(FeatureGroup.DEVICE, "deviceConsistency", Type.DOUBLE),
+    DEVICE_ERROR(FeatureGroup.DEVICE, "error", Type.STRING),
+
+    // Historical pattern features
+    NO_HISTORY(FeatureGroup.HISTORICAL, "noHistory", Type.BOOLEAN),
+    HISTORY_RISK_SCORE(FeatureGroup.HISTORICAL, "historyRiskScore", Type.DOUBLE),
+    HAS_TRANSACTED_WITH_MERCHANT(FeatureGroup.HISTORICAL, "hasTransactedWithMerchant", Type.BOOLEAN),
+    HAS_TRANSACTED_IN_CATEGORY(FeatureGroup.HISTORICAL, "hasTransactedInCategory", Type.BOOLEAN),
+    AVERAGE_AMOUNT(FeatureGroup.HISTORICAL, "averageAmount", Type.DOUBLE),
+    HISTORICAL_AMOUNT_DEVIATION(FeatureGroup.HISTORICAL, "amountDeviation", Type.DOUBLE),
+    MOST_COMMON_DAY(FeatureGroup.HISTORICAL, "mostCommonDay", Type.STRING),
+    IS_TYPICAL_DAY(FeatureGroup.HISTORICAL, "isTypicalDay", Type.BOOLEAN),
+    IS_NIGHT_TIME(FeatureGroup.HISTORICAL, "isNightTime", Type.BOOLEAN),
+    PATTERN_RISK_SCORE(FeatureGroup.HISTORICAL, "patternRiskScore", Type.DOUBLE),
+    HISTORICAL_ERROR(FeatureGroup.HISTORICAL, "error", Type.STRING);
+
+    public enum Type {
+        DOUBLE,
+        LONG,
+        BOOLEAN,
+        STRING
+    }
+
+    private final FeatureGroup group;
+    private final String key;
+    private final Type type;
+
+    // Assigned once the constants exist: position within the group, and slot within the group's
+    // array for this feature's type
+    private int position;
+    private int slot;
+
+    private static final Map<FeatureGroup, List<Feature>> GROUP_FEATURES = new EnumMap<>(FeatureGroup.class);
+    private static final Map<FeatureGroup, Map<String, Feature>> GROUP_KEYS = new EnumMap<>(FeatureGroup.class);
+    private static final Map<FeatureGroup, int[]> GROUP_SLOT_COUNTS = new EnumMap<>(FeatureGroup.class);
+    private static final Map<FeatureGroup, Feature> GROUP_ERRORS = new EnumMap<>(FeatureGroup.class);
+
+    static {
+        for (FeatureGroup group : FeatureGroup.values()) {
+            GROUP_FEATURES.put(group, new ArrayList<>());
+            GROUP_KEYS.put(group, new HashMap<>());
+            GROUP_SLOT_COUNTS.put(group, new int[Type.values().length]);
+        }
+
+        for (Feature feature : values()) {
+            List<Feature> groupFeatures = GROUP_FEATURES.get(feature.group);
+            int[] slotCounts = GROUP_SLOT_COUNTS.get(feature.group);
+
+            feature.position = groupFeatures.size();
+            feature.slot = slotCounts[feature.type.ordinal()]++;
+            groupFeatures.add(feature);
+
+            if (GROUP_KEYS.get(feature.group).put(feature.key, feature) != null) {
+                throw new IllegalStateException("Duplicate feature key " + feature.key + " in " + feature.group);
+            }
+            if ("error".equals(feature.key)) {
+                GROUP_ERRORS.put(feature.group, feature);
+            }
+        }
+
+        for (FeatureGroup group : FeatureGroup.values()) {
+            // Presence and boolean values are kept in one long bitset per vector
+            if (GROUP_FEATURES.get(group).size() > Long.SIZE) {
+                throw new IllegalStateException("Feature group " + group + " has more than 64 features");
+            }
+            GROUP_FEATURES.put(group, Collections.unmodifiableList(GROUP_FEATURES.get(group)));
+        }
+    }
+
+    Feature(FeatureGroup group, String key, Type type) {
+        this.group = group;
+        this.key = key;
+        this.type = type;
+    }
+
+    public FeatureGroup getGroup() {
+        return group;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    public static List<Feature> featuresOf(FeatureGroup group) {
+        return GROUP_FEATURES.get(group);
+    }
+
+    // Null if the group has no feature with this key
+    public static Feature forKey(FeatureGroup group, String key) {
+        return GROUP_KEYS.get(group).get(key);
+    }
+
+    public static Feature errorOf(FeatureGroup group) {
+        return GROUP_ERRORS.get(group);
+    }
+
+    static int slotCount(FeatureGroup group, Type type) {
+        return GROUP_SLOT_COUNTS.get(group)[type.ordinal()];
+    }
+}
@@ -0,0 +1,8 @@
+package com.fraudrisk.enrichment.model;
+
+public enum FeatureGroup {
+    BEHAVIORAL,
+    GEO,
+    DEVICE,
+    HISTORICAL
+}
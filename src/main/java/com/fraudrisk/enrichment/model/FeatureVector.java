@@ -0,0 +1,273 @@
+package com.fraudrisk.enrichment.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+// The features of one group for one transaction, held in primitive slots laid out by the Feature
+// schema. Presence and boolean values are bitsets indexed by the feature's position in its group,
+// so nothing is boxed until a caller asks for the map view. Serializes to the same JSON object
+// the feature maps used to produce.
+@JsonSerialize(using = FeatureVector.Serializer.class)
+public final class FeatureVector {
+
+    private final FeatureGroup group;
+    private final double[] doubles;
+    private final long[] longs;
+    private final String[] strings;
+    private long booleans;
+    private long present;
+
+    public FeatureVector(FeatureGroup group) {
+        this.group = group;
+        this.doubles = new double[Feature.slotCount(group, Feature.Type.DOUBLE)];
+        this.longs = new long[Feature.slotCount(group, Feature.Type.LONG)];
+        this.strings = new String[Feature.slotCount(group, Feature.Type.STRING)];
+    }
+
+    public FeatureGroup getGroup() {
+        return group;
+    }
+
+    public FeatureVector set(Feature feature, double value) {
+        checkFeature(feature, Feature.Type.DOUBLE);
+        doubles[feature.slot()] = value;
+        present |= bit(feature);
+        return this;
+    }
+
+    public FeatureVector set(Feature feature, long value) {
+        if (feature.getType() == Feature.Type.DOUBLE) {
+            return set(feature, (double) value);
+        }
+        checkFeature(feature, Feature.Type.LONG);
+        longs[feature.slot()] = value;
+        present |= bit(feature);
+        return this;
+    }
+
+    public FeatureVector set(Feature feature, boolean value) {
+        checkFeature(feature, Feature.Type.BOOLEAN);
+        if (value) {
+            booleans |= bit(feature);
+        } else {
+            booleans &= ~bit(feature);
+        }
+        present |= bit(feature);
+        return this;
+    }
+
+    public FeatureVector set(Feature feature, String value) {
+        checkFeature(feature, Feature.Type.STRING);
+        strings[feature.slot()] = value;
+        if (value != null) {
+            present |= bit(feature);
+        } else {
+            present &= ~bit(feature);
+        }
+        return this;
+    }
+
+    // Records why the analysis fell back to defaults, under the group's "error" key
+    public FeatureVector setError(String message) {
+        return set(Feature.errorOf(group), message);
+    }
+
+    // Copies every feature present in the other vector over this one
+    public FeatureVector setAll(FeatureVector other) {
+        if (other.group != group) {
+            throw new IllegalArgumentException("Cannot merge " + other.group + " features into " + group);
+        }
+        for (Feature feature : Feature.featuresOf(group)) {
+            if (!other.has(feature)) {
+                continue;
+            }
+            switch (feature.getType()) {
+                case DOUBLE -> doubles[feature.slot()] = other.doubles[feature.slot()];
+                case LONG -> longs[feature.slot()] = other.longs[feature.slot()];
+                case STRING -> strings[feature.slot()] = other.strings[feature.slot()];
+                case BOOLEAN -> booleans = (booleans & ~bit(feature)) | (other.booleans & bit(feature));
+            }
+        }
+        present |= other.present;
+        return this;
+    }
+
+    public boolean has(Feature feature) {
+        return feature.getGroup() == group && (present & bit(feature)) != 0;
+    }
+
+    public double getDouble(Feature feature) {
+        checkFeature(feature, Feature.Type.DOUBLE);
+        return doubles[feature.slot()];
+    }
+
+    public long getLong(Feature feature) {
+        checkFeature(feature, Feature.Type.LONG);
+        return longs[feature.slot()];
+    }
+
+    public boolean getBoolean(Feature feature) {
+        checkFeature(feature, Feature.Type.BOOLEAN);
+        return (booleans & bit(feature)) != 0;
+    }
+
+    public String getString(Feature feature) {
+        checkFeature(feature, Feature.Type.STRING);
+        return strings[feature.slot()];
+    }
+
+    // Numeric reading of any feature for model inputs: booleans as 0/1, strings and absent features as 0
+    public double getAsDouble(Feature feature) {
+        if (!has(feature)) {
+            return 0.0;
+        }
+        return switch (feature.getType()) {
+            case DOUBLE -> doubles[feature.slot()];
+            case LONG -> longs[feature.slot()];
+            case BOOLEAN -> (booleans & bit(feature)) != 0 ? 1.0 : 0.0;
+            case STRING -> 0.0;
+        };
+    }
+
+    // Boxed value of a present feature, null otherwise
+    public Object get(Feature feature) {
+        if (!has(feature)) {
+            return null;
+        }
+        return switch (feature.getType()) {
+            case DOUBLE -> doubles[feature.slot()];
+            case LONG -> longs[feature.slot()];
+            case BOOLEAN -> (booleans & bit(feature)) != 0;
+            case STRING -> strings[feature.slot()];
+        };
+    }
+
+    // Read-only view under the published key names, for code that still wants a map
+    public Map<String, Object> asMap() {
+        return new MapView();
+    }
+
+    private void checkFeature(Feature feature, Feature.Type type) {
+        if (feature.getGroup() != group || feature.getType() != type) {
+            throw new IllegalArgumentException("Feature " + feature + " is not a " + type + " feature of " + group);
+        }
+    }
+
+    private static long bit(Feature feature) {
+        return 1L << feature.position();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FeatureVector other)) {
+            return false;
+        }
+        return group == other.group
+                && present == other.present
+                && (booleans & present) == (other.booleans & other.present)
+                && Arrays.equals(doubles, other.doubles)
+                && Arrays.equals(longs, other.longs)
+                && Arrays.equals(strings, other.strings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(group, present, booleans & present,
+                Arrays.hashCode(doubles), Arrays.hashCode(longs), Arrays.hashCode(strings));
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    private final class MapView extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            Feature feature = key instanceof String name ? Feature.forKey(group, name) : null;
+            return feature != null ? FeatureVector.this.get(feature) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Feature feature = key instanceof String name ? Feature.forKey(group, name) : null;
+            return feature != null && has(feature);
+        }
+
+        @Override
+        public int size() {
+            return Long.bitCount(present);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    List<Feature> features = Feature.featuresOf(group);
+                    return new Iterator<>() {
+                        private long remaining = present;
+
+                        @Override
+                        public boolean hasNext() {
+                            return remaining != 0;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (remaining == 0) {
+                                throw new NoSuchElementException();
+                            }
+                            Feature feature = features.get(Long.numberOfTrailingZeros(remaining));
+                            remaining &= remaining - 1;
+                            return new SimpleImmutableEntry<>(feature.getKey(), FeatureVector.this.get(feature));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Long.bitCount(present);
+                }
+            };
+        }
+    }
+
+    // Writes present features in schema order straight from the primitive slots
+    public static class Serializer extends JsonSerializer<FeatureVector> {
+
+        @Override
+        public void serialize(FeatureVector vector, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            List<Feature> features = Feature.featuresOf(vector.group);
+            for (long remaining = vector.present; remaining != 0; remaining &= remaining - 1) {
+                Feature feature = features.get(Long.numberOfTrailingZeros(remaining));
+                generator.writeFieldName(feature.getKey());
+                switch (feature.getType()) {
+                    case DOUBLE -> generator.writeNumber(vector.doubles[feature.slot()]);
+                    case LONG -> generator.writeNumber(vector.longs[feature.slot()]);
+                    case BOOLEAN -> generator.writeBoolean((vector.booleans & bit(feature)) != 0);
+                    case STRING -> generator.writeString(vector.strings[feature.slot()]);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.fraudrisk.enrichment.model;
+
+// A transaction's location string, formatted "country:city:lat:long"
+public record GeoLocation(String country, String city, double latitude, double longitude) {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    // Null when the string has fewer than four parts; coordinates that aren't numbers throw
+    // NumberFormatException
+    public static GeoLocation parse(String location) {
+        if (location == null || location.isEmpty()) {
+            return null;
+        }
+        String[] locationParts = location.split(":");
+        if (locationParts.length < 4) {
+            return null;
+        }
+        return new GeoLocation(locationParts[0], locationParts[1],
+                Double.parseDouble(locationParts[2]), Double.parseDouble(locationParts[3]));
+    }
+
+    // Great-circle (haversine) distance in kilometres
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
@@ -3,8 +3,11 @@ package com.fraudrisk.enrichment.repository;
 import com.fraudrisk.enrichment.entity.MerchantEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.time.Instant;
+import java.util.List;
 
 @Repository
 public interface MerchantRepository extends JpaRepository<MerchantEntity, String> {
-    // Custom query methods can be added here
+
+    List<MerchantEntity> findByUpdatedAtAfter(Instant updatedAt);
 }
\ No newline at end of file
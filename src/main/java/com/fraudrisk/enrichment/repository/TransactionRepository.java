@@ -1,11 +1,13 @@
 package com.fraudrisk.enrichment.repository;
 
 import com.fraudrisk.enrichment.entity.TransactionEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -21,6 +23,59 @@ public interface TransactionRepository extends JpaRepository<TransactionEntity,
             @Param("startDate") Instant startDate
     );
 
+    // Projection used by CustomerHistorySnapshot and the in-memory stores; reads only the columns the
+    // analysis services need, plus the id the stores use to apply each transaction once and the
+    // location the customer profile takes each transaction's local time from
+    @Query("SELECT t.transactionDate, t.amount, t.merchantId, t.merchantCategory, t.deviceId, t.transactionId, " +
+            "t.location " +
+            "FROM TransactionEntity t WHERE t.customerId = :customerId AND t.transactionDate >= :startDate " +
+            "ORDER BY t.transactionDate")
+    List<Object[]> findCustomerHistoryRows(
+            @Param("customerId") String customerId,
+            @Param("startDate") Instant startDate
+    );
+
+    // Per-device usage for DeviceRegistryStore as (deviceId, firstSeen, lastSeen, useCount), ordered by
+    // last use; transactions without a device form the null group
+    @Query("SELECT t.deviceId, MIN(t.transactionDate), MAX(t.transactionDate), COUNT(t) " +
+            "FROM TransactionEntity t WHERE t.customerId = :customerId AND t.transactionDate >= :startDate " +
+            "GROUP BY t.deviceId ORDER BY MAX(t.transactionDate)")
+    List<Object[]> findCustomerDeviceUsage(
+            @Param("customerId") String customerId,
+            @Param("startDate") Instant startDate
+    );
+
+    // Ids of the customer's most recent transactions since the given time, newest first
+    @Query("SELECT t.transactionId FROM TransactionEntity t WHERE t.customerId = :customerId " +
+            "AND t.transactionDate >= :startDate ORDER BY t.transactionDate DESC")
+    List<String> findRecentCustomerTransactionIds(
+            @Param("customerId") String customerId,
+            @Param("startDate") Instant startDate,
+            Pageable pageable
+    );
+
+    // Most recent located transactions before the given time as (location, transactionDate, transactionId),
+    // newest first
+    @Query("SELECT t.location, t.transactionDate, t.transactionId FROM TransactionEntity t WHERE t.customerId = :customerId " +
+            "AND t.location IS NOT NULL AND t.transactionDate < :before ORDER BY t.transactionDate DESC")
+    List<Object[]> findCustomerLocationsBefore(
+            @Param("customerId") String customerId,
+            @Param("before") Instant before,
+            Pageable pageable
+    );
+
+    // Closed days from the customer_daily_aggregates rollup, as (day, transactionCount, amountSum,
+    // merchantCounts, categoryCounts, deviceCounts) with the count maps as JSON text
+    @Query(value = "SELECT day, transaction_count, amount_sum, merchant_counts::text, category_counts::text, " +
+            "device_counts::text FROM customer_daily_aggregates " +
+            "WHERE customer_id = :customerId AND day >= :startDay AND day < :endDay ORDER BY day",
+            nativeQuery = true)
+    List<Object[]> findCustomerDailyAggregates(
+            @Param("customerId") String customerId,
+            @Param("startDay") LocalDate startDay,
+            @Param("endDay") LocalDate endDay
+    );
+
     @Query("SELECT COUNT(t) FROM TransactionEntity t WHERE t.customerId = :customerId AND t.transactionDate >= :startDate")
     long countCustomerTransactionsAfterDate(
             @Param("customerId") String customerId,
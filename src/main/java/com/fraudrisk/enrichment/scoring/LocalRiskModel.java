@@ -0,0 +1,337 @@
+package com.fraudrisk.enrichment.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+// In-process logistic regression over the enrichment features. The model file names each feature as
+// "<group>.<name>"; at load time every name is resolved to an extractor once, so scoring is a single
+// pass over primitive arrays with no lookups by name.
+//
+// Model file format (JSON):
+//   { "modelType": "logistic-regression", "version": "...", "intercept": -2.0,
+//     "thresholds": { "high": 0.7, "medium": 0.4 },
+//     "coefficients": { "customer.hasPreviousFraud": 1.6, "geo.isTorExit": 1.4, ... } }
+//
+// The behavioral, geo, device and historical groups read the feature of the same key from the
+// feature vectors (numbers as-is, booleans as 0/1, anything else as 0). The customer, merchant and
+// transaction groups expose the derived features listed in the extractor methods below.
+@Component
+@Slf4j
+public class LocalRiskModel {
+
+    private static final String LOGISTIC_REGRESSION = "logistic-regression";
+
+    private static final int IDENTITY = 0;
+    private static final int BEHAVIORAL = 1;
+    private static final int TRANSACTION = 2;
+    private static final int DEVICE = 3;
+    private static final int GEO = 4;
+    private static final int COMPONENTS = 5;
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final String modelLocation;
+    private final boolean enabled;
+    private final Timer evaluationTimer;
+
+    private volatile CompiledModel model;
+
+    public LocalRiskModel(
+            ResourceLoader resourceLoader,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${risk-model.location:classpath:risk-model/logistic-regression.json}") String modelLocation,
+            @Value("#{'${risk-model.mode:fallback}' != 'disabled'}") boolean enabled) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.modelLocation = modelLocation;
+        this.enabled = enabled;
+        this.evaluationTimer = Timer.builder("risk.model.evaluation")
+                .description("Time to score one transaction with the local risk model")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            load();
+        } catch (Exception e) {
+            // Scoring stays with the remote service and the rule-based fallback
+            log.error("Failed to load local risk model from {}: {}", modelLocation, e.getMessage(), e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return model != null;
+    }
+
+    public String getVersion() {
+        CompiledModel current = model;
+        return current != null ? current.version() : null;
+    }
+
+    public void load() throws Exception {
+        Resource resource = resourceLoader.getResource(modelLocation);
+        ModelDefinition definition;
+        try (InputStream inputStream = resource.getInputStream()) {
+            definition = objectMapper.readValue(inputStream, ModelDefinition.class);
+        }
+
+        model = compile(definition);
+        log.info("Loaded local risk model {} with {} features from {}",
+                definition.version(), definition.coefficients().size(), modelLocation);
+    }
+
+    public RiskScore score(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+
+        CompiledModel current = model;
+        if (current == null) {
+            throw new IllegalStateException("Local risk model is not loaded");
+        }
+
+        long startNanos = System.nanoTime();
+
+        Input input = new Input(transaction, customerData, merchantData,
+                behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
+
+        double[] componentSums = new double[COMPONENTS];
+        double logit = current.intercept();
+        double topContribution = 0.0;
+        int topFeature = -1;
+
+        for (int i = 0; i < current.weights().length; i++) {
+            double contribution = current.weights()[i] * current.extractors()[i].applyAsDouble(input);
+            logit += contribution;
+            componentSums[current.components()[i]] += contribution;
+            if (contribution > topContribution) {
+                topContribution = contribution;
+                topFeature = i;
+            }
+        }
+
+        double overallScore = sigmoid(logit);
+
+        Map<String, Double> componentScores = new HashMap<>();
+        componentScores.put("localModel", overallScore);
+
+        String riskLevel = overallScore >= current.highThreshold() ? "HIGH"
+                : (overallScore >= current.mediumThreshold() ? "MEDIUM" : "LOW");
+
+        RiskScore riskScore = RiskScore.builder()
+                .overallScore(overallScore)
+                .identityRiskScore(sigmoid(current.intercept() + componentSums[IDENTITY]))
+                .behavioralRiskScore(sigmoid(current.intercept() + componentSums[BEHAVIORAL]))
+                .transactionRiskScore(sigmoid(current.intercept() + componentSums[TRANSACTION]))
+                .deviceRiskScore(sigmoid(current.intercept() + componentSums[DEVICE]))
+                .geoLocationRiskScore(sigmoid(current.intercept() + componentSums[GEO]))
+                .componentScores(componentScores)
+                .riskLevel(riskLevel)
+                .riskReason(topFeature >= 0
+                        ? "Local model " + current.version() + ", top factor " + current.featureNames()[topFeature]
+                        : "Local model " + current.version() + ", no risk factors")
+                .build();
+
+        evaluationTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return riskScore;
+    }
+
+    private CompiledModel compile(ModelDefinition definition) {
+        if (!LOGISTIC_REGRESSION.equals(definition.modelType())) {
+            throw new IllegalStateException("Unsupported risk model type: " + definition.modelType());
+        }
+        if (definition.coefficients() == null || definition.coefficients().isEmpty()) {
+            throw new IllegalStateException("Risk model " + definition.version() + " has no coefficients");
+        }
+
+        int size = definition.coefficients().size();
+        String[] featureNames = new String[size];
+        double[] weights = new double[size];
+        int[] components = new int[size];
+        @SuppressWarnings("unchecked")
+        ToDoubleFunction<Input>[] extractors = new ToDoubleFunction[size];
+
+        int i = 0;
+        for (Map.Entry<String, Double> coefficient : definition.coefficients().entrySet()) {
+            String featureName = coefficient.getKey();
+            int separator = featureName.indexOf('.');
+            if (separator < 0) {
+                throw new IllegalStateException("Risk model feature without group: " + featureName);
+            }
+            String group = featureName.substring(0, separator);
+            String name = featureName.substring(separator + 1);
+
+            featureNames[i] = featureName;
+            weights[i] = coefficient.getValue();
+            switch (group) {
+                case "customer" -> {
+                    extractors[i] = customerFeature(name);
+                    components[i] = IDENTITY;
+                }
+                case "merchant" -> {
+                    extractors[i] = merchantFeature(name);
+                    components[i] = TRANSACTION;
+                }
+                case "transaction" -> {
+                    extractors[i] = transactionFeature(name);
+                    components[i] = TRANSACTION;
+                }
+                case "behavioral" -> {
+                    extractors[i] = vectorFeature(FeatureGroup.BEHAVIORAL, name, Input::behavioralFeatures);
+                    components[i] = BEHAVIORAL;
+                }
+                case "historical" -> {
+                    extractors[i] = vectorFeature(FeatureGroup.HISTORICAL, name, Input::historicalPatterns);
+                    components[i] = BEHAVIORAL;
+                }
+                case "geo" -> {
+                    extractors[i] = vectorFeature(FeatureGroup.GEO, name, Input::geoFeatures);
+                    components[i] = GEO;
+                }
+                case "device" -> {
+                    extractors[i] = vectorFeature(FeatureGroup.DEVICE, name, Input::deviceFeatures);
+                    components[i] = DEVICE;
+                }
+                default -> throw new IllegalStateException("Unknown risk model feature group: " + featureName);
+            }
+            i++;
+        }
+
+        Map<String, Double> thresholds = definition.thresholds() != null ? definition.thresholds() : Map.of();
+        return new CompiledModel(
+                definition.version(),
+                definition.intercept(),
+                thresholds.getOrDefault("high", 0.7),
+                thresholds.getOrDefault("medium", 0.4),
+                featureNames,
+                weights,
+                components,
+                extractors);
+    }
+
+    private static ToDoubleFunction<Input> customerFeature(String name) {
+        return switch (name) {
+            case "hasPreviousFraud" -> input -> input.customerData() != null
+                    && Boolean.TRUE.equals(input.customerData().getHasPreviousFraud()) ? 1.0 : 0.0;
+            case "highRiskCategory" -> input -> input.customerData() != null
+                    && "HIGH".equals(input.customerData().getCustomerRiskCategory()) ? 1.0 : 0.0;
+            case "kycUnverified" -> input -> input.customerData() == null
+                    || !"VERIFIED".equals(input.customerData().getKycStatus()) ? 1.0 : 0.0;
+            case "newCustomer" -> input -> input.customerData() == null
+                    || input.customerData().getCustomerTenureMonths() == null
+                    || input.customerData().getCustomerTenureMonths() < 6 ? 1.0 : 0.0;
+            case "tenureMonths" -> input -> input.customerData() != null
+                    && input.customerData().getCustomerTenureMonths() != null
+                    ? input.customerData().getCustomerTenureMonths() : 0.0;
+            case "activityLevel" -> input -> input.customerData() != null
+                    && input.customerData().getAccountActivityLevel() != null
+                    ? input.customerData().getAccountActivityLevel() : 0.0;
+            default -> throw new IllegalStateException("Unknown risk model feature: customer." + name);
+        };
+    }
+
+    private static ToDoubleFunction<Input> merchantFeature(String name) {
+        return switch (name) {
+            case "isHighRiskMerchant" -> input -> input.merchantData() != null
+                    && Boolean.TRUE.equals(input.merchantData().getIsHighRiskMerchant()) ? 1.0 : 0.0;
+            case "isNewMerchant" -> input -> input.merchantData() != null
+                    && Boolean.TRUE.equals(input.merchantData().getIsNewMerchant()) ? 1.0 : 0.0;
+            case "highRiskLevel" -> input -> input.merchantData() != null
+                    && "HIGH".equals(input.merchantData().getMerchantRiskLevel()) ? 1.0 : 0.0;
+            case "fraudRatePercentage" -> input -> input.merchantData() != null
+                    && input.merchantData().getFraudRatePercentage() != null
+                    ? input.merchantData().getFraudRatePercentage() : 0.0;
+            case "foreignCountry" -> input -> input.merchantData() != null
+                    && input.customerData() != null
+                    && input.merchantData().getMerchantCountry() != null
+                    && !input.merchantData().getMerchantCountry().equals(input.customerData().getCountryOfResidence())
+                    ? 1.0 : 0.0;
+            default -> throw new IllegalStateException("Unknown risk model feature: merchant." + name);
+        };
+    }
+
+    private static ToDoubleFunction<Input> transactionFeature(String name) {
+        return switch (name) {
+            case "amount" -> input -> input.transaction().getAmount() != null
+                    ? input.transaction().getAmount().doubleValue() : 0.0;
+            case "logAmount" -> input -> input.transaction().getAmount() != null
+                    ? Math.log1p(Math.max(0.0, input.transaction().getAmount().doubleValue())) : 0.0;
+            default -> throw new IllegalStateException("Unknown risk model feature: transaction." + name);
+        };
+    }
+
+    private static ToDoubleFunction<Input> vectorFeature(
+            FeatureGroup group, String name, Function<Input, FeatureVector> vector) {
+        // Resolved against the schema once, so evaluation reads the slot directly
+        Feature feature = Feature.forKey(group, name);
+        if (feature == null) {
+            throw new IllegalStateException("Unknown risk model feature: " + group.name().toLowerCase() + "." + name);
+        }
+        return input -> {
+            FeatureVector features = vector.apply(input);
+            return features != null ? features.getAsDouble(feature) : 0.0;
+        };
+    }
+
+    private static double sigmoid(double logit) {
+        return 1.0 / (1.0 + Math.exp(-logit));
+    }
+
+    private record ModelDefinition(
+            String modelType,
+            String version,
+            double intercept,
+            Map<String, Double> thresholds,
+            Map<String, Double> coefficients) {
+    }
+
+    private record CompiledModel(
+            String version,
+            double intercept,
+            double highThreshold,
+            double mediumThreshold,
+            String[] featureNames,
+            double[] weights,
+            int[] components,
+            ToDoubleFunction<Input>[] extractors) {
+    }
+
+    private record Input(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.fraudrisk.enrichment.scoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Memoizes remote risk scores in the riskProfiles cache so a redelivered or retried record is not
+// scored again. Keys are the transaction id plus a hash of the transaction as consumed. The rest of
+// the scoring request is left out on purpose: velocity, profile and device features move with every
+// transaction of the customer published in between, so a retry would hardly ever hit. A record whose
+// id is reused for a different payload is still scored afresh, and the cache TTL bounds how long a
+// score is reused.
+@Component
+@Slf4j
+public class RiskScoreCache {
+
+    private static final String CACHE_NAME = "riskProfiles";
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    public RiskScoreCache(CacheManager cacheManager, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+
+        this.hits = meterRegistry.counter("risk.score.cache", "result", "hit");
+        this.misses = meterRegistry.counter("risk.score.cache", "result", "miss");
+        meterRegistry.gauge("risk.score.cache.hit.ratio", this, RiskScoreCache::hitRatio);
+    }
+
+    public String keyFor(Transaction transaction) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(transaction));
+            // 128 bits of the digest are plenty to tell payloads for the same transaction id apart
+            return transaction.getTransactionId() + ":" + HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to hash transaction " + transaction.getTransactionId(), e);
+        }
+    }
+
+    public RiskScore get(String key) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            RiskScore riskScore = cache != null ? cache.get(key, RiskScore.class) : null;
+            (riskScore != null ? hits : misses).increment();
+            return riskScore;
+        } catch (Exception e) {
+            // A cache outage only costs a remote call
+            log.warn("Risk score cache lookup failed for {}: {}", key, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    // A score never changes once computed, so this is a plain fill of both tiers; no invalidation is
+    // broadcast to the other pods
+    public void put(String key, RiskScore riskScore) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            if (cache != null) {
+                cache.put(key, riskScore);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to cache risk score for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private double hitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups > 0 ? hits.count() / lookups : 0.0;
+    }
+}
@@ -0,0 +1,189 @@
+package com.fraudrisk.enrichment.serialization;
+
+import com.fraudrisk.enrichment.avro.BehavioralFeaturesAvro;
+import com.fraudrisk.enrichment.avro.CustomerDataAvro;
+import com.fraudrisk.enrichment.avro.DeviceFeaturesAvro;
+import com.fraudrisk.enrichment.avro.EnrichedTransactionAvro;
+import com.fraudrisk.enrichment.avro.GeoFeaturesAvro;
+import com.fraudrisk.enrichment.avro.HistoricalPatternsAvro;
+import com.fraudrisk.enrichment.avro.MerchantDataAvro;
+import com.fraudrisk.enrichment.avro.RiskScoreAvro;
+import com.fraudrisk.enrichment.avro.TransactionDetailsAvro;
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificRecordBase;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps the enriched transaction onto the generated EnrichedTransaction.avsc classes. Feature
+// vectors are copied slot by slot into their group records, whose field positions are resolved
+// against the compiled schema once.
+public class EnrichedTransactionAvroMapper {
+
+    private static final int[] BEHAVIORAL_POSITIONS =
+            fieldPositions(FeatureGroup.BEHAVIORAL, BehavioralFeaturesAvro.getClassSchema());
+    private static final int[] GEO_POSITIONS =
+            fieldPositions(FeatureGroup.GEO, GeoFeaturesAvro.getClassSchema());
+    private static final int[] DEVICE_POSITIONS =
+            fieldPositions(FeatureGroup.DEVICE, DeviceFeaturesAvro.getClassSchema());
+    private static final int[] HISTORICAL_POSITIONS =
+            fieldPositions(FeatureGroup.HISTORICAL, HistoricalPatternsAvro.getClassSchema());
+
+    public EnrichedTransactionAvro toAvro(EnrichedTransaction enrichedTransaction) {
+        EnrichedTransactionAvro record = new EnrichedTransactionAvro();
+        record.setTransaction(toAvro(enrichedTransaction.getTransaction()));
+        record.setCustomerData(toAvro(enrichedTransaction.getCustomerData()));
+        record.setMerchantData(toAvro(enrichedTransaction.getMerchantData()));
+        record.setRiskScore(toAvro(enrichedTransaction.getRiskScore()));
+        record.setBehavioralFeatures(fill(enrichedTransaction.getBehavioralFeatures(),
+                new BehavioralFeaturesAvro(), BEHAVIORAL_POSITIONS));
+        record.setGeoFeatures(fill(enrichedTransaction.getGeoFeatures(),
+                new GeoFeaturesAvro(), GEO_POSITIONS));
+        record.setDeviceFeatures(fill(enrichedTransaction.getDeviceFeatures(),
+                new DeviceFeaturesAvro(), DEVICE_POSITIONS));
+        record.setHistoricalPatterns(fill(enrichedTransaction.getHistoricalPatterns(),
+                new HistoricalPatternsAvro(), HISTORICAL_POSITIONS));
+        record.setAdditionalFeatures(toAvro(enrichedTransaction.getAdditionalFeatures()));
+        return record;
+    }
+
+    private TransactionDetailsAvro toAvro(Transaction transaction) {
+        TransactionDetailsAvro record = new TransactionDetailsAvro();
+        record.setTransactionId(transaction.getTransactionId());
+        record.setAccountId(transaction.getAccountId());
+        record.setCustomerId(transaction.getCustomerId());
+        record.setMerchantId(transaction.getMerchantId());
+        record.setMerchantName(transaction.getMerchantName());
+        record.setMerchantCategory(transaction.getMerchantCategory());
+        record.setAmount(transaction.getAmount() != null ? transaction.getAmount().doubleValue() : null);
+        record.setCurrency(transaction.getCurrency());
+        record.setCardType(transaction.getCardType());
+        record.setPaymentMethod(transaction.getPaymentMethod());
+        record.setTransactionType(transaction.getTransactionType());
+        record.setTransactionStatus(transaction.getTransactionStatus());
+        record.setTransactionDate(epochMillis(transaction.getTransactionDate()));
+        record.setDeviceId(transaction.getDeviceId());
+        record.setIpAddress(transaction.getIpAddress());
+        record.setLocation(transaction.getLocation());
+        return record;
+    }
+
+    private CustomerDataAvro toAvro(CustomerData customerData) {
+        if (customerData == null) {
+            return null;
+        }
+        CustomerDataAvro record = new CustomerDataAvro();
+        record.setCustomerId(customerData.getCustomerId());
+        record.setCustomerType(customerData.getCustomerType());
+        record.setCustomerTenureMonths(customerData.getCustomerTenureMonths());
+        record.setCustomerRiskCategory(customerData.getCustomerRiskCategory());
+        record.setKycStatus(customerData.getKycStatus());
+        record.setCountryOfResidence(customerData.getCountryOfResidence());
+        record.setLastLoginTime(epochMillis(customerData.getLastLoginTime()));
+        record.setAccountCreationDate(epochMillis(customerData.getAccountCreationDate()));
+        record.setHasPreviousFraud(customerData.getHasPreviousFraud());
+        record.setAccountActivityLevel(customerData.getAccountActivityLevel());
+        return record;
+    }
+
+    private MerchantDataAvro toAvro(MerchantData merchantData) {
+        if (merchantData == null) {
+            return null;
+        }
+        MerchantDataAvro record = new MerchantDataAvro();
+        record.setMerchantId(merchantData.getMerchantId());
+        record.setMerchantName(merchantData.getMerchantName());
+        record.setMerchantCategory(merchantData.getMerchantCategory());
+        record.setMerchantCountry(merchantData.getMerchantCountry());
+        record.setMerchantRiskLevel(merchantData.getMerchantRiskLevel());
+        record.setIsHighRiskMerchant(merchantData.getIsHighRiskMerchant());
+        record.setIsNewMerchant(merchantData.getIsNewMerchant());
+        record.setMerchantTenureDays(merchantData.getMerchantTenureDays());
+        record.setFraudRatePercentage(merchantData.getFraudRatePercentage());
+        return record;
+    }
+
+    private RiskScoreAvro toAvro(RiskScore riskScore) {
+        if (riskScore == null) {
+            return null;
+        }
+        RiskScoreAvro record = new RiskScoreAvro();
+        record.setOverallScore(riskScore.getOverallScore());
+        record.setIdentityRiskScore(riskScore.getIdentityRiskScore());
+        record.setBehavioralRiskScore(riskScore.getBehavioralRiskScore());
+        record.setTransactionRiskScore(riskScore.getTransactionRiskScore());
+        record.setDeviceRiskScore(riskScore.getDeviceRiskScore());
+        record.setGeoLocationRiskScore(riskScore.getGeoLocationRiskScore());
+        record.setComponentScores(riskScore.getComponentScores() != null
+                ? new HashMap<>(riskScore.getComponentScores())
+                : null);
+        record.setRiskLevel(riskScore.getRiskLevel());
+        record.setRiskReason(riskScore.getRiskReason());
+        return record;
+    }
+
+    private Map<String, Object> toAvro(Map<String, Object> additionalFeatures) {
+        if (additionalFeatures == null) {
+            return null;
+        }
+        Map<String, Object> values = new HashMap<>(additionalFeatures.size() * 2);
+        additionalFeatures.forEach((key, value) -> values.put(key, toUnionValue(value)));
+        return values;
+    }
+
+    // Narrows a value to one of the branches of the additionalFeatures union
+    private static Object toUnionValue(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Long
+                || value instanceof Double || value instanceof String) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return value.toString();
+    }
+
+    private static <R extends SpecificRecordBase> R fill(FeatureVector features, R record, int[] positions) {
+        if (features == null) {
+            return null;
+        }
+        List<Feature> schemaFeatures = Feature.featuresOf(features.getGroup());
+        for (int i = 0; i < schemaFeatures.size(); i++) {
+            Feature feature = schemaFeatures.get(i);
+            if (features.has(feature)) {
+                record.put(positions[i], features.get(feature));
+            }
+        }
+        return record;
+    }
+
+    private static int[] fieldPositions(FeatureGroup group, Schema schema) {
+        List<Feature> features = Feature.featuresOf(group);
+        int[] positions = new int[features.size()];
+        for (int i = 0; i < features.size(); i++) {
+            Schema.Field field = schema.getField(features.get(i).getKey());
+            if (field == null) {
+                // The schema has to be extended alongside the Feature enum
+                throw new IllegalStateException("Feature " + features.get(i) + " has no field in " + schema.getFullName());
+            }
+            positions[i] = field.pos();
+        }
+        return positions;
+    }
+
+    private static Long epochMillis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.fraudrisk.enrichment.serialization;
+
+import com.fraudrisk.enrichment.avro.EnrichedTransactionAvro;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+// Value serializer for the producer. Enriched transactions are mapped to the compiled
+// EnrichedTransactionAvro schema and encoded with a per-thread encoder and buffer in the schema
+// registry wire format (magic byte, 4-byte schema id, Avro binary). The first record per topic
+// goes through KafkaAvroSerializer, which registers or looks up the schema; its id is reused after
+// that. Everything else, such as error records, is passed to KafkaAvroSerializer unchanged.
+public class EnrichedTransactionSerializer implements Serializer<Object> {
+
+    private static final byte MAGIC_BYTE = 0x0;
+
+    private final KafkaAvroSerializer delegate = new KafkaAvroSerializer();
+    private final EnrichedTransactionAvroMapper mapper = new EnrichedTransactionAvroMapper();
+    private final SpecificDatumWriter<EnrichedTransactionAvro> datumWriter =
+            new SpecificDatumWriter<>(EnrichedTransactionAvro.getClassSchema());
+    private final ConcurrentMap<String, Integer> schemaIds = new ConcurrentHashMap<>();
+    private final ThreadLocal<EncodingBuffer> buffers = ThreadLocal.withInitial(EncodingBuffer::new);
+
+    // Instantiated by the Kafka client rather than Spring, so metrics go to the global registry
+    private final Timer serializationTimer = Timer.builder("enriched.transaction.serialization")
+            .description("Time to map and encode one enriched transaction")
+            .register(Metrics.globalRegistry);
+    private final DistributionSummary serializedSizes = DistributionSummary.builder("enriched.transaction.serialized.size")
+            .description("Encoded size of one enriched transaction")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (!(data instanceof EnrichedTransaction enrichedTransaction)) {
+            return delegate.serialize(topic, data);
+        }
+
+        long startNanos = System.nanoTime();
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction);
+
+        byte[] bytes;
+        Integer schemaId = schemaIds.get(topic);
+        if (schemaId == null) {
+            bytes = delegate.serialize(topic, record);
+            schemaIds.put(topic, ByteBuffer.wrap(bytes, 1, 4).getInt());
+        } else {
+            bytes = buffers.get().encode(schemaId, record);
+        }
+
+        serializationTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        serializedSizes.record(bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private final class EncodingBuffer {
+
+        // reset() keeps the grown backing array, so steady-state encoding only allocates the result
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        private BinaryEncoder encoder;
+
+        byte[] encode(int schemaId, EnrichedTransactionAvro record) {
+            try {
+                out.reset();
+                out.write(MAGIC_BYTE);
+                out.write(schemaId >>> 24);
+                out.write(schemaId >>> 16);
+                out.write(schemaId >>> 8);
+                out.write(schemaId);
+                encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+                datumWriter.write(record, encoder);
+                encoder.flush();
+                return out.toByteArray();
+            } catch (IOException | RuntimeException e) {
+                throw new SerializationException("Error serializing enriched transaction "
+                        + record.getTransaction().getTransactionId(), e);
+            }
+        }
+    }
+}
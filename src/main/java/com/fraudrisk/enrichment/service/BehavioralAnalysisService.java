@@ -1,89 +1,117 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
 import com.fraudrisk.enrichment.model.Transaction;
-import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.store.VelocityAggregateStore;
+import com.fraudrisk.enrichment.store.VelocityAggregateStore.VelocityAggregates;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class BehavioralAnalysisService {
 
-    private final TransactionRepository transactionRepository;
+    private final VelocityAggregateStore velocityAggregateStore;
 
-    public Map<String, Object> analyzeTransaction(Transaction transaction) {
+    // Answers from the in-memory velocity store; only a customer's first sighting touches the database
+    public FeatureVector analyzeTransaction(Transaction transaction) {
         log.debug("Analyzing behavioral patterns for transaction: {}", transaction.getTransactionId());
 
-        Map<String, Object> features = new HashMap<>();
-
         try {
-            String customerId = transaction.getCustomerId();
+            return buildFeatures(transaction,
+                    velocityAggregateStore.getAggregates(transaction.getCustomerId(), Instant.now()));
+        } catch (Exception e) {
+            return errorFeatures(transaction, e);
+        }
+    }
 
+    // Computes the same windows from a history snapshot when the velocity store is disabled
+    public FeatureVector analyzeTransaction(Transaction transaction, CustomerHistorySnapshot history) {
+        log.debug("Analyzing behavioral patterns for transaction: {}", transaction.getTransactionId());
+
+        try {
             // Calculate time periods for analysis
-            Instant now = Instant.now();
+            Instant now = history.getAsOf();
             Instant oneDayAgo = now.minus(Duration.ofDays(1));
             Instant oneWeekAgo = now.minus(Duration.ofDays(7));
             Instant oneMonthAgo = now.minus(Duration.ofDays(30));
 
-            // Transaction count features
-            long transactionCount24h = transactionRepository.countCustomerTransactionsAfterDate(customerId, oneDayAgo);
-            long transactionCount7d = transactionRepository.countCustomerTransactionsAfterDate(customerId, oneWeekAgo);
-            long transactionCount30d = transactionRepository.countCustomerTransactionsAfterDate(customerId, oneMonthAgo);
-
-            features.put("transactionCount24h", transactionCount24h);
-            features.put("transactionCount7d", transactionCount7d);
-            features.put("transactionCount30d", transactionCount30d);
-
-            // Average transaction amount features
-            Double avgAmount24h = transactionRepository.getAverageTransactionAmount(customerId, oneDayAgo);
-            Double avgAmount7d = transactionRepository.getAverageTransactionAmount(customerId, oneWeekAgo);
-            Double avgAmount30d = transactionRepository.getAverageTransactionAmount(customerId, oneMonthAgo);
-
-            features.put("avgAmount24h", avgAmount24h != null ? avgAmount24h : 0.0);
-            features.put("avgAmount7d", avgAmount7d != null ? avgAmount7d : 0.0);
-            features.put("avgAmount30d", avgAmount30d != null ? avgAmount30d : 0.0);
-
-            // Transaction velocity (transactions per hour)
-            double velocity24h = transactionCount24h / 24.0;
-            double velocity7d = transactionCount7d / (24.0 * 7);
-
-            features.put("velocity24h", velocity24h);
-            features.put("velocity7d", velocity7d);
-
-            // Amount deviation from average
-            BigDecimal currentAmount = transaction.getAmount();
-            if (avgAmount30d != null && avgAmount30d > 0) {
-                double amountDeviation = (currentAmount.doubleValue() - avgAmount30d) / avgAmount30d;
-                features.put("amountDeviation", amountDeviation);
-            } else {
-                features.put("amountDeviation", 0.0);
-            }
-
-            log.debug("Behavioral analysis completed for transaction: {}", transaction.getTransactionId());
+            return buildFeatures(transaction, new VelocityAggregates(
+                    history.countSince(oneDayAgo), history.amountSumSince(oneDayAgo),
+                    history.countSince(oneWeekAgo), history.amountSumSince(oneWeekAgo),
+                    history.countSince(oneMonthAgo), history.amountSumSince(oneMonthAgo)));
         } catch (Exception e) {
-            log.error("Error in behavioral analysis for transaction {}: {}",
-                    transaction.getTransactionId(), e.getMessage(), e);
-            // Add default values in case of error
-            features.put("error", e.getMessage());
-            features.put("transactionCount24h", 0);
-            features.put("transactionCount7d", 0);
-            features.put("transactionCount30d", 0);
-            features.put("avgAmount24h", 0.0);
-            features.put("avgAmount7d", 0.0);
-            features.put("avgAmount30d", 0.0);
-            features.put("velocity24h", 0.0);
-            features.put("velocity7d", 0.0);
-            features.put("amountDeviation", 0.0);
+            return errorFeatures(transaction, e);
+        }
+    }
+
+    private FeatureVector buildFeatures(Transaction transaction, VelocityAggregates aggregates) {
+        FeatureVector features = new FeatureVector(FeatureGroup.BEHAVIORAL);
+
+        // Transaction count features
+        long transactionCount24h = aggregates.count24h();
+        long transactionCount7d = aggregates.count7d();
+        long transactionCount30d = aggregates.count30d();
+
+        features.set(Feature.TRANSACTION_COUNT_24H, transactionCount24h);
+        features.set(Feature.TRANSACTION_COUNT_7D, transactionCount7d);
+        features.set(Feature.TRANSACTION_COUNT_30D, transactionCount30d);
+
+        // Average transaction amount features
+        Double avgAmount24h = aggregates.averageAmount24h();
+        Double avgAmount7d = aggregates.averageAmount7d();
+        Double avgAmount30d = aggregates.averageAmount30d();
+
+        features.set(Feature.AVG_AMOUNT_24H, avgAmount24h != null ? avgAmount24h : 0.0);
+        features.set(Feature.AVG_AMOUNT_7D, avgAmount7d != null ? avgAmount7d : 0.0);
+        features.set(Feature.AVG_AMOUNT_30D, avgAmount30d != null ? avgAmount30d : 0.0);
+
+        // Transaction velocity (transactions per hour)
+        double velocity24h = transactionCount24h / 24.0;
+        double velocity7d = transactionCount7d / (24.0 * 7);
+
+        features.set(Feature.VELOCITY_24H, velocity24h);
+        features.set(Feature.VELOCITY_7D, velocity7d);
+
+        // Amount deviation from average
+        BigDecimal currentAmount = transaction.getAmount();
+        if (avgAmount30d != null && avgAmount30d > 0) {
+            double amountDeviation = (currentAmount.doubleValue() - avgAmount30d) / avgAmount30d;
+            features.set(Feature.AMOUNT_DEVIATION, amountDeviation);
+        } else {
+            features.set(Feature.AMOUNT_DEVIATION, 0.0);
         }
 
+        log.debug("Behavioral analysis completed for transaction: {}", transaction.getTransactionId());
         return features;
     }
+
+    private FeatureVector errorFeatures(Transaction transaction, Exception e) {
+        log.error("Error in behavioral analysis for transaction {}: {}",
+                transaction.getTransactionId(), e.getMessage(), e);
+        // Add default values in case of error
+        return getDefaultFeatures().setError(e.getMessage());
+    }
+
+    // Neutral features used when the analysis fails or misses its deadline
+    public FeatureVector getDefaultFeatures() {
+        return new FeatureVector(FeatureGroup.BEHAVIORAL)
+                .set(Feature.TRANSACTION_COUNT_24H, 0L)
+                .set(Feature.TRANSACTION_COUNT_7D, 0L)
+                .set(Feature.TRANSACTION_COUNT_30D, 0L)
+                .set(Feature.AVG_AMOUNT_24H, 0.0)
+                .set(Feature.AVG_AMOUNT_7D, 0.0)
+                .set(Feature.AVG_AMOUNT_30D, 0.0)
+                .set(Feature.VELOCITY_24H, 0.0)
+                .set(Feature.VELOCITY_7D, 0.0)
+                .set(Feature.AMOUNT_DEVIATION, 0.0);
+    }
 }
\ No newline at end of file
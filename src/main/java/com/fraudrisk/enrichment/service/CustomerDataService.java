@@ -1,12 +1,21 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.cache.TwoTierCache;
+import com.fraudrisk.enrichment.entity.CustomerEntity;
 import com.fraudrisk.enrichment.model.CustomerData;
 import com.fraudrisk.enrichment.repository.CustomerRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
@@ -14,6 +23,7 @@ import java.time.Instant;
 public class CustomerDataService {
 
     private final CustomerRepository customerRepository;
+    private final CacheManager cacheManager;
 
     @Cacheable(value = "customerData", key = "#customerId")
     public CustomerData getCustomerData(String customerId) {
@@ -21,22 +31,73 @@ public class CustomerDataService {
 
         // Retrieve customer from repository
         return customerRepository.findById(customerId)
-                .map(customer -> CustomerData.builder()
-                        .customerId(customer.getCustomerId())
-                        .customerType(customer.getCustomerType())
-                        .customerTenureMonths(customer.getCustomerTenureMonths())
-                        .customerRiskCategory(customer.getRiskCategory())
-                        .kycStatus(customer.getKycStatus())
-                        .countryOfResidence(customer.getCountryOfResidence())
-                        .lastLoginTime(customer.getLastLoginTime())
-                        .accountCreationDate(customer.getAccountCreationDate())
-                        .hasPreviousFraud(customer.getHasPreviousFraud())
-                        .accountActivityLevel(customer.getActivityLevel())
-                        .build())
-                .orElse(createDefaultCustomerData(customerId));
+                .map(this::toCustomerData)
+                .orElseGet(() -> createDefaultCustomerData(customerId));
     }
 
-    private CustomerData createDefaultCustomerData(String customerId) {
+    // Resolves a whole batch of customers with one cache multi-get and one database query for the misses
+    public Map<String, CustomerData> getCustomerDataBulk(Collection<String> customerIds) {
+        Set<String> missing = new LinkedHashSet<>(customerIds);
+        missing.remove(null);
+        Map<String, CustomerData> customers = new HashMap<>(missing.size() * 2);
+
+        Cache cache = cacheManager.getCache("customerData");
+        if (cache instanceof TwoTierCache twoTierCache) {
+            try {
+                twoTierCache.getAll(missing).forEach((customerId, customerData) ->
+                        customers.put((String) customerId, (CustomerData) customerData));
+                missing.removeAll(customers.keySet());
+            } catch (Exception e) {
+                log.warn("Bulk customer cache lookup failed, loading {} customers from database: {}",
+                        missing.size(), e.getMessage());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return customers;
+        }
+
+        log.debug("Fetching {} customers from database", missing.size());
+
+        Map<String, CustomerData> loaded = new HashMap<>(missing.size() * 2);
+        for (CustomerEntity customer : customerRepository.findAllById(missing)) {
+            loaded.put(customer.getCustomerId(), toCustomerData(customer));
+        }
+        for (String customerId : missing) {
+            if (!loaded.containsKey(customerId)) {
+                loaded.put(customerId, createDefaultCustomerData(customerId));
+            }
+        }
+
+        // Cache the loaded customers (defaults included, as getCustomerData does) for later lookups
+        if (cache instanceof TwoTierCache twoTierCache) {
+            try {
+                twoTierCache.putAll(loaded);
+            } catch (Exception e) {
+                log.warn("Failed to cache {} bulk-loaded customers: {}", loaded.size(), e.getMessage());
+            }
+        }
+
+        customers.putAll(loaded);
+        return customers;
+    }
+
+    private CustomerData toCustomerData(CustomerEntity customer) {
+        return CustomerData.builder()
+                .customerId(customer.getCustomerId())
+                .customerType(customer.getCustomerType())
+                .customerTenureMonths(customer.getCustomerTenureMonths())
+                .customerRiskCategory(customer.getRiskCategory())
+                .kycStatus(customer.getKycStatus())
+                .countryOfResidence(customer.getCountryOfResidence())
+                .lastLoginTime(customer.getLastLoginTime())
+                .accountCreationDate(customer.getAccountCreationDate())
+                .hasPreviousFraud(customer.getHasPreviousFraud())
+                .accountActivityLevel(customer.getActivityLevel())
+                .build();
+    }
+
+    public CustomerData createDefaultCustomerData(String customerId) {
         log.warn("Customer data not found for ID: {}, using default values", customerId);
 
         return CustomerData.builder()
@@ -52,4 +113,4 @@ public class CustomerDataService {
                 .accountActivityLevel(0)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot.DailyAggregate;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CustomerHistoryService {
+
+    // Longest window used by any history-based analysis (HistoricalPatternService)
+    public static final int HISTORY_DAYS = 180;
+
+    private static final TypeReference<Map<String, Long>> COUNTS_TYPE = new TypeReference<>() {
+    };
+
+    private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+
+    // Read closed days from the customer_daily_aggregates rollup instead of scanning every raw row
+    @Value("${history.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    public CustomerHistorySnapshot loadSnapshot(String customerId) {
+        log.debug("Loading {}-day history snapshot for customer: {}", HISTORY_DAYS, customerId);
+
+        Instant now = Instant.now();
+        if (!rollupEnabled) {
+            List<Object[]> rows = transactionRepository.findCustomerHistoryRows(
+                    customerId,
+                    now.minus(HISTORY_DAYS, ChronoUnit.DAYS)
+            );
+            return CustomerHistorySnapshot.fromRows(customerId, now, rows);
+        }
+
+        // Raw rows for yesterday and today keep windows of up to 24 hours exact; everything older is
+        // one rollup row per day. Rollup days are dates of the stored local timestamps, so they are
+        // cut in the same zone.
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate rawFromDay = LocalDate.ofInstant(now, zone).minusDays(1);
+        List<Object[]> rows = transactionRepository.findCustomerHistoryRows(
+                customerId,
+                rawFromDay.atStartOfDay(zone).toInstant()
+        );
+        List<Object[]> dayRows = transactionRepository.findCustomerDailyAggregates(
+                customerId,
+                LocalDate.ofInstant(now.minus(HISTORY_DAYS, ChronoUnit.DAYS), zone),
+                rawFromDay
+        );
+
+        List<DailyAggregate> days = new ArrayList<>(dayRows.size());
+        for (Object[] dayRow : dayRows) {
+            LocalDate day = dayRow[0] instanceof LocalDate localDate ? localDate : ((Date) dayRow[0]).toLocalDate();
+            days.add(new DailyAggregate(
+                    day,
+                    day.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    ((Number) dayRow[1]).longValue(),
+                    dayRow[2] != null ? ((Number) dayRow[2]).doubleValue() : 0.0,
+                    parseCounts(dayRow[3]),
+                    parseCounts(dayRow[4]),
+                    parseCounts(dayRow[5])));
+        }
+
+        return CustomerHistorySnapshot.fromRows(customerId, now, days, rows);
+    }
+
+    private Map<String, Long> parseCounts(Object json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json.toString(), COUNTS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed count map in customer_daily_aggregates: " + json, e);
+        }
+    }
+}
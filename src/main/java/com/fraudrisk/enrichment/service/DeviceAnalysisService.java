@@ -1,94 +1,115 @@
 package com.fraudrisk.enrichment.service;
 
-import com.fraudrisk.enrichment.entity.TransactionEntity;
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
 import com.fraudrisk.enrichment.model.Transaction;
-import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.store.DeviceRegistryStore;
+import com.fraudrisk.enrichment.store.DeviceRegistryStore.DeviceUsage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class DeviceAnalysisService {
 
-    private final TransactionRepository transactionRepository;
+    private final DeviceRegistryStore deviceRegistryStore;
 
-    public Map<String, Object> analyzeDevice(Transaction transaction) {
+    // Answers from the in-memory device registry; only a customer's first sighting touches the database
+    public FeatureVector analyzeDevice(Transaction transaction) {
         log.debug("Analyzing device data for transaction: {}", transaction.getTransactionId());
 
-        Map<String, Object> deviceFeatures = new HashMap<>();
-
         try {
             String deviceId = transaction.getDeviceId();
-            String customerId = transaction.getCustomerId();
-
             if (deviceId == null || deviceId.isEmpty()) {
-                deviceFeatures.put("deviceMissing", true);
-                deviceFeatures.put("deviceRiskScore", 0.8); // Higher risk for missing device
-                return deviceFeatures;
+                return missingDeviceFeatures();
             }
+            Instant now = Instant.now();
+            return buildFeatures(transaction,
+                    deviceRegistryStore.getDeviceUsage(transaction.getCustomerId(), deviceId, now), now);
+        } catch (Exception e) {
+            return errorFeatures(transaction, e);
+        }
+    }
 
-            // Get customer's recent transactions
-            List<TransactionEntity> recentTransactions = transactionRepository
-                    .findCustomerTransactionsAfterDate(
-                            customerId,
-                            Instant.now().minus(90, ChronoUnit.DAYS)
-                    );
+    public FeatureVector analyzeDevice(Transaction transaction, CustomerHistorySnapshot history) {
+        log.debug("Analyzing device data for transaction: {}", transaction.getTransactionId());
+
+        try {
+            String deviceId = transaction.getDeviceId();
+            if (deviceId == null || deviceId.isEmpty()) {
+                return missingDeviceFeatures();
+            }
 
-            // Extract device usage patterns
-            List<String> customerDevices = recentTransactions.stream()
-                    .map(TransactionEntity::getDeviceId)
-                    .distinct()
-                    .collect(Collectors.toList());
+            // Summarize the customer's last 90 days of device usage in one pass
+            Instant now = history.getAsOf();
+            CustomerHistorySnapshot.DeviceUsage usage = history.deviceUsageSince(
+                    now.minus(DeviceRegistryStore.WINDOW_DAYS, ChronoUnit.DAYS), deviceId);
+            return buildFeatures(transaction, new DeviceUsage(usage.deviceCount(), usage.transactionCount(),
+                    usage.transactionsWithDevice(), usage.firstSeenMillis()), now);
+        } catch (Exception e) {
+            return errorFeatures(transaction, e);
+        }
+    }
 
-            int deviceCount = customerDevices.size();
-            boolean isKnownDevice = customerDevices.contains(deviceId);
+    private FeatureVector buildFeatures(Transaction transaction, DeviceUsage usage, Instant now) {
+        FeatureVector deviceFeatures = new FeatureVector(FeatureGroup.DEVICE);
 
-            deviceFeatures.put("deviceCount90d", deviceCount);
-            deviceFeatures.put("isKnownDevice", isKnownDevice);
+        long recentTransactionCount = usage.transactionCount();
+        long transactionsWithThisDevice = usage.transactionsWithDevice();
+        long deviceFirstSeenMillis = usage.firstSeenMillis();
 
-            // Device first seen date
-            Instant deviceFirstSeen = recentTransactions.stream()
-                    .filter(t -> deviceId.equals(t.getDeviceId()))
-                    .map(TransactionEntity::getTransactionDate)
-                    .min(Instant::compareTo)
-                    .orElse(Instant.now());
+        int deviceCount = usage.deviceCount();
+        boolean isKnownDevice = transactionsWithThisDevice > 0;
 
-            long deviceAgeInDays = ChronoUnit.DAYS.between(deviceFirstSeen, Instant.now());
-            deviceFeatures.put("deviceAgeInDays", deviceAgeInDays);
+        deviceFeatures.set(Feature.DEVICE_COUNT_90D, deviceCount);
+        deviceFeatures.set(Feature.IS_KNOWN_DEVICE, isKnownDevice);
 
-            // New device risk score
-            double deviceRiskScore = calculateDeviceRiskScore(isKnownDevice, deviceAgeInDays, deviceCount);
-            deviceFeatures.put("deviceRiskScore", deviceRiskScore);
+        // Device first seen date
+        Instant deviceFirstSeen = isKnownDevice ? Instant.ofEpochMilli(deviceFirstSeenMillis) : now;
 
-            // Device consistency score (how consistently the customer uses this device)
-            long transactionsWithThisDevice = recentTransactions.stream()
-                    .filter(t -> deviceId.equals(t.getDeviceId()))
-                    .count();
+        long deviceAgeInDays = ChronoUnit.DAYS.between(deviceFirstSeen, now);
+        deviceFeatures.set(Feature.DEVICE_AGE_IN_DAYS, deviceAgeInDays);
 
-            double deviceConsistency = (double) transactionsWithThisDevice / recentTransactions.size();
-            deviceFeatures.put("deviceConsistency", deviceConsistency);
+        // New device risk score
+        double deviceRiskScore = calculateDeviceRiskScore(isKnownDevice, deviceAgeInDays, deviceCount);
+        deviceFeatures.set(Feature.DEVICE_RISK_SCORE, deviceRiskScore);
 
-            log.debug("Device analysis completed for transaction: {}", transaction.getTransactionId());
-        } catch (Exception e) {
-            log.error("Error in device analysis for transaction {}: {}",
-                    transaction.getTransactionId(), e.getMessage(), e);
-            deviceFeatures.put("error", e.getMessage());
-            deviceFeatures.put("deviceRiskScore", 0.5);
-            deviceFeatures.put("isKnownDevice", false);
-            deviceFeatures.put("deviceCount90d", 1);
-        }
+        // Device consistency score (how consistently the customer uses this device)
+        double deviceConsistency = recentTransactionCount > 0
+                ? Math.min(1.0, (double) transactionsWithThisDevice / recentTransactionCount)
+                : 0.0;
+        deviceFeatures.set(Feature.DEVICE_CONSISTENCY, deviceConsistency);
 
+        log.debug("Device analysis completed for transaction: {}", transaction.getTransactionId());
         return deviceFeatures;
     }
 
+    private FeatureVector missingDeviceFeatures() {
+        return new FeatureVector(FeatureGroup.DEVICE)
+                .set(Feature.DEVICE_MISSING, true)
+                .set(Feature.DEVICE_RISK_SCORE, 0.8); // Higher risk for missing device
+    }
+
+    private FeatureVector errorFeatures(Transaction transaction, Exception e) {
+        log.error("Error in device analysis for transaction {}: {}",
+                transaction.getTransactionId(), e.getMessage(), e);
+        return getDefaultFeatures().setError(e.getMessage());
+    }
+
+    // Medium-risk device features used when the analysis fails or misses its deadline
+    public FeatureVector getDefaultFeatures() {
+        return new FeatureVector(FeatureGroup.DEVICE)
+                .set(Feature.DEVICE_RISK_SCORE, 0.5)
+                .set(Feature.IS_KNOWN_DEVICE, false)
+                .set(Feature.DEVICE_COUNT_90D, 1L);
+    }
+
     private double calculateDeviceRiskScore(boolean isKnownDevice, long deviceAgeInDays, int deviceCount) {
         double baseScore = isKnownDevice ? 0.2 : 0.8;
 
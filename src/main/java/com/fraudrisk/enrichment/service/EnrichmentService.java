@@ -1,12 +1,28 @@
 package com.fraudrisk.enrichment.service;
 
 import com.fraudrisk.enrichment.model.*;
+import com.fraudrisk.enrichment.store.CustomerProfileStore;
+import com.fraudrisk.enrichment.store.DeviceRegistryStore;
+import com.fraudrisk.enrichment.store.VelocityAggregateStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -20,69 +36,289 @@ public class EnrichmentService {
     private final GeoAnalysisService geoAnalysisService;
     private final DeviceAnalysisService deviceAnalysisService;
     private final HistoricalPatternService historicalPatternService;
+    private final CustomerHistoryService customerHistoryService;
+    private final VelocityAggregateStore velocityAggregateStore;
+    private final CustomerProfileStore customerProfileStore;
+    private final DeviceRegistryStore deviceRegistryStore;
+    private final ErrorHandlingService errorHandlingService;
+    private final ExecutorService enrichmentExecutor;
+    private final MeterRegistry meterRegistry;
 
-    public EnrichedTransaction enrichTransaction(Transaction transaction) {
+    @Value("${enrichment.latency-budget-ms:1500}")
+    private long latencyBudgetMs;
+
+    @Value("${enrichment.stage-timeout-ms.customer-data:500}")
+    private long customerDataTimeoutMs;
+
+    @Value("${enrichment.stage-timeout-ms.merchant-data:500}")
+    private long merchantDataTimeoutMs;
+
+    @Value("${enrichment.stage-timeout-ms.behavioral:500}")
+    private long behavioralTimeoutMs;
+
+    @Value("${enrichment.stage-timeout-ms.geo:200}")
+    private long geoTimeoutMs;
+
+    @Value("${enrichment.stage-timeout-ms.device:500}")
+    private long deviceTimeoutMs;
+
+    @Value("${enrichment.stage-timeout-ms.historical:500}")
+    private long historicalTimeoutMs;
+
+    public CompletableFuture<EnrichedTransaction> enrichTransactionAsync(Transaction transaction) {
         log.debug("Enriching transaction: {}", transaction.getTransactionId());
 
         // Parallelize data retrieval for performance
         CompletableFuture<CustomerData> customerDataFuture =
-                CompletableFuture.supplyAsync(() -> customerDataService.getCustomerData(transaction.getCustomerId()));
+                CompletableFuture.supplyAsync(() -> customerDataService.getCustomerData(transaction.getCustomerId()),
+                        enrichmentExecutor);
 
         CompletableFuture<MerchantData> merchantDataFuture =
-                CompletableFuture.supplyAsync(() -> merchantDataService.getMerchantData(transaction.getMerchantId()));
+                CompletableFuture.supplyAsync(() -> merchantDataService.getMerchantData(transaction.getMerchantId()),
+                        enrichmentExecutor);
+
+        // Load the customer's history once and share it between all history-based stages
+        CompletableFuture<CustomerHistorySnapshot> historyFuture = loadHistory(transaction.getCustomerId());
+
+        return enrichAsync(transaction, customerDataFuture, merchantDataFuture, historyFuture);
+    }
+
+    public List<EnrichedTransaction> enrichBatch(List<Transaction> transactions) {
+        log.debug("Enriching batch of {} transactions", transactions.size());
+
+        // Look up each distinct customer, customer history and merchant only once for the whole batch
+        Map<String, CompletableFuture<CustomerData>> customerDataFutures = new HashMap<>();
+        Map<String, CompletableFuture<CustomerHistorySnapshot>> historyFutures = new HashMap<>();
+        Map<String, CompletableFuture<MerchantData>> merchantDataFutures = new HashMap<>();
+
+        // All customers of the batch come from one cache multi-get plus one query for the misses
+        Set<String> customerIds = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            customerIds.add(transaction.getCustomerId());
+        }
+        CompletableFuture<Map<String, CustomerData>> customersFuture = CompletableFuture.supplyAsync(
+                () -> customerDataService.getCustomerDataBulk(customerIds), enrichmentExecutor);
+
+        for (Transaction transaction : transactions) {
+            customerDataFutures.computeIfAbsent(transaction.getCustomerId(), customerId ->
+                    customersFuture.thenApply(customers -> customers.containsKey(customerId)
+                            ? customers.get(customerId)
+                            : customerDataService.createDefaultCustomerData(customerId)));
+            historyFutures.computeIfAbsent(transaction.getCustomerId(), this::loadHistory);
+            merchantDataFutures.computeIfAbsent(transaction.getMerchantId(), merchantId ->
+                    CompletableFuture.supplyAsync(() -> merchantDataService.getMerchantData(merchantId),
+                            enrichmentExecutor));
+        }
+
+        log.debug("Batch of {} transactions resolved to {} customers and {} merchants",
+                transactions.size(), customerDataFutures.size(), merchantDataFutures.size());
+
+        // Run the per-record stages for every transaction in the batch concurrently
+        List<CompletableFuture<EnrichedTransaction>> enrichmentFutures = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            enrichmentFutures.add(enrichAsync(
+                    transaction,
+                    customerDataFutures.get(transaction.getCustomerId()),
+                    merchantDataFutures.get(transaction.getMerchantId()),
+                    historyFutures.get(transaction.getCustomerId())
+            ).handle((enrichedTransaction, throwable) -> {
+                if (throwable != null) {
+                    // A failed record is parked on the retry tiers without failing the rest of the batch;
+                    // the batch is only acknowledged once it is parked, and this throws if it can't be
+                    Exception cause = unwrap(throwable);
+                    log.error("Error enriching transaction {} in batch: {}",
+                            transaction.getTransactionId(), cause.getMessage(), cause);
+                    return errorHandlingService.handleProcessingError(transaction, cause)
+                            .thenApply(ignored -> (EnrichedTransaction) null);
+                }
+                return CompletableFuture.completedFuture(enrichedTransaction);
+            }).thenCompose(Function.identity()));
+        }
+
+        // Collect the successfully enriched transactions in their original order
+        List<EnrichedTransaction> enrichedTransactions = new ArrayList<>(transactions.size());
+        for (CompletableFuture<EnrichedTransaction> enrichmentFuture : enrichmentFutures) {
+            EnrichedTransaction enrichedTransaction = enrichmentFuture.join();
+            if (enrichedTransaction != null) {
+                enrichedTransactions.add(enrichedTransaction);
+            }
+        }
+
+        log.debug("Enriched {} of {} transactions in batch", enrichedTransactions.size(), transactions.size());
+        return enrichedTransactions;
+    }
 
-        CompletableFuture<Map<String, Object>> behavioralFeaturesFuture =
-                CompletableFuture.supplyAsync(() -> behavioralAnalysisService.analyzeTransaction(transaction));
+    private CompletableFuture<EnrichedTransaction> enrichAsync(
+            Transaction transaction,
+            CompletableFuture<CustomerData> customerDataFuture,
+            CompletableFuture<MerchantData> merchantDataFuture,
+            CompletableFuture<CustomerHistorySnapshot> historyFuture) {
 
-        CompletableFuture<Map<String, Object>> geoFeaturesFuture =
-                CompletableFuture.supplyAsync(() -> geoAnalysisService.analyzeLocation(transaction));
+        // Every stage gets its own timeout, bounded by what is left of the transaction's latency budget
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyBudgetMs);
+        Set<String> timedOutStages = ConcurrentHashMap.newKeySet();
 
-        CompletableFuture<Map<String, Object>> deviceFeaturesFuture =
-                CompletableFuture.supplyAsync(() -> deviceAnalysisService.analyzeDevice(transaction));
+        CompletableFuture<CustomerData> boundedCustomerDataFuture = withDeadline(
+                customerDataFuture, "customerData", customerDataTimeoutMs, deadlineNanos, timedOutStages,
+                () -> customerDataService.createDefaultCustomerData(transaction.getCustomerId()));
 
-        CompletableFuture<Map<String, Object>> historicalPatternsFuture =
-                CompletableFuture.supplyAsync(() -> historicalPatternService.getHistoricalPatterns(transaction));
+        CompletableFuture<MerchantData> boundedMerchantDataFuture = withDeadline(
+                merchantDataFuture, "merchantData", merchantDataTimeoutMs, deadlineNanos, timedOutStages,
+                () -> merchantDataService.createDefaultMerchantData(transaction.getMerchantId()));
 
-        // Wait for all futures to complete
-        CompletableFuture.allOf(
-                customerDataFuture,
-                merchantDataFuture,
+        // Velocity features come from the in-memory store and don't wait for the history snapshot
+        CompletableFuture<FeatureVector> behavioralFeaturesFuture = withDeadline(
+                velocityAggregateStore.isEnabled()
+                        ? CompletableFuture.supplyAsync(
+                                () -> behavioralAnalysisService.analyzeTransaction(transaction), enrichmentExecutor)
+                        : analyzeHistory(historyFuture,
+                                history -> behavioralAnalysisService.analyzeTransaction(transaction, history),
+                                behavioralAnalysisService::getDefaultFeatures),
+                "behavioralFeatures", behavioralTimeoutMs, deadlineNanos, timedOutStages,
+                behavioralAnalysisService::getDefaultFeatures);
+
+        CompletableFuture<FeatureVector> geoFeaturesFuture = withDeadline(
+                CompletableFuture.supplyAsync(() -> geoAnalysisService.analyzeLocation(transaction),
+                        enrichmentExecutor),
+                "geoFeatures", geoTimeoutMs, deadlineNanos, timedOutStages,
+                geoAnalysisService::getDefaultFeatures);
+
+        // Device features come from the in-memory device registry rather than a 90-day scan
+        CompletableFuture<FeatureVector> deviceFeaturesFuture = withDeadline(
+                deviceRegistryStore.isEnabled()
+                        ? CompletableFuture.supplyAsync(
+                                () -> deviceAnalysisService.analyzeDevice(transaction), enrichmentExecutor)
+                        : analyzeHistory(historyFuture,
+                                history -> deviceAnalysisService.analyzeDevice(transaction, history),
+                                deviceAnalysisService::getDefaultFeatures),
+                "deviceFeatures", deviceTimeoutMs, deadlineNanos, timedOutStages,
+                deviceAnalysisService::getDefaultFeatures);
+
+        // Historical patterns come from the customer's precomputed profile rather than the raw snapshot
+        CompletableFuture<FeatureVector> historicalPatternsFuture = withDeadline(
+                customerProfileStore.isEnabled()
+                        ? CompletableFuture.supplyAsync(() -> historicalPatternService.getHistoricalPatterns(
+                                transaction, customerProfileStore.getProfile(transaction.getCustomerId())),
+                                enrichmentExecutor)
+                        : analyzeHistory(historyFuture,
+                                history -> historicalPatternService.getHistoricalPatterns(transaction, history),
+                                historicalPatternService::getDefaultPatterns),
+                "historicalPatterns", historicalTimeoutMs, deadlineNanos, timedOutStages,
+                historicalPatternService::getDefaultPatterns);
+
+        // Wait for all futures to complete, then score and assemble the enriched transaction
+        return CompletableFuture.allOf(
+                boundedCustomerDataFuture,
+                boundedMerchantDataFuture,
                 behavioralFeaturesFuture,
                 geoFeaturesFuture,
                 deviceFeaturesFuture,
                 historicalPatternsFuture
-        ).join();
-
-        // Extract results from futures
-        CustomerData customerData = customerDataFuture.join();
-        MerchantData merchantData = merchantDataFuture.join();
-        Map<String, Object> behavioralFeatures = behavioralFeaturesFuture.join();
-        Map<String, Object> geoFeatures = geoFeaturesFuture.join();
-        Map<String, Object> deviceFeatures = deviceFeaturesFuture.join();
-        Map<String, Object> historicalPatterns = historicalPatternsFuture.join();
-
-        // Calculate risk score based on all the enriched data
-        RiskScore riskScore = riskScoringService.calculateRiskScore(
-                transaction,
-                customerData,
-                merchantData,
-                behavioralFeatures,
-                geoFeatures,
-                deviceFeatures,
-                historicalPatterns
-        );
-
-        // Build and return the enriched transaction
-        return EnrichedTransaction.builder()
-                .transaction(transaction)
-                .customerData(customerData)
-                .merchantData(merchantData)
-                .riskScore(riskScore)
-                .behavioralFeatures(behavioralFeatures)
-                .geoFeatures(geoFeatures)
-                .deviceFeatures(deviceFeatures)
-                .historicalPatterns(historicalPatterns)
-                .additionalFeatures(new HashMap<>())
-                .build();
+        ).thenCompose(ignored -> {
+            // Extract results from futures
+            CustomerData customerData = boundedCustomerDataFuture.join();
+            MerchantData merchantData = boundedMerchantDataFuture.join();
+            FeatureVector behavioralFeatures = behavioralFeaturesFuture.join();
+            FeatureVector geoFeatures = geoFeaturesFuture.join();
+            FeatureVector deviceFeatures = deviceFeaturesFuture.join();
+            FeatureVector historicalPatterns = historicalPatternsFuture.join();
+
+            // Calculate risk score based on all the enriched data; no enrichment thread
+            // is held while the risk service answers. Scoring only gets what is left of the latency
+            // budget; past it the transaction gets the circuit breaker's fallback score instead.
+            CompletableFuture<RiskScore> riskScoreFuture = withDeadline(
+                    riskScoringService.calculateRiskScoreAsync(
+                            transaction,
+                            customerData,
+                            merchantData,
+                            behavioralFeatures,
+                            geoFeatures,
+                            deviceFeatures,
+                            historicalPatterns),
+                    "riskScore", Long.MAX_VALUE, deadlineNanos, timedOutStages,
+                    () -> riskScoringService.calculateFallbackRiskScore(
+                            transaction, customerData, merchantData,
+                            behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns,
+                            new TimeoutException("Latency budget exhausted before the risk score arrived")));
+
+            return riskScoreFuture.thenApplyAsync(riskScore -> {
+                // Flag every stage that fell back to its defaults because it missed its deadline
+                Map<String, Object> additionalFeatures = new HashMap<>();
+                for (String stage : timedOutStages) {
+                    additionalFeatures.put(stage + "TimedOut", true);
+                }
+
+                // Build and return the enriched transaction
+                return EnrichedTransaction.builder()
+                        .transaction(transaction)
+                        .customerData(customerData)
+                        .merchantData(merchantData)
+                        .riskScore(riskScore)
+                        .behavioralFeatures(behavioralFeatures)
+                        .geoFeatures(geoFeatures)
+                        .deviceFeatures(deviceFeatures)
+                        .historicalPatterns(historicalPatterns)
+                        .additionalFeatures(additionalFeatures)
+                        .build();
+            }, enrichmentExecutor);
+        });
+    }
+
+    // The snapshot is only read when a stage isn't served by its in-memory store
+    private CompletableFuture<CustomerHistorySnapshot> loadHistory(String customerId) {
+        if (velocityAggregateStore.isEnabled() && customerProfileStore.isEnabled() && deviceRegistryStore.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> customerHistoryService.loadSnapshot(customerId),
+                enrichmentExecutor);
+    }
+
+    private CompletableFuture<FeatureVector> analyzeHistory(
+            CompletableFuture<CustomerHistorySnapshot> historyFuture,
+            Function<CustomerHistorySnapshot, FeatureVector> analysis,
+            Supplier<FeatureVector> defaultFeatures) {
+
+        return historyFuture.handleAsync((history, throwable) -> {
+            if (throwable != null) {
+                // Same outcome as an analysis that failed on its own query: defaults plus the error
+                return defaultFeatures.get().setError(unwrap(throwable).getMessage());
+            }
+            return analysis.apply(history);
+        }, enrichmentExecutor);
+    }
+
+    private <T> CompletableFuture<T> withDeadline(
+            CompletableFuture<T> stageFuture,
+            String stage,
+            long stageTimeoutMs,
+            long deadlineNanos,
+            Set<String> timedOutStages,
+            Supplier<T> defaultValue) {
+
+        long remainingBudgetMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        long timeoutMs = Math.max(0L, Math.min(stageTimeoutMs, remainingBudgetMs));
+
+        // Work on a copy so a timeout never completes a lookup future shared by other records in a batch
+        return stageFuture.copy()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("Enrichment stage {} timed out after {} ms, using default features", stage, timeoutMs);
+                        meterRegistry.counter("enrichment.stage.timeouts", "stage", stage).increment();
+                        timedOutStages.add(stage);
+                        return defaultValue.get();
+                    }
+                    throw throwable instanceof CompletionException
+                            ? (CompletionException) throwable
+                            : new CompletionException(throwable);
+                });
+    }
+
+    private Exception unwrap(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
     }
-}
\ No newline at end of file
+}
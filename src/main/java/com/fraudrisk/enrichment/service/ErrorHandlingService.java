@@ -1,41 +1,86 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.kafka.RetryTopics;
 import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ErrorHandlingService {
 
-    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final RetryTopics retryTopics;
+    private final MeterRegistry meterRegistry;
 
     @Value("${kafka.topics.errors}")
     private String errorsTopic;
 
-    public void handleProcessingError(Transaction transaction, Exception exception) {
+    public CompletableFuture<Void> handleProcessingError(Transaction transaction, Exception exception) {
+        return handleProcessingError(transaction, exception, 0);
+    }
+
+    // Parks the transaction on the next retry tier, or the dead-letter topic once the tiers are used up,
+    // and reports the failure on the errors topic. Nothing waits on the broker here: sends are queued on
+    // the producer, which batches them, and the returned future completes once the transaction is parked.
+    // It fails if the transaction could not be parked; the caller must then leave the record's offset
+    // uncommitted so it is consumed again.
+    public CompletableFuture<Void> handleProcessingError(Transaction transaction, Exception exception,
+                                                         int previousAttempts) {
         String transactionId = transaction.getTransactionId();
-        log.error("Handling error for transaction: {}", transactionId, exception);
+        int failedAttempts = previousAttempts + 1;
+        RetryTopics.Tier tier = retryTopics.tierAfter(failedAttempts);
+        String destination = tier != null ? tier.topic() : retryTopics.getDeadLetterTopic();
+        log.error("Handling error for transaction {} (attempt {}), routing to {}",
+                transactionId, failedAttempts, destination, exception);
+
+        ProducerRecord<String, Object> retryRecord = new ProducerRecord<>(destination, transactionId, transaction);
+        RetryTopics.putHeader(retryRecord.headers(), RetryTopics.ATTEMPT_HEADER, failedAttempts);
+        RetryTopics.putHeader(retryRecord.headers(), RetryTopics.ERROR_TYPE_HEADER, exception.getClass().getSimpleName());
+        RetryTopics.putHeader(retryRecord.headers(), RetryTopics.ERROR_MESSAGE_HEADER, exception.getMessage());
+        if (tier != null) {
+            RetryTopics.putHeader(retryRecord.headers(), RetryTopics.NOT_BEFORE_HEADER,
+                    System.currentTimeMillis() + tier.delayMillis());
+        }
+        meterRegistry.counter("enrichment.errors.routed",
+                "destination", tier != null ? "retry-" + tier.index() : "dead-letter").increment();
 
         Map<String, Object> errorMessage = new HashMap<>();
         errorMessage.put("transactionId", transactionId);
         errorMessage.put("timestamp", System.currentTimeMillis());
         errorMessage.put("errorMessage", exception.getMessage());
         errorMessage.put("errorType", exception.getClass().getSimpleName());
+        errorMessage.put("attempt", failedAttempts);
+        errorMessage.put("destination", destination);
         errorMessage.put("transaction", transaction);
 
-        try {
-            kafkaTemplate.send(errorsTopic, transactionId, errorMessage).get();
-            log.debug("Published error message for transaction: {}", transactionId);
-        } catch (Exception e) {
-            log.error("Failed to publish error message for transaction {}: {}",
-                    transactionId, e.getMessage(), e);
-        }
+        // The error report is informational; only parking the transaction is waited for
+        kafkaTemplate.send(errorsTopic, transactionId, errorMessage)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("Failed to publish error message for transaction {}: {}",
+                                transactionId, throwable.getMessage(), throwable);
+                    }
+                });
+
+        return kafkaTemplate.send(retryRecord)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("Failed to route transaction {} to {}: {}",
+                                transactionId, destination, throwable.getMessage(), throwable);
+                    } else {
+                        log.debug("Routed transaction {} to {}", transactionId, destination);
+                    }
+                })
+                .thenApply(result -> null);
     }
-}
\ No newline at end of file
+}
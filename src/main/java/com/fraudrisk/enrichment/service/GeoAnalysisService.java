@@ -1,19 +1,42 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.GeoLocation;
 import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.store.GeoZoneIndex;
+import com.fraudrisk.enrichment.store.IpRangeIndex;
+import com.fraudrisk.enrichment.store.IpReputationStore;
+import com.fraudrisk.enrichment.store.LastLocationStore;
+import com.fraudrisk.enrichment.store.LastLocationStore.LastLocation;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.HashMap;
-import java.util.Map;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class GeoAnalysisService {
 
-    public Map<String, Object> analyzeLocation(Transaction transaction) {
+    private static final long MIN_ELAPSED_SECONDS = 60L;
+
+    private final IpReputationStore ipReputationStore;
+    private final GeoZoneIndex geoZoneIndex;
+    private final LastLocationStore lastLocationStore;
+
+    // Anything faster than a commercial flight over a real distance counts as impossible travel
+    @Value("${geo.velocity.max-speed-kmh:900}")
+    private double maxTravelSpeedKmh;
+
+    @Value("${geo.velocity.min-distance-km:100}")
+    private double minImpossibleTravelDistanceKm;
+
+    public FeatureVector analyzeLocation(Transaction transaction) {
         log.debug("Analyzing geo location data for transaction: {}", transaction.getTransactionId());
 
-        Map<String, Object> geoFeatures = new HashMap<>();
+        FeatureVector geoFeatures = new FeatureVector(FeatureGroup.GEO);
 
         try {
             String location = transaction.getLocation();
@@ -21,52 +44,99 @@ public class GeoAnalysisService {
 
             // Parse location data (assuming format like "country:city:lat:long")
             if (location != null && !location.isEmpty()) {
-                String[] locationParts = location.split(":");
-                if (locationParts.length >= 4) {
-                    String country = locationParts[0];
-                    String city = locationParts[1];
-                    double latitude = Double.parseDouble(locationParts[2]);
-                    double longitude = Double.parseDouble(locationParts[3]);
-
-                    geoFeatures.put("country", country);
-                    geoFeatures.put("city", city);
-                    geoFeatures.put("latitude", latitude);
-                    geoFeatures.put("longitude", longitude);
+                GeoLocation geoLocation = GeoLocation.parse(location);
+                if (geoLocation != null) {
+                    String country = geoLocation.country();
+                    double latitude = geoLocation.latitude();
+                    double longitude = geoLocation.longitude();
 
-                    // Determine if this is a high-risk country
-                    geoFeatures.put("isHighRiskCountry", isHighRiskCountry(country));
+                    geoFeatures.set(Feature.COUNTRY, country);
+                    geoFeatures.set(Feature.CITY, geoLocation.city());
+                    geoFeatures.set(Feature.LATITUDE, latitude);
+                    geoFeatures.set(Feature.LONGITUDE, longitude);
 
-                    // Add timezone info based on location
-                    geoFeatures.put("timezone", estimateTimezone(longitude));
+                    // Determine if this is a high-risk country
+                    geoFeatures.set(Feature.IS_HIGH_RISK_COUNTRY, isHighRiskCountry(country));
+
+                    // Country and time zone from the coordinates; outside the known regions the
+                    // zone is estimated from the longitude
+                    GeoZoneIndex.Region region = geoZoneIndex.resolve(latitude, longitude);
+                    if (region != null) {
+                        geoFeatures.set(Feature.RESOLVED_COUNTRY, region.country());
+                        geoFeatures.set(Feature.TIMEZONE, region.zone().getId());
+                    } else {
+                        geoFeatures.set(Feature.TIMEZONE, estimateTimezone(longitude));
+                    }
+
+                    // Travel since the customer's previous located transaction
+                    if (lastLocationStore.isEnabled() && transaction.getTransactionDate() != null) {
+                        addTravelFeatures(geoFeatures, transaction, geoLocation);
+                    }
                 }
             } else {
-                geoFeatures.put("locationMissing", true);
+                geoFeatures.set(Feature.LOCATION_MISSING, true);
             }
 
-            // IP address analysis
+            // IP address analysis against the local range index; no network involved
             if (ipAddress != null && !ipAddress.isEmpty()) {
-                // In a real implementation, this would use a geo-IP database or service
-                // Here we're doing a simple check for demo purposes
-                geoFeatures.put("ipType", determineIpType(ipAddress));
-                geoFeatures.put("isTorExit", isTorExitNode(ipAddress));
-                geoFeatures.put("isProxy", isProxy(ipAddress));
-                geoFeatures.put("ipRiskScore", calculateIpRiskScore(ipAddress));
+                long reputation = ipReputationStore.lookup(ipAddress);
+                if (reputation == IpRangeIndex.UNPARSEABLE) {
+                    geoFeatures.set(Feature.IP_TYPE, "INVALID");
+                    geoFeatures.set(Feature.IP_RISK_SCORE, 0.5);
+                } else {
+                    int flags = IpRangeIndex.flags(reputation);
+                    geoFeatures.set(Feature.IP_TYPE, (flags & IpRangeIndex.NON_PUBLIC) != 0 ? "PRIVATE" : "PUBLIC");
+                    geoFeatures.set(Feature.IS_TOR_EXIT, (flags & IpRangeIndex.TOR_EXIT) != 0);
+                    geoFeatures.set(Feature.IS_PROXY, (flags & IpRangeIndex.PROXY) != 0);
+                    geoFeatures.set(Feature.IS_HOSTING, (flags & IpRangeIndex.HOSTING) != 0);
+                    geoFeatures.set(Feature.IP_RISK_SCORE, calculateIpRiskScore(flags, IpRangeIndex.riskScore(reputation)));
+                }
             } else {
-                geoFeatures.put("ipMissing", true);
+                geoFeatures.set(Feature.IP_MISSING, true);
             }
 
             log.debug("Geo analysis completed for transaction: {}", transaction.getTransactionId());
         } catch (Exception e) {
             log.error("Error in geo analysis for transaction {}: {}",
                     transaction.getTransactionId(), e.getMessage(), e);
-            geoFeatures.put("error", e.getMessage());
-            geoFeatures.put("isHighRiskCountry", false);
-            geoFeatures.put("ipRiskScore", 0.5);
+            geoFeatures.setAll(getDefaultFeatures());
+            geoFeatures.setError(e.getMessage());
         }
 
         return geoFeatures;
     }
 
+    private void addTravelFeatures(FeatureVector geoFeatures, Transaction transaction, GeoLocation geoLocation) {
+        LastLocation previous = lastLocationStore.getLastLocation(
+                transaction.getCustomerId(), transaction.getTransactionId(), transaction.getTransactionDate());
+        if (previous == null) {
+            return;
+        }
+
+        double distanceKm = GeoLocation.distanceKm(previous.latitude(), previous.longitude(),
+                geoLocation.latitude(), geoLocation.longitude());
+        long elapsedSeconds = Math.max(0L,
+                (transaction.getTransactionDate().toEpochMilli() - previous.epochMillis()) / 1000L);
+        // A floor on the elapsed time keeps near-simultaneous transactions from implying infinite speed
+        double impliedSpeedKmh = distanceKm / (Math.max(elapsedSeconds, MIN_ELAPSED_SECONDS) / 3600.0);
+
+        geoFeatures.set(Feature.DISTANCE_FROM_LAST_KM, distanceKm);
+        geoFeatures.set(Feature.SECONDS_SINCE_LAST_LOCATION, elapsedSeconds);
+        geoFeatures.set(Feature.IMPLIED_SPEED_KMH, impliedSpeedKmh);
+        geoFeatures.set(Feature.COUNTRY_CHANGED,
+                LastLocationStore.countryCode(geoLocation.country()) != previous.countryCode());
+        // Short hops are left out: city-level coordinates put nearby places tens of kilometres apart
+        geoFeatures.set(Feature.IMPOSSIBLE_TRAVEL,
+                distanceKm > minImpossibleTravelDistanceKm && impliedSpeedKmh > maxTravelSpeedKmh);
+    }
+
+    // Medium-risk geo features used when the analysis fails or misses its deadline
+    public FeatureVector getDefaultFeatures() {
+        return new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.IS_HIGH_RISK_COUNTRY, false)
+                .set(Feature.IP_RISK_SCORE, 0.5);
+    }
+
     private boolean isHighRiskCountry(String country) {
         // In a real implementation, this would check against a list of high-risk countries
         // For demo purposes, we're checking a few examples
@@ -78,36 +148,16 @@ public class GeoAnalysisService {
     }
 
     private String estimateTimezone(double longitude) {
-        // Simple timezone estimation based on longitude
-        // In a real implementation, would use a proper timezone database
-        int timezoneHours = (int) Math.round(longitude / 15.0);
+        int timezoneHours = GeoZoneIndex.nauticalOffset(longitude).getTotalSeconds() / 3600;
         return "GMT" + (timezoneHours >= 0 ? "+" : "") + timezoneHours;
     }
 
-    private String determineIpType(String ipAddress) {
-        if (ipAddress.startsWith("192.168.") ||
-                ipAddress.startsWith("10.") ||
-                ipAddress.startsWith("172.16.")) {
-            return "PRIVATE";
-        }
-        return "PUBLIC";
-    }
-
-    private boolean isTorExitNode(String ipAddress) {
-        // In a real implementation, this would check against a Tor exit node database
-        // For demo purposes, we're returning false
-        return false;
-    }
-
-    private boolean isProxy(String ipAddress) {
-        // In a real implementation, this would check against a proxy database
-        // For demo purposes, we're doing a simple check
-        return ipAddress.startsWith("34.") || ipAddress.contains(".tor.");
-    }
-
-    private double calculateIpRiskScore(String ipAddress) {
-        // In a real implementation, this would calculate a risk score based on IP reputation
-        // For demo purposes, we're returning a random score
-        return 0.2; // Default low score
+    // The listed score, raised to a floor for each reputation flag the address carries
+    private double calculateIpRiskScore(int flags, double listedScore) {
+        double score = Math.max(0.2, listedScore); // Default low score
+        if ((flags & IpRangeIndex.TOR_EXIT) != 0) score = Math.max(score, 0.9);
+        if ((flags & IpRangeIndex.PROXY) != 0) score = Math.max(score, 0.7);
+        if ((flags & IpRangeIndex.HOSTING) != 0) score = Math.max(score, 0.5);
+        return score;
     }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.model.CustomerHistorySnapshot;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
 import com.fraudrisk.enrichment.model.Transaction;
-import com.fraudrisk.enrichment.entity.TransactionEntity;
-import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.store.CustomerProfile;
+import com.fraudrisk.enrichment.store.GeoZoneIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -11,113 +15,142 @@ import java.time.DayOfWeek;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class HistoricalPatternService {
 
-    private final TransactionRepository transactionRepository;
+    private final GeoZoneIndex geoZoneIndex;
 
-    public Map<String, Object> getHistoricalPatterns(Transaction transaction) {
+    public FeatureVector getHistoricalPatterns(Transaction transaction, CustomerHistorySnapshot history) {
         log.debug("Analyzing historical patterns for transaction: {}", transaction.getTransactionId());
 
-        Map<String, Object> patterns = new HashMap<>();
-
         try {
-            String customerId = transaction.getCustomerId();
-            String merchantId = transaction.getMerchantId();
-            String merchantCategory = transaction.getMerchantCategory();
-            BigDecimal amount = transaction.getAmount();
-            Instant transactionDate = transaction.getTransactionDate();
-            LocalDateTime localTransactionTime = LocalDateTime.ofInstant(transactionDate, ZoneId.systemDefault());
-
-            // Get customer's historical transactions from the last 6 months
-            List<TransactionEntity> customerHistory = transactionRepository
-                    .findCustomerTransactionsAfterDate(
-                            customerId,
-                            Instant.now().minus(180, ChronoUnit.DAYS)
-                    );
-
-            if (customerHistory.isEmpty()) {
-                patterns.put("noHistory", true);
-                patterns.put("historyRiskScore", 0.7); // Higher risk for no history
-                return patterns;
+            // The snapshot holds the customer's transactions from the last 6 months; merchant and
+            // category familiarity cover rows and rolled-up days alike
+            if (history.isEmpty()) {
+                return noHistoryPatterns();
             }
+            return buildPatterns(transaction, new HistorySummary(
+                    history.hasMerchant(transaction.getMerchantId()),
+                    history.hasMerchantCategory(transaction.getMerchantCategory()),
+                    history.amountSum() / history.size(),
+                    history.dayOfWeekCounts(localZone(transaction))));
+        } catch (Exception e) {
+            return errorPatterns(transaction, e);
+        }
+    }
 
-            // Check if customer has transacted with this merchant before
-            boolean hasTransactedWithMerchant = customerHistory.stream()
-                    .anyMatch(t -> merchantId.equals(t.getMerchantId()));
-            patterns.put("hasTransactedWithMerchant", hasTransactedWithMerchant);
-
-            // Check if customer has transacted in this merchant category before
-            boolean hasTransactedInCategory = customerHistory.stream()
-                    .anyMatch(t -> merchantCategory.equals(t.getMerchantCategory()));
-            patterns.put("hasTransactedInCategory", hasTransactedInCategory);
-
-            // Get typical transaction amount
-            double avgAmount = customerHistory.stream()
-                    .map(TransactionEntity::getAmount)
-                    .mapToDouble(BigDecimal::doubleValue)
-                    .average()
-                    .orElse(0.0);
-            patterns.put("averageAmount", avgAmount);
-
-            // Calculate amount deviation from average
-            double amountDeviation = amount.doubleValue() / avgAmount - 1.0;
-            patterns.put("amountDeviation", amountDeviation);
-
-            // Typical transaction day and time patterns
-            Map<DayOfWeek, Long> dayOfWeekCounts = customerHistory.stream()
-                    .collect(Collectors.groupingBy(
-                            t -> LocalDateTime.ofInstant(t.getTransactionDate(), ZoneId.systemDefault()).getDayOfWeek(),
-                            Collectors.counting()
-                    ));
-
-            // Get most common day of week
-            DayOfWeek mostCommonDay = dayOfWeekCounts.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(null);
-            patterns.put("mostCommonDay", mostCommonDay != null ? mostCommonDay.toString() : "UNKNOWN");
-
-            // Check if current transaction is on a typical day
-            boolean isTypicalDay = mostCommonDay == localTransactionTime.getDayOfWeek();
-            patterns.put("isTypicalDay", isTypicalDay);
-
-            // Time of day analysis
-            int hourOfDay = localTransactionTime.getHour();
-            boolean isNightTime = hourOfDay >= 22 || hourOfDay <= 5;
-            patterns.put("isNightTime", isNightTime);
-
-            // Calculate overall pattern risk score
-            double patternRiskScore = calculatePatternRiskScore(
-                    hasTransactedWithMerchant,
-                    hasTransactedInCategory,
-                    amountDeviation,
-                    isTypicalDay,
-                    isNightTime
-            );
-            patterns.put("patternRiskScore", patternRiskScore);
-
-            log.debug("Historical pattern analysis completed for transaction: {}", transaction.getTransactionId());
+    // Same features from the customer's precomputed profile. Merchant familiarity is exact while the
+    // customer has used at most 32 merchants, and past that comes from a Bloom filter with about 1% false
+    // positives. Category familiarity is exact for the listed categories and up to 8 others; once more
+    // unlisted ones have been seen, an unlisted category is answered as familiar.
+    public FeatureVector getHistoricalPatterns(Transaction transaction, CustomerProfile profile) {
+        log.debug("Analyzing historical patterns from profile for transaction: {}", transaction.getTransactionId());
+
+        try {
+            if (profile.isEmpty()) {
+                return noHistoryPatterns();
+            }
+            return buildPatterns(transaction, new HistorySummary(
+                    profile.mightHaveMerchant(transaction.getMerchantId()),
+                    profile.mightHaveCategory(transaction.getMerchantCategory()),
+                    profile.getAverageAmount(),
+                    profile.dayOfWeekCounts()));
         } catch (Exception e) {
-            log.error("Error in historical pattern analysis for transaction {}: {}",
-                    transaction.getTransactionId(), e.getMessage(), e);
-            patterns.put("error", e.getMessage());
-            patterns.put("patternRiskScore", 0.5);
-            patterns.put("hasTransactedWithMerchant", false);
-            patterns.put("hasTransactedInCategory", false);
+            return errorPatterns(transaction, e);
         }
+    }
+
+    private FeatureVector buildPatterns(Transaction transaction, HistorySummary summary) {
+        FeatureVector patterns = new FeatureVector(FeatureGroup.HISTORICAL);
+
+        BigDecimal amount = transaction.getAmount();
+        Instant transactionDate = transaction.getTransactionDate();
+        LocalDateTime localTransactionTime = LocalDateTime.ofInstant(transactionDate, localZone(transaction));
+
+        boolean hasTransactedWithMerchant = summary.hasMerchant();
+        boolean hasTransactedInCategory = summary.hasCategory();
+
+        patterns.set(Feature.HAS_TRANSACTED_WITH_MERCHANT, hasTransactedWithMerchant);
+        patterns.set(Feature.HAS_TRANSACTED_IN_CATEGORY, hasTransactedInCategory);
+
+        // Get typical transaction amount
+        double avgAmount = summary.averageAmount();
+        patterns.set(Feature.AVERAGE_AMOUNT, avgAmount);
+
+        // Calculate amount deviation from average
+        double amountDeviation = amount.doubleValue() / avgAmount - 1.0;
+        patterns.set(Feature.HISTORICAL_AMOUNT_DEVIATION, amountDeviation);
 
+        // Typical transaction day and time patterns
+        long[] dayOfWeekCounts = summary.dayOfWeekCounts();
+
+        // Get most common day of week
+        DayOfWeek mostCommonDay = null;
+        long mostCommonDayCount = 0;
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (dayOfWeekCounts[day.ordinal()] > mostCommonDayCount) {
+                mostCommonDay = day;
+                mostCommonDayCount = dayOfWeekCounts[day.ordinal()];
+            }
+        }
+        patterns.set(Feature.MOST_COMMON_DAY, mostCommonDay != null ? mostCommonDay.toString() : "UNKNOWN");
+
+        // Check if current transaction is on a typical day
+        boolean isTypicalDay = mostCommonDay == localTransactionTime.getDayOfWeek();
+        patterns.set(Feature.IS_TYPICAL_DAY, isTypicalDay);
+
+        // Time of day analysis
+        int hourOfDay = localTransactionTime.getHour();
+        boolean isNightTime = hourOfDay >= 22 || hourOfDay <= 5;
+        patterns.set(Feature.IS_NIGHT_TIME, isNightTime);
+
+        // Calculate overall pattern risk score
+        double patternRiskScore = calculatePatternRiskScore(
+                hasTransactedWithMerchant,
+                hasTransactedInCategory,
+                amountDeviation,
+                isTypicalDay,
+                isNightTime
+        );
+        patterns.set(Feature.PATTERN_RISK_SCORE, patternRiskScore);
+
+        log.debug("Historical pattern analysis completed for transaction: {}", transaction.getTransactionId());
         return patterns;
     }
 
+    // Day and time features are judged in the zone of the transaction's location, falling back to the
+    // service's zone for transactions without a usable location. The two history sources count past days
+    // differently. The profile buckets each past transaction in the zone of its own location. The snapshot
+    // buckets its raw rows in this transaction's zone, and with the rollup on takes every day before
+    // yesterday as the rollup stores it: a date in the service's zone. Both agree for a customer who stays
+    // in the service's zone; otherwise transactions near midnight can land on different days.
+    private ZoneId localZone(Transaction transaction) {
+        return geoZoneIndex.zoneOf(transaction.getLocation());
+    }
+
+    private FeatureVector noHistoryPatterns() {
+        return new FeatureVector(FeatureGroup.HISTORICAL)
+                .set(Feature.NO_HISTORY, true)
+                .set(Feature.HISTORY_RISK_SCORE, 0.7); // Higher risk for no history
+    }
+
+    private FeatureVector errorPatterns(Transaction transaction, Exception e) {
+        log.error("Error in historical pattern analysis for transaction {}: {}",
+                transaction.getTransactionId(), e.getMessage(), e);
+        return getDefaultPatterns().setError(e.getMessage());
+    }
+
+    // Medium-risk patterns used when the analysis fails or misses its deadline
+    public FeatureVector getDefaultPatterns() {
+        return new FeatureVector(FeatureGroup.HISTORICAL)
+                .set(Feature.PATTERN_RISK_SCORE, 0.5)
+                .set(Feature.HAS_TRANSACTED_WITH_MERCHANT, false)
+                .set(Feature.HAS_TRANSACTED_IN_CATEGORY, false);
+    }
+
     private double calculatePatternRiskScore(
             boolean hasTransactedWithMerchant,
             boolean hasTransactedInCategory,
@@ -142,4 +175,8 @@ public class HistoricalPatternService {
         // Cap at 1.0
         return Math.min(score, 1.0);
     }
-}
\ No newline at end of file
+
+    private record HistorySummary(boolean hasMerchant, boolean hasCategory, double averageAmount,
+                                  long[] dayOfWeekCounts) {
+    }
+}
@@ -2,9 +2,11 @@ package com.fraudrisk.enrichment.service;
 
 import com.fraudrisk.enrichment.model.MerchantData;
 import com.fraudrisk.enrichment.repository.MerchantRepository;
+import com.fraudrisk.enrichment.store.MerchantReferenceStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -13,28 +15,34 @@ import org.springframework.stereotype.Service;
 public class MerchantDataService {
 
     private final MerchantRepository merchantRepository;
+    private final MerchantReferenceStore merchantReferenceStore;
+    private final CacheManager cacheManager;
 
-    @Cacheable(value = "merchantData", key = "#merchantId")
     public MerchantData getMerchantData(String merchantId) {
+        // Served from the in-memory reference snapshot without touching the cache or database
+        MerchantData merchantData = merchantReferenceStore.get(merchantId);
+        if (merchantData != null) {
+            return merchantData;
+        }
+
+        // Not in the snapshot yet (or the snapshot isn't loaded): fall back to the cached lookup
+        Cache merchantCache = cacheManager.getCache("merchantData");
+        if (merchantCache == null) {
+            return loadMerchantData(merchantId);
+        }
+        return merchantCache.get(merchantId, () -> loadMerchantData(merchantId));
+    }
+
+    private MerchantData loadMerchantData(String merchantId) {
         log.debug("Fetching merchant data for: {}", merchantId);
 
         // Retrieve merchant from repository
         return merchantRepository.findById(merchantId)
-                .map(merchant -> MerchantData.builder()
-                        .merchantId(merchant.getMerchantId())
-                        .merchantName(merchant.getMerchantName())
-                        .merchantCategory(merchant.getMerchantCategory())
-                        .merchantCountry(merchant.getMerchantCountry())
-                        .merchantRiskLevel(merchant.getRiskLevel())
-                        .isHighRiskMerchant(merchant.isHighRisk())
-                        .isNewMerchant(merchant.getTenureDays() < 90)
-                        .merchantTenureDays(merchant.getTenureDays())
-                        .fraudRatePercentage(merchant.getFraudRatePercentage())
-                        .build())
-                .orElse(createDefaultMerchantData(merchantId));
+                .map(MerchantReferenceStore::toMerchantData)
+                .orElseGet(() -> createDefaultMerchantData(merchantId));
     }
 
-    private MerchantData createDefaultMerchantData(String merchantId) {
+    public MerchantData createDefaultMerchantData(String merchantId) {
         log.warn("Merchant data not found for ID: {}, using default values", merchantId);
 
         return MerchantData.builder()
@@ -49,4 +57,4 @@ public class MerchantDataService {
                 .fraudRatePercentage(0.0f)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,10 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.client.RiskScoringClient;
 import com.fraudrisk.enrichment.model.*;
+import com.fraudrisk.enrichment.scoring.LocalRiskModel;
+import com.fraudrisk.enrichment.scoring.RiskScoreCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +13,7 @@ import org.springframework.web.client.RestTemplate;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -16,32 +21,130 @@ import java.util.Map;
 public class RiskScoringService {
 
     private final RestTemplate restTemplate;
+    private final RiskScoringClient riskScoringClient;
+    private final LocalRiskModel localRiskModel;
+    private final RiskScoreCache riskScoreCache;
+    private final MeterRegistry meterRegistry;
 
     @Value("${risk-service.url}")
     private String riskServiceUrl;
 
+    // sync: blocking RestTemplate call; async: one non-blocking call per transaction;
+    // batch: non-blocking, micro-batched calls to the batch endpoint
+    @Value("${risk-service.client-mode:async}")
+    private String clientMode;
+
+    // primary: score in-process and skip the remote call; shadow: use the remote score and compare
+    // it with the local one; fallback: local score only when the remote service fails; disabled: rules only
+    @Value("${risk-model.mode:fallback}")
+    private String modelMode;
+
+    @CircuitBreaker(name = "riskScoringService", fallbackMethod = "calculateFallbackRiskScoreAsync")
+    public CompletableFuture<RiskScore> calculateRiskScoreAsync(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+
+        if ("primary".equalsIgnoreCase(modelMode) && localRiskModel.isAvailable()) {
+            return CompletableFuture.completedFuture(localRiskModel.score(
+                    transaction, customerData, merchantData,
+                    behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns));
+        }
+
+        // A redelivered or retried record reuses the score it got the first time
+        String cacheKey = riskScoreCache.keyFor(transaction);
+        RiskScore cachedRiskScore = riskScoreCache.get(cacheKey);
+        if (cachedRiskScore != null) {
+            log.debug("Using cached risk score for transaction: {}", transaction.getTransactionId());
+            return CompletableFuture.completedFuture(cachedRiskScore);
+        }
+
+        CompletableFuture<RiskScore> remoteRiskScoreFuture = calculateRemoteRiskScoreAsync(
+                transaction, customerData, merchantData,
+                behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
+
+        remoteRiskScoreFuture.thenAccept(remoteRiskScore -> riskScoreCache.put(cacheKey, remoteRiskScore));
+
+        if ("shadow".equalsIgnoreCase(modelMode) && localRiskModel.isAvailable()) {
+            remoteRiskScoreFuture.thenAccept(remoteRiskScore -> compareWithLocalModel(
+                    remoteRiskScore, transaction, customerData, merchantData,
+                    behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns));
+        }
+
+        return remoteRiskScoreFuture;
+    }
+
+    private CompletableFuture<RiskScore> calculateRemoteRiskScoreAsync(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+
+        if ("sync".equalsIgnoreCase(clientMode)) {
+            return CompletableFuture.completedFuture(calculateRiskScore(
+                    transaction, customerData, merchantData,
+                    behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns));
+        }
+
+        log.debug("Calculating risk score asynchronously for transaction: {}", transaction.getTransactionId());
+
+        Map<String, Object> riskRequest = createRiskRequest(
+                transaction, customerData, merchantData,
+                behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
+
+        CompletableFuture<RiskScore> riskScoreFuture = "batch".equalsIgnoreCase(clientMode)
+                ? riskScoringClient.scoreBatched(riskRequest)
+                : riskScoringClient.score(riskRequest);
+
+        return riskScoreFuture.thenApply(riskScore -> {
+            if (riskScore == null) {
+                log.error("Received null risk score from service for transaction: {}",
+                        transaction.getTransactionId());
+                return createDefaultRiskScore(transaction);
+            }
+            return riskScore;
+        });
+    }
+
+    public CompletableFuture<RiskScore> calculateFallbackRiskScoreAsync(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns,
+            Exception e) {
+
+        return CompletableFuture.completedFuture(calculateFallbackRiskScore(
+                transaction, customerData, merchantData,
+                behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns, e));
+    }
+
     @CircuitBreaker(name = "riskScoringService", fallbackMethod = "calculateFallbackRiskScore")
     public RiskScore calculateRiskScore(
             Transaction transaction,
             CustomerData customerData,
             MerchantData merchantData,
-            Map<String, Object> behavioralFeatures,
-            Map<String, Object> geoFeatures,
-            Map<String, Object> deviceFeatures,
-            Map<String, Object> historicalPatterns) {
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
 
         log.debug("Calculating risk score for transaction: {}", transaction.getTransactionId());
 
         try {
             // Create the request payload with all the data
-            Map<String, Object> riskRequest = new HashMap<>();
-            riskRequest.put("transaction", transaction);
-            riskRequest.put("customerData", customerData);
-            riskRequest.put("merchantData", merchantData);
-            riskRequest.put("behavioralFeatures", behavioralFeatures);
-            riskRequest.put("geoFeatures", geoFeatures);
-            riskRequest.put("deviceFeatures", deviceFeatures);
-            riskRequest.put("historicalPatterns", historicalPatterns);
+            Map<String, Object> riskRequest = createRiskRequest(
+                    transaction, customerData, merchantData,
+                    behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
 
             // Call the external risk scoring service
             RiskScore riskScore = restTemplate.postForObject(
@@ -66,32 +169,100 @@ public class RiskScoringService {
         }
     }
 
+    private void compareWithLocalModel(
+            RiskScore remoteRiskScore,
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+
+        if (remoteRiskScore == null || remoteRiskScore.getOverallScore() == null) {
+            return;
+        }
+        try {
+            RiskScore localRiskScore = localRiskModel.score(
+                    transaction, customerData, merchantData,
+                    behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
+
+            boolean agree = localRiskScore.getRiskLevel().equals(remoteRiskScore.getRiskLevel());
+            meterRegistry.counter("risk.model.shadow.comparisons",
+                    "agreement", agree ? "agree" : "disagree").increment();
+            meterRegistry.summary("risk.model.shadow.score.delta")
+                    .record(Math.abs(localRiskScore.getOverallScore() - remoteRiskScore.getOverallScore()));
+
+            if (!agree) {
+                log.debug("Local model scored transaction {} as {} ({}), risk service as {} ({})",
+                        transaction.getTransactionId(),
+                        localRiskScore.getRiskLevel(), localRiskScore.getOverallScore(),
+                        remoteRiskScore.getRiskLevel(), remoteRiskScore.getOverallScore());
+            }
+        } catch (Exception e) {
+            // Shadow scoring must never affect the published score
+            log.warn("Shadow scoring failed for transaction {}: {}", transaction.getTransactionId(), e.getMessage());
+        }
+    }
+
+    // Payload posted to the risk service
+    public Map<String, Object> createRiskRequest(
+            Transaction transaction,
+            CustomerData customerData,
+            MerchantData merchantData,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns) {
+
+        Map<String, Object> riskRequest = new HashMap<>();
+        riskRequest.put("transaction", transaction);
+        riskRequest.put("customerData", customerData);
+        riskRequest.put("merchantData", merchantData);
+        riskRequest.put("behavioralFeatures", behavioralFeatures);
+        riskRequest.put("geoFeatures", geoFeatures);
+        riskRequest.put("deviceFeatures", deviceFeatures);
+        riskRequest.put("historicalPatterns", historicalPatterns);
+        return riskRequest;
+    }
+
     public RiskScore calculateFallbackRiskScore(
             Transaction transaction,
             CustomerData customerData,
             MerchantData merchantData,
-            Map<String, Object> behavioralFeatures,
-            Map<String, Object> geoFeatures,
-            Map<String, Object> deviceFeatures,
-            Map<String, Object> historicalPatterns,
+            FeatureVector behavioralFeatures,
+            FeatureVector geoFeatures,
+            FeatureVector deviceFeatures,
+            FeatureVector historicalPatterns,
             Exception e) {
 
         log.warn("Using fallback risk scoring for transaction {}: {}",
                 transaction.getTransactionId(), e.getMessage());
 
-        // Simple fallback logic - could be enhanced with a local ML model
+        // Prefer the local model; the simple rules below only apply if it is disabled or failed to load
+        if (!"disabled".equalsIgnoreCase(modelMode) && localRiskModel.isAvailable()) {
+            try {
+                return localRiskModel.score(
+                        transaction, customerData, merchantData,
+                        behavioralFeatures, geoFeatures, deviceFeatures, historicalPatterns);
+            } catch (Exception modelException) {
+                log.error("Local risk model failed for transaction {}, using fallback rules: {}",
+                        transaction.getTransactionId(), modelException.getMessage(), modelException);
+            }
+        }
+
         double riskScore = 0.5; // Medium risk by default
 
         // Adjust based on few key factors
-        if (customerData.getHasPreviousFraud()) {
+        if (customerData != null && Boolean.TRUE.equals(customerData.getHasPreviousFraud())) {
             riskScore += 0.3;
         }
 
-        if (merchantData.getIsHighRiskMerchant()) {
+        if (merchantData != null && Boolean.TRUE.equals(merchantData.getIsHighRiskMerchant())) {
             riskScore += 0.2;
         }
 
-        if (merchantData.getIsNewMerchant()) {
+        if (merchantData != null && Boolean.TRUE.equals(merchantData.getIsNewMerchant())) {
             riskScore += 0.1;
         }
 
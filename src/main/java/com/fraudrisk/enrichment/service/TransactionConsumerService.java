@@ -1,36 +1,222 @@
 package com.fraudrisk.enrichment.service;
 
+import com.fraudrisk.enrichment.kafka.KeyOrderedScheduler;
+import com.fraudrisk.enrichment.kafka.PartitionOffsetTracker;
+import com.fraudrisk.enrichment.kafka.RecentTransactionFilter;
 import com.fraudrisk.enrichment.model.Transaction;
 import com.fraudrisk.enrichment.model.EnrichedTransaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class TransactionConsumerService {
+public class TransactionConsumerService implements ConsumerSeekAware {
+
+    // Pause before a batch whose failed records could not be parked is consumed again
+    private static final Duration REDELIVERY_BACKOFF = Duration.ofSeconds(1);
 
     private final EnrichmentService enrichmentService;
     private final TransactionProducerService producerService;
     private final ErrorHandlingService errorHandlingService;
+    private final PartitionOffsetTracker partitionOffsetTracker;
+    private final KeyOrderedScheduler keyOrderedScheduler;
+    private final RecentTransactionFilter recentTransactionFilter;
+    private final ExecutorService handoffExecutor;
+
+    // Seek callbacks of the record-mode consumers, used to rewind a partition to a record that was lost
+    private final Map<TopicPartition, ConsumerSeekCallback> seekCallbacks = new ConcurrentHashMap<>();
+
+    @KafkaListener(
+            topics = "${kafka.topics.input}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{'${kafka.consumer.mode:record}' == 'record'}")
+    public void consumeTransaction(ConsumerRecord<String, Transaction> record,
+                                   Acknowledgment acknowledgment) throws InterruptedException {
+        Transaction transaction = record.value();
+        log.debug("Received transaction: {}", transaction.getTransactionId());
+
+        // Waits while too many records of this partition are unfinished
+        if (!partitionOffsetTracker.begin(record, acknowledgment)) {
+            log.debug("Skipping transaction {} behind a rewind", transaction.getTransactionId());
+            return;
+        }
+
+        // Enrich and publish without waiting, so the producer can batch sends of consecutive records;
+        // the offset is committed once this and every earlier record of the partition is done
+        enrichAndPublish(transaction)
+                .whenCompleteAsync((sendResult, throwable) -> complete(record, throwable), handoffExecutor);
+    }
 
-    @KafkaListener(topics = "${kafka.topics.input}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeTransaction(Transaction transaction) {
+    @KafkaListener(
+            topics = "${kafka.topics.input}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{'${kafka.consumer.mode:record}' == 'key-ordered'}")
+    public void consumeTransactionKeyOrdered(ConsumerRecord<String, Transaction> record,
+                                             Acknowledgment acknowledgment) throws InterruptedException {
+        Transaction transaction = record.value();
         log.debug("Received transaction: {}", transaction.getTransactionId());
 
+        if (!partitionOffsetTracker.begin(record, acknowledgment)) {
+            log.debug("Skipping transaction {} behind a rewind", transaction.getTransactionId());
+            return;
+        }
+
+        // Like record mode, but a customer's transactions are enriched and published one after another,
+        // in partition order; different customers in the same partition still run concurrently
+        keyOrderedScheduler.submit(transaction.getCustomerId(), () -> enrichAndPublish(transaction))
+                .whenCompleteAsync((sendResult, throwable) -> complete(record, throwable), handoffExecutor);
+    }
+
+    @KafkaListener(
+            topics = "${kafka.topics.input}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${kafka.consumer.mode:record}' == 'batch'}")
+    public void consumeTransactionBatch(List<ConsumerRecord<String, Transaction>> records,
+                                        Acknowledgment acknowledgment) {
+        log.debug("Received batch of {} transactions", records.size());
+
+        List<Transaction> transactions = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Transaction> record : records) {
+            Transaction transaction = record.value();
+            // Transactions already enriched and published recently are committed without another pass
+            if (recentTransactionFilter.isDuplicate(transaction.getTransactionId())) {
+                log.debug("Skipping duplicate transaction: {}", transaction.getTransactionId());
+                continue;
+            }
+            transactions.add(transaction);
+        }
+
+        // Enrich the whole poll at once; failed records are already parked on the retry tiers
+        List<EnrichedTransaction> enrichedTransactions;
         try {
-            // Enrich the transaction with additional data
-            EnrichedTransaction enrichedTransaction = enrichmentService.enrichTransaction(transaction);
+            enrichedTransactions = enrichmentService.enrichBatch(transactions);
+        } catch (CompletionException e) {
+            // Nothing has been published yet; consume the whole batch again rather than lose the record
+            log.error("Could not park a failed transaction of the batch, redelivering it: {}", e.getMessage(), e);
+            acknowledgment.nack(0, REDELIVERY_BACKOFF);
+            return;
+        }
+
+        Map<Transaction, Integer> recordIndexes = new IdentityHashMap<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            recordIndexes.put(records.get(i).value(), i);
+        }
 
-            // Publish the enriched transaction to the output topic
-            producerService.publishEnrichedTransaction(enrichedTransaction);
+        // Send all enriched transactions before waiting so the producer can batch them together
+        List<CompletableFuture<?>> sendFutures = new ArrayList<>(enrichedTransactions.size());
+        for (EnrichedTransaction enrichedTransaction : enrichedTransactions) {
+            Transaction transaction = enrichedTransaction.getTransaction();
+            sendFutures.add(producerService.sendEnrichedTransaction(enrichedTransaction)
+                    .thenAccept(sendResult -> recentTransactionFilter.markPublished(transaction.getTransactionId()))
+                    .exceptionallyComposeAsync(throwable -> {
+                        // Off the producer's I/O thread, which the error publish itself needs
+                        Exception cause = unwrap(throwable);
+                        log.error("Error publishing enriched transaction {}: {}",
+                                transaction.getTransactionId(), cause.getMessage(), cause);
+                        return errorHandlingService.handleProcessingError(transaction, cause);
+                    }, handoffExecutor));
+        }
+        CompletableFuture.allOf(sendFutures.toArray(new CompletableFuture[0])).exceptionally(throwable -> null).join();
 
+        // A record that was neither published nor parked is consumed again, along with everything after it
+        int firstLost = records.size();
+        for (int i = 0; i < sendFutures.size(); i++) {
+            if (sendFutures.get(i).isCompletedExceptionally()) {
+                firstLost = Math.min(firstLost, recordIndexes.get(enrichedTransactions.get(i).getTransaction()));
+            }
+        }
+        if (firstLost < records.size()) {
+            log.error("Could not publish or park transaction {}, redelivering the batch from it",
+                    records.get(firstLost).value().getTransactionId());
+            acknowledgment.nack(firstLost, REDELIVERY_BACKOFF);
+            return;
+        }
+
+        acknowledgment.acknowledge();
+
+        log.debug("Successfully processed batch of {} transactions ({} enriched)",
+                records.size(), enrichedTransactions.size());
+    }
+
+    private CompletableFuture<SendResult<String, EnrichedTransaction>> enrichAndPublish(Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        if (recentTransactionFilter.isDuplicate(transactionId)) {
+            // Already enriched and published recently (redelivery or upstream duplicate)
+            log.debug("Skipping duplicate transaction: {}", transactionId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return enrichmentService.enrichTransactionAsync(transaction)
+                .thenCompose(producerService::sendEnrichedTransaction)
+                .whenComplete((sendResult, throwable) -> {
+                    if (throwable == null) {
+                        recentTransactionFilter.markPublished(transactionId);
+                    }
+                });
+    }
+
+    // Parks a failed record on the first retry tier; the record stops holding back its partition's offset
+    // once it is published or parked. A record that can't be parked either is consumed again.
+    private void complete(ConsumerRecord<String, Transaction> record, Throwable throwable) {
+        Transaction transaction = record.value();
+        if (throwable == null) {
             log.debug("Successfully processed transaction: {}", transaction.getTransactionId());
-        } catch (Exception e) {
-            log.error("Error processing transaction {}: {}", transaction.getTransactionId(), e.getMessage(), e);
-            errorHandlingService.handleProcessingError(transaction, e);
+            partitionOffsetTracker.complete(record);
+            return;
+        }
+
+        Exception cause = unwrap(throwable);
+        log.error("Error processing transaction {}: {}", transaction.getTransactionId(), cause.getMessage(), cause);
+        errorHandlingService.handleProcessingError(transaction, cause)
+                .whenComplete((ignored, routingFailure) -> {
+                    if (routingFailure == null) {
+                        partitionOffsetTracker.complete(record);
+                        return;
+                    }
+                    ConsumerSeekCallback seekCallback =
+                            seekCallbacks.get(new TopicPartition(record.topic(), record.partition()));
+                    if (seekCallback != null) {
+                        partitionOffsetTracker.fail(record, seekCallback);
+                    }
+                    // Without a callback the partition has moved; its new owner consumes the record again
+                });
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition partition : assignments.keySet()) {
+            seekCallbacks.put(partition, callback);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(seekCallbacks::remove);
+    }
+
+    private Exception unwrap(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+}
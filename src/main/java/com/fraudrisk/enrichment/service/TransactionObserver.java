@@ -0,0 +1,12 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.model.Transaction;
+
+// Notified by TransactionProducerService once an enriched transaction has been published, so
+// in-process state stores can be updated as transactions stream through without an extra database
+// round-trip. Retries and redeliveries can publish a transaction more than once, so observers must
+// ignore a transaction they have already applied.
+public interface TransactionObserver {
+
+    void onTransactionEnriched(Transaction transaction);
+}
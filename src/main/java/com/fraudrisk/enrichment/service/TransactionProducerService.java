@@ -5,7 +5,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 @Service
 @Slf4j
@@ -13,20 +17,35 @@ import org.springframework.stereotype.Service;
 public class TransactionProducerService {
 
     private final KafkaTemplate<String, EnrichedTransaction> kafkaTemplate;
+    private final List<TransactionObserver> transactionObservers;
+    private final ExecutorService handoffExecutor;
 
     @Value("${kafka.topics.enriched}")
     private String enrichedTransactionsTopic;
 
-    public void publishEnrichedTransaction(EnrichedTransaction enrichedTransaction) {
+    public CompletableFuture<SendResult<String, EnrichedTransaction>> sendEnrichedTransaction(
+            EnrichedTransaction enrichedTransaction) {
         String transactionId = enrichedTransaction.getTransaction().getTransactionId();
-        log.debug("Publishing enriched transaction: {}", transactionId);
+        log.debug("Sending enriched transaction: {}", transactionId);
 
-        try {
-            kafkaTemplate.send(enrichedTransactionsTopic, transactionId, enrichedTransaction).get();
-            log.debug("Successfully published enriched transaction: {}", transactionId);
-        } catch (Exception e) {
-            log.error("Error publishing enriched transaction {}: {}", transactionId, e.getMessage(), e);
-            throw new RuntimeException("Failed to publish enriched transaction", e);
+        // Observers run off the producer's I/O thread, and only for a send that succeeded
+        return kafkaTemplate.send(enrichedTransactionsTopic, transactionId, enrichedTransaction)
+                .thenApplyAsync(result -> {
+                    notifyObservers(enrichedTransaction);
+                    return result;
+                }, handoffExecutor);
+    }
+
+    // Lets the in-process stores account for a published transaction in later enrichments. A failing
+    // observer is only logged: the transaction is already out, and failing the send would re-route it.
+    private void notifyObservers(EnrichedTransaction enrichedTransaction) {
+        for (TransactionObserver observer : transactionObservers) {
+            try {
+                observer.onTransactionEnriched(enrichedTransaction.getTransaction());
+            } catch (RuntimeException e) {
+                log.error("Transaction observer {} failed for transaction {}: {}", observer.getClass().getSimpleName(),
+                        enrichedTransaction.getTransaction().getTransactionId(), e.getMessage(), e);
+            }
         }
     }
 }
@@ -0,0 +1,129 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.kafka.RecentTransactionFilter;
+import com.fraudrisk.enrichment.kafka.RetryTopics;
+import com.fraudrisk.enrichment.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+// Consumes the retry tier topics, one listener container per tier so a long tier never holds up a
+// short one. Each tier topic is in failure order, so when the head record is not due yet the
+// partition is paused until it is, without blocking the consumer or anything else in the service.
+@Service
+@Slf4j
+public class TransactionRetryConsumerService implements SmartLifecycle {
+
+    private final EnrichmentService enrichmentService;
+    private final TransactionProducerService producerService;
+    private final ErrorHandlingService errorHandlingService;
+    private final RecentTransactionFilter recentTransactionFilter;
+    private final RetryTopics retryTopics;
+    private final ConcurrentKafkaListenerContainerFactory<?, ?> containerFactory;
+    private final boolean enabled;
+    private final String groupId;
+    private final List<ConcurrentMessageListenerContainer<?, ?>> containers = new ArrayList<>();
+    private volatile boolean running;
+
+    public TransactionRetryConsumerService(
+            EnrichmentService enrichmentService,
+            TransactionProducerService producerService,
+            ErrorHandlingService errorHandlingService,
+            RecentTransactionFilter recentTransactionFilter,
+            RetryTopics retryTopics,
+            @Qualifier("retryKafkaListenerContainerFactory") ConcurrentKafkaListenerContainerFactory<?, ?> containerFactory,
+            @Value("${kafka.retry.enabled:true}") boolean enabled,
+            @Value("${spring.kafka.consumer.group-id}") String groupId) {
+        this.enrichmentService = enrichmentService;
+        this.producerService = producerService;
+        this.errorHandlingService = errorHandlingService;
+        this.recentTransactionFilter = recentTransactionFilter;
+        this.retryTopics = retryTopics;
+        this.containerFactory = containerFactory;
+        this.enabled = enabled;
+        this.groupId = groupId;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        for (RetryTopics.Tier tier : retryTopics.getTiers()) {
+            ConcurrentMessageListenerContainer<?, ?> container = containerFactory.createContainer(tier.topic());
+            container.getContainerProperties().setGroupId(groupId);
+            container.setBeanName("retryListener-" + tier.topic());
+            container.setupMessageListener((AcknowledgingMessageListener<String, Transaction>)
+                    (record, acknowledgment) -> consumeRetry(tier, record, acknowledgment));
+            container.start();
+            containers.add(container);
+            log.info("Started retry listener for {} ({} ms delay)", tier.topic(), tier.delayMillis());
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        for (ConcurrentMessageListenerContainer<?, ?> container : containers) {
+            container.stop();
+        }
+        containers.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void consumeRetry(RetryTopics.Tier tier, ConsumerRecord<String, Transaction> record,
+                              Acknowledgment acknowledgment) {
+        long waitMillis = RetryTopics.notBefore(record.headers()) - System.currentTimeMillis();
+        if (waitMillis > 0) {
+            // Redelivered once due; the pause is capped in case the header was written with a longer delay
+            acknowledgment.nack(Duration.ofMillis(Math.min(waitMillis, tier.delayMillis())));
+            return;
+        }
+
+        Transaction transaction = record.value();
+        int previousAttempts = RetryTopics.attempts(record.headers());
+        log.debug("Retrying transaction {} (attempt {})", transaction.getTransactionId(), previousAttempts + 1);
+
+        if (recentTransactionFilter.isDuplicate(transaction.getTransactionId())) {
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        try {
+            enrichmentService.enrichTransactionAsync(transaction)
+                    .thenCompose(producerService::sendEnrichedTransaction)
+                    .join();
+            recentTransactionFilter.markPublished(transaction.getTransactionId());
+            log.debug("Successfully retried transaction: {}", transaction.getTransactionId());
+        } catch (RuntimeException e) {
+            Exception cause = e instanceof CompletionException && e.getCause() instanceof Exception
+                    ? (Exception) e.getCause()
+                    : e;
+            log.error("Retry of transaction {} failed: {}", transaction.getTransactionId(), cause.getMessage(), cause);
+            try {
+                errorHandlingService.handleProcessingError(transaction, cause, previousAttempts).join();
+            } catch (CompletionException routingFailure) {
+                // Neither published nor parked; keep the offset and try the record again after the tier's delay
+                acknowledgment.nack(Duration.ofMillis(tier.delayMillis()));
+                return;
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+}
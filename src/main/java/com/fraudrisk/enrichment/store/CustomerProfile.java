@@ -0,0 +1,273 @@
+package com.fraudrisk.enrichment.store;
+
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+// Compact summary of a customer's transactions for the historical pattern features: count and
+// running amount statistics, the merchants and categories used, a 7x24 day-of-week/hour histogram
+// in each transaction's local time, and the last transaction ids applied, so a redelivered
+// transaction isn't counted twice.
+// Merchants are held exactly (as 64-bit fingerprints) up to EXACT_MERCHANTS, and past that answered
+// from a Bloom filter sized for EXPECTED_MERCHANTS at a 1% false-positive rate. Known categories
+// have a bit each; a few others are held exactly, and any beyond those can only be answered "maybe".
+// Encodes to a fixed-size record, so it can be stored and updated as a single Redis value.
+// Membership answers may be false positives, never false negatives.
+public final class CustomerProfile {
+
+    private static final byte FORMAT_VERSION = 2;
+
+    private static final int EXACT_MERCHANTS = 32;
+    // Distinct merchants of a busy customer over the 180-day profile window
+    private static final int EXPECTED_MERCHANTS = 256;
+    private static final double MERCHANT_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MERCHANT_FILTER_WORDS = (int) Math.ceil(-EXPECTED_MERCHANTS
+            * Math.log(MERCHANT_FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)) / Long.SIZE);
+    private static final int MERCHANT_FILTER_BITS = MERCHANT_FILTER_WORDS * Long.SIZE;
+    private static final int MERCHANT_HASHES =
+            (int) Math.round((double) MERCHANT_FILTER_BITS / EXPECTED_MERCHANTS * Math.log(2));
+
+    // A category's bit is its index here, so new categories are only ever appended
+    private static final List<String> KNOWN_CATEGORIES = List.of(
+            "RETAIL", "ENTERTAINMENT", "FOOD", "GAMBLING", "DIGITAL_GOODS", "TRAVEL", "ELECTRONICS",
+            "GROCERY", "RESTAURANT", "FUEL", "ONLINE_RETAIL", "PHARMACY");
+    private static final int OTHER_CATEGORIES = 8;
+    // Set once an unlisted category didn't fit in the exact slots
+    private static final long OTHER_CATEGORIES_OVERFLOWED = 1L << 63;
+
+    private static final int HOURS_PER_DAY = 24;
+    private static final int HISTOGRAM_SLOTS = 7 * HOURS_PER_DAY;
+    private static final int ENCODED_SIZE = 1 + Long.BYTES + 4 * Double.BYTES
+            + Integer.BYTES + EXACT_MERCHANTS * Long.BYTES + MERCHANT_FILTER_WORDS * Long.BYTES
+            + Long.BYTES + Integer.BYTES + OTHER_CATEGORIES * Long.BYTES
+            + HISTOGRAM_SLOTS * Integer.BYTES + RecentTransactionIds.ENCODED_SIZE;
+
+    private long transactionCount;
+    // Welford's running mean and sum of squared deviations
+    private double amountMean;
+    private double amountM2;
+    private double amountMin = Double.POSITIVE_INFINITY;
+    private double amountMax = Double.NEGATIVE_INFINITY;
+    // Distinct merchants while there are at most EXACT_MERCHANTS, then EXACT_MERCHANTS + 1
+    private int merchantCount;
+    private final long[] merchantFingerprints = new long[EXACT_MERCHANTS];
+    private final long[] merchantFilter = new long[MERCHANT_FILTER_WORDS];
+    private long categoryMask;
+    private int otherCategoryCount;
+    private final long[] otherCategoryFingerprints = new long[OTHER_CATEGORIES];
+    private final int[] dayHourCounts = new int[HISTOGRAM_SLOTS];
+    private RecentTransactionIds recentTransactions = new RecentTransactionIds();
+
+    // False, leaving the profile unchanged, if the transaction was already added. The zone is the one
+    // the transaction took place in, which buckets it in the histogram.
+    public synchronized boolean add(String transactionId, Instant transactionTime, double amount, String merchantId,
+                                    String merchantCategory, ZoneId zone) {
+        if (!recentTransactions.add(transactionId)) {
+            return false;
+        }
+        transactionCount++;
+        double delta = amount - amountMean;
+        amountMean += delta / transactionCount;
+        amountM2 += delta * (amount - amountMean);
+        amountMin = Math.min(amountMin, amount);
+        amountMax = Math.max(amountMax, amount);
+
+        if (merchantId != null) {
+            addMerchant(RecentTransactionIds.fingerprint(merchantId));
+        }
+        if (merchantCategory != null) {
+            addCategory(merchantCategory);
+        }
+        if (transactionTime != null) {
+            ZonedDateTime localTime = transactionTime.atZone(zone);
+            dayHourCounts[localTime.getDayOfWeek().ordinal() * HOURS_PER_DAY + localTime.getHour()]++;
+        }
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return transactionCount == 0;
+    }
+
+    public synchronized long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public synchronized double getAverageAmount() {
+        return amountMean;
+    }
+
+    public synchronized double getAmountStandardDeviation() {
+        return transactionCount > 1 ? Math.sqrt(amountM2 / (transactionCount - 1)) : 0.0;
+    }
+
+    public synchronized double getMinAmount() {
+        return transactionCount > 0 ? amountMin : 0.0;
+    }
+
+    public synchronized double getMaxAmount() {
+        return transactionCount > 0 ? amountMax : 0.0;
+    }
+
+    public synchronized boolean mightHaveMerchant(String merchantId) {
+        if (merchantId == null) {
+            return false;
+        }
+        long fingerprint = RecentTransactionIds.fingerprint(merchantId);
+        if (merchantCount <= EXACT_MERCHANTS) {
+            return indexOf(merchantFingerprints, merchantCount, fingerprint) >= 0;
+        }
+        long hash = mix(fingerprint);
+        for (int i = 0; i < MERCHANT_HASHES; i++) {
+            int bit = merchantBit(hash, i);
+            if ((merchantFilter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean mightHaveCategory(String merchantCategory) {
+        if (merchantCategory == null) {
+            return false;
+        }
+        int known = KNOWN_CATEGORIES.indexOf(merchantCategory);
+        if (known >= 0) {
+            return (categoryMask & (1L << known)) != 0;
+        }
+        return indexOf(otherCategoryFingerprints, otherCategoryCount,
+                RecentTransactionIds.fingerprint(merchantCategory)) >= 0
+                || (categoryMask & OTHER_CATEGORIES_OVERFLOWED) != 0;
+    }
+
+    // Transactions per day of week, indexed by DayOfWeek.ordinal()
+    public synchronized long[] dayOfWeekCounts() {
+        long[] counts = new long[DayOfWeek.values().length];
+        for (int slot = 0; slot < HISTOGRAM_SLOTS; slot++) {
+            counts[slot / HOURS_PER_DAY] += dayHourCounts[slot];
+        }
+        return counts;
+    }
+
+    public synchronized int countAt(DayOfWeek day, int hour) {
+        return dayHourCounts[day.ordinal() * HOURS_PER_DAY + hour];
+    }
+
+    public synchronized byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE);
+        buffer.put(FORMAT_VERSION);
+        buffer.putLong(transactionCount);
+        buffer.putDouble(amountMean);
+        buffer.putDouble(amountM2);
+        buffer.putDouble(amountMin);
+        buffer.putDouble(amountMax);
+        buffer.putInt(merchantCount);
+        for (long fingerprint : merchantFingerprints) {
+            buffer.putLong(fingerprint);
+        }
+        for (long word : merchantFilter) {
+            buffer.putLong(word);
+        }
+        buffer.putLong(categoryMask);
+        buffer.putInt(otherCategoryCount);
+        for (long fingerprint : otherCategoryFingerprints) {
+            buffer.putLong(fingerprint);
+        }
+        for (int count : dayHourCounts) {
+            buffer.putInt(count);
+        }
+        recentTransactions.encode(buffer);
+        return buffer.array();
+    }
+
+    // Null for anything that isn't a profile in the current format, which callers treat as a miss
+    public static CustomerProfile decode(byte[] bytes) {
+        if (bytes == null || bytes.length != ENCODED_SIZE || bytes[0] != FORMAT_VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, ENCODED_SIZE - 1);
+        CustomerProfile profile = new CustomerProfile();
+        profile.transactionCount = buffer.getLong();
+        profile.amountMean = buffer.getDouble();
+        profile.amountM2 = buffer.getDouble();
+        profile.amountMin = buffer.getDouble();
+        profile.amountMax = buffer.getDouble();
+        profile.merchantCount = buffer.getInt();
+        for (int i = 0; i < EXACT_MERCHANTS; i++) {
+            profile.merchantFingerprints[i] = buffer.getLong();
+        }
+        for (int i = 0; i < MERCHANT_FILTER_WORDS; i++) {
+            profile.merchantFilter[i] = buffer.getLong();
+        }
+        profile.categoryMask = buffer.getLong();
+        profile.otherCategoryCount = buffer.getInt();
+        for (int i = 0; i < OTHER_CATEGORIES; i++) {
+            profile.otherCategoryFingerprints[i] = buffer.getLong();
+        }
+        for (int i = 0; i < HISTOGRAM_SLOTS; i++) {
+            profile.dayHourCounts[i] = buffer.getInt();
+        }
+        profile.recentTransactions = RecentTransactionIds.decode(buffer);
+        return profile;
+    }
+
+    // Every merchant goes into the filter, so it is complete once the exact fingerprints overflow
+    private void addMerchant(long fingerprint) {
+        long hash = mix(fingerprint);
+        for (int i = 0; i < MERCHANT_HASHES; i++) {
+            int bit = merchantBit(hash, i);
+            merchantFilter[bit >>> 6] |= 1L << bit;
+        }
+        if (merchantCount <= EXACT_MERCHANTS && indexOf(merchantFingerprints, merchantCount, fingerprint) < 0) {
+            if (merchantCount < EXACT_MERCHANTS) {
+                merchantFingerprints[merchantCount] = fingerprint;
+            }
+            merchantCount++;
+        }
+    }
+
+    private void addCategory(String merchantCategory) {
+        int known = KNOWN_CATEGORIES.indexOf(merchantCategory);
+        if (known >= 0) {
+            categoryMask |= 1L << known;
+            return;
+        }
+        long fingerprint = RecentTransactionIds.fingerprint(merchantCategory);
+        if (indexOf(otherCategoryFingerprints, otherCategoryCount, fingerprint) >= 0) {
+            return;
+        }
+        if (otherCategoryCount < OTHER_CATEGORIES) {
+            otherCategoryFingerprints[otherCategoryCount++] = fingerprint;
+        } else {
+            categoryMask |= OTHER_CATEGORIES_OVERFLOWED;
+        }
+    }
+
+    private static int indexOf(long[] fingerprints, int count, long fingerprint) {
+        for (int i = 0; i < count; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Bit indexes come from two halves of one hash (Kirsch-Mitzenmacher double hashing)
+    private static int merchantBit(long hash, int i) {
+        return Math.floorMod((int) hash + i * (int) (hash >>> 32), MERCHANT_FILTER_BITS);
+    }
+
+    // murmur3 64-bit finalizer, so every bit of the filter index depends on the whole fingerprint
+    private static long mix(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
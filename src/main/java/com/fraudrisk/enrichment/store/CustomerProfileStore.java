@@ -0,0 +1,188 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.service.CustomerHistoryService;
+import com.fraudrisk.enrichment.service.TransactionObserver;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+// Compact customer profiles for the historical pattern features, shared across pods in Redis with
+// a soft-referenced local copy the heap can reclaim under memory pressure. A profile is built from
+// the customer's last 180 days in Postgres only when Redis has none, then updated in place as the
+// customer's transactions are published. Redis updates keep the TTL set at build time, so every
+// profile is rebuilt from Postgres at least once per TTL and its window never drifts far past 180 days.
+//
+// Updates are best-effort across pods. A pod applies a transaction to its local copy and overwrites the
+// Redis value with it (SET XX KEEPTTL), with no WATCH or compare-and-set. An update another pod made
+// since this copy was read is therefore lost. With the input topic keyed by customer, only one pod
+// updates a customer at a time, so this only happens around a partition rebalance. The lost
+// transactions come back at the next rebuild, at most one TTL later. Within a pod, updates to one
+// profile are applied and written one at a time, so they can't overwrite each other.
+@Component
+@Slf4j
+public class CustomerProfileStore implements TransactionObserver {
+
+    private static final String KEY_PREFIX = "customer-profile:";
+
+    private final TransactionRepository transactionRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final GeoZoneIndex geoZoneIndex;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Cache<String, CustomerProfile> localProfiles;
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter rebuilds;
+
+    public CustomerProfileStore(
+            TransactionRepository transactionRepository,
+            StringRedisTemplate redisTemplate,
+            GeoZoneIndex geoZoneIndex,
+            MeterRegistry meterRegistry,
+            @Value("${customer.profile.enabled:true}") boolean enabled,
+            @Value("${customer.profile.ttl-seconds:86400}") long ttlSeconds,
+            @Value("${customer.profile.local.max-size:100000}") long localMaxSize,
+            @Value("${customer.profile.local.ttl-seconds:30}") long localTtlSeconds) {
+        this.transactionRepository = transactionRepository;
+        this.redisTemplate = redisTemplate;
+        this.geoZoneIndex = geoZoneIndex;
+        this.enabled = enabled;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+
+        // The local TTL bounds how stale a copy updated by another pod can get
+        this.localProfiles = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .softValues()
+                .build();
+
+        this.localHits = meterRegistry.counter("customer.profile.lookups", "result", "local");
+        this.remoteHits = meterRegistry.counter("customer.profile.lookups", "result", "redis");
+        this.rebuilds = meterRegistry.counter("customer.profile.lookups", "result", "rebuilt");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CustomerProfile getProfile(String customerId) {
+        CustomerProfile profile = localProfiles.getIfPresent(customerId);
+        if (profile != null) {
+            localHits.increment();
+            return profile;
+        }
+
+        profile = readRemote(customerId);
+        if (profile != null) {
+            remoteHits.increment();
+        } else {
+            rebuilds.increment();
+            profile = rebuild(customerId);
+            writeRemote(customerId, profile, false);
+        }
+        localProfiles.put(customerId, profile);
+        return profile;
+    }
+
+    @Override
+    public void onTransactionEnriched(Transaction transaction) {
+        if (!enabled || transaction.getCustomerId() == null) {
+            return;
+        }
+
+        String customerId = transaction.getCustomerId();
+        CustomerProfile profile = localProfiles.getIfPresent(customerId);
+        boolean built = false;
+        if (profile == null) {
+            profile = readRemote(customerId);
+            if (profile == null) {
+                // Expired since the transaction was enriched. Build it now rather than leave it to the next
+                // lookup: Postgres rows are written asynchronously, so a later build could miss this one
+                rebuilds.increment();
+                profile = rebuild(customerId);
+                built = true;
+            }
+            localProfiles.put(customerId, profile);
+        }
+
+        // The profile remembers its last transaction ids, so a redelivered transaction, or one the rebuild
+        // already read from Postgres, leaves it as it is. Applying and writing under the profile's lock
+        // keeps an older encoding from landing in Redis after a newer one.
+        ZoneId zone = geoZoneIndex.zoneOf(transaction.getLocation());
+        synchronized (profile) {
+            boolean added = profile.add(transaction.getTransactionId(), transaction.getTransactionDate(),
+                    amountOf(transaction.getAmount()), transaction.getMerchantId(), transaction.getMerchantCategory(),
+                    zone);
+            if (added || built) {
+                writeRemote(customerId, profile, !built);
+            }
+        }
+    }
+
+    private CustomerProfile rebuild(String customerId) {
+        log.debug("Building customer profile from Postgres for customer: {}", customerId);
+        List<Object[]> rows = transactionRepository.findCustomerHistoryRows(
+                customerId,
+                Instant.now().minus(CustomerHistoryService.HISTORY_DAYS, ChronoUnit.DAYS)
+        );
+
+        CustomerProfile profile = new CustomerProfile();
+        for (Object[] row : rows) {
+            profile.add((String) row[5], (Instant) row[0], amountOf((BigDecimal) row[1]), (String) row[2],
+                    (String) row[3], geoZoneIndex.zoneOf((String) row[6]));
+        }
+        return profile;
+    }
+
+    private CustomerProfile readRemote(String customerId) {
+        try {
+            byte[] key = redisKey(customerId);
+            return CustomerProfile.decode(redisTemplate.execute(
+                    (RedisCallback<byte[]>) connection -> connection.stringCommands().get(key)));
+        } catch (Exception e) {
+            // Redis being down only costs a rebuild from Postgres
+            log.warn("Failed to read customer profile {} from Redis: {}", customerId, e.getMessage());
+            return null;
+        }
+    }
+
+    // A fresh profile starts its TTL; an update keeps the remaining TTL and only applies if the key still exists
+    private void writeRemote(String customerId, CustomerProfile profile, boolean update) {
+        try {
+            byte[] key = redisKey(customerId);
+            byte[] value = profile.encode();
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(
+                    key,
+                    value,
+                    update ? Expiration.keepTtl() : Expiration.from(ttl),
+                    update ? SetOption.ifPresent() : SetOption.upsert()));
+        } catch (Exception e) {
+            log.warn("Failed to write customer profile {} to Redis: {}", customerId, e.getMessage());
+        }
+    }
+
+    private static byte[] redisKey(String customerId) {
+        return (KEY_PREFIX + customerId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double amountOf(BigDecimal amount) {
+        return amount != null ? amount.doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,234 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.service.TransactionObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-customer registry of the devices used in the last 90 days: first-seen time, last-seen time
+// and use count per device, kept in memory. Customers are backfilled from Postgres on first sight
+// with one grouped query and then updated in-stream. Memory is bounded twice: the least recently
+// used customers are evicted, and each customer keeps at most max-devices-per-customer devices,
+// dropping the one seen longest ago. Each customer remembers its last transaction ids, so a
+// redelivered transaction is only counted once.
+@Component
+@Slf4j
+public class DeviceRegistryStore implements TransactionObserver {
+
+    public static final int WINDOW_DAYS = 90;
+
+    private static final long WINDOW_MILLIS = WINDOW_DAYS * 86_400_000L;
+    private static final int SEGMENT_COUNT = 16;
+
+    private final TransactionRepository transactionRepository;
+    private final boolean enabled;
+    private final int maxDevicesPerCustomer;
+    private final Segment[] segments;
+    private final Counter backfillCounter;
+
+    public DeviceRegistryStore(
+            TransactionRepository transactionRepository,
+            MeterRegistry meterRegistry,
+            @Value("${device.registry.enabled:true}") boolean enabled,
+            @Value("${device.registry.max-customers:100000}") int maxCustomers,
+            @Value("${device.registry.max-devices-per-customer:16}") int maxDevicesPerCustomer) {
+        this.transactionRepository = transactionRepository;
+        this.enabled = enabled;
+        this.maxDevicesPerCustomer = Math.max(1, maxDevicesPerCustomer);
+
+        // Striped LRU maps so unrelated customers don't contend on a single lock
+        int customersPerSegment = Math.max(1, maxCustomers / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(customersPerSegment);
+        }
+
+        this.backfillCounter = meterRegistry.counter("device.registry.backfills");
+        meterRegistry.gauge("device.registry.customers", this, DeviceRegistryStore::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public DeviceUsage getDeviceUsage(String customerId, String deviceId, Instant now) {
+        Segment segment = segmentFor(customerId);
+
+        CustomerDevices devices;
+        synchronized (segment) {
+            devices = segment.customers.get(customerId);
+        }
+
+        if (devices == null) {
+            // Backfill outside the lock; if another thread got there first, keep its copy
+            CustomerDevices backfilled = backfill(customerId, now);
+            synchronized (segment) {
+                devices = segment.customers.putIfAbsent(customerId, backfilled);
+                if (devices == null) {
+                    devices = backfilled;
+                }
+            }
+        }
+
+        synchronized (segment) {
+            return devices.usage(deviceId, now.toEpochMilli());
+        }
+    }
+
+    @Override
+    public void onTransactionEnriched(Transaction transaction) {
+        if (!enabled || transaction.getTransactionDate() == null) {
+            return;
+        }
+
+        Segment segment = segmentFor(transaction.getCustomerId());
+        synchronized (segment) {
+            // Customers evicted since their lookup are backfilled from Postgres on next sight
+            CustomerDevices devices = segment.customers.get(transaction.getCustomerId());
+            if (devices != null && devices.recentTransactions.add(transaction.getTransactionId())) {
+                long seenMillis = transaction.getTransactionDate().toEpochMilli();
+                devices.record(transaction.getDeviceId(), seenMillis, seenMillis, 1L);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.customers.size();
+            }
+        }
+        return size;
+    }
+
+    private CustomerDevices backfill(String customerId, Instant now) {
+        log.debug("Backfilling device registry for customer: {}", customerId);
+        backfillCounter.increment();
+
+        Instant windowStart = now.minus(WINDOW_DAYS, ChronoUnit.DAYS);
+        List<Object[]> rows = transactionRepository.findCustomerDeviceUsage(customerId, windowStart);
+        // The grouped rows carry no ids; the latest ones are read separately, oldest first into the ring
+        List<String> recentIds = transactionRepository.findRecentCustomerTransactionIds(
+                customerId, windowStart, PageRequest.of(0, RecentTransactionIds.CAPACITY));
+
+        CustomerDevices devices = new CustomerDevices(maxDevicesPerCustomer);
+        for (Object[] row : rows) {
+            devices.record((String) row[0], ((Instant) row[1]).toEpochMilli(), ((Instant) row[2]).toEpochMilli(),
+                    ((Number) row[3]).longValue());
+        }
+        for (int i = recentIds.size() - 1; i >= 0; i--) {
+            devices.recentTransactions.add(recentIds.get(i));
+        }
+        return devices;
+    }
+
+    private Segment segmentFor(String customerId) {
+        int hash = customerId != null ? customerId.hashCode() : 0;
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static final class Segment {
+
+        private final Map<String, CustomerDevices> customers;
+
+        private Segment(int maxCustomers) {
+            this.customers = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CustomerDevices> eldest) {
+                    return size() > maxCustomers;
+                }
+            };
+        }
+    }
+
+    private static final class DeviceRecord {
+
+        private long firstSeenMillis;
+        private long lastSeenMillis;
+        private long useCount;
+
+        private DeviceRecord(long seenMillis) {
+            this.firstSeenMillis = seenMillis;
+            this.lastSeenMillis = seenMillis;
+        }
+    }
+
+    // Devices in last-seen order (backfill rows arrive ordered by last use, later sightings move a
+    // device to the end), so the eldest entry is the one seen longest ago;
+    // transactions without a device id are only counted
+    private static final class CustomerDevices {
+
+        private final Map<String, DeviceRecord> devices;
+        private final RecentTransactionIds recentTransactions = new RecentTransactionIds();
+        private long transactionsWithoutDevice;
+
+        private CustomerDevices(int maxDevices) {
+            this.devices = new LinkedHashMap<>(4, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DeviceRecord> eldest) {
+                    return size() > maxDevices;
+                }
+            };
+        }
+
+        private void record(String deviceId, long firstSeenMillis, long lastSeenMillis, long uses) {
+            if (deviceId == null) {
+                transactionsWithoutDevice += uses;
+                return;
+            }
+            DeviceRecord device = devices.get(deviceId);
+            if (device == null) {
+                device = new DeviceRecord(firstSeenMillis);
+                devices.put(deviceId, device);
+            }
+            device.firstSeenMillis = Math.min(device.firstSeenMillis, firstSeenMillis);
+            device.lastSeenMillis = Math.max(device.lastSeenMillis, lastSeenMillis);
+            device.useCount += uses;
+        }
+
+        private DeviceUsage usage(String deviceId, long nowMillis) {
+            // Devices not seen within the window no longer count and are dropped; iterating
+            // leaves the last-seen order untouched, unlike get()
+            long windowStartMillis = nowMillis - WINDOW_MILLIS;
+            int deviceCount = 0;
+            long transactionCount = transactionsWithoutDevice;
+            DeviceRecord current = null;
+            Iterator<Map.Entry<String, DeviceRecord>> iterator = devices.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, DeviceRecord> entry = iterator.next();
+                DeviceRecord device = entry.getValue();
+                if (device.lastSeenMillis < windowStartMillis) {
+                    iterator.remove();
+                    continue;
+                }
+                deviceCount++;
+                transactionCount += device.useCount;
+                if (entry.getKey().equals(deviceId)) {
+                    current = device;
+                }
+            }
+
+            return current != null
+                    ? new DeviceUsage(deviceCount, transactionCount, current.useCount, current.firstSeenMillis)
+                    : new DeviceUsage(deviceCount, transactionCount, 0L, Long.MAX_VALUE);
+        }
+    }
+
+    // Same shape as CustomerHistorySnapshot.DeviceUsage; firstSeenMillis is Long.MAX_VALUE for an unknown device.
+    // Use counts run from the device's first sighting, which may predate the window.
+    public record DeviceUsage(int deviceCount, long transactionCount, long transactionsWithDevice,
+                              long firstSeenMillis) {
+    }
+}
@@ -0,0 +1,268 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.GeoLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Offline resolution of coordinates to country and time zone over bundled region boundaries.
+// At startup every region polygon is rasterized onto a fixed lat/lon grid: a cell lying wholly
+// inside one region stores that region, a cell no region touches stores nothing, and only cells
+// crossed by a boundary keep a short candidate list for an exact point-in-polygon test. Most
+// lookups are therefore one array read.
+//
+// Region file format: one polygon per line, "<country> <zone id> <lon>,<lat> <lon>,<lat> ...",
+// '#' starts a comment. A country or zone made of several polygons takes several lines. Polygons
+// must not cross the antimeridian.
+@Component
+@Slf4j
+public class GeoZoneIndex {
+
+    private static final int NO_REGION = -1;
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final boolean enabled;
+    private final double cellDegrees;
+    private final int columns;
+    private final int rows;
+
+    private volatile Grid grid;
+
+    public GeoZoneIndex(
+            ResourceLoader resourceLoader,
+            MeterRegistry meterRegistry,
+            @Value("${geo.zones.enabled:true}") boolean enabled,
+            @Value("${geo.zones.location:classpath:geo/regions.txt}") String location,
+            @Value("${geo.zones.cell-degrees:0.25}") double cellDegrees) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.enabled = enabled;
+        this.cellDegrees = cellDegrees;
+        this.columns = (int) Math.ceil(360.0 / cellDegrees);
+        this.rows = (int) Math.ceil(180.0 / cellDegrees);
+        this.grid = new Grid(new Region[0], new double[0][], new double[0][], new int[0], new int[0][]);
+
+        meterRegistry.gauge("geo.zones.regions", this, index -> index.grid.regions.length);
+        meterRegistry.gauge("geo.zones.boundary.cells", this, index -> index.grid.candidates.length);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            grid = load();
+        } catch (Exception e) {
+            // Every lookup falls back to a longitude-based offset
+            log.error("Failed to load geo regions from {}: {}", location, e.getMessage(), e);
+        }
+    }
+
+    // The region holding the point, or null if none of the loaded regions does
+    public Region resolve(double latitude, double longitude) {
+        Grid current = grid;
+        if (current.cells.length == 0 || !(Math.abs(latitude) <= 90.0 && Math.abs(longitude) <= 180.0)) {
+            return null;
+        }
+
+        int cell = current.cells[cellIndex(latitude, longitude)];
+        if (cell >= 0) {
+            return current.regions[cell];
+        }
+        if (cell == NO_REGION) {
+            return null;
+        }
+        for (int region : current.candidates[-2 - cell]) {
+            if (contains(current.longitudes[region], current.latitudes[region], longitude, latitude)) {
+                return current.regions[region];
+            }
+        }
+        return null;
+    }
+
+    // The region's zone, or the nautical offset for the longitude outside every region
+    public ZoneId zoneFor(double latitude, double longitude) {
+        Region region = resolve(latitude, longitude);
+        return region != null ? region.zone() : nauticalOffset(longitude);
+    }
+
+    // Zone of a "country:city:latitude:longitude" location, or the service's zone without usable coordinates
+    public ZoneId zoneOf(String location) {
+        try {
+            GeoLocation geoLocation = GeoLocation.parse(location);
+            if (geoLocation != null) {
+                return zoneFor(geoLocation.latitude(), geoLocation.longitude());
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Unparseable location {}: {}", location, e.getMessage());
+        }
+        return ZoneId.systemDefault();
+    }
+
+    public static ZoneOffset nauticalOffset(double longitude) {
+        int hours = (int) Math.round(longitude / 15.0);
+        return ZoneOffset.ofHours(Math.max(-12, Math.min(12, hours)));
+    }
+
+    private Grid load() throws Exception {
+        List<Region> regions = new ArrayList<>();
+        List<double[]> longitudes = new ArrayList<>();
+        List<double[]> latitudes = new ArrayList<>();
+
+        Resource resource = resourceLoader.getResource(location);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            Map<String, Region> regionsByKey = new HashMap<>();
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                String content = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (content.isEmpty()) {
+                    continue;
+                }
+
+                String[] tokens = content.split("\\s+");
+                if (tokens.length < 5) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " needs a country, a zone and 3 points");
+                }
+                double[] polygonLongitudes = new double[tokens.length - 2];
+                double[] polygonLatitudes = new double[tokens.length - 2];
+                for (int i = 2; i < tokens.length; i++) {
+                    int comma = tokens[i].indexOf(',');
+                    polygonLongitudes[i - 2] = Double.parseDouble(tokens[i].substring(0, comma));
+                    polygonLatitudes[i - 2] = Double.parseDouble(tokens[i].substring(comma + 1));
+                }
+
+                // Polygons of the same country and zone share one Region instance
+                String country = tokens[0];
+                ZoneId zone = ZoneId.of(tokens[1]);
+                regions.add(regionsByKey.computeIfAbsent(country + " " + zone.getId(), key -> new Region(country, zone)));
+                longitudes.add(polygonLongitudes);
+                latitudes.add(polygonLatitudes);
+            }
+        }
+
+        Grid loaded = rasterize(regions.toArray(new Region[0]),
+                longitudes.toArray(new double[0][]), latitudes.toArray(new double[0][]));
+        log.info("Loaded {} geo region polygons from {} onto a {}x{} grid with {} boundary cells",
+                regions.size(), location, columns, rows, loaded.candidates.length);
+        return loaded;
+    }
+
+    private Grid rasterize(Region[] regions, double[][] longitudes, double[][] latitudes) {
+        int[] cells = new int[columns * rows];
+        Arrays.fill(cells, NO_REGION);
+        Map<Integer, Set<Integer>> boundaryCells = new HashMap<>();
+
+        for (int polygon = 0; polygon < regions.length; polygon++) {
+            double[] xs = longitudes[polygon];
+            double[] ys = latitudes[polygon];
+
+            // Every cell an edge's bounding box reaches may be crossed by the boundary
+            Set<Integer> crossed = new HashSet<>();
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                for (int row = row(Math.min(ys[i], ys[j])); row <= row(Math.max(ys[i], ys[j])); row++) {
+                    for (int column = column(Math.min(xs[i], xs[j])); column <= column(Math.max(xs[i], xs[j])); column++) {
+                        crossed.add(row * columns + column);
+                    }
+                }
+            }
+            for (int cell : crossed) {
+                boundaryCells.computeIfAbsent(cell, key -> new LinkedHashSet<>()).add(polygon);
+            }
+
+            // Any other cell in the bounding box is wholly inside or wholly outside; its centre decides
+            double minLongitude = Arrays.stream(xs).min().orElseThrow();
+            double maxLongitude = Arrays.stream(xs).max().orElseThrow();
+            double minLatitude = Arrays.stream(ys).min().orElseThrow();
+            double maxLatitude = Arrays.stream(ys).max().orElseThrow();
+            for (int row = row(minLatitude); row <= row(maxLatitude); row++) {
+                for (int column = column(minLongitude); column <= column(maxLongitude); column++) {
+                    int cell = row * columns + column;
+                    if (crossed.contains(cell)) {
+                        continue;
+                    }
+                    double centreLongitude = -180.0 + (column + 0.5) * cellDegrees;
+                    double centreLatitude = -90.0 + (row + 0.5) * cellDegrees;
+                    if (!contains(xs, ys, centreLongitude, centreLatitude)) {
+                        continue;
+                    }
+                    if (cells[cell] == NO_REGION && !boundaryCells.containsKey(cell)) {
+                        cells[cell] = polygon;
+                    } else {
+                        // Overlapping regions leave the cell to the exact test
+                        boundaryCells.computeIfAbsent(cell, key -> new LinkedHashSet<>()).add(polygon);
+                    }
+                }
+            }
+        }
+
+        int[][] candidates = new int[boundaryCells.size()][];
+        int next = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : boundaryCells.entrySet()) {
+            int cell = entry.getKey();
+            Set<Integer> polygons = entry.getValue();
+            if (cells[cell] >= 0) {
+                polygons.add(cells[cell]);
+            }
+            candidates[next] = polygons.stream().mapToInt(Integer::intValue).toArray();
+            cells[cell] = -2 - next;
+            next++;
+        }
+
+        return new Grid(regions, longitudes, latitudes, cells, candidates);
+    }
+
+    private int cellIndex(double latitude, double longitude) {
+        return row(latitude) * columns + column(longitude);
+    }
+
+    private int column(double longitude) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((longitude + 180.0) / cellDegrees)));
+    }
+
+    private int row(double latitude) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((latitude + 90.0) / cellDegrees)));
+    }
+
+    // Even-odd ray casting
+    private static boolean contains(double[] xs, double[] ys, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            if ((ys[i] > y) != (ys[j] > y)
+                    && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    // Cells hold a region index, NO_REGION, or -2 - i for the i-th candidate list
+    private record Grid(Region[] regions, double[][] longitudes, double[][] latitudes, int[] cells,
+                        int[][] candidates) {
+    }
+
+    public record Region(String country, ZoneId zone) {
+    }
+}
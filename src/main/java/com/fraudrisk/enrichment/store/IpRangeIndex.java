@@ -0,0 +1,469 @@
+package com.fraudrisk.enrichment.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+// Immutable table of disjoint IP ranges with reputation flags and a risk score, sorted by start
+// address and kept in a memory-mapped file off the heap. Every address is held as 128 bits (IPv4
+// as IPv4-mapped IPv6), so one binary search serves both families. Lookups parse the address
+// and search the table without allocating.
+//
+// File layout (big-endian): magic, version, entry count, reserved (4 ints), then one 40-byte entry
+// per range: start (2 longs), end (2 longs, inclusive), flags (int), risk score (float).
+public final class IpRangeIndex {
+
+    public static final int TOR_EXIT = 1;
+    public static final int PROXY = 1 << 1;
+    public static final int HOSTING = 1 << 2;
+    // Not stored in the table; set for private, loopback, link-local and shared (CGNAT) addresses
+    public static final int NON_PUBLIC = 1 << 3;
+
+    // Result of looking up something that isn't an IP address
+    public static final long UNPARSEABLE = -1L;
+
+    private static final int MAGIC = 0x49505258; // "IPRX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int ENTRY_SIZE = 4 * Long.BYTES + Integer.BYTES + Float.BYTES;
+    private static final int FLAGS_OFFSET = 4 * Long.BYTES;
+    private static final int SCORE_OFFSET = FLAGS_OFFSET + Integer.BYTES;
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+
+    private final ByteBuffer table;
+    private final int size;
+    // Parsed addresses go straight into the search as two longs, so a lookup allocates nothing
+    private final AddressConsumer search = this::search;
+
+    private IpRangeIndex(ByteBuffer table) {
+        if (table.getInt(0) != MAGIC || table.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("Not an IP range index");
+        }
+        this.table = table;
+        this.size = table.getInt(2 * Integer.BYTES);
+        if (table.capacity() < HEADER_SIZE + (long) size * ENTRY_SIZE) {
+            throw new IllegalArgumentException("Truncated IP range index");
+        }
+    }
+
+    public static IpRangeIndex empty() {
+        return new IpRangeIndex(header(ByteBuffer.allocate(HEADER_SIZE), 0).flip());
+    }
+
+    // Merges overlapping ranges into disjoint entries (flags OR-ed, highest score kept), writes them
+    // to the file and maps it read-only
+    public static IpRangeIndex build(List<Range> ranges, Path file) throws IOException {
+        List<Entry> entries = merge(ranges);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.size() * ENTRY_SIZE);
+        header(buffer, entries.size());
+        for (Entry entry : entries) {
+            buffer.putLong(entry.startHi).putLong(entry.startLo)
+                    .putLong(entry.endHi).putLong(entry.endLo)
+                    .putInt(entry.flags).putFloat(entry.riskScore);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new IpRangeIndex(mapped);
+        }
+    }
+
+    public static IpRangeIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new IpRangeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, Files.size(file)));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Flags and score of the range holding the address packed into one long (see flags() and
+    // riskScore()), 0 if no range holds it, or UNPARSEABLE
+    public long lookup(CharSequence ipAddress) {
+        return parseAddress(ipAddress, 0, ipAddress.length(), search);
+    }
+
+    private long search(long hi, long lo) {
+        int flags = isNonPublic(hi, lo) ? NON_PUBLIC : 0;
+
+        // Last entry starting at or before the address
+        int low = 0;
+        int high = size - 1;
+        int match = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = HEADER_SIZE + mid * ENTRY_SIZE;
+            if (compare(table.getLong(position), table.getLong(position + Long.BYTES), hi, lo) <= 0) {
+                match = position;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (match >= 0 && compare(hi, lo, table.getLong(match + 2 * Long.BYTES),
+                table.getLong(match + 3 * Long.BYTES)) <= 0) {
+            return pack(flags | table.getInt(match + FLAGS_OFFSET), table.getFloat(match + SCORE_OFFSET));
+        }
+        return pack(flags, 0.0f);
+    }
+
+    public static int flags(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    public static double riskScore(long entry) {
+        return Float.intBitsToFloat((int) entry);
+    }
+
+    // Parses "address", "address/prefix" or "first-last" into an inclusive range; null if malformed
+    public static Range parseRange(String text, int flags, float riskScore) {
+        long[] address = new long[2];
+        String trimmed = text.trim();
+
+        int dash = trimmed.indexOf('-');
+        if (dash > 0) {
+            if (!parseAddress(trimmed, 0, dash, address)) {
+                return null;
+            }
+            long startHi = address[0];
+            long startLo = address[1];
+            if (!parseAddress(trimmed, dash + 1, trimmed.length(), address)
+                    || compare(startHi, startLo, address[0], address[1]) > 0) {
+                return null;
+            }
+            return new Range(startHi, startLo, address[0], address[1], flags, riskScore);
+        }
+
+        int slash = trimmed.indexOf('/');
+        int end = slash >= 0 ? slash : trimmed.length();
+        if (!parseAddress(trimmed, 0, end, address)) {
+            return null;
+        }
+        int prefix = 128;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(trimmed.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            boolean ipv4 = trimmed.indexOf(':') < 0;
+            if (prefix < 0 || prefix > (ipv4 ? 32 : 128)) {
+                return null;
+            }
+            // IPv4 prefixes count from the start of the IPv4-mapped block
+            if (ipv4) {
+                prefix += 96;
+            }
+        }
+
+        long hostHi = prefix >= 64 ? 0L : -1L >>> prefix;
+        long hostLo = prefix >= 128 ? 0L : prefix <= 64 ? -1L : -1L >>> (prefix - 64);
+        return new Range(address[0] & ~hostHi, address[1] & ~hostLo,
+                address[0] | hostHi, address[1] | hostLo, flags, riskScore);
+    }
+
+    // IPv4 dotted quad or IPv6 (with "::", an embedded IPv4 tail or a zone id) as 128 bits
+    static boolean parseAddress(CharSequence text, int start, int end, long[] out) {
+        return parseAddress(text, start, end, (hi, lo) -> {
+            out[0] = hi;
+            out[1] = lo;
+            return 0L;
+        }) != UNPARSEABLE;
+    }
+
+    // Hands the parsed address to the consumer and returns its result, or UNPARSEABLE
+    private static long parseAddress(CharSequence text, int start, int end, AddressConsumer consumer) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ':') {
+                return parseIpv6(text, start, end, consumer);
+            }
+        }
+        long ipv4 = parseIpv4(text, start, end);
+        if (ipv4 < 0) {
+            return UNPARSEABLE;
+        }
+        return consumer.accept(0L, IPV4_MAPPED_PREFIX | ipv4);
+    }
+
+    private static long parseIpv4(CharSequence text, int start, int end) {
+        long value = 0;
+        int octets = 0;
+        int i = start;
+        while (i < end) {
+            int octet = 0;
+            int digits = 0;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                octet = octet * 10 + (text.charAt(i) - '0');
+                digits++;
+                i++;
+            }
+            if (digits == 0 || digits > 3 || octet > 255) {
+                return -1;
+            }
+            value = (value << 8) | octet;
+            octets++;
+            if (i < end) {
+                if (text.charAt(i) != '.' || octets == 4) {
+                    return -1;
+                }
+                i++;
+                if (i == end) {
+                    return -1;
+                }
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static long parseIpv6(CharSequence text, int start, int end, AddressConsumer consumer) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '%') {
+                end = i;
+                break;
+            }
+        }
+
+        // Groups before "::" go to the head, groups after it to the tail
+        long headHi = 0;
+        long headLo = 0;
+        int headGroups = 0;
+        long tailHi = 0;
+        long tailLo = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+
+        int i = start;
+        if (end - start >= 2 && text.charAt(start) == ':' && text.charAt(start + 1) == ':') {
+            compressed = true;
+            i += 2;
+        } else if (i < end && text.charAt(i) == ':') {
+            return UNPARSEABLE;
+        }
+
+        while (i < end) {
+            int groupStart = i;
+            int group = 0;
+            while (i < end && Character.digit(text.charAt(i), 16) >= 0 && i - groupStart < 4) {
+                group = (group << 4) | Character.digit(text.charAt(i), 16);
+                i++;
+            }
+            int groupsSoFar = headGroups + tailGroups;
+
+            if (i < end && text.charAt(i) == '.') {
+                // Embedded IPv4 tail takes the last two groups
+                long ipv4 = parseIpv4(text, groupStart, end);
+                if (ipv4 < 0 || groupsSoFar > 6) {
+                    return UNPARSEABLE;
+                }
+                for (int half = 1; half >= 0; half--) {
+                    int value = (int) (ipv4 >>> (16 * half)) & 0xFFFF;
+                    if (compressed) {
+                        tailHi = (tailHi << 16) | (tailLo >>> 48);
+                        tailLo = (tailLo << 16) | value;
+                        tailGroups++;
+                    } else {
+                        headHi = (headHi << 16) | (headLo >>> 48);
+                        headLo = (headLo << 16) | value;
+                        headGroups++;
+                    }
+                }
+                i = end;
+                break;
+            }
+
+            if (i == groupStart || groupsSoFar == 8) {
+                return UNPARSEABLE;
+            }
+            if (compressed) {
+                tailHi = (tailHi << 16) | (tailLo >>> 48);
+                tailLo = (tailLo << 16) | group;
+                tailGroups++;
+            } else {
+                headHi = (headHi << 16) | (headLo >>> 48);
+                headLo = (headLo << 16) | group;
+                headGroups++;
+            }
+
+            if (i < end) {
+                if (text.charAt(i) != ':') {
+                    return UNPARSEABLE;
+                }
+                i++;
+                if (i < end && text.charAt(i) == ':') {
+                    if (compressed) {
+                        return UNPARSEABLE;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == end) {
+                    return UNPARSEABLE;
+                }
+            }
+        }
+
+        int groups = headGroups + tailGroups;
+        if (compressed ? groups > 7 : groups != 8) {
+            return UNPARSEABLE;
+        }
+        // Move the head groups to the top of the address; "::" is the zeros in between
+        for (int shift = headGroups; shift < 8; shift++) {
+            headHi = (headHi << 16) | (headLo >>> 48);
+            headLo <<= 16;
+        }
+        return consumer.accept(headHi | tailHi, headLo | tailLo);
+    }
+
+    private static boolean isNonPublic(long hi, long lo) {
+        if (hi == 0 && (lo & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX) {
+            int ipv4 = (int) lo;
+            return (ipv4 >>> 24) == 10                    // 10.0.0.0/8
+                    || (ipv4 >>> 20) == 0xAC1              // 172.16.0.0/12
+                    || (ipv4 >>> 16) == 0xC0A8             // 192.168.0.0/16
+                    || (ipv4 >>> 24) == 127                // loopback
+                    || (ipv4 >>> 16) == 0xA9FE             // 169.254.0.0/16 link-local
+                    || (ipv4 >>> 22) == (0x6440 >>> 6);    // 100.64.0.0/10 shared address space
+        }
+        return (hi == 0 && lo == 1)                        // ::1
+                || (hi >>> 57) == (0xFC >>> 1)             // fc00::/7 unique local
+                || (hi >>> 54) == (0xFE80 >>> 6);          // fe80::/10 link-local
+    }
+
+    private static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int result = Long.compareUnsigned(hi1, hi2);
+        return result != 0 ? result : Long.compareUnsigned(lo1, lo2);
+    }
+
+    private static long pack(int flags, float riskScore) {
+        return ((long) flags << 32) | (Float.floatToIntBits(riskScore) & 0xFFFF_FFFFL);
+    }
+
+    private static ByteBuffer header(ByteBuffer buffer, int entries) {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer.putInt(MAGIC).putInt(VERSION).putInt(entries).putInt(0);
+    }
+
+    // Sweep over range boundaries, tracking how many ranges carry each flag and which scores are open
+    private static List<Entry> merge(List<Range> ranges) {
+        List<Boundary> boundaries = new ArrayList<>(ranges.size() * 2);
+        for (Range range : ranges) {
+            boundaries.add(new Boundary(range.startHi(), range.startLo(), range, true));
+            // A range reaching the top of the address space never closes
+            if (range.endHi() != -1L || range.endLo() != -1L) {
+                long nextLo = range.endLo() + 1;
+                long nextHi = nextLo == 0 ? range.endHi() + 1 : range.endHi();
+                boundaries.add(new Boundary(nextHi, nextLo, range, false));
+            }
+        }
+        boundaries.sort((a, b) -> compare(a.hi, a.lo, b.hi, b.lo));
+
+        int[] flagCounts = new int[Integer.SIZE];
+        TreeMap<Float, Integer> openScores = new TreeMap<>();
+        List<Entry> entries = new ArrayList<>();
+        // Whether the last entry ends right before the current segment
+        boolean extendable = false;
+
+        int i = 0;
+        while (i < boundaries.size()) {
+            long hi = boundaries.get(i).hi;
+            long lo = boundaries.get(i).lo;
+            while (i < boundaries.size() && boundaries.get(i).hi == hi && boundaries.get(i).lo == lo) {
+                Boundary boundary = boundaries.get(i++);
+                int delta = boundary.opens ? 1 : -1;
+                for (int bit = 0; bit < Integer.SIZE; bit++) {
+                    if ((boundary.range.flags() & (1 << bit)) != 0) {
+                        flagCounts[bit] += delta;
+                    }
+                }
+                if (boundary.range.riskScore() > 0) {
+                    openScores.merge(boundary.range.riskScore(), delta, (a, b) -> a + b == 0 ? null : a + b);
+                }
+            }
+
+            int flags = 0;
+            for (int bit = 0; bit < Integer.SIZE; bit++) {
+                if (flagCounts[bit] > 0) {
+                    flags |= 1 << bit;
+                }
+            }
+            float riskScore = openScores.isEmpty() ? 0.0f : openScores.lastKey();
+
+            // The segment runs up to the next boundary, or to the top of the address space
+            long endHi = -1L;
+            long endLo = -1L;
+            if (i < boundaries.size()) {
+                endLo = boundaries.get(i).lo - 1;
+                endHi = boundaries.get(i).lo == 0 ? boundaries.get(i).hi - 1 : boundaries.get(i).hi;
+            }
+
+            if (flags == 0 && riskScore == 0.0f) {
+                extendable = false;
+                continue;
+            }
+            Entry previous = extendable ? entries.get(entries.size() - 1) : null;
+            if (previous != null && previous.flags == flags && previous.riskScore == riskScore) {
+                previous.endHi = endHi;
+                previous.endLo = endLo;
+            } else {
+                entries.add(new Entry(hi, lo, endHi, endLo, flags, riskScore));
+            }
+            extendable = true;
+        }
+        return entries;
+    }
+
+    // An inclusive range of 128-bit addresses from one of the source files
+    public record Range(long startHi, long startLo, long endHi, long endLo, int flags, float riskScore) {
+    }
+
+    private record Boundary(long hi, long lo, Range range, boolean opens) {
+    }
+
+    // Receives the two halves of a parsed address
+    @FunctionalInterface
+    private interface AddressConsumer {
+        long accept(long hi, long lo);
+    }
+
+    private static final class Entry {
+
+        private final long startHi;
+        private final long startLo;
+        private long endHi;
+        private long endLo;
+        private final int flags;
+        private final float riskScore;
+
+        private Entry(long startHi, long startLo, long endHi, long endLo, int flags, float riskScore) {
+            this.startHi = startHi;
+            this.startLo = startLo;
+            this.endHi = endHi;
+            this.endLo = endLo;
+            this.flags = flags;
+            this.riskScore = riskScore;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.fraudrisk.enrichment.store;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Local IP reputation from range files in one directory, compiled into a memory-mapped
+// IpRangeIndex. The directory is polled for changes; a changed file set is compiled into a new
+// index that replaces the old one in a single reference swap, so lookups never see a partial table
+// and a broken file only keeps the previous index in service.
+//
+// Files (any may be missing; '#' starts a comment; ranges are "address", "address/prefix" or
+// "first-last", IPv4 or IPv6):
+//   tor-exits.txt    one range per line, flagged TOR_EXIT
+//   proxies.txt      one range per line, flagged PROXY (open proxies and VPN egress)
+//   hosting.txt      one range per line, flagged HOSTING (hosting/cloud ASN prefixes)
+//   risk-scores.csv  "range,score" per line, score between 0 and 1
+@Component
+@Slf4j
+public class IpReputationStore {
+
+    private static final Map<String, Integer> FLAG_FILES = Map.of(
+            "tor-exits.txt", IpRangeIndex.TOR_EXIT,
+            "proxies.txt", IpRangeIndex.PROXY,
+            "hosting.txt", IpRangeIndex.HOSTING);
+    private static final String RISK_SCORE_FILE = "risk-scores.csv";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Path indexDirectory;
+    private final Timer reloadTimer;
+
+    private volatile IpRangeIndex index = IpRangeIndex.empty();
+    private volatile String loadedFingerprint;
+
+    public IpReputationStore(
+            MeterRegistry meterRegistry,
+            @Value("${ip.reputation.enabled:true}") boolean enabled,
+            @Value("${ip.reputation.directory:ip-ranges}") String directory,
+            @Value("${ip.reputation.index-directory:${java.io.tmpdir}}") String indexDirectory) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.indexDirectory = Paths.get(indexDirectory);
+
+        this.reloadTimer = meterRegistry.timer("ip.reputation.reload");
+        meterRegistry.gauge("ip.reputation.ranges", this, store -> store.index.size());
+    }
+
+    // Reputation flags and score of the address, packed as described in IpRangeIndex.lookup;
+    // private-range detection works even when no files are loaded
+    public long lookup(String ipAddress) {
+        return index.lookup(ipAddress);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        refresh();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${ip.reputation.refresh-interval-ms:60000}",
+            initialDelayString = "${ip.reputation.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String fingerprint = fingerprint();
+            if (!fingerprint.equals(loadedFingerprint)) {
+                reload(fingerprint);
+            }
+        } catch (Exception e) {
+            log.error("IP reputation reload from {} failed, keeping {} ranges: {}",
+                    directory, index.size(), e.getMessage(), e);
+        }
+    }
+
+    private void reload(String fingerprint) throws IOException {
+        long startNanos = System.nanoTime();
+
+        List<IpRangeIndex.Range> ranges = new ArrayList<>();
+        for (Map.Entry<String, Integer> flagFile : FLAG_FILES.entrySet()) {
+            readRanges(directory.resolve(flagFile.getKey()), flagFile.getValue(), false, ranges);
+        }
+        readRanges(directory.resolve(RISK_SCORE_FILE), 0, true, ranges);
+
+        Path file = Files.createTempFile(indexDirectory, "ip-ranges-", ".idx");
+        IpRangeIndex built = IpRangeIndex.build(ranges, file);
+        index = built;
+        loadedFingerprint = fingerprint;
+
+        // The mapping outlives the file, and the previous index stays readable until collected
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+
+        reloadTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        log.info("Loaded {} IP ranges from {} into an index of {} entries", ranges.size(), directory, built.size());
+    }
+
+    private void readRanges(Path file, int flags, boolean scored, List<IpRangeIndex.Range> ranges)
+            throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String content = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (content.isEmpty()) {
+                    continue;
+                }
+
+                float riskScore = 0.0f;
+                if (scored) {
+                    int comma = content.lastIndexOf(',');
+                    try {
+                        riskScore = comma > 0 ? Float.parseFloat(content.substring(comma + 1).trim()) : Float.NaN;
+                    } catch (NumberFormatException e) {
+                        riskScore = Float.NaN;
+                    }
+                    if (!(riskScore >= 0.0f && riskScore <= 1.0f)) {
+                        skipped++;
+                        continue;
+                    }
+                    content = content.substring(0, comma);
+                }
+
+                IpRangeIndex.Range range = IpRangeIndex.parseRange(content, flags, riskScore);
+                if (range != null) {
+                    ranges.add(range);
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} malformed lines in {}", skipped, file);
+        }
+    }
+
+    // Names, sizes and modification times of the source files; any change triggers a rebuild
+    private String fingerprint() throws IOException {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String name : FLAG_FILES.keySet().stream().sorted().toList()) {
+            appendFingerprint(fingerprint, directory.resolve(name));
+        }
+        appendFingerprint(fingerprint, directory.resolve(RISK_SCORE_FILE));
+        return fingerprint.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, Path file) throws IOException {
+        fingerprint.append(file.getFileName()).append(':');
+        if (Files.isRegularFile(file)) {
+            fingerprint.append(Files.size(file)).append('@').append(Files.getLastModifiedTime(file).toMillis());
+        }
+        fingerprint.append(';');
+    }
+}
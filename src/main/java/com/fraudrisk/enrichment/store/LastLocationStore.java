@@ -0,0 +1,221 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.GeoLocation;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.service.TransactionObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Each customer's two most recent known locations (latitude, longitude, time and country) kept in
+// memory for the geo-velocity features. Customers are seeded from Postgres with their latest
+// located transactions on first sight, then updated in-stream; the least recently used are evicted.
+// Customers without any located transaction are remembered as such, so they aren't re-queried.
+// Each customer remembers its last transaction ids, so a redelivered transaction is applied once.
+// The second location answers for a transaction that is itself the latest one stored, as when it
+// is retried or redelivered after being published.
+@Component
+@Slf4j
+public class LastLocationStore implements TransactionObserver {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int LOCATIONS_KEPT = 2;
+
+    private final TransactionRepository transactionRepository;
+    private final boolean enabled;
+    private final Segment[] segments;
+    private final Counter seedCounter;
+
+    public LastLocationStore(
+            TransactionRepository transactionRepository,
+            MeterRegistry meterRegistry,
+            @Value("${geo.velocity.enabled:true}") boolean enabled,
+            @Value("${geo.velocity.max-customers:200000}") int maxCustomers) {
+        this.transactionRepository = transactionRepository;
+        this.enabled = enabled;
+
+        // Striped LRU maps so unrelated customers don't contend on a single lock
+        int customersPerSegment = Math.max(1, maxCustomers / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(customersPerSegment);
+        }
+
+        this.seedCounter = meterRegistry.counter("geo.velocity.seeds");
+        meterRegistry.gauge("geo.velocity.customers", this, LastLocationStore::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The customer's last location from another transaction before the given transaction time, or null
+    // if none is known
+    public LastLocation getLastLocation(String customerId, String transactionId, Instant before) {
+        Segment segment = segmentFor(customerId);
+
+        CustomerLocation location;
+        synchronized (segment) {
+            location = segment.customers.get(customerId);
+        }
+
+        if (location == null) {
+            // Seed outside the lock; if another thread got there first, keep its copy
+            CustomerLocation seeded = seed(customerId, before);
+            synchronized (segment) {
+                location = segment.customers.putIfAbsent(customerId, seeded);
+                if (location == null) {
+                    location = seeded;
+                }
+            }
+        }
+
+        synchronized (segment) {
+            return location.lastBefore(transactionId, before.toEpochMilli());
+        }
+    }
+
+    @Override
+    public void onTransactionEnriched(Transaction transaction) {
+        if (!enabled || transaction.getTransactionDate() == null) {
+            return;
+        }
+
+        GeoLocation geoLocation;
+        try {
+            geoLocation = GeoLocation.parse(transaction.getLocation());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (geoLocation == null) {
+            return;
+        }
+
+        Segment segment = segmentFor(transaction.getCustomerId());
+        synchronized (segment) {
+            // Customers evicted since their lookup are re-seeded from Postgres on next sight
+            CustomerLocation location = segment.customers.get(transaction.getCustomerId());
+            if (location != null && location.recentTransactions.add(transaction.getTransactionId())) {
+                location.update(geoLocation, transaction.getTransactionDate().toEpochMilli(),
+                        transaction.getTransactionId());
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.customers.size();
+            }
+        }
+        return size;
+    }
+
+    // Country codes compared by value: up to four ASCII characters packed into the int, case-folded
+    public static int countryCode(String country) {
+        if (country == null) {
+            return 0;
+        }
+        if (country.length() > 4) {
+            return country.toUpperCase().hashCode();
+        }
+        int code = 0;
+        for (int i = 0; i < country.length(); i++) {
+            code = (code << 8) | (Character.toUpperCase(country.charAt(i)) & 0xFF);
+        }
+        return code;
+    }
+
+    private CustomerLocation seed(String customerId, Instant before) {
+        log.debug("Seeding last location for customer: {}", customerId);
+        seedCounter.increment();
+
+        // Only transactions before this one, so a redelivered transaction already stored doesn't
+        // become its own previous location
+        List<Object[]> rows = transactionRepository.findCustomerLocationsBefore(
+                customerId, before, PageRequest.of(0, LOCATIONS_KEPT));
+
+        CustomerLocation location = new CustomerLocation();
+        for (Object[] row : rows) {
+            try {
+                GeoLocation geoLocation = GeoLocation.parse((String) row[0]);
+                if (geoLocation != null) {
+                    location.update(geoLocation, ((Instant) row[1]).toEpochMilli(), (String) row[2]);
+                    location.recentTransactions.add((String) row[2]);
+                }
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring malformed stored location for customer {}: {}", customerId, row[0]);
+            }
+        }
+        return location;
+    }
+
+    private Segment segmentFor(String customerId) {
+        int hash = customerId != null ? customerId.hashCode() : 0;
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static final class Segment {
+
+        private final Map<String, CustomerLocation> customers;
+
+        private Segment(int maxCustomers) {
+            this.customers = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CustomerLocation> eldest) {
+                    return size() > maxCustomers;
+                }
+            };
+        }
+    }
+
+    private static final class CustomerLocation {
+
+        private final RecentTransactionIds recentTransactions = new RecentTransactionIds();
+        private LastLocation latest;
+        private String latestTransactionId;
+        private LastLocation previous;
+        private String previousTransactionId;
+
+        // Keeps the two newest by transaction time, so transactions arriving out of order never move
+        // the latest location back in time
+        private void update(GeoLocation geoLocation, long transactionMillis, String transactionId) {
+            LastLocation located = new LastLocation(geoLocation.latitude(), geoLocation.longitude(),
+                    transactionMillis, countryCode(geoLocation.country()));
+            if (latest == null || transactionMillis >= latest.epochMillis()) {
+                previous = latest;
+                previousTransactionId = latestTransactionId;
+                latest = located;
+                latestTransactionId = transactionId;
+            } else if (previous == null || transactionMillis >= previous.epochMillis()) {
+                previous = located;
+                previousTransactionId = transactionId;
+            }
+        }
+
+        private LastLocation lastBefore(String transactionId, long beforeMillis) {
+            if (isBefore(latest, latestTransactionId, transactionId, beforeMillis)) {
+                return latest;
+            }
+            return isBefore(previous, previousTransactionId, transactionId, beforeMillis) ? previous : null;
+        }
+
+        private static boolean isBefore(LastLocation location, String locationTransactionId, String transactionId,
+                                        long beforeMillis) {
+            return location != null && location.epochMillis() < beforeMillis
+                    && (transactionId == null || !transactionId.equals(locationTransactionId));
+        }
+    }
+
+    public record LastLocation(double latitude, double longitude, long epochMillis, int countryCode) {
+    }
+}
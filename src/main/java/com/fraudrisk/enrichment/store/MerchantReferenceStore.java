@@ -0,0 +1,153 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.entity.MerchantEntity;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.repository.MerchantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable in-memory copy of the whole merchants table, indexed by merchant id. Rows changed
+// since the last watermark are merged in periodically, with a periodic full reload to pick up
+// deletions; each refresh swaps in a new map so readers never see a partial update.
+@Component
+@Slf4j
+public class MerchantReferenceStore {
+
+    // Re-read rows a little before the watermark so updates committed out of order aren't missed
+    private static final Duration WATERMARK_OVERLAP = Duration.ofSeconds(5);
+
+    private final MerchantRepository merchantRepository;
+    private final boolean enabled;
+    private final Duration fullReloadInterval;
+    private final Timer refreshTimer;
+
+    private volatile Map<String, MerchantData> merchants = Map.of();
+    private volatile Instant watermark;
+    private volatile Instant lastFullReload;
+    private volatile Instant lastRefresh;
+
+    public MerchantReferenceStore(
+            MerchantRepository merchantRepository,
+            MeterRegistry meterRegistry,
+            @Value("${merchant.reference.enabled:true}") boolean enabled,
+            @Value("${merchant.reference.full-reload-interval-ms:3600000}") long fullReloadIntervalMs) {
+        this.merchantRepository = merchantRepository;
+        this.enabled = enabled;
+        this.fullReloadInterval = Duration.ofMillis(fullReloadIntervalMs);
+
+        this.refreshTimer = meterRegistry.timer("merchant.reference.refresh");
+        meterRegistry.gauge("merchant.reference.merchants", this, store -> store.merchants.size());
+        meterRegistry.gauge("merchant.reference.age.seconds", this, MerchantReferenceStore::snapshotAgeSeconds);
+    }
+
+    public MerchantData get(String merchantId) {
+        return merchantId != null ? merchants.get(merchantId) : null;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            fullReload();
+        } catch (Exception e) {
+            // Merchant lookups fall back to the database until a scheduled refresh succeeds
+            log.error("Initial merchant reference load failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${merchant.reference.refresh-interval-ms:60000}",
+            initialDelayString = "${merchant.reference.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (watermark == null || lastFullReload == null
+                    || Instant.now().isAfter(lastFullReload.plus(fullReloadInterval))) {
+                fullReload();
+            } else {
+                incrementalRefresh();
+            }
+        } catch (Exception e) {
+            log.error("Merchant reference refresh failed, keeping snapshot from {}: {}",
+                    lastRefresh, e.getMessage(), e);
+        }
+    }
+
+    private void fullReload() {
+        refreshTimer.record(() -> {
+            List<MerchantEntity> entities = merchantRepository.findAll();
+
+            Map<String, MerchantData> loaded = new HashMap<>(entities.size() * 2);
+            Instant newWatermark = Instant.EPOCH;
+            for (MerchantEntity entity : entities) {
+                loaded.put(entity.getMerchantId(), toMerchantData(entity));
+                newWatermark = latest(newWatermark, entity.getUpdatedAt());
+            }
+
+            merchants = Map.copyOf(loaded);
+            watermark = newWatermark;
+            lastFullReload = Instant.now();
+            lastRefresh = lastFullReload;
+
+            log.info("Loaded {} merchants into reference store", loaded.size());
+        });
+    }
+
+    private void incrementalRefresh() {
+        refreshTimer.record(() -> {
+            List<MerchantEntity> changed = merchantRepository.findByUpdatedAtAfter(watermark.minus(WATERMARK_OVERLAP));
+
+            if (!changed.isEmpty()) {
+                Map<String, MerchantData> updated = new HashMap<>(merchants);
+                Instant newWatermark = watermark;
+                for (MerchantEntity entity : changed) {
+                    updated.put(entity.getMerchantId(), toMerchantData(entity));
+                    newWatermark = latest(newWatermark, entity.getUpdatedAt());
+                }
+
+                merchants = Map.copyOf(updated);
+                watermark = newWatermark;
+                log.debug("Merged {} changed merchants into reference store", changed.size());
+            }
+
+            lastRefresh = Instant.now();
+        });
+    }
+
+    private double snapshotAgeSeconds() {
+        Instant refreshedAt = lastRefresh;
+        return refreshedAt != null ? Duration.between(refreshedAt, Instant.now()).toMillis() / 1000.0 : -1.0;
+    }
+
+    private static Instant latest(Instant current, Instant candidate) {
+        return candidate != null && candidate.isAfter(current) ? candidate : current;
+    }
+
+    public static MerchantData toMerchantData(MerchantEntity merchant) {
+        return MerchantData.builder()
+                .merchantId(merchant.getMerchantId())
+                .merchantName(merchant.getMerchantName())
+                .merchantCategory(merchant.getMerchantCategory())
+                .merchantCountry(merchant.getMerchantCountry())
+                .merchantRiskLevel(merchant.getRiskLevel())
+                .isHighRiskMerchant(merchant.isHighRisk())
+                .isNewMerchant(merchant.getTenureDays() == null || merchant.getTenureDays() < 90)
+                .merchantTenureDays(merchant.getTenureDays())
+                .fraudRatePercentage(merchant.getFraudRatePercentage())
+                .build();
+    }
+}
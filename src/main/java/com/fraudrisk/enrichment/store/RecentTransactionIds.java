@@ -0,0 +1,74 @@
+package com.fraudrisk.enrichment.store;
+
+import java.nio.ByteBuffer;
+
+// The last few transaction ids applied to one customer's state, kept as 64-bit fingerprints in a
+// ring. Retries and redeliveries of a published transaction come back within minutes, so a short
+// per-customer memory is enough to apply each transaction once.
+final class RecentTransactionIds {
+
+    static final int CAPACITY = 16;
+    static final int ENCODED_SIZE = CAPACITY * Long.BYTES + 1;
+
+    private final long[] fingerprints = new long[CAPACITY];
+    private int size;
+    private int next;
+
+    // False if the id was already recorded; transactions without an id can't be told apart and always count
+    boolean add(String transactionId) {
+        if (transactionId == null) {
+            return true;
+        }
+        long fingerprint = fingerprint(transactionId);
+        for (int i = 0; i < size; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return false;
+            }
+        }
+        fingerprints[next] = fingerprint;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+        return true;
+    }
+
+    boolean contains(String transactionId) {
+        if (transactionId == null) {
+            return false;
+        }
+        long fingerprint = fingerprint(transactionId);
+        for (int i = 0; i < size; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void encode(ByteBuffer buffer) {
+        for (long fingerprint : fingerprints) {
+            buffer.putLong(fingerprint);
+        }
+        buffer.put((byte) (size == CAPACITY ? CAPACITY + next : next));
+    }
+
+    static RecentTransactionIds decode(ByteBuffer buffer) {
+        RecentTransactionIds ids = new RecentTransactionIds();
+        for (int i = 0; i < CAPACITY; i++) {
+            ids.fingerprints[i] = buffer.getLong();
+        }
+        int position = buffer.get();
+        ids.next = position % CAPACITY;
+        ids.size = position >= CAPACITY ? CAPACITY : position;
+        return ids;
+    }
+
+    // 64-bit FNV-1a over the characters; CustomerProfile fingerprints merchants and categories with it too
+    static long fingerprint(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
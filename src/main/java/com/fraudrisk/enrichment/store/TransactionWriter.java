@@ -0,0 +1,256 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.service.TransactionObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind persistence of this service's own traffic into the transactions table, so the history
+// and velocity queries see it. A transaction is queued without blocking once its enriched record is
+// published, not when it is consumed: the history queries and the stores' seeds read this table, and
+// a row written before its own enrichment (always the case for a retry) would count towards its own
+// features. Transactions that end up on the dead-letter topic are therefore never written here.
+// A single background thread writes batches of up to batch-size rows, flushed when the batch fills
+// or flush-interval elapses. Each batch is one INSERT over unnested column arrays; rows whose
+// transaction id already exists, or whose customer or merchant is unknown (the foreign keys would
+// reject them), are skipped, so a transaction published more than once is written once.
+@Component
+@Slf4j
+public class TransactionWriter implements TransactionObserver {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO transactions (transaction_id, account_id, customer_id, merchant_id, merchant_name,
+                    merchant_category, amount, currency, card_type, payment_method, transaction_type,
+                    transaction_status, transaction_date, device_id, ip_address, location)
+            SELECT t.* FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                    ?::varchar[], ?::numeric[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                    ?::varchar[], ?::timestamp[], ?::varchar[], ?::varchar[], ?::varchar[])
+                AS t(transaction_id, account_id, customer_id, merchant_id, merchant_name,
+                    merchant_category, amount, currency, card_type, payment_method, transaction_type,
+                    transaction_status, transaction_date, device_id, ip_address, location)
+            WHERE EXISTS (SELECT 1 FROM customers c WHERE c.customer_id = t.customer_id)
+              AND EXISTS (SELECT 1 FROM merchants m WHERE m.merchant_id = t.merchant_id)
+            ON CONFLICT (transaction_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<Transaction> queue;
+    private final Counter inserted;
+    private final Counter skipped;
+    private final Counter dropped;
+    private final Counter failed;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public TransactionWriter(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${transaction.writer.enabled:true}") boolean enabled,
+            @Value("${transaction.writer.batch-size:2000}") int batchSize,
+            @Value("${transaction.writer.flush-interval-ms:200}") long flushIntervalMillis,
+            @Value("${transaction.writer.queue-capacity:100000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.inserted = meterRegistry.counter("transaction.writer.rows", "result", "inserted");
+        this.skipped = meterRegistry.counter("transaction.writer.rows", "result", "skipped");
+        this.dropped = meterRegistry.counter("transaction.writer.rows", "result", "dropped");
+        this.failed = meterRegistry.counter("transaction.writer.rows", "result", "failed");
+        this.batchSizes = meterRegistry.summary("transaction.writer.batch.size");
+        this.flushTimer = meterRegistry.timer("transaction.writer.flush");
+        meterRegistry.gauge("transaction.writer.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "transaction-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public void onTransactionEnriched(Transaction transaction) {
+        if (!enabled) {
+            return;
+        }
+        // Never holds up enrichment; when the database falls this far behind, rows are dropped and counted
+        if (!queue.offer(transaction)) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fill(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: write what is already queued without waiting for more
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Waits for the first row, then up to flush-interval for the batch to fill
+    private void fill(List<Transaction> batch) throws InterruptedException {
+        Transaction first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return;
+            }
+            Transaction next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Transaction> batch) {
+        int rows = batch.size();
+        String[] transactionIds = new String[rows];
+        String[] accountIds = new String[rows];
+        String[] customerIds = new String[rows];
+        String[] merchantIds = new String[rows];
+        String[] merchantNames = new String[rows];
+        String[] merchantCategories = new String[rows];
+        BigDecimal[] amounts = new BigDecimal[rows];
+        String[] currencies = new String[rows];
+        String[] cardTypes = new String[rows];
+        String[] paymentMethods = new String[rows];
+        String[] transactionTypes = new String[rows];
+        String[] transactionStatuses = new String[rows];
+        Timestamp[] transactionDates = new Timestamp[rows];
+        String[] deviceIds = new String[rows];
+        String[] ipAddresses = new String[rows];
+        String[] locations = new String[rows];
+
+        int count = 0;
+        for (Transaction transaction : batch) {
+            // Rows the NOT NULL columns would reject are left out rather than failing the batch
+            if (transaction.getTransactionId() == null || transaction.getAccountId() == null
+                    || transaction.getCustomerId() == null || transaction.getMerchantId() == null
+                    || transaction.getAmount() == null || transaction.getTransactionDate() == null) {
+                skipped.increment();
+                continue;
+            }
+            transactionIds[count] = transaction.getTransactionId();
+            accountIds[count] = transaction.getAccountId();
+            customerIds[count] = transaction.getCustomerId();
+            merchantIds[count] = transaction.getMerchantId();
+            merchantNames[count] = transaction.getMerchantName();
+            merchantCategories[count] = transaction.getMerchantCategory();
+            amounts[count] = transaction.getAmount();
+            currencies[count] = transaction.getCurrency();
+            cardTypes[count] = transaction.getCardType();
+            paymentMethods[count] = transaction.getPaymentMethod();
+            transactionTypes[count] = transaction.getTransactionType();
+            transactionStatuses[count] = transaction.getTransactionStatus();
+            transactionDates[count] = Timestamp.from(transaction.getTransactionDate());
+            deviceIds[count] = transaction.getDeviceId();
+            ipAddresses[count] = transaction.getIpAddress();
+            locations[count] = transaction.getLocation();
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        int validRows = count;
+        Object[][] columns = {
+                transactionIds, accountIds, customerIds, merchantIds, merchantNames, merchantCategories,
+                amounts, currencies, cardTypes, paymentMethods, transactionTypes, transactionStatuses,
+                transactionDates, deviceIds, ipAddresses, locations
+        };
+        String[] elementTypes = {
+                "varchar", "varchar", "varchar", "varchar", "varchar", "varchar",
+                "numeric", "varchar", "varchar", "varchar", "varchar", "varchar",
+                "timestamp", "varchar", "varchar", "varchar"
+        };
+
+        try {
+            int insertedRows = flushTimer.record(() -> jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                    List<Array> arrays = new ArrayList<>(columns.length);
+                    try {
+                        for (int i = 0; i < columns.length; i++) {
+                            Array array = connection.createArrayOf(elementTypes[i], Arrays.copyOf(columns[i], validRows));
+                            arrays.add(array);
+                            statement.setArray(i + 1, array);
+                        }
+                        return statement.executeUpdate();
+                    } finally {
+                        for (Array array : arrays) {
+                            array.free();
+                        }
+                    }
+                }
+            }));
+
+            batchSizes.record(validRows);
+            inserted.increment(insertedRows);
+            // Already stored, or referencing a customer or merchant the database doesn't know
+            skipped.increment(validRows - insertedRows);
+        } catch (RuntimeException e) {
+            // Best effort: the transactions were already enriched and published, so they are not retried
+            log.error("Failed to write batch of {} transactions: {}", validRows, e.getMessage(), e);
+            failed.increment(validRows);
+        }
+    }
+}
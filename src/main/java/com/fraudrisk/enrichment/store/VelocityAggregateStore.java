@@ -0,0 +1,245 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import com.fraudrisk.enrichment.service.TransactionObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-customer sliding-window transaction counts and amount sums kept in memory: hourly buckets
+// for the last 24 hours and daily buckets for the last 30 days. Customers are seeded from
+// Postgres on first sight and then updated in-stream; the least recently used are evicted. Each
+// customer remembers its last transaction ids, so a redelivered transaction is only counted once.
+@Component
+@Slf4j
+public class VelocityAggregateStore implements TransactionObserver {
+
+    private static final int HOURLY_BUCKETS = 24;
+    private static final int DAILY_BUCKETS = 30;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int SEGMENT_COUNT = 16;
+
+    private final TransactionRepository transactionRepository;
+    private final boolean enabled;
+    private final Segment[] segments;
+    private final Counter seedCounter;
+
+    public VelocityAggregateStore(
+            TransactionRepository transactionRepository,
+            MeterRegistry meterRegistry,
+            @Value("${velocity.store.enabled:true}") boolean enabled,
+            @Value("${velocity.store.max-customers:100000}") int maxCustomers) {
+        this.transactionRepository = transactionRepository;
+        this.enabled = enabled;
+
+        // Striped LRU maps so unrelated customers don't contend on a single lock
+        int customersPerSegment = Math.max(1, maxCustomers / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(customersPerSegment);
+        }
+
+        this.seedCounter = meterRegistry.counter("velocity.store.seeds");
+        meterRegistry.gauge("velocity.store.customers", this, VelocityAggregateStore::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public VelocityAggregates getAggregates(String customerId, Instant now) {
+        Segment segment = segmentFor(customerId);
+
+        CustomerVelocity velocity;
+        synchronized (segment) {
+            velocity = segment.customers.get(customerId);
+        }
+
+        if (velocity == null) {
+            // Seed outside the lock; if another thread got there first, keep its copy
+            CustomerVelocity seeded = seed(customerId, now);
+            synchronized (segment) {
+                velocity = segment.customers.putIfAbsent(customerId, seeded);
+                if (velocity == null) {
+                    velocity = seeded;
+                }
+            }
+        }
+
+        synchronized (segment) {
+            return velocity.aggregate(now.toEpochMilli());
+        }
+    }
+
+    @Override
+    public void onTransactionEnriched(Transaction transaction) {
+        if (!enabled || transaction.getTransactionDate() == null) {
+            return;
+        }
+
+        Segment segment = segmentFor(transaction.getCustomerId());
+        synchronized (segment) {
+            // Customers evicted since their lookup are re-seeded from Postgres on next sight
+            CustomerVelocity velocity = segment.customers.get(transaction.getCustomerId());
+            if (velocity != null && velocity.recentTransactions.add(transaction.getTransactionId())) {
+                velocity.add(transaction.getTransactionDate().toEpochMilli(), amountOf(transaction.getAmount()));
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.customers.size();
+            }
+        }
+        return size;
+    }
+
+    private CustomerVelocity seed(String customerId, Instant now) {
+        log.debug("Seeding velocity aggregates for customer: {}", customerId);
+        seedCounter.increment();
+
+        List<Object[]> rows = transactionRepository.findCustomerHistoryRows(
+                customerId,
+                now.minus(DAILY_BUCKETS, ChronoUnit.DAYS)
+        );
+
+        CustomerVelocity velocity = new CustomerVelocity();
+        for (Object[] row : rows) {
+            velocity.add(((Instant) row[0]).toEpochMilli(), amountOf((BigDecimal) row[1]));
+            velocity.recentTransactions.add((String) row[5]);
+        }
+        return velocity;
+    }
+
+    private Segment segmentFor(String customerId) {
+        int hash = customerId != null ? customerId.hashCode() : 0;
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static double amountOf(BigDecimal amount) {
+        return amount != null ? amount.doubleValue() : 0.0;
+    }
+
+    private static final class Segment {
+
+        private final Map<String, CustomerVelocity> customers;
+
+        private Segment(int maxCustomers) {
+            this.customers = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CustomerVelocity> eldest) {
+                    return size() > maxCustomers;
+                }
+            };
+        }
+    }
+
+    // Ring buffers indexed by epoch hour/day modulo the window; each slot remembers which
+    // hour/day it currently holds so stale slots are reset lazily instead of rotated
+    private static final class CustomerVelocity {
+
+        private final RecentTransactionIds recentTransactions = new RecentTransactionIds();
+
+        private final long[] hourLabels = new long[HOURLY_BUCKETS];
+        private final int[] hourCounts = new int[HOURLY_BUCKETS];
+        private final double[] hourSums = new double[HOURLY_BUCKETS];
+
+        private final long[] dayLabels = new long[DAILY_BUCKETS];
+        private final int[] dayCounts = new int[DAILY_BUCKETS];
+        private final double[] daySums = new double[DAILY_BUCKETS];
+
+        private CustomerVelocity() {
+            Arrays.fill(hourLabels, Long.MIN_VALUE);
+            Arrays.fill(dayLabels, Long.MIN_VALUE);
+        }
+
+        private void add(long epochMillis, double amount) {
+            long hour = Math.floorDiv(epochMillis, MILLIS_PER_HOUR);
+            int hourSlot = (int) Math.floorMod(hour, (long) HOURLY_BUCKETS);
+            if (hourLabels[hourSlot] < hour) {
+                hourLabels[hourSlot] = hour;
+                hourCounts[hourSlot] = 0;
+                hourSums[hourSlot] = 0.0;
+            }
+            if (hourLabels[hourSlot] == hour) {
+                hourCounts[hourSlot]++;
+                hourSums[hourSlot] += amount;
+            }
+
+            long day = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+            int daySlot = (int) Math.floorMod(day, (long) DAILY_BUCKETS);
+            if (dayLabels[daySlot] < day) {
+                dayLabels[daySlot] = day;
+                dayCounts[daySlot] = 0;
+                daySums[daySlot] = 0.0;
+            }
+            if (dayLabels[daySlot] == day) {
+                dayCounts[daySlot]++;
+                daySums[daySlot] += amount;
+            }
+        }
+
+        private VelocityAggregates aggregate(long nowMillis) {
+            long currentHour = Math.floorDiv(nowMillis, MILLIS_PER_HOUR);
+            long count24h = 0;
+            double sum24h = 0.0;
+            for (int i = 0; i < HOURLY_BUCKETS; i++) {
+                if (hourLabels[i] > currentHour - HOURLY_BUCKETS && hourLabels[i] <= currentHour) {
+                    count24h += hourCounts[i];
+                    sum24h += hourSums[i];
+                }
+            }
+
+            long today = Math.floorDiv(nowMillis, MILLIS_PER_DAY);
+            long count7d = 0;
+            double sum7d = 0.0;
+            long count30d = 0;
+            double sum30d = 0.0;
+            for (int i = 0; i < DAILY_BUCKETS; i++) {
+                long day = dayLabels[i];
+                if (day > today - DAILY_BUCKETS && day <= today) {
+                    count30d += dayCounts[i];
+                    sum30d += daySums[i];
+                    if (day > today - 7) {
+                        count7d += dayCounts[i];
+                        sum7d += daySums[i];
+                    }
+                }
+            }
+
+            return new VelocityAggregates(count24h, sum24h, count7d, sum7d, count30d, sum30d);
+        }
+    }
+
+    public record VelocityAggregates(
+            long count24h, double sum24h,
+            long count7d, double sum7d,
+            long count30d, double sum30d) {
+
+        public Double averageAmount24h() {
+            return count24h > 0 ? sum24h / count24h : null;
+        }
+
+        public Double averageAmount7d() {
+            return count7d > 0 ? sum7d / count7d : null;
+        }
+
+        public Double averageAmount30d() {
+            return count30d > 0 ? sum30d / count30d : null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fraudrisk.enrichment.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.RedisTemplate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class TwoTierCacheTest {
+
+    private final ConcurrentMapCache remoteCache = new ConcurrentMapCache("customerData");
+    private final CacheInvalidationPublisher invalidationPublisher = mock(CacheInvalidationPublisher.class);
+
+    @SuppressWarnings("unchecked")
+    private final TwoTierCache cache = new TwoTierCache("customerData", Caffeine.newBuilder().build(), remoteCache,
+            mock(RedisTemplate.class), invalidationPublisher, new SimpleMeterRegistry());
+
+    @Test
+    void putFillsBothTiersWithoutBroadcasting() {
+        cache.put("C1", "value");
+
+        assertEquals("value", remoteCache.get("C1").get());
+        assertEquals("value", cache.get("C1").get());
+        verifyNoInteractions(invalidationPublisher);
+    }
+
+    @Test
+    void readThroughMissIsFilledWithoutBroadcasting() {
+        assertEquals("loaded", cache.get("C1", () -> "loaded"));
+
+        assertEquals("loaded", remoteCache.get("C1").get());
+        verifyNoInteractions(invalidationPublisher);
+    }
+
+    @Test
+    void putAllFillsWithoutBroadcasting() {
+        cache.putAll(Map.of("C1", "one", "C2", "two"));
+
+        assertEquals(Map.of("C1", "one", "C2", "two"), cache.getAll(List.of("C1", "C2", "C3")));
+        verifyNoInteractions(invalidationPublisher);
+    }
+
+    @Test
+    void evictIsBroadcast() {
+        cache.put("C1", "value");
+        cache.evict("C1");
+
+        assertNull(cache.get("C1"));
+        verify(invalidationPublisher).publishEviction("customerData", "C1");
+    }
+
+    @Test
+    void clearIsBroadcast() {
+        cache.put("C1", "value");
+        cache.clear();
+
+        assertNull(cache.get("C1"));
+        verify(invalidationPublisher).publishClear("customerData");
+    }
+
+    @Test
+    void peerInvalidationOnlyDropsTheLocalCopy() {
+        cache.put("C1", "value");
+        remoteCache.put("C1", "changed");
+        cache.evictLocal("C1");
+
+        assertEquals("changed", cache.get("C1").get());
+    }
+}
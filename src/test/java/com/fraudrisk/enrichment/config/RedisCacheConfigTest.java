@@ -0,0 +1,39 @@
+package com.fraudrisk.enrichment.config;
+
+import com.fraudrisk.enrichment.model.CustomerData;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RedisCacheConfigTest {
+
+    private final GenericJackson2JsonRedisSerializer serializer = RedisCacheConfig.createCacheValueSerializer();
+
+    @Test
+    void customerDataRoundTripsWithItsInstants() {
+        CustomerData customerData = CustomerData.builder()
+                .customerId("C1001")
+                .customerType("INDIVIDUAL")
+                .customerTenureMonths(36)
+                .customerRiskCategory("LOW")
+                .kycStatus("VERIFIED")
+                .countryOfResidence("US")
+                .lastLoginTime(Instant.parse("2024-03-01T10:15:30.123Z"))
+                .accountCreationDate(Instant.parse("2021-03-01T00:00:00Z"))
+                .hasPreviousFraud(false)
+                .accountActivityLevel(8)
+                .build();
+
+        // Untyped, as the Redis cache and the bulk MGET path read values back
+        assertEquals(customerData, serializer.deserialize(serializer.serialize(customerData)));
+    }
+
+    @Test
+    void customerDataWithoutInstantsRoundTrips() {
+        CustomerData customerData = CustomerData.builder().customerId("C1002").build();
+
+        assertEquals(customerData, serializer.deserialize(serializer.serialize(customerData), CustomerData.class));
+    }
+}
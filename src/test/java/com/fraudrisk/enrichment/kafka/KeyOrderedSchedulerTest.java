@@ -0,0 +1,122 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyOrderedSchedulerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KeyOrderedScheduler scheduler = new KeyOrderedScheduler(executor, meterRegistry);
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void taskOfAKeyStartsOnlyAfterThePreviousOneFinished() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> firstResult = scheduler.submit("C1", task("first", first));
+        CompletableFuture<String> secondResult = scheduler.submit("C1", task("second", CompletableFuture.completedFuture("2")));
+        CompletableFuture<String> thirdResult = scheduler.submit("C1", task("third", CompletableFuture.completedFuture("3")));
+
+        Thread.sleep(100);
+        assertEquals(List.of("first"), started);
+
+        first.complete("1");
+        assertEquals("3", thirdResult.get(5, TimeUnit.SECONDS));
+        assertEquals("1", firstResult.get());
+        assertEquals("2", secondResult.get());
+        assertEquals(List.of("first", "second", "third"), started);
+    }
+
+    @Test
+    void differentKeysRunConcurrently() throws Exception {
+        CompletableFuture<String> blocked = new CompletableFuture<>();
+        scheduler.submit("C1", task("C1", blocked));
+
+        CompletableFuture<String> other = scheduler.submit("C2", task("C2", CompletableFuture.completedFuture("done")));
+
+        assertEquals("done", other.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("C1", "C2"), started);
+        blocked.complete("late");
+    }
+
+    @Test
+    void failedTaskDoesNotHoldUpTheNextOne() throws Exception {
+        CompletableFuture<String> failing = scheduler.submit("C1",
+                task("failing", CompletableFuture.failedFuture(new IllegalStateException("risk service down"))));
+        CompletableFuture<String> next = scheduler.submit("C1", task("next", CompletableFuture.completedFuture("ok")));
+
+        assertEquals("ok", next.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, failing::get);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    @Test
+    void taskThatThrowsCompletesExceptionally() {
+        CompletableFuture<String> result = scheduler.submit("C1", () -> {
+            throw new IllegalArgumentException("bad transaction");
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+    }
+
+    @Test
+    void tasksWithoutAKeyAreNotOrdered() throws Exception {
+        CompletableFuture<String> blocked = new CompletableFuture<>();
+        scheduler.submit(null, task("first", blocked));
+
+        assertEquals("second", scheduler.submit(null, task("second", CompletableFuture.completedFuture("second")))
+                .get(5, TimeUnit.SECONDS));
+        blocked.complete("first");
+    }
+
+    @Test
+    void keyIsForgottenOnceItsLastTaskFinished() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = scheduler.submit("C1", task("first", pending));
+        CompletableFuture<String> second = scheduler.submit("C1", task("second", CompletableFuture.completedFuture("2")));
+        scheduler.submit("C2", task("C2", CompletableFuture.completedFuture("done"))).get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, trackedKeys());
+
+        pending.complete("1");
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        // The tail is removed by a completion callback that may still be running
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (trackedKeys() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, trackedKeys());
+        assertTrue(started.containsAll(List.of("first", "second", "C2")));
+    }
+
+    private <T> Supplier<CompletableFuture<T>> task(String name, CompletableFuture<T> outcome) {
+        return () -> {
+            started.add(name);
+            return outcome;
+        };
+    }
+
+    private double trackedKeys() {
+        return meterRegistry.get("kafka.consumer.ordering.keys").gauge().value();
+    }
+}
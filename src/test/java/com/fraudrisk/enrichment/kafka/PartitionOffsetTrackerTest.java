@@ -0,0 +1,259 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PartitionOffsetTrackerTest {
+
+    private static final String TOPIC = "banking-transactions";
+
+    private final List<Long> committed = new ArrayList<>();
+
+    @Test
+    void inOrderCompletionCommitsEveryRecord() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        ConsumerRecord<String, String> first = record(0, 0);
+        ConsumerRecord<String, String> second = record(0, 1);
+        tracker.begin(first, ack(0));
+        tracker.begin(second, ack(1));
+
+        tracker.complete(first);
+        tracker.complete(second);
+
+        assertEquals(List.of(0L, 1L), committed);
+    }
+
+    @Test
+    void commitWaitsForEarlierRecordsAndThenCoversTheFinishedPrefix() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1, 2, 3);
+
+        tracker.complete(records.get(2));
+        tracker.complete(records.get(1));
+        assertEquals(List.of(), committed);
+
+        tracker.complete(records.get(0));
+        assertEquals(List.of(2L), committed);
+
+        tracker.complete(records.get(3));
+        assertEquals(List.of(2L, 3L), committed);
+    }
+
+    @Test
+    void partitionsAreTrackedIndependently() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        ConsumerRecord<String, String> blocking = record(0, 0);
+        ConsumerRecord<String, String> other = record(1, 0);
+        tracker.begin(blocking, ack(0));
+        tracker.begin(other, ack(100));
+
+        tracker.complete(other);
+
+        assertEquals(List.of(100L), committed);
+    }
+
+    @Test
+    void fullWindowBlocksUntilARecordFinishes() throws Exception {
+        PartitionOffsetTracker tracker = tracker(2);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1);
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                tracker.begin(record(0, 2), ack(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        // An out-of-order completion frees no slot; the window only moves with the committed prefix
+        tracker.complete(records.get(1));
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        tracker.complete(records.get(0));
+        third.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void completionAfterRevokeIsIgnored() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1);
+
+        tracker.onPartitionsRevokedBeforeCommit(null, List.of(new TopicPartition(TOPIC, 0)));
+        tracker.complete(records.get(0));
+        tracker.complete(records.get(1));
+
+        assertEquals(List.of(), committed);
+    }
+
+    @Test
+    void completionFromBeforeAReassignDoesNotCommitForTheNewDelivery() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        ConsumerRecord<String, String> firstDelivery = record(0, 5);
+        tracker.begin(firstDelivery, ack(5));
+
+        tracker.onPartitionsLost(null, List.of(new TopicPartition(TOPIC, 0)));
+        ConsumerRecord<String, String> redelivery = record(0, 5);
+        ConsumerRecord<String, String> next = record(0, 6);
+        tracker.begin(redelivery, ack(1005));
+        tracker.begin(next, ack(1006));
+
+        tracker.complete(firstDelivery);
+        tracker.complete(next);
+        assertEquals(List.of(), committed);
+
+        tracker.complete(redelivery);
+        assertEquals(List.of(1006L), committed);
+    }
+
+    @Test
+    void redeliveredOffsetKeepsItsSlotAndBelongsToTheNewDelivery() throws Exception {
+        PartitionOffsetTracker tracker = tracker(1);
+        ConsumerRecord<String, String> firstDelivery = record(0, 0);
+        tracker.begin(firstDelivery, ack(0));
+
+        // Would block forever if the redelivery needed a second slot
+        ConsumerRecord<String, String> redelivery = record(0, 0);
+        CompletableFuture.runAsync(() -> {
+            try {
+                tracker.begin(redelivery, ack(1000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        tracker.complete(firstDelivery);
+        assertEquals(List.of(), committed);
+
+        tracker.complete(redelivery);
+        assertEquals(List.of(1000L), committed);
+    }
+
+    @Test
+    void completingAnUnknownRecordDoesNothing() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        tracker.begin(record(0, 0), ack(0));
+
+        tracker.complete(record(0, 0));
+        tracker.complete(record(3, 0));
+
+        assertFalse(committed.contains(0L));
+    }
+
+    @Test
+    void failedRecordIsNeverCommittedAndItsPartitionIsRewound() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1, 2);
+        ConsumerSeekAware.ConsumerSeekCallback seekCallback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        tracker.complete(records.get(0));
+        tracker.fail(records.get(1), seekCallback);
+        tracker.complete(records.get(2));
+
+        verify(seekCallback).seek(TOPIC, 0, 1);
+        assertEquals(List.of(0L), committed);
+    }
+
+    @Test
+    void recordsAfterARewindAreSkippedUntilTheFailedRecordIsRedelivered() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1);
+        tracker.fail(records.get(0), mock(ConsumerSeekAware.ConsumerSeekCallback.class));
+
+        // Still in the poll that was fetched before the seek took effect
+        assertFalse(tracker.begin(record(0, 2), ack(2)));
+
+        ConsumerRecord<String, String> redelivery = record(0, 0);
+        ConsumerRecord<String, String> next = record(0, 1);
+        assertTrue(tracker.begin(redelivery, ack(1000)));
+        assertTrue(tracker.begin(next, ack(1001)));
+
+        tracker.complete(records.get(1));
+        tracker.complete(redelivery);
+        assertEquals(List.of(1000L), committed);
+
+        tracker.complete(next);
+        assertEquals(List.of(1000L, 1001L), committed);
+    }
+
+    @Test
+    void rewindFreesTheSlotsOfLaterRecordsForAWaitingListener() throws Exception {
+        PartitionOffsetTracker tracker = tracker(2);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1);
+
+        CompletableFuture<Boolean> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return tracker.begin(record(0, 2), ack(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        });
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        tracker.fail(records.get(0), mock(ConsumerSeekAware.ConsumerSeekCallback.class));
+
+        assertFalse(third.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void earlierFailureAfterARewindSeeksFurtherBackAndLaterFailuresAreIgnored() throws Exception {
+        PartitionOffsetTracker tracker = tracker(10);
+        List<ConsumerRecord<String, String>> records = beginAll(tracker, 0, 0, 1, 2);
+        ConsumerSeekAware.ConsumerSeekCallback seekCallback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        tracker.fail(records.get(1), seekCallback);
+        tracker.fail(records.get(0), seekCallback);
+        tracker.fail(records.get(2), seekCallback);
+
+        verify(seekCallback).seek(TOPIC, 0, 1);
+        verify(seekCallback).seek(TOPIC, 0, 0);
+        verify(seekCallback, never()).seek(TOPIC, 0, 2);
+        assertFalse(tracker.begin(record(0, 1), ack(1001)));
+    }
+
+    private PartitionOffsetTracker tracker(int maxInFlightPerPartition) {
+        return new PartitionOffsetTracker(new SimpleMeterRegistry(), maxInFlightPerPartition);
+    }
+
+    private List<ConsumerRecord<String, String>> beginAll(PartitionOffsetTracker tracker, int partition,
+                                                          long... offsets) throws InterruptedException {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (long offset : offsets) {
+            ConsumerRecord<String, String> record = record(partition, offset);
+            tracker.begin(record, ack(offset));
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, "C1", "TXN-" + offset);
+    }
+
+    // Records which delivery's acknowledgment was used, by a label per delivery
+    private Acknowledgment ack(long label) {
+        return () -> {
+            synchronized (committed) {
+                committed.add(label);
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.fraudrisk.enrichment.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentTransactionFilterTest {
+
+    @Test
+    void onlyPublishedTransactionsAreDuplicates() {
+        RecentTransactionFilter filter = filter(true, 600_000, 200_000);
+
+        assertFalse(filter.isDuplicate("TXN-1"));
+        filter.markPublished("TXN-1");
+
+        assertTrue(filter.isDuplicate("TXN-1"));
+        assertFalse(filter.isDuplicate("TXN-2"));
+        assertFalse(filter.isDuplicate(null));
+    }
+
+    @Test
+    void publishedIdSurvivesOneRotationAndIsForgottenAfterTheWindow() throws InterruptedException {
+        // Half-windows of one second
+        RecentTransactionFilter filter = filter(true, 2000, 200_000);
+        filter.markPublished("TXN-1");
+
+        // Past the first rotation: the id is now only in the previous half-window's filter
+        Thread.sleep(1200);
+        assertTrue(filter.isDuplicate("TXN-1"));
+        filter.markPublished("TXN-2");
+
+        // Past the second rotation and the window: TXN-1 is gone, TXN-2 moved to the previous filter
+        Thread.sleep(1200);
+        assertFalse(filter.isDuplicate("TXN-1"));
+        assertTrue(filter.isDuplicate("TXN-2"));
+    }
+
+    @Test
+    void bloomFalsePositivesAreRejectedByTheExactCheck() {
+        // 64 bits for a thousand ids: nearly every lookup gets past the Bloom filters
+        RecentTransactionFilter filter = new RecentTransactionFilter(new SimpleMeterRegistry(), true, 600_000,
+                2, 0.5, 200_000);
+        for (int i = 0; i < 1000; i++) {
+            filter.markPublished("TXN-" + i);
+        }
+
+        for (int i = 1000; i < 2000; i++) {
+            assertFalse(filter.isDuplicate("TXN-" + i));
+        }
+        assertTrue(filter.isDuplicate("TXN-999"));
+    }
+
+    @Test
+    void idEvictedFromTheExactEntriesIsEnrichedAgain() {
+        // One exact entry per segment
+        RecentTransactionFilter filter = filter(true, 600_000, 16);
+        String first = "TXN-0";
+        String sameSegment = idInSameSegmentAs(first);
+
+        filter.markPublished(first);
+        filter.markPublished(sameSegment);
+
+        assertFalse(filter.isDuplicate(first));
+        assertTrue(filter.isDuplicate(sameSegment));
+    }
+
+    @Test
+    void disabledFilterSeesNoDuplicates() {
+        RecentTransactionFilter filter = filter(false, 600_000, 200_000);
+        filter.markPublished("TXN-1");
+
+        assertFalse(filter.isDuplicate("TXN-1"));
+    }
+
+    private static RecentTransactionFilter filter(boolean enabled, long windowMillis, int maxExactEntries) {
+        return new RecentTransactionFilter(new SimpleMeterRegistry(), enabled, windowMillis, 10_000, 0.01,
+                maxExactEntries);
+    }
+
+    // The filter spreads ids over 16 segments by String.hashCode
+    private static String idInSameSegmentAs(String transactionId) {
+        int segment = Math.floorMod(transactionId.hashCode(), 16);
+        for (int i = 1; ; i++) {
+            String candidate = "TXN-" + i;
+            if (Math.floorMod(candidate.hashCode(), 16) == segment) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.fraudrisk.enrichment.kafka;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RetryTopicsTest {
+
+    private final RetryTopics retryTopics =
+            new RetryTopics("banking-transactions", "banking-transactions-dlq", new long[] {1500, 5000, 60000, 600000});
+
+    @Test
+    void tierTopicsAreNamedAfterTheInputTopicAndTheirDelay() {
+        assertEquals(List.of(
+                        "banking-transactions-retry-1500ms",
+                        "banking-transactions-retry-5s",
+                        "banking-transactions-retry-1m",
+                        "banking-transactions-retry-10m"),
+                retryTopics.getTiers().stream().map(RetryTopics.Tier::topic).toList());
+    }
+
+    @Test
+    void eachFailureMovesTheRecordOneTierOnUntilTheTiersAreUsedUp() {
+        assertNull(retryTopics.tierAfter(0));
+        assertEquals(0, retryTopics.tierAfter(1).index());
+        assertEquals(1500L, retryTopics.tierAfter(1).delayMillis());
+        assertEquals(600000L, retryTopics.tierAfter(4).delayMillis());
+        assertNull(retryTopics.tierAfter(5));
+    }
+
+    @Test
+    void headersCarryTheAttemptsAndTheNotBeforeTime() {
+        RecordHeaders headers = new RecordHeaders();
+        assertEquals(0, RetryTopics.attempts(headers));
+        assertEquals(0L, RetryTopics.notBefore(headers));
+
+        RetryTopics.putHeader(headers, RetryTopics.ATTEMPT_HEADER, 1);
+        RetryTopics.putHeader(headers, RetryTopics.ATTEMPT_HEADER, 2);
+        RetryTopics.putHeader(headers, RetryTopics.NOT_BEFORE_HEADER, 1_709_294_400_000L);
+
+        assertEquals(2, RetryTopics.attempts(headers));
+        assertEquals(1_709_294_400_000L, RetryTopics.notBefore(headers));
+        // The attempt header was replaced rather than appended
+        assertEquals(2, headers.toArray().length);
+    }
+
+    @Test
+    void nullValueRemovesTheHeader() {
+        RecordHeaders headers = new RecordHeaders();
+        RetryTopics.putHeader(headers, RetryTopics.ERROR_MESSAGE_HEADER, "timeout");
+
+        RetryTopics.putHeader(headers, RetryTopics.ERROR_MESSAGE_HEADER, null);
+
+        assertNull(headers.lastHeader(RetryTopics.ERROR_MESSAGE_HEADER));
+    }
+}
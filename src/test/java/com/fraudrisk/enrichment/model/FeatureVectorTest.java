@@ -0,0 +1,143 @@
+package com.fraudrisk.enrichment.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureVectorTest {
+
+    @Test
+    void valuesAreReadBackByType() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.COUNTRY, "US")
+                .set(Feature.LATITUDE, 40.7128)
+                .set(Feature.IS_TOR_EXIT, true);
+
+        assertEquals("US", vector.getString(Feature.COUNTRY));
+        assertEquals(40.7128, vector.getDouble(Feature.LATITUDE));
+        assertTrue(vector.getBoolean(Feature.IS_TOR_EXIT));
+        assertTrue(vector.has(Feature.COUNTRY));
+        assertFalse(vector.has(Feature.CITY));
+    }
+
+    @Test
+    void longWrittenToDoubleFeatureIsStoredAsDouble() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.BEHAVIORAL).set(Feature.AVG_AMOUNT_24H, 42L);
+
+        assertEquals(42.0, vector.getDouble(Feature.AVG_AMOUNT_24H));
+        assertEquals(42.0, vector.get(Feature.AVG_AMOUNT_24H));
+    }
+
+    @Test
+    void featureOfAnotherTypeOrGroupIsRejected() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.GEO);
+
+        assertThrows(IllegalArgumentException.class, () -> vector.set(Feature.COUNTRY, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> vector.set(Feature.DEVICE_MISSING, true));
+        assertThrows(IllegalArgumentException.class, () -> vector.getLong(Feature.LATITUDE));
+        assertFalse(vector.has(Feature.DEVICE_MISSING));
+    }
+
+    @Test
+    void falseBooleanIsPresentAndNullStringIsAbsent() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.IS_PROXY, true)
+                .set(Feature.IS_PROXY, false)
+                .set(Feature.CITY, "Berlin")
+                .set(Feature.CITY, (String) null);
+
+        assertTrue(vector.has(Feature.IS_PROXY));
+        assertEquals(Boolean.FALSE, vector.get(Feature.IS_PROXY));
+        assertFalse(vector.has(Feature.CITY));
+        assertNull(vector.get(Feature.CITY));
+    }
+
+    @Test
+    void getAsDoubleReadsEveryTypeAsANumber() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.DEVICE)
+                .set(Feature.DEVICE_RISK_SCORE, 0.25)
+                .set(Feature.DEVICE_COUNT_90D, 3L)
+                .set(Feature.IS_KNOWN_DEVICE, true)
+                .setError("timeout");
+
+        assertEquals(3L, vector.getLong(Feature.DEVICE_COUNT_90D));
+        assertEquals(0.25, vector.getAsDouble(Feature.DEVICE_RISK_SCORE));
+        assertEquals(3.0, vector.getAsDouble(Feature.DEVICE_COUNT_90D));
+        assertEquals(1.0, vector.getAsDouble(Feature.IS_KNOWN_DEVICE));
+        assertEquals(0.0, vector.getAsDouble(Feature.DEVICE_ERROR));
+        assertEquals(0.0, vector.getAsDouble(Feature.DEVICE_AGE_IN_DAYS));
+    }
+
+    @Test
+    void setAllCopiesOnlyPresentFeatures() {
+        FeatureVector defaults = new FeatureVector(FeatureGroup.HISTORICAL)
+                .set(Feature.NO_HISTORY, true)
+                .set(Feature.AVERAGE_AMOUNT, 10.0)
+                .set(Feature.MOST_COMMON_DAY, "MONDAY");
+        FeatureVector computed = new FeatureVector(FeatureGroup.HISTORICAL)
+                .set(Feature.NO_HISTORY, false)
+                .set(Feature.AVERAGE_AMOUNT, 55.5);
+
+        defaults.setAll(computed);
+
+        assertFalse(defaults.getBoolean(Feature.NO_HISTORY));
+        assertEquals(55.5, defaults.getDouble(Feature.AVERAGE_AMOUNT));
+        assertEquals("MONDAY", defaults.getString(Feature.MOST_COMMON_DAY));
+        assertThrows(IllegalArgumentException.class, () -> defaults.setAll(new FeatureVector(FeatureGroup.GEO)));
+    }
+
+    @Test
+    void mapViewUsesPublishedKeysInSchemaOrder() {
+        FeatureVector vector = new FeatureVector(FeatureGroup.BEHAVIORAL)
+                .set(Feature.AMOUNT_DEVIATION, 1.5)
+                .set(Feature.TRANSACTION_COUNT_24H, 2L);
+
+        Map<String, Object> map = vector.asMap();
+
+        assertEquals(2, map.size());
+        assertEquals(List.of("transactionCount24h", "amountDeviation"), List.copyOf(map.keySet()));
+        assertEquals(2L, map.get("transactionCount24h"));
+        assertTrue(map.containsKey("amountDeviation"));
+        assertFalse(map.containsKey("avgAmount24h"));
+        assertNull(map.get("unknown"));
+    }
+
+    @Test
+    void serializesToTheFeatureMapJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        FeatureVector vector = new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.COUNTRY, "DE")
+                .set(Feature.LATITUDE, 52.52)
+                .set(Feature.IS_TOR_EXIT, true);
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("country", "DE");
+        expected.put("latitude", 52.52);
+        expected.put("isTorExit", true);
+
+        assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(vector));
+    }
+
+    @Test
+    void equalityIgnoresHowAVectorWasBuilt() {
+        FeatureVector first = new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.IS_PROXY, true)
+                .set(Feature.COUNTRY, "FR");
+        FeatureVector second = new FeatureVector(FeatureGroup.GEO)
+                .set(Feature.COUNTRY, "FR")
+                .set(Feature.IS_PROXY, true);
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, second.set(Feature.IS_PROXY, false));
+    }
+}
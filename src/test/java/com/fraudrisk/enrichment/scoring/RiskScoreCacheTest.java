@@ -0,0 +1,52 @@
+package com.fraudrisk.enrichment.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RiskScoreCacheTest {
+
+    private final RiskScoreCache riskScoreCache = new RiskScoreCache(new ConcurrentMapCacheManager("riskProfiles"),
+            new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry());
+
+    @Test
+    void sameTransactionHasTheSameKey() {
+        assertEquals(riskScoreCache.keyFor(transaction("100.00")), riskScoreCache.keyFor(transaction("100.00")));
+        assertTrue(riskScoreCache.keyFor(transaction("100.00")).startsWith("TXN-1:"));
+    }
+
+    @Test
+    void differentPayloadUnderTheSameIdHasAnotherKey() {
+        assertNotEquals(riskScoreCache.keyFor(transaction("100.00")), riskScoreCache.keyFor(transaction("100.01")));
+    }
+
+    @Test
+    void retryFindsTheScoreOfTheFirstAttempt() {
+        RiskScore riskScore = RiskScore.builder().overallScore(0.8).riskLevel("HIGH").build();
+        riskScoreCache.put(riskScoreCache.keyFor(transaction("100.00")), riskScore);
+
+        assertEquals(riskScore, riskScoreCache.get(riskScoreCache.keyFor(transaction("100.00"))));
+        assertNull(riskScoreCache.get(riskScoreCache.keyFor(transaction("250.00"))));
+    }
+
+    private static Transaction transaction(String amount) {
+        return Transaction.builder()
+                .transactionId("TXN-1")
+                .customerId("C1")
+                .merchantId("M1")
+                .amount(new BigDecimal(amount))
+                .transactionDate(Instant.parse("2024-03-01T12:00:00Z"))
+                .build();
+    }
+}
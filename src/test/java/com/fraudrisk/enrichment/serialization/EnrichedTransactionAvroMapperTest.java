@@ -0,0 +1,158 @@
+package com.fraudrisk.enrichment.serialization;
+
+import com.fraudrisk.enrichment.avro.EnrichedTransactionAvro;
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.Feature;
+import com.fraudrisk.enrichment.model.FeatureGroup;
+import com.fraudrisk.enrichment.model.FeatureVector;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EnrichedTransactionAvroMapperTest {
+
+    private static final Instant TRANSACTION_DATE = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final EnrichedTransactionAvroMapper mapper = new EnrichedTransactionAvroMapper();
+
+    @Test
+    void transactionAndReferenceDataAreCopied() {
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction());
+
+        assertEquals("TXN-1", record.getTransaction().getTransactionId());
+        assertEquals(99.99, record.getTransaction().getAmount());
+        assertEquals(TRANSACTION_DATE.toEpochMilli(), record.getTransaction().getTransactionDate());
+        assertNull(record.getTransaction().getIpAddress());
+        assertEquals("C1", record.getCustomerData().getCustomerId());
+        assertEquals(Instant.parse("2021-03-01T00:00:00Z").toEpochMilli(),
+                record.getCustomerData().getAccountCreationDate());
+        assertNull(record.getCustomerData().getLastLoginTime());
+        assertEquals(0.05f, record.getMerchantData().getFraudRatePercentage());
+        assertEquals(0.82, record.getRiskScore().getOverallScore());
+        assertEquals(Map.of("model", 0.82), record.getRiskScore().getComponentScores());
+    }
+
+    @Test
+    void featureVectorsAreCopiedUnderTheirSchemaFields() {
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction());
+
+        assertEquals(3L, record.getBehavioralFeatures().getTransactionCount24h());
+        assertEquals(120.5, record.getBehavioralFeatures().getAvgAmount24h());
+        assertEquals("DE", record.getGeoFeatures().getCountry());
+        assertEquals(Boolean.TRUE, record.getGeoFeatures().getIsTorExit());
+        assertEquals(Boolean.FALSE, record.getDeviceFeatures().getIsKnownDevice());
+        assertEquals("timeout", record.getHistoricalPatterns().getError());
+    }
+
+    @Test
+    void absentFeaturesStayNull() {
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction());
+
+        assertNull(record.getBehavioralFeatures().getTransactionCount7d());
+        assertNull(record.getGeoFeatures().getCity());
+        assertNull(record.getDeviceFeatures().getDeviceAgeInDays());
+        assertNull(record.getHistoricalPatterns().getAverageAmount());
+    }
+
+    @Test
+    void missingPartsMapToNull() {
+        EnrichedTransactionAvro record = mapper.toAvro(EnrichedTransaction.builder()
+                .transaction(Transaction.builder().transactionId("TXN-2").build())
+                .build());
+
+        assertNull(record.getCustomerData());
+        assertNull(record.getMerchantData());
+        assertNull(record.getRiskScore());
+        assertNull(record.getGeoFeatures());
+        assertNull(record.getAdditionalFeatures());
+    }
+
+    @Test
+    void additionalFeaturesAreNarrowedToTheUnionBranches() {
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction());
+
+        Map<String, Object> additionalFeatures = record.getAdditionalFeatures();
+        assertEquals(Boolean.TRUE, additionalFeatures.get("geoFeaturesTimedOut"));
+        assertEquals(7L, additionalFeatures.get("retryAttempt"));
+        assertEquals(1.5, additionalFeatures.get("ratio"));
+        assertEquals("12345678901234567890", additionalFeatures.get("large"));
+        assertNull(additionalFeatures.get("none"));
+    }
+
+    @Test
+    void recordRoundTripsThroughTheBinaryEncoding() throws Exception {
+        EnrichedTransactionAvro record = mapper.toAvro(enrichedTransaction());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new SpecificDatumWriter<>(EnrichedTransactionAvro.class).write(record, encoder);
+        encoder.flush();
+
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(out.toByteArray(), null);
+        EnrichedTransactionAvro decoded = new SpecificDatumReader<>(EnrichedTransactionAvro.class).read(null, decoder);
+
+        assertEquals(record, decoded);
+    }
+
+    private static EnrichedTransaction enrichedTransaction() {
+        Map<String, Object> additionalFeatures = new HashMap<>();
+        additionalFeatures.put("geoFeaturesTimedOut", true);
+        additionalFeatures.put("retryAttempt", 7);
+        additionalFeatures.put("ratio", 1.5f);
+        additionalFeatures.put("large", new BigInteger("12345678901234567890"));
+        additionalFeatures.put("none", null);
+
+        return EnrichedTransaction.builder()
+                .transaction(Transaction.builder()
+                        .transactionId("TXN-1")
+                        .customerId("C1")
+                        .merchantId("M1")
+                        .amount(new BigDecimal("99.99"))
+                        .currency("USD")
+                        .transactionDate(TRANSACTION_DATE)
+                        .build())
+                .customerData(CustomerData.builder()
+                        .customerId("C1")
+                        .customerTenureMonths(36)
+                        .accountCreationDate(Instant.parse("2021-03-01T00:00:00Z"))
+                        .build())
+                .merchantData(MerchantData.builder()
+                        .merchantId("M1")
+                        .fraudRatePercentage(0.05f)
+                        .build())
+                .riskScore(RiskScore.builder()
+                        .overallScore(0.82)
+                        .componentScores(Map.of("model", 0.82))
+                        .riskLevel("HIGH")
+                        .build())
+                .behavioralFeatures(new FeatureVector(FeatureGroup.BEHAVIORAL)
+                        .set(Feature.TRANSACTION_COUNT_24H, 3L)
+                        .set(Feature.AVG_AMOUNT_24H, 120.5))
+                .geoFeatures(new FeatureVector(FeatureGroup.GEO)
+                        .set(Feature.COUNTRY, "DE")
+                        .set(Feature.IS_TOR_EXIT, true))
+                .deviceFeatures(new FeatureVector(FeatureGroup.DEVICE)
+                        .set(Feature.IS_KNOWN_DEVICE, false))
+                .historicalPatterns(new FeatureVector(FeatureGroup.HISTORICAL)
+                        .setError("timeout"))
+                .additionalFeatures(additionalFeatures)
+                .build();
+    }
+}
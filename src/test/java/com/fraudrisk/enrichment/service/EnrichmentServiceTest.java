@@ -0,0 +1,163 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.model.CustomerData;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.MerchantData;
+import com.fraudrisk.enrichment.model.RiskScore;
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.store.CustomerProfileStore;
+import com.fraudrisk.enrichment.store.DeviceRegistryStore;
+import com.fraudrisk.enrichment.store.VelocityAggregateStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EnrichmentServiceTest {
+
+    private final CustomerDataService customerDataService = mock(CustomerDataService.class);
+    private final MerchantDataService merchantDataService = mock(MerchantDataService.class);
+    private final RiskScoringService riskScoringService = mock(RiskScoringService.class);
+    private final VelocityAggregateStore velocityAggregateStore = mock(VelocityAggregateStore.class);
+    private final CustomerProfileStore customerProfileStore = mock(CustomerProfileStore.class);
+    private final DeviceRegistryStore deviceRegistryStore = mock(DeviceRegistryStore.class);
+    private final ErrorHandlingService errorHandlingService = mock(ErrorHandlingService.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final EnrichmentService enrichmentService = new EnrichmentService(
+            customerDataService,
+            merchantDataService,
+            riskScoringService,
+            mock(BehavioralAnalysisService.class),
+            mock(GeoAnalysisService.class),
+            mock(DeviceAnalysisService.class),
+            mock(HistoricalPatternService.class),
+            mock(CustomerHistoryService.class),
+            velocityAggregateStore,
+            customerProfileStore,
+            deviceRegistryStore,
+            errorHandlingService,
+            executor,
+            new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        for (String field : new String[] {"customerDataTimeoutMs", "merchantDataTimeoutMs", "behavioralTimeoutMs",
+                "geoTimeoutMs", "deviceTimeoutMs", "historicalTimeoutMs"}) {
+            ReflectionTestUtils.setField(enrichmentService, field, 5000L);
+        }
+        ReflectionTestUtils.setField(enrichmentService, "latencyBudgetMs", 5000L);
+
+        // Every stage is served by its in-memory store, so no history snapshot is loaded
+        when(velocityAggregateStore.isEnabled()).thenReturn(true);
+        when(customerProfileStore.isEnabled()).thenReturn(true);
+        when(deviceRegistryStore.isEnabled()).thenReturn(true);
+
+        when(customerDataService.getCustomerDataBulk(anyCollection())).thenReturn(Map.of(
+                "C1", CustomerData.builder().customerId("C1").build(),
+                "C2", CustomerData.builder().customerId("C2").build()));
+        when(merchantDataService.getMerchantData(anyString()))
+                .thenAnswer(invocation -> MerchantData.builder().merchantId(invocation.getArgument(0)).build());
+        when(riskScoringService.calculateRiskScoreAsync(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(RiskScore.builder().overallScore(0.1).build()));
+    }
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void eachCustomerAndMerchantIsLookedUpOncePerBatch() {
+        List<EnrichedTransaction> enriched = enrichmentService.enrichBatch(List.of(
+                transaction("TXN-1", "C1", "M1"),
+                transaction("TXN-2", "C1", "M1"),
+                transaction("TXN-3", "C2", "M2")));
+
+        assertEquals(3, enriched.size());
+        verify(customerDataService, times(1)).getCustomerDataBulk(Set.of("C1", "C2"));
+        verify(merchantDataService, times(1)).getMerchantData("M1");
+        verify(merchantDataService, times(1)).getMerchantData("M2");
+        assertEquals("C1", enriched.get(1).getCustomerData().getCustomerId());
+        assertEquals("M2", enriched.get(2).getMerchantData().getMerchantId());
+    }
+
+    @Test
+    void customerMissingFromTheBulkLookupGetsDefaultData() {
+        CustomerData defaults = CustomerData.builder().customerId("C9").build();
+        when(customerDataService.createDefaultCustomerData("C9")).thenReturn(defaults);
+
+        List<EnrichedTransaction> enriched = enrichmentService.enrichBatch(List.of(transaction("TXN-1", "C9", "M1")));
+
+        assertEquals(defaults, enriched.get(0).getCustomerData());
+    }
+
+    @Test
+    void failedRecordIsParkedWithoutFailingTheRestOfTheBatch() {
+        Transaction failing = transaction("TXN-2", "C2", "M2");
+        RuntimeException failure = new RuntimeException("risk service unavailable");
+        when(riskScoringService.calculateRiskScoreAsync(eq(failing), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(failure));
+        when(errorHandlingService.handleProcessingError(failing, failure))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        List<EnrichedTransaction> enriched = enrichmentService.enrichBatch(List.of(
+                transaction("TXN-1", "C1", "M1"), failing, transaction("TXN-3", "C1", "M2")));
+
+        assertEquals(List.of("TXN-1", "TXN-3"),
+                enriched.stream().map(enrichedTransaction -> enrichedTransaction.getTransaction().getTransactionId())
+                        .toList());
+        verify(errorHandlingService).handleProcessingError(failing, failure);
+    }
+
+    @Test
+    void recordThatCannotBeParkedFailsTheBatch() {
+        Transaction failing = transaction("TXN-1", "C1", "M1");
+        when(riskScoringService.calculateRiskScoreAsync(eq(failing), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("risk service unavailable")));
+        when(errorHandlingService.handleProcessingError(eq(failing), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("retry topic unavailable")));
+
+        assertThrows(CompletionException.class,
+                () -> enrichmentService.enrichBatch(List.of(failing, transaction("TXN-2", "C2", "M2"))));
+    }
+
+    @Test
+    void batchWithoutFailuresParksNothing() {
+        enrichmentService.enrichBatch(List.of(transaction("TXN-1", "C1", "M1")));
+
+        verify(errorHandlingService, never()).handleProcessingError(any(), any());
+    }
+
+    private static Transaction transaction(String transactionId, String customerId, String merchantId) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .customerId(customerId)
+                .merchantId(merchantId)
+                .amount(new BigDecimal("25.00"))
+                .transactionDate(Instant.parse("2024-03-01T12:00:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.kafka.RetryTopics;
+import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ErrorHandlingServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RetryTopics retryTopics =
+            new RetryTopics("banking-transactions", "banking-transactions-dlq", new long[] {5000, 60000});
+    private final ErrorHandlingService errorHandlingService =
+            new ErrorHandlingService(kafkaTemplate, retryTopics, meterRegistry);
+    private final Transaction transaction = Transaction.builder().transactionId("TXN-1").customerId("C1").build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(errorHandlingService, "errorsTopic", "enrichment-errors");
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void firstFailureIsParkedOnTheFirstTierWithItsNotBeforeTime() {
+        long before = System.currentTimeMillis();
+
+        errorHandlingService.handleProcessingError(transaction, new TimeoutException("risk service")).join();
+
+        ProducerRecord<String, Object> parked = parkedRecord();
+        assertEquals("banking-transactions-retry-5s", parked.topic());
+        assertEquals("TXN-1", parked.key());
+        assertSame(transaction, parked.value());
+        assertEquals(1, RetryTopics.attempts(parked.headers()));
+        assertEquals("TimeoutException", header(parked, RetryTopics.ERROR_TYPE_HEADER));
+        assertEquals("risk service", header(parked, RetryTopics.ERROR_MESSAGE_HEADER));
+        long notBefore = RetryTopics.notBefore(parked.headers());
+        assertTrue(notBefore >= before + 5000 && notBefore <= System.currentTimeMillis() + 5000,
+                "not before: " + notBefore);
+        assertEquals(1.0, meterRegistry.counter("enrichment.errors.routed", "destination", "retry-0").count());
+    }
+
+    @Test
+    void failedRetryMovesToTheNextTier() {
+        errorHandlingService.handleProcessingError(transaction, new RuntimeException("again"), 1).join();
+
+        ProducerRecord<String, Object> parked = parkedRecord();
+        assertEquals("banking-transactions-retry-1m", parked.topic());
+        assertEquals(2, RetryTopics.attempts(parked.headers()));
+    }
+
+    @Test
+    void transactionGoesToTheDeadLetterTopicOnceTheTiersAreUsedUp() {
+        errorHandlingService.handleProcessingError(transaction, new RuntimeException("still failing"), 2).join();
+
+        ProducerRecord<String, Object> parked = parkedRecord();
+        assertEquals("banking-transactions-dlq", parked.topic());
+        assertEquals(3, RetryTopics.attempts(parked.headers()));
+        assertNull(parked.headers().lastHeader(RetryTopics.NOT_BEFORE_HEADER));
+        assertEquals(1.0, meterRegistry.counter("enrichment.errors.routed", "destination", "dead-letter").count());
+    }
+
+    @Test
+    void failureIsReportedOnTheErrorsTopic() {
+        errorHandlingService.handleProcessingError(transaction, new RuntimeException("boom")).join();
+
+        verify(kafkaTemplate).send(eq("enrichment-errors"), eq("TXN-1"), any());
+    }
+
+    @Test
+    void transactionThatCouldNotBeParkedFailsTheFuture() {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        CompletableFuture<Void> parked =
+                errorHandlingService.handleProcessingError(transaction, new RuntimeException("boom"));
+
+        assertThrows(CompletionException.class, parked::join);
+    }
+
+    @Test
+    void failedErrorReportDoesNotFailTheParking() {
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        errorHandlingService.handleProcessingError(transaction, new RuntimeException("boom")).join();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, Object> parkedRecord() {
+        ArgumentCaptor<ProducerRecord<String, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private static String header(ProducerRecord<String, Object> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
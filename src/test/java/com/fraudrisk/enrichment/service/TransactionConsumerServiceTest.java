@@ -0,0 +1,147 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.kafka.KeyOrderedScheduler;
+import com.fraudrisk.enrichment.kafka.PartitionOffsetTracker;
+import com.fraudrisk.enrichment.kafka.RecentTransactionFilter;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.Transaction;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionConsumerServiceTest {
+
+    private final EnrichmentService enrichmentService = mock(EnrichmentService.class);
+    private final TransactionProducerService producerService = mock(TransactionProducerService.class);
+    private final ErrorHandlingService errorHandlingService = mock(ErrorHandlingService.class);
+    private final RecentTransactionFilter recentTransactionFilter = mock(RecentTransactionFilter.class);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final TransactionConsumerService consumerService = new TransactionConsumerService(
+            enrichmentService,
+            producerService,
+            errorHandlingService,
+            mock(PartitionOffsetTracker.class),
+            mock(KeyOrderedScheduler.class),
+            recentTransactionFilter,
+            executor);
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void batchIsAcknowledgedOnceEveryRecordIsPublished() {
+        List<ConsumerRecord<String, Transaction>> records = records("TXN-1", "TXN-2");
+        enrich(records);
+        when(producerService.sendEnrichedTransaction(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeTransactionBatch(records, acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(recentTransactionFilter).markPublished("TXN-1");
+        verify(recentTransactionFilter).markPublished("TXN-2");
+    }
+
+    @Test
+    void recentlyPublishedTransactionsAreNotEnrichedAgain() {
+        List<ConsumerRecord<String, Transaction>> records = records("TXN-1", "TXN-2");
+        when(recentTransactionFilter.isDuplicate("TXN-1")).thenReturn(true);
+        when(enrichmentService.enrichBatch(anyList())).thenReturn(List.of());
+
+        consumerService.consumeTransactionBatch(records, acknowledgment);
+
+        verify(enrichmentService).enrichBatch(List.of(records.get(1).value()));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void batchWithARecordThatCouldNotBeParkedIsConsumedAgainFromTheStart() {
+        List<ConsumerRecord<String, Transaction>> records = records("TXN-1", "TXN-2");
+        when(enrichmentService.enrichBatch(anyList()))
+                .thenThrow(new CompletionException(new RuntimeException("retry topic unavailable")));
+
+        consumerService.consumeTransactionBatch(records, acknowledgment);
+
+        verify(acknowledgment).nack(eq(0), any(Duration.class));
+        verify(acknowledgment, never()).acknowledge();
+        verify(producerService, never()).sendEnrichedTransaction(any());
+    }
+
+    @Test
+    void failedPublishThatIsParkedDoesNotHoldTheBatchBack() {
+        List<ConsumerRecord<String, Transaction>> records = records("TXN-1", "TXN-2");
+        List<EnrichedTransaction> enriched = enrich(records);
+        when(producerService.sendEnrichedTransaction(enriched.get(0))).thenReturn(CompletableFuture.completedFuture(null));
+        when(producerService.sendEnrichedTransaction(enriched.get(1)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+        when(errorHandlingService.handleProcessingError(eq(records.get(1).value()), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeTransactionBatch(records, acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(recentTransactionFilter, never()).markPublished("TXN-2");
+    }
+
+    @Test
+    void batchIsConsumedAgainFromTheFirstRecordThatWasNeitherPublishedNorParked() {
+        List<ConsumerRecord<String, Transaction>> records = records("TXN-1", "TXN-2", "TXN-3", "TXN-4");
+        // TXN-2 was parked during enrichment, so only the other three reach the producer
+        List<EnrichedTransaction> enriched = enrich(List.of(records.get(0), records.get(2), records.get(3)));
+        when(producerService.sendEnrichedTransaction(enriched.get(0))).thenReturn(CompletableFuture.completedFuture(null));
+        for (int i = 1; i < enriched.size(); i++) {
+            when(producerService.sendEnrichedTransaction(enriched.get(i)))
+                    .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+        }
+        when(errorHandlingService.handleProcessingError(any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("retry topic unavailable")));
+
+        consumerService.consumeTransactionBatch(records, acknowledgment);
+
+        // Index of TXN-3 in the poll, not in the list of enriched transactions
+        verify(acknowledgment).nack(eq(2), any(Duration.class));
+        verify(acknowledgment, never()).acknowledge();
+        verify(acknowledgment, never()).nack(eq(3), any(Duration.class));
+    }
+
+    private List<EnrichedTransaction> enrich(List<ConsumerRecord<String, Transaction>> records) {
+        List<EnrichedTransaction> enriched = new ArrayList<>();
+        for (ConsumerRecord<String, Transaction> record : records) {
+            enriched.add(EnrichedTransaction.builder().transaction(record.value()).build());
+        }
+        when(enrichmentService.enrichBatch(anyList())).thenReturn(enriched);
+        return enriched;
+    }
+
+    private static List<ConsumerRecord<String, Transaction>> records(String... transactionIds) {
+        List<ConsumerRecord<String, Transaction>> records = new ArrayList<>();
+        for (int i = 0; i < transactionIds.length; i++) {
+            Transaction transaction = Transaction.builder()
+                    .transactionId(transactionIds[i])
+                    .customerId("C" + i)
+                    .merchantId("M1")
+                    .build();
+            records.add(new ConsumerRecord<>("transactions", 0, 100L + i, transaction.getCustomerId(), transaction));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,168 @@
+package com.fraudrisk.enrichment.service;
+
+import com.fraudrisk.enrichment.kafka.RecentTransactionFilter;
+import com.fraudrisk.enrichment.kafka.RetryTopics;
+import com.fraudrisk.enrichment.model.EnrichedTransaction;
+import com.fraudrisk.enrichment.model.Transaction;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionRetryConsumerServiceTest {
+
+    private static final String FIRST_TIER = "banking-transactions-retry-5s";
+    private static final String SECOND_TIER = "banking-transactions-retry-1m";
+
+    private final EnrichmentService enrichmentService = mock(EnrichmentService.class);
+    private final TransactionProducerService producerService = mock(TransactionProducerService.class);
+    private final ErrorHandlingService errorHandlingService = mock(ErrorHandlingService.class);
+    private final RecentTransactionFilter recentTransactionFilter = mock(RecentTransactionFilter.class);
+    private final ConcurrentKafkaListenerContainerFactory<?, ?> containerFactory =
+            mock(ConcurrentKafkaListenerContainerFactory.class);
+    private final ConcurrentMessageListenerContainer<?, ?> firstTierContainer = container(FIRST_TIER);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private final Transaction transaction = Transaction.builder().transactionId("TXN-1").customerId("C1").build();
+
+    @Test
+    void everyTierGetsItsOwnListenerContainer() {
+        ConcurrentMessageListenerContainer<?, ?> secondTierContainer = container(SECOND_TIER);
+
+        service(true).start();
+
+        verify(firstTierContainer).start();
+        verify(secondTierContainer).start();
+        assertEquals("enrichment-group", firstTierContainer.getContainerProperties().getGroupId());
+    }
+
+    @Test
+    void disabledRetriesStartNoListener() {
+        service(false).start();
+
+        verify(containerFactory, never()).createContainer(anyString());
+    }
+
+    @Test
+    void recordThatIsNotDueYetIsRedeliveredOnceItIs() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() + 3000), acknowledgment);
+
+        ArgumentCaptor<Duration> pause = ArgumentCaptor.forClass(Duration.class);
+        verify(acknowledgment).nack(pause.capture());
+        assertTrue(pause.getValue().toMillis() > 0 && pause.getValue().toMillis() <= 3000, "pause: " + pause.getValue());
+        verify(enrichmentService, never()).enrichTransactionAsync(any());
+    }
+
+    @Test
+    void pauseIsCappedAtTheTierDelay() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() + 3_600_000), acknowledgment);
+
+        verify(acknowledgment).nack(Duration.ofMillis(5000));
+    }
+
+    @Test
+    void dueRecordIsEnrichedPublishedAndAcknowledged() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+        EnrichedTransaction enriched = EnrichedTransaction.builder().transaction(transaction).build();
+        when(enrichmentService.enrichTransactionAsync(transaction)).thenReturn(CompletableFuture.completedFuture(enriched));
+        when(producerService.sendEnrichedTransaction(enriched)).thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() - 1), acknowledgment);
+
+        verify(recentTransactionFilter).markPublished("TXN-1");
+        verify(acknowledgment).acknowledge();
+        verify(errorHandlingService, never()).handleProcessingError(any(), any(), anyInt());
+    }
+
+    @Test
+    void failedRetryIsHandedOnWithTheAttemptsSoFar() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+        RuntimeException failure = new RuntimeException("risk service unavailable");
+        when(enrichmentService.enrichTransactionAsync(transaction)).thenReturn(CompletableFuture.failedFuture(failure));
+        when(errorHandlingService.handleProcessingError(transaction, failure, 1))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() - 1), acknowledgment);
+
+        // The error handler picks the next tier, or the dead-letter topic, from the attempt count
+        verify(errorHandlingService).handleProcessingError(transaction, failure, 1);
+        verify(acknowledgment).acknowledge();
+        verify(recentTransactionFilter, never()).markPublished(anyString());
+    }
+
+    @Test
+    void recordThatCouldNotBeParkedAgainIsRedeliveredAfterTheTierDelay() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+        when(enrichmentService.enrichTransactionAsync(transaction))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("risk service unavailable")));
+        when(errorHandlingService.handleProcessingError(eq(transaction), any(), eq(1)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() - 1), acknowledgment);
+
+        verify(acknowledgment).nack(Duration.ofMillis(5000));
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void alreadyPublishedTransactionIsOnlyAcknowledged() {
+        AcknowledgingMessageListener<String, Transaction> listener = startFirstTier();
+        when(recentTransactionFilter.isDuplicate("TXN-1")).thenReturn(true);
+
+        listener.onMessage(retryRecord(1, System.currentTimeMillis() - 1), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(enrichmentService, never()).enrichTransactionAsync(any());
+    }
+
+    private TransactionRetryConsumerService service(boolean enabled) {
+        RetryTopics retryTopics =
+                new RetryTopics("banking-transactions", "banking-transactions-dlq", new long[] {5000, 60000});
+        return new TransactionRetryConsumerService(enrichmentService, producerService, errorHandlingService,
+                recentTransactionFilter, retryTopics, containerFactory, enabled, "enrichment-group");
+    }
+
+    @SuppressWarnings("unchecked")
+    private AcknowledgingMessageListener<String, Transaction> startFirstTier() {
+        container(SECOND_TIER);
+        service(true).start();
+        ArgumentCaptor<Object> listener = ArgumentCaptor.forClass(Object.class);
+        verify(firstTierContainer).setupMessageListener(listener.capture());
+        return (AcknowledgingMessageListener<String, Transaction>) listener.getValue();
+    }
+
+    private ConcurrentMessageListenerContainer<?, ?> container(String topic) {
+        ConcurrentMessageListenerContainer<?, ?> container = mock(ConcurrentMessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(topic));
+        doReturn(container).when(containerFactory).createContainer(topic);
+        return container;
+    }
+
+    private ConsumerRecord<String, Transaction> retryRecord(int attempts, long notBefore) {
+        ConsumerRecord<String, Transaction> record = new ConsumerRecord<>(FIRST_TIER, 0, 0L, "TXN-1", transaction);
+        RetryTopics.putHeader(record.headers(), RetryTopics.ATTEMPT_HEADER, attempts);
+        RetryTopics.putHeader(record.headers(), RetryTopics.NOT_BEFORE_HEADER, notBefore);
+        return record;
+    }
+}
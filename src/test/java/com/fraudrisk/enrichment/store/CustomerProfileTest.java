@@ -0,0 +1,141 @@
+package com.fraudrisk.enrichment.store;
+
+import org.junit.jupiter.api.Test;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerProfileTest {
+
+    // A Monday
+    private static final Instant MONDAY_10AM = Instant.parse("2024-03-04T10:15:00Z");
+
+    @Test
+    void encodedProfileDecodesToTheSameProfile() {
+        CustomerProfile profile = new CustomerProfile();
+        profile.add("TXN-1", MONDAY_10AM, 20.0, "M2001", "RETAIL", ZoneOffset.UTC);
+        profile.add("TXN-2", MONDAY_10AM.plusSeconds(3600), 40.0, "M2003", "FOOD", ZoneOffset.UTC);
+        profile.add("TXN-3", MONDAY_10AM.plusSeconds(86400), 90.0, "M9999", "PET_SUPPLIES", ZoneOffset.UTC);
+
+        byte[] encoded = profile.encode();
+        CustomerProfile decoded = CustomerProfile.decode(encoded);
+
+        assertNotNull(decoded);
+        assertArrayEquals(encoded, decoded.encode());
+        assertEquals(3, decoded.getTransactionCount());
+        assertEquals(50.0, decoded.getAverageAmount(), 1e-9);
+        assertEquals(profile.getAmountStandardDeviation(), decoded.getAmountStandardDeviation(), 1e-9);
+        assertEquals(20.0, decoded.getMinAmount());
+        assertEquals(90.0, decoded.getMaxAmount());
+        assertTrue(decoded.mightHaveMerchant("M2003"));
+        assertTrue(decoded.mightHaveCategory("PET_SUPPLIES"));
+        assertEquals(1, decoded.countAt(DayOfWeek.MONDAY, 11));
+        assertEquals(1, decoded.countAt(DayOfWeek.TUESDAY, 10));
+    }
+
+    @Test
+    void decodedProfileStillIgnoresTransactionsItAlreadyApplied() {
+        CustomerProfile profile = new CustomerProfile();
+        profile.add("TXN-1", MONDAY_10AM, 20.0, "M2001", "RETAIL", ZoneOffset.UTC);
+
+        CustomerProfile decoded = CustomerProfile.decode(profile.encode());
+
+        assertFalse(decoded.add("TXN-1", MONDAY_10AM, 20.0, "M2001", "RETAIL", ZoneOffset.UTC));
+        assertEquals(1, decoded.getTransactionCount());
+    }
+
+    @Test
+    void anythingButACurrentProfileDecodesToNull() {
+        byte[] encoded = new CustomerProfile().encode();
+
+        assertNull(CustomerProfile.decode(null));
+        assertNull(CustomerProfile.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+
+        encoded[0]--;
+        assertNull(CustomerProfile.decode(encoded));
+    }
+
+    @Test
+    void merchantsAreExactWhileThereAreFew() {
+        CustomerProfile profile = new CustomerProfile();
+        for (int i = 0; i < 32; i++) {
+            profile.add("TXN-" + i, MONDAY_10AM, 10.0, "M" + i, "RETAIL", ZoneOffset.UTC);
+        }
+
+        for (int i = 0; i < 32; i++) {
+            assertTrue(profile.mightHaveMerchant("M" + i));
+        }
+        for (int i = 1000; i < 11000; i++) {
+            assertFalse(profile.mightHaveMerchant("M" + i));
+        }
+    }
+
+    @Test
+    void manyMerchantsKeepTheFilterFalsePositiveRateLow() {
+        CustomerProfile profile = new CustomerProfile();
+        for (int i = 0; i < 256; i++) {
+            profile.add("TXN-" + i, MONDAY_10AM, 10.0, "M" + i, "RETAIL", ZoneOffset.UTC);
+        }
+
+        for (int i = 0; i < 256; i++) {
+            assertTrue(profile.mightHaveMerchant("M" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 101000; i++) {
+            if (profile.mightHaveMerchant("M" + i)) {
+                falsePositives++;
+            }
+        }
+        // Sized for 1%; allow for the spread of a single filter
+        assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void categoriesDoNotCollide() {
+        CustomerProfile profile = new CustomerProfile();
+        profile.add("TXN-1", MONDAY_10AM, 10.0, "M1", "RETAIL", ZoneOffset.UTC);
+        profile.add("TXN-2", MONDAY_10AM, 10.0, "M2", "PET_SUPPLIES", ZoneOffset.UTC);
+
+        assertTrue(profile.mightHaveCategory("RETAIL"));
+        assertTrue(profile.mightHaveCategory("PET_SUPPLIES"));
+        for (String category : new String[] {"ENTERTAINMENT", "FOOD", "GAMBLING", "DIGITAL_GOODS", "TRAVEL",
+                "ELECTRONICS", "GROCERY", "RESTAURANT", "FUEL", "ONLINE_RETAIL", "PHARMACY", "BOOKS"}) {
+            assertFalse(profile.mightHaveCategory(category), category);
+        }
+    }
+
+    @Test
+    void unlistedCategoriesBeyondTheExactSlotsAreAnsweredConservatively() {
+        CustomerProfile profile = new CustomerProfile();
+        for (int i = 0; i < 9; i++) {
+            profile.add("TXN-" + i, MONDAY_10AM, 10.0, "M1", "CUSTOM_" + i, ZoneOffset.UTC);
+        }
+
+        assertTrue(profile.mightHaveCategory("CUSTOM_8"));
+        // Unknown categories may now be false positives, but known ones stay exact
+        assertTrue(profile.mightHaveCategory("BOOKS"));
+        assertFalse(profile.mightHaveCategory("GAMBLING"));
+    }
+
+    @Test
+    void histogramIsBucketedInTheGivenZone() {
+        CustomerProfile profile = new CustomerProfile();
+        // Monday 10:15 UTC is Monday 19:15 in Tokyo; Monday 06:15 UTC is Sunday 23:15 in Denver
+        profile.add("TXN-1", MONDAY_10AM, 10.0, "M1", "RETAIL", ZoneId.of("Asia/Tokyo"));
+        profile.add("TXN-2", MONDAY_10AM.minusSeconds(4 * 3600), 10.0, "M1", "RETAIL", ZoneId.of("America/Denver"));
+
+        assertEquals(1, profile.countAt(DayOfWeek.MONDAY, 19));
+        assertEquals(1, profile.countAt(DayOfWeek.SUNDAY, 23));
+        assertEquals(2, profile.dayOfWeekCounts()[DayOfWeek.MONDAY.ordinal()]
+                + profile.dayOfWeekCounts()[DayOfWeek.SUNDAY.ordinal()]);
+    }
+}
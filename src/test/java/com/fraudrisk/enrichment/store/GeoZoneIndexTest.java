@@ -0,0 +1,102 @@
+package com.fraudrisk.enrichment.store;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GeoZoneIndexTest {
+
+    // 1-degree cells: a triangle whose diagonal runs through cells, and two squares sharing the
+    // meridian at 20.5 degrees east, which runs through the middle of a column of cells
+    private static final String REGIONS = """
+            # country zone lon,lat ...
+            XA Europe/Paris 0,0 10,0 0,10
+            XB Europe/Berlin 15,40 20.5,40 20.5,45 15,45
+            XC Europe/Warsaw 20.5,40 25,40 25,45 20.5,45
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pointInACellWhollyInsideARegionResolvesToIt() throws IOException {
+        GeoZoneIndex index = index(REGIONS);
+
+        assertEquals(new GeoZoneIndex.Region("XB", ZoneId.of("Europe/Berlin")), index.resolve(42.5, 16.5));
+        assertEquals(ZoneId.of("Europe/Warsaw"), index.zoneFor(42.5, 23.0));
+    }
+
+    @Test
+    void pointOutsideEveryRegionFallsBackToItsNauticalOffset() throws IOException {
+        GeoZoneIndex index = index(REGIONS);
+
+        assertNull(index.resolve(30.0, 5.0));
+        assertEquals(ZoneOffset.ofHours(-5), index.zoneFor(40.7, -74.0));
+        assertNull(index.resolve(91.0, 0.0));
+        assertNull(index.resolve(0.0, Double.NaN));
+    }
+
+    @Test
+    void boundaryCellIsDecidedByTheExactPolygonTest() throws IOException {
+        GeoZoneIndex index = index(REGIONS);
+
+        // Both points are in the cell from 5 to 6 east and 4 to 5 north, which the diagonal crosses
+        assertEquals("XA", index.resolve(4.4, 5.5).country());
+        assertNull(index.resolve(4.6, 5.5));
+    }
+
+    @Test
+    void neighboursSharingACellAreToldApart() throws IOException {
+        GeoZoneIndex index = index(REGIONS);
+
+        assertEquals("XB", index.resolve(42.0, 20.2).country());
+        assertEquals("XC", index.resolve(42.0, 20.8).country());
+        // A point on the shared border belongs to exactly one of them: edges are half-open, west to east
+        assertEquals("XC", index.resolve(42.0, 20.5).country());
+    }
+
+    @Test
+    void locationStringsResolveThroughTheirCoordinates() throws IOException {
+        GeoZoneIndex index = index(REGIONS);
+
+        assertEquals(ZoneId.of("Europe/Warsaw"), index.zoneOf("XC:Somewhere:42.0:22.0"));
+        assertEquals(ZoneOffset.ofHours(9), index.zoneOf("JP:Tokyo:35.6762:139.6503"));
+        assertEquals(ZoneId.systemDefault(), index.zoneOf("XC:Somewhere"));
+        assertEquals(ZoneId.systemDefault(), index.zoneOf("XC:Somewhere:north:east"));
+        assertEquals(ZoneId.systemDefault(), index.zoneOf(null));
+    }
+
+    @Test
+    void malformedRegionFileLeavesOnlyTheNauticalOffsets() throws IOException {
+        // A polygon needs at least three points
+        GeoZoneIndex index = index("XA Europe/Paris 0,0 10,0\n");
+
+        assertNull(index.resolve(2.5, 2.5));
+        assertEquals(ZoneOffset.UTC, index.zoneFor(2.5, 2.5));
+    }
+
+    @Test
+    void nauticalOffsetIsClampedToTheDateLine() {
+        assertEquals(ZoneOffset.ofHours(12), GeoZoneIndex.nauticalOffset(179.9));
+        assertEquals(ZoneOffset.ofHours(-12), GeoZoneIndex.nauticalOffset(-179.9));
+        assertEquals(ZoneOffset.ofHours(1), GeoZoneIndex.nauticalOffset(20.0));
+    }
+
+    private GeoZoneIndex index(String regions) throws IOException {
+        Path file = directory.resolve("regions.txt");
+        Files.writeString(file, regions);
+        GeoZoneIndex index = new GeoZoneIndex(new DefaultResourceLoader(), new SimpleMeterRegistry(), true,
+                file.toUri().toString(), 1.0);
+        index.initialize();
+        return index;
+    }
+}
@@ -0,0 +1,201 @@
+package com.fraudrisk.enrichment.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpRangeIndexTest {
+
+    private static final long IPV4_MAPPED = 0x0000_FFFF_0000_0000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ipv4IsParsedAsAnIpv4MappedAddress() {
+        assertArrayEquals(new long[] {0L, IPV4_MAPPED | 0xC0A8_0101L}, parse("192.168.1.1"));
+        assertArrayEquals(new long[] {0L, IPV4_MAPPED}, parse("0.0.0.0"));
+        assertArrayEquals(new long[] {0L, IPV4_MAPPED | 0xFFFF_FFFFL}, parse(" 255.255.255.255 "));
+        // The same address written as IPv6
+        assertArrayEquals(parse("10.0.0.1"), parse("::ffff:10.0.0.1"));
+    }
+
+    @Test
+    void ipv6FormsAreParsed() {
+        long[] full = parse("2001:0db8:0000:0000:0000:ff00:0042:8329");
+        assertArrayEquals(new long[] {0x2001_0DB8_0000_0000L, 0x0000_FF00_0042_8329L}, full);
+        assertArrayEquals(full, parse("2001:db8::ff00:42:8329"));
+        assertArrayEquals(full, parse("2001:DB8::FF00:42:8329%eth0"));
+        assertArrayEquals(new long[] {0L, 1L}, parse("::1"));
+        assertArrayEquals(new long[] {0L, 0L}, parse("::"));
+        assertArrayEquals(new long[] {0xFE80_0000_0000_0000L, 0L}, parse("fe80::"));
+        assertArrayEquals(new long[] {0x0064_FF9B_0000_0000L, 0xC000_0221L}, parse("64:ff9b::192.0.2.33"));
+    }
+
+    @Test
+    void malformedAddressesAreRejected() {
+        for (String text : new String[] {"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.", "01234.1.1.1",
+                "a.b.c.d", ":::", "1::2::3", ":1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7",
+                "12345::", "gggg::1", "1:2:3:4:5:6:7:1.2.3.4", "not an ip"}) {
+            assertFalse(IpRangeIndex.parseAddress(text, 0, text.length(), new long[2]), text);
+        }
+    }
+
+    @Test
+    void cidrRangesCoverTheirWholeBlock() {
+        IpRangeIndex.Range ipv4 = IpRangeIndex.parseRange("203.0.113.77/24", IpRangeIndex.PROXY, 0.5f);
+        assertEquals(IPV4_MAPPED | 0xCB00_7100L, ipv4.startLo());
+        assertEquals(IPV4_MAPPED | 0xCB00_71FFL, ipv4.endLo());
+        assertEquals(IpRangeIndex.PROXY, ipv4.flags());
+        assertEquals(0.5f, ipv4.riskScore());
+
+        IpRangeIndex.Range ipv6 = IpRangeIndex.parseRange("2001:db8::/32", 0, 0.0f);
+        assertEquals(0x2001_0DB8_0000_0000L, ipv6.startHi());
+        assertEquals(0L, ipv6.startLo());
+        assertEquals(0x2001_0DB8_FFFF_FFFFL, ipv6.endHi());
+        assertEquals(-1L, ipv6.endLo());
+
+        IpRangeIndex.Range single = IpRangeIndex.parseRange("198.51.100.7", 0, 0.0f);
+        assertEquals(single.startLo(), single.endLo());
+    }
+
+    @Test
+    void dashRangesAreInclusive() {
+        IpRangeIndex.Range range = IpRangeIndex.parseRange("10.0.0.5 - 10.0.1.4", 0, 0.0f);
+
+        assertEquals(IPV4_MAPPED | 0x0A00_0005L, range.startLo());
+        assertEquals(IPV4_MAPPED | 0x0A00_0104L, range.endLo());
+    }
+
+    @Test
+    void malformedRangesAreRejected() {
+        assertNull(IpRangeIndex.parseRange("10.0.0.0/33", 0, 0.0f));
+        assertNull(IpRangeIndex.parseRange("2001:db8::/129", 0, 0.0f));
+        assertNull(IpRangeIndex.parseRange("10.0.0.0/-1", 0, 0.0f));
+        assertNull(IpRangeIndex.parseRange("10.0.0.0/x", 0, 0.0f));
+        assertNull(IpRangeIndex.parseRange("10.0.0.9-10.0.0.1", 0, 0.0f));
+        assertNull(IpRangeIndex.parseRange("10.0.0.300/8", 0, 0.0f));
+    }
+
+    @Test
+    void overlappingRangesAreSplitWithFlagsCombinedAndTheHighestScore() throws IOException {
+        IpRangeIndex index = build(
+                range("10.1.0.0-10.1.0.99", IpRangeIndex.PROXY, 0.4f),
+                range("10.1.0.50-10.1.0.149", IpRangeIndex.TOR_EXIT, 0.9f));
+
+        assertEquals(3, index.size());
+        assertReputation(index, "10.1.0.10", IpRangeIndex.PROXY | IpRangeIndex.NON_PUBLIC, 0.4f);
+        assertReputation(index, "10.1.0.50", IpRangeIndex.PROXY | IpRangeIndex.TOR_EXIT | IpRangeIndex.NON_PUBLIC, 0.9f);
+        assertReputation(index, "10.1.0.99", IpRangeIndex.PROXY | IpRangeIndex.TOR_EXIT | IpRangeIndex.NON_PUBLIC, 0.9f);
+        assertReputation(index, "10.1.0.100", IpRangeIndex.TOR_EXIT | IpRangeIndex.NON_PUBLIC, 0.9f);
+        assertReputation(index, "10.1.0.150", IpRangeIndex.NON_PUBLIC, 0.0f);
+    }
+
+    @Test
+    void nestedRangeTakesTheOuterScoreBackAfterItEnds() throws IOException {
+        IpRangeIndex index = build(
+                range("203.0.113.0/24", IpRangeIndex.HOSTING, 0.3f),
+                range("203.0.113.128/28", IpRangeIndex.HOSTING, 0.8f));
+
+        assertEquals(3, index.size());
+        assertReputation(index, "203.0.113.127", IpRangeIndex.HOSTING, 0.3f);
+        assertReputation(index, "203.0.113.130", IpRangeIndex.HOSTING, 0.8f);
+        assertReputation(index, "203.0.113.144", IpRangeIndex.HOSTING, 0.3f);
+    }
+
+    @Test
+    void adjacentAndDuplicateRangesWithTheSameReputationBecomeOneEntry() throws IOException {
+        IpRangeIndex index = build(
+                range("198.51.100.0/25", IpRangeIndex.PROXY, 0.5f),
+                range("198.51.100.128/25", IpRangeIndex.PROXY, 0.5f),
+                range("198.51.100.0/24", IpRangeIndex.PROXY, 0.5f));
+
+        assertEquals(1, index.size());
+        assertReputation(index, "198.51.100.0", IpRangeIndex.PROXY, 0.5f);
+        assertReputation(index, "198.51.100.255", IpRangeIndex.PROXY, 0.5f);
+        assertEquals(0L, index.lookup("198.51.101.0"));
+    }
+
+    @Test
+    void rangesSeparatedByAGapStaySeparate() throws IOException {
+        IpRangeIndex index = build(
+                range("198.51.100.0-198.51.100.9", IpRangeIndex.PROXY, 0.5f),
+                range("198.51.100.11-198.51.100.20", IpRangeIndex.PROXY, 0.5f));
+
+        assertEquals(2, index.size());
+        assertEquals(0L, index.lookup("198.51.100.10"));
+    }
+
+    @Test
+    void rangeReachingTheTopOfTheAddressSpaceIsIndexed() throws IOException {
+        IpRangeIndex index = build(range("ffff::/16", IpRangeIndex.HOSTING, 0.2f));
+
+        assertReputation(index, "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", IpRangeIndex.HOSTING, 0.2f);
+        assertEquals(0L, index.lookup("fffe::1"));
+    }
+
+    @Test
+    void lookupFlagsNonPublicAddressesAndRejectsGarbage() {
+        IpRangeIndex index = IpRangeIndex.empty();
+
+        for (String address : new String[] {"10.2.3.4", "172.20.0.1", "192.168.0.1", "127.0.0.1", "169.254.1.1",
+                "100.64.0.1", "::1", "fd00::1", "fe80::1"}) {
+            assertEquals(IpRangeIndex.NON_PUBLIC, IpRangeIndex.flags(index.lookup(address)), address);
+        }
+        assertEquals(0L, index.lookup("8.8.8.8"));
+        assertEquals(0L, index.lookup("172.32.0.1"));
+        assertEquals(0L, index.lookup("2001:4860::8888"));
+        assertEquals(IpRangeIndex.UNPARSEABLE, index.lookup("unknown"));
+    }
+
+    @Test
+    void builtIndexCanBeReopenedFromItsFile() throws IOException {
+        Path file = directory.resolve("ip-ranges.idx");
+        IpRangeIndex.build(List.of(range("203.0.113.0/24", IpRangeIndex.TOR_EXIT, 0.9f)), file);
+
+        IpRangeIndex reopened = IpRangeIndex.open(file);
+
+        assertEquals(1, reopened.size());
+        assertReputation(reopened, "203.0.113.9", IpRangeIndex.TOR_EXIT, 0.9f);
+    }
+
+    @Test
+    void fileThatIsNotAnIndexIsRejected() throws IOException {
+        Path file = directory.resolve("not-an-index");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IllegalArgumentException.class, () -> IpRangeIndex.open(file));
+    }
+
+    private IpRangeIndex build(IpRangeIndex.Range... ranges) throws IOException {
+        return IpRangeIndex.build(List.of(ranges), directory.resolve("ip-ranges.idx"));
+    }
+
+    private static IpRangeIndex.Range range(String text, int flags, float riskScore) {
+        IpRangeIndex.Range range = IpRangeIndex.parseRange(text, flags, riskScore);
+        assertTrue(range != null, text);
+        return range;
+    }
+
+    private static long[] parse(String text) {
+        long[] address = new long[2];
+        assertTrue(IpRangeIndex.parseAddress(text, 0, text.length(), address), text);
+        return address;
+    }
+
+    private static void assertReputation(IpRangeIndex index, String address, int flags, float riskScore) {
+        long reputation = index.lookup(address);
+        assertEquals(flags, IpRangeIndex.flags(reputation), address);
+        assertEquals(riskScore, IpRangeIndex.riskScore(reputation), 1e-6, address);
+    }
+}
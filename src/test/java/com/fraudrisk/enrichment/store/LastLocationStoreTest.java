@@ -0,0 +1,97 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LastLocationStoreTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:00Z");
+    private static final String NEW_YORK = "US:New York:40.7128:-74.0060";
+    private static final String LONDON = "UK:London:51.5074:-0.1278";
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final LastLocationStore store =
+            new LastLocationStore(transactionRepository, new SimpleMeterRegistry(), true, 1000);
+
+    @Test
+    void redeliveredTransactionGetsTheLocationBeforeItselfNotItsOwn() {
+        seedNothing();
+        Instant earlier = NOW.minus(2, ChronoUnit.HOURS);
+        store.onTransactionEnriched(transaction("TXN-1", earlier, NEW_YORK));
+        store.onTransactionEnriched(transaction("TXN-2", NOW, LONDON));
+
+        LastLocationStore.LastLocation previous = store.getLastLocation("C1", "TXN-2", NOW);
+
+        assertEquals(earlier.toEpochMilli(), previous.epochMillis());
+        assertEquals(40.7128, previous.latitude(), 1e-9);
+    }
+
+    @Test
+    void locationsFromTheTransactionTimeOnwardAreIgnored() {
+        seedNothing();
+        Instant earlier = NOW.minus(2, ChronoUnit.HOURS);
+        store.onTransactionEnriched(transaction("TXN-1", earlier, NEW_YORK));
+        store.onTransactionEnriched(transaction("TXN-3", NOW.plus(1, ChronoUnit.HOURS), LONDON));
+
+        // A transaction enriched late, after a later one was already published
+        assertEquals(earlier.toEpochMilli(), store.getLastLocation("C1", "TXN-2", NOW).epochMillis());
+        assertNull(store.getLastLocation("C1", "TXN-0", earlier));
+    }
+
+    @Test
+    void outOfOrderTransactionNeverMovesTheLatestLocationBack() {
+        seedNothing();
+        store.onTransactionEnriched(transaction("TXN-2", NOW.minus(1, ChronoUnit.HOURS), LONDON));
+        store.onTransactionEnriched(transaction("TXN-1", NOW.minus(2, ChronoUnit.HOURS), NEW_YORK));
+
+        LastLocationStore.LastLocation latest = store.getLastLocation("C1", "TXN-3", NOW);
+
+        assertEquals(NOW.minus(1, ChronoUnit.HOURS).toEpochMilli(), latest.epochMillis());
+        assertEquals(LastLocationStore.countryCode("UK"), latest.countryCode());
+    }
+
+    @Test
+    void seededLocationOfTheSameTransactionIsSkipped() {
+        Instant seen = NOW.minus(10, ChronoUnit.MINUTES);
+        when(transactionRepository.findCustomerLocationsBefore(eq("C1"), any(), any())).thenReturn(List.<Object[]>of(
+                new Object[] {LONDON, seen, "TXN-2"},
+                new Object[] {NEW_YORK, NOW.minus(3, ChronoUnit.HOURS), "TXN-1"}));
+
+        LastLocationStore.LastLocation previous = store.getLastLocation("C1", "TXN-2", NOW);
+
+        assertEquals(NOW.minus(3, ChronoUnit.HOURS).toEpochMilli(), previous.epochMillis());
+    }
+
+    @Test
+    void customerWithoutLocatedTransactionsHasNoLastLocation() {
+        seedNothing();
+
+        assertNull(store.getLastLocation("C1", "TXN-1", NOW));
+    }
+
+    private void seedNothing() {
+        when(transactionRepository.findCustomerLocationsBefore(eq("C1"), any(), any())).thenReturn(List.of());
+        store.getLastLocation("C1", null, NOW.minus(1, ChronoUnit.DAYS));
+    }
+
+    private static Transaction transaction(String transactionId, Instant transactionDate, String location) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .customerId("C1")
+                .transactionDate(transactionDate)
+                .location(location)
+                .build();
+    }
+}
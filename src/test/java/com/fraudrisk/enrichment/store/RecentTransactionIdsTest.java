@@ -0,0 +1,79 @@
+package com.fraudrisk.enrichment.store;
+
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentTransactionIdsTest {
+
+    @Test
+    void idIsOnlyAddedOnce() {
+        RecentTransactionIds ids = new RecentTransactionIds();
+
+        assertTrue(ids.add("TXN-1"));
+        assertFalse(ids.add("TXN-1"));
+        assertTrue(ids.add("TXN-2"));
+        assertTrue(ids.contains("TXN-1"));
+    }
+
+    @Test
+    void transactionsWithoutIdAlwaysCount() {
+        RecentTransactionIds ids = new RecentTransactionIds();
+
+        assertTrue(ids.add(null));
+        assertTrue(ids.add(null));
+        assertFalse(ids.contains(null));
+    }
+
+    @Test
+    void oldestIdIsForgottenOnceTheRingIsFull() {
+        RecentTransactionIds ids = new RecentTransactionIds();
+        for (int i = 0; i <= RecentTransactionIds.CAPACITY; i++) {
+            ids.add("TXN-" + i);
+        }
+
+        assertFalse(ids.contains("TXN-0"));
+        assertTrue(ids.contains("TXN-1"));
+        assertTrue(ids.contains("TXN-" + RecentTransactionIds.CAPACITY));
+    }
+
+    @Test
+    void partlyFilledRingRoundTrips() {
+        RecentTransactionIds ids = new RecentTransactionIds();
+        ids.add("TXN-1");
+        ids.add("TXN-2");
+
+        RecentTransactionIds decoded = roundTrip(ids);
+
+        assertTrue(decoded.contains("TXN-1"));
+        assertTrue(decoded.contains("TXN-2"));
+        assertFalse(decoded.add("TXN-2"));
+        assertTrue(decoded.add("TXN-3"));
+    }
+
+    @Test
+    void fullRingRoundTripsAndKeepsItsEvictionOrder() {
+        RecentTransactionIds ids = new RecentTransactionIds();
+        for (int i = 0; i < RecentTransactionIds.CAPACITY + 3; i++) {
+            ids.add("TXN-" + i);
+        }
+
+        RecentTransactionIds decoded = roundTrip(ids);
+        decoded.add("TXN-new");
+
+        assertFalse(decoded.contains("TXN-3"));
+        assertTrue(decoded.contains("TXN-4"));
+        assertTrue(decoded.contains("TXN-new"));
+    }
+
+    private static RecentTransactionIds roundTrip(RecentTransactionIds ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(RecentTransactionIds.ENCODED_SIZE);
+        ids.encode(buffer);
+        assertEquals(RecentTransactionIds.ENCODED_SIZE, buffer.position());
+        buffer.flip();
+        return RecentTransactionIds.decode(buffer);
+    }
+}
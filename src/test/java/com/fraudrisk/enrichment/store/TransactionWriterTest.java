@@ -0,0 +1,121 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.Driver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs the writer's INSERT against the real schema: init-scripts/init.sql creates the tables and
+// sample customers and merchants (C1001, M2001) the rows refer to. Skipped where Docker is unavailable.
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionWriterTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:15-alpine"))
+                    .withDatabaseName("customer_data")
+                    .withCopyFileToContainer(MountableFile.forHostPath("init-scripts"), "/docker-entrypoint-initdb.d");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void connect() {
+        jdbcTemplate = new JdbcTemplate(new SimpleDriverDataSource(
+                new Driver(), POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+    }
+
+    @Test
+    void queuedTransactionsAreWrittenWithAllTheirColumns() throws InterruptedException {
+        Instant transactionDate = Instant.parse("2024-03-01T12:00:00Z");
+
+        write(transaction("TXN-W1", "C1001", "M2001", transactionDate),
+                transaction("TXN-W2", "C1001", "M2001", transactionDate));
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM transactions WHERE transaction_id = 'TXN-W1'");
+        assertEquals("A1001", row.get("account_id"));
+        assertEquals(0, new BigDecimal("42.50").compareTo((BigDecimal) row.get("amount")));
+        assertEquals("US:New York:40.7128:-74.0060", row.get("location"));
+        assertEquals(2, count("TXN-W1", "TXN-W2"));
+        assertEquals(2.0, rows("inserted"));
+    }
+
+    @Test
+    void transactionWrittenAgainIsSkipped() throws InterruptedException {
+        Instant transactionDate = Instant.parse("2024-03-01T13:00:00Z");
+        write(transaction("TXN-W3", "C1001", "M2001", transactionDate));
+
+        // A redelivery in a later batch, and a duplicate within the same batch
+        write(transaction("TXN-W3", "C1001", "M2001", transactionDate),
+                transaction("TXN-W4", "C1001", "M2001", transactionDate),
+                transaction("TXN-W4", "C1001", "M2001", transactionDate));
+
+        assertEquals(2, count("TXN-W3", "TXN-W4"));
+        assertEquals(2.0, rows("inserted"));
+        assertEquals(2.0, rows("skipped"));
+    }
+
+    @Test
+    void rowsTheConstraintsWouldRejectAreSkippedWithoutFailingTheBatch() throws InterruptedException {
+        Instant transactionDate = Instant.parse("2024-03-01T14:00:00Z");
+        Transaction withoutAmount = transaction("TXN-W7", "C1001", "M2001", transactionDate);
+        withoutAmount.setAmount(null);
+
+        write(transaction("TXN-W5", "C9999", "M2001", transactionDate),
+                transaction("TXN-W6", "C1001", "M9999", transactionDate),
+                withoutAmount,
+                transaction("TXN-W8", "C1001", "M2001", transactionDate));
+
+        assertEquals(1, count("TXN-W5", "TXN-W6", "TXN-W7", "TXN-W8"));
+        assertEquals(1.0, rows("inserted"));
+        assertEquals(3.0, rows("skipped"));
+        assertEquals(0.0, rows("failed"));
+    }
+
+    // Queues the transactions and stops the writer, which writes everything still queued
+    private void write(Transaction... transactions) throws InterruptedException {
+        TransactionWriter writer = new TransactionWriter(jdbcTemplate, meterRegistry, true, 100, 50, 1000);
+        for (Transaction transaction : transactions) {
+            writer.onTransactionEnriched(transaction);
+        }
+        writer.start();
+        writer.stop();
+    }
+
+    private int count(String... transactionIds) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE transaction_id = ANY(?)",
+                Integer.class, (Object) transactionIds);
+    }
+
+    private double rows(String result) {
+        return meterRegistry.counter("transaction.writer.rows", "result", result).count();
+    }
+
+    private static Transaction transaction(String transactionId, String customerId, String merchantId,
+                                           Instant transactionDate) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .accountId("A1001")
+                .customerId(customerId)
+                .merchantId(merchantId)
+                .amount(new BigDecimal("42.50"))
+                .currency("USD")
+                .transactionDate(transactionDate)
+                .location("US:New York:40.7128:-74.0060")
+                .build();
+    }
+}
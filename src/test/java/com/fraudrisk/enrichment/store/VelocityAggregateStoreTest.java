@@ -0,0 +1,61 @@
+package com.fraudrisk.enrichment.store;
+
+import com.fraudrisk.enrichment.model.Transaction;
+import com.fraudrisk.enrichment.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VelocityAggregateStoreTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final VelocityAggregateStore store =
+            new VelocityAggregateStore(transactionRepository, new SimpleMeterRegistry(), true, 1000);
+
+    @Test
+    void redeliveredTransactionIsCountedOnce() {
+        when(transactionRepository.findCustomerHistoryRows(eq("C1"), any())).thenReturn(List.of());
+        store.getAggregates("C1", NOW);
+
+        Transaction transaction = transaction("TXN-1", NOW.minus(5, ChronoUnit.MINUTES));
+        store.onTransactionEnriched(transaction);
+        store.onTransactionEnriched(transaction);
+        store.onTransactionEnriched(transaction("TXN-2", NOW.minus(1, ChronoUnit.MINUTES)));
+
+        VelocityAggregateStore.VelocityAggregates aggregates = store.getAggregates("C1", NOW);
+        assertEquals(2, aggregates.count24h());
+        assertEquals(200.0, aggregates.sum24h(), 1e-9);
+    }
+
+    @Test
+    void transactionAlreadySeededFromPostgresIsNotCountedAgain() {
+        Instant seen = NOW.minus(5, ChronoUnit.MINUTES);
+        when(transactionRepository.findCustomerHistoryRows(eq("C1"), any())).thenReturn(List.<Object[]>of(
+                new Object[] {seen, new BigDecimal("100.00"), "M1", "RETAIL", "D1", "TXN-1"}));
+        store.getAggregates("C1", NOW);
+
+        store.onTransactionEnriched(transaction("TXN-1", seen));
+
+        assertEquals(1, store.getAggregates("C1", NOW).count24h());
+    }
+
+    private static Transaction transaction(String transactionId, Instant transactionDate) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .customerId("C1")
+                .amount(new BigDecimal("100.00"))
+                .transactionDate(transactionDate)
+                .build();
+    }
+}